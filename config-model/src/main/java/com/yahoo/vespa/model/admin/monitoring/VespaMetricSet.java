@@ -63,6 +63,10 @@ public class VespaMetricSet {
         metrics.add(new Metric("jrt.transport.server.unencrypted-connections-established"));
         metrics.add(new Metric("jrt.transport.client.unencrypted-connections-established"));
 
+        // Java (JRT) transport thread metrics
+        metrics.add(new Metric("jrt.transport.event-loop.utilization.max"));
+        metrics.add(new Metric("jrt.transport.event-loop.utilization.average"));
+
         // C++ TLS metrics
         metrics.add(new Metric("vds.server.network.tls-handshakes-failed"));
         metrics.add(new Metric("vds.server.network.peer-authorization-failures"));
@@ -288,6 +292,26 @@ public class VespaMetricSet {
         metrics.add(new Metric("documents_total.count"));
         metrics.add(new Metric("dispatch_internal.rate"));
         metrics.add(new Metric("dispatch_fdispatch.rate"));
+        metrics.add(new Metric("dispatch_group_latency.average"));
+        metrics.add(new Metric("dispatch_group_latency.95percentile"));
+        metrics.add(new Metric("dispatch_group_latency.99percentile"));
+        metrics.add(new Metric("dispatch_group_queries_in_flight.average"));
+        metrics.add(new Metric("dispatch_group_queries_in_flight.max"));
+        metrics.add(new Metric("dispatch_result_cache_hits.rate"));
+        metrics.add(new Metric("dispatch_result_cache_misses.rate"));
+        metrics.add(new Metric("dispatch_result_cache_evictions.rate"));
+        metrics.add(new Metric("dispatch_summary_cache_hits.rate"));
+        metrics.add(new Metric("dispatch_summary_cache_misses.rate"));
+        metrics.add(new Metric("dispatch_summary_cache_evictions.rate"));
+        metrics.add(new Metric("yql.parse_latency.max"));
+        metrics.add(new Metric("yql.parse_latency.sum"));
+        metrics.add(new Metric("yql.parse_latency.count"));
+        metrics.add(new Metric("yql.parse_cache_hits.rate"));
+        metrics.add(new Metric("yql.parse_cache_misses.rate"));
+        metrics.add(new Metric("query_profile.resolved_contexts.max"));
+        metrics.add(new Metric("query_profile.resolved_contexts.last"));
+        metrics.add(new Metric("query_profile.resolved_context_hits.rate"));
+        metrics.add(new Metric("query_profile.resolved_context_misses.rate"));
 
         metrics.add(new Metric("totalhits_per_query.max"));
         metrics.add(new Metric("totalhits_per_query.sum"));
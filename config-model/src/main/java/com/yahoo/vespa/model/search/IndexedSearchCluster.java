@@ -315,6 +315,9 @@ public class IndexedSearchCluster extends SearchCluster
                 case ROUNDROBIN:
                     builder.distributionPolicy(DistributionPolicy.ROUNDROBIN);
                     break;
+                case LATENCY_AWARE:
+                    builder.distributionPolicy(DistributionPolicy.LATENCY_AWARE);
+                    break;
             }
         }
         if (tuning.dispatch.getMaxHitsPerPartition() != null)
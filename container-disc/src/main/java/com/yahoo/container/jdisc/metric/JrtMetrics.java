@@ -4,6 +4,12 @@ package com.yahoo.container.jdisc.metric;
 import com.yahoo.jdisc.Metric;
 import com.yahoo.jrt.TransportMetrics;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import static com.yahoo.jrt.TransportMetrics.EventLoopUsage;
 import static com.yahoo.jrt.TransportMetrics.Snapshot;
 
 /**
@@ -13,8 +19,12 @@ import static com.yahoo.jrt.TransportMetrics.Snapshot;
  */
 class JrtMetrics {
 
+    /** A numeric suffix of a transport name, such as a hash code (which may be negative) or a port number */
+    private static final Pattern instanceSuffix = Pattern.compile("-+\\d+$");
+
     private final TransportMetrics transportMetrics = TransportMetrics.getInstance();
     private final Metric metric;
+    private final Map<String, Metric.Context> threadContexts = new HashMap<>();
     private Snapshot previousSnapshot = Snapshot.EMPTY;
 
     JrtMetrics(Metric metric) {
@@ -30,9 +40,33 @@ class JrtMetrics {
         increment("jrt.transport.client.tls-connections-established", changesSincePrevious.clientTlsConnectionsEstablished());
         increment("jrt.transport.server.unencrypted-connections-established", changesSincePrevious.serverUnencryptedConnectionsEstablished());
         increment("jrt.transport.client.unencrypted-connections-established", changesSincePrevious.clientUnencryptedConnectionsEstablished());
+        utilizationByThread(changesSincePrevious.eventLoopUsage()).forEach((thread, utilization) ->
+                metric.set("jrt.transport.event-loop.utilization", utilization,
+                           threadContexts.computeIfAbsent(thread, name -> metric.createContext(Map.of("thread", name)))));
         previousSnapshot = snapshot;
     }
 
+    /**
+     * Returns the event loop utilization by a stable thread name, "&lt;transport&gt;.jrt-transport.&lt;index&gt;",
+     * where the transport name is stripped of any numeric suffix which is unique per instance, such as the hash code
+     * in "config-jrtpool-&lt;hash&gt;" or a port number. Threads which get the same stable name are reported by the
+     * highest utilization among them, such that a hot event loop stays visible.
+     */
+    static Map<String, Double> utilizationByThread(Map<String, EventLoopUsage> usageByThreadName) {
+        Map<String, Double> utilization = new TreeMap<>();
+        usageByThreadName.forEach((threadName, usage) -> {
+            if (usage.totalNanos() > 0)
+                utilization.merge(stableThreadName(threadName), usage.utilization(), Math::max);
+        });
+        return utilization;
+    }
+
+    private static String stableThreadName(String threadName) {
+        int start = threadName.lastIndexOf(".jrt-transport.");
+        if (start < 0) return threadName;
+        return instanceSuffix.matcher(threadName.substring(0, start)).replaceFirst("") + threadName.substring(start);
+    }
+
     private void increment(String metricName, long countIncrement) {
         if (countIncrement > 0) {
             metric.add(metricName, countIncrement, null);
@@ -0,0 +1,30 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.container.jdisc.metric;
+
+import com.yahoo.jrt.TransportMetrics.EventLoopUsage;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author agent
+ */
+public class JrtMetricsTest {
+
+    @Test
+    public void event_loop_utilization_is_reported_by_stable_thread_names_without_hiding_hot_threads() {
+        Map<String, Double> utilization =
+                JrtMetrics.utilizationByThread(Map.of("config-jrtpool-1234.jrt-transport.0", new EventLoopUsage(10, 100),
+                                                      "config-jrtpool--5678.jrt-transport.0", new EventLoopUsage(50, 100),
+                                                      "mbus-rpc-container/default.jrt-transport.0", new EventLoopUsage(95, 100),
+                                                      "slobrok-19099.jrt-transport.1", new EventLoopUsage(20, 100),
+                                                      "idle.jrt-transport.2", new EventLoopUsage(0, 0)));
+        assertEquals(Map.of("config-jrtpool.jrt-transport.0", 0.5,
+                            "mbus-rpc-container/default.jrt-transport.0", 0.95,
+                            "slobrok.jrt-transport.1", 0.2),
+                     utilization);
+    }
+
+}
@@ -6,6 +6,7 @@ import com.yahoo.component.chain.dependencies.After;
 import com.yahoo.component.provider.ComponentRegistry;
 import com.yahoo.container.QrSearchersConfig;
 import com.yahoo.container.handler.VipStatus;
+import com.yahoo.jdisc.Metric;
 import com.yahoo.prelude.IndexFacts;
 import com.yahoo.prelude.fastsearch.ClusterParams;
 import com.yahoo.prelude.fastsearch.DocumentdbInfoConfig;
@@ -18,11 +19,14 @@ import com.yahoo.search.Result;
 import com.yahoo.search.Searcher;
 import com.yahoo.search.config.ClusterConfig;
 import com.yahoo.search.dispatch.Dispatcher;
+import com.yahoo.search.dispatch.ResultCache;
+import com.yahoo.search.dispatch.SummaryCache;
 import com.yahoo.search.query.ParameterParser;
 import com.yahoo.search.result.ErrorMessage;
 import com.yahoo.search.searchchain.Execution;
 import com.yahoo.vespa.streamingvisitors.VdsStreamingSearcher;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -67,7 +71,8 @@ public class ClusterSearcher extends Searcher {
                            DocumentdbInfoConfig documentDbConfig,
                            ComponentRegistry<Dispatcher> dispatchers,
                            FS4ResourcePool fs4ResourcePool,
-                           VipStatus vipStatus) {
+                           VipStatus vipStatus,
+                           Metric metric) {
         super(id);
 
         int searchClusterIndex = clusterConfig.clusterId();
@@ -98,6 +103,8 @@ public class ClusterSearcher extends Searcher {
             vipStatus.addToRotation(searcher.getName());
         } else {
             FastSearcher searcher = searchDispatch(searchClusterIndex, searchClusterName, fs4ResourcePool.getServerId(),
+                                                   resultCache(clusterConfig, metric),
+                                                   summaryCache(clusterConfig, metric),
                                                    docSumParams, documentDbConfig, dispatchers);
             addBackendSearcher(searcher);
 
@@ -120,9 +127,27 @@ public class ClusterSearcher extends Searcher {
         return new ClusterParams("sc" + searchclusterIndex + ".num" + 0);
     }
 
+    /** Returns the result cache to use for this cluster, or null if it is disabled */
+    private static ResultCache resultCache(ClusterConfig clusterConfig, Metric metric) {
+        if (clusterConfig.resultCacheTimeout() <= 0 || clusterConfig.resultCacheSize() <= 0) return null;
+        return new ResultCache(clusterConfig.resultCacheSize(),
+                               Duration.ofMillis((long)(clusterConfig.resultCacheTimeout() * 1000)),
+                               metric);
+    }
+
+    /** Returns the document summary cache to use for this cluster, or null if it is disabled */
+    private static SummaryCache summaryCache(ClusterConfig clusterConfig, Metric metric) {
+        if (clusterConfig.summaryCacheTimeout() <= 0 || clusterConfig.summaryCacheSize() <= 0) return null;
+        return new SummaryCache(clusterConfig.summaryCacheSize(),
+                                Duration.ofMillis((long)(clusterConfig.summaryCacheTimeout() * 1000)),
+                                metric);
+    }
+
     private static FastSearcher searchDispatch(int searchclusterIndex,
                                                String searchClusterName,
                                                String serverId,
+                                               ResultCache resultCache,
+                                               SummaryCache summaryCache,
                                                SummaryParameters docSumParams,
                                                DocumentdbInfoConfig documentdbInfoConfig,
                                                ComponentRegistry<Dispatcher> dispatchers) {
@@ -132,7 +157,7 @@ public class ClusterSearcher extends Searcher {
         if (dispatcher == null)
             throw new IllegalArgumentException("Configuration error: No dispatcher " + dispatcherComponentId +
                                                " is configured");
-        return new FastSearcher(serverId, dispatcher, docSumParams, clusterParams, documentdbInfoConfig);
+        return new FastSearcher(serverId, dispatcher, resultCache, summaryCache, docSumParams, clusterParams, documentdbInfoConfig);
     }
 
     private static VdsStreamingSearcher vdsCluster(String serverId,
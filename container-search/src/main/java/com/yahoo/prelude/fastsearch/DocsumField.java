@@ -89,4 +89,7 @@ public abstract class DocsumField {
     /** Returns whether this is the string field type. */
     boolean isString() { return false; }
 
+    /** Returns whether the given value of this is converted to a {@link com.yahoo.search.result.StructuredData} */
+    boolean isStructured(Inspector value) { return false; }
+
 }
@@ -193,6 +193,11 @@ public class FastHit extends Hit {
         return Collections.unmodifiableList(summaries);
     }
 
+    /** For internal use: Returns the raw data of the summary added last to this, or null if none is added */
+    public Inspector lastAddedSummary() {
+        return summaries.isEmpty() ? null : summaries.get(0).data;
+    }
+
     /**
      * Returns values for the features listed in
      * <a href="https://docs.vespa.ai/documentation/reference/schema-reference.html#summary-features">summary-features</a>
@@ -567,6 +572,8 @@ public class FastHit extends Hit {
                         if (fieldType.isString()) {
                             byte[] utf8Value = value.asUtf8();
                             consumer.accept(name, utf8Value, 0, utf8Value.length);
+                        } else if (fieldType.isStructured(value)) {
+                            consumer.accept(name, value);
                         } else {
                             Object convertedValue = fieldType.convert(value);
                             if (convertedValue != null)
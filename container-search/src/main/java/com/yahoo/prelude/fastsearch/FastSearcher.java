@@ -8,7 +8,9 @@ import com.yahoo.search.Query;
 import com.yahoo.search.Result;
 import com.yahoo.search.dispatch.Dispatcher;
 import com.yahoo.search.dispatch.FillInvoker;
+import com.yahoo.search.dispatch.ResultCache;
 import com.yahoo.search.dispatch.SearchInvoker;
+import com.yahoo.search.dispatch.SummaryCache;
 import com.yahoo.search.grouping.GroupingRequest;
 import com.yahoo.search.grouping.request.GroupingOperation;
 import com.yahoo.search.query.Ranking;
@@ -40,6 +42,12 @@ public class FastSearcher extends VespaBackEndSearcher {
     /** Used to dispatch directly to search nodes over RPC, replacing the old fnet communication path */
     private final Dispatcher dispatcher;
 
+    /** Answers repeated queries without dispatching them, or null if result caching is disabled */
+    private final ResultCache resultCache;
+
+    /** Fills hits with summaries which are not specific to the query without fetching them, or null if disabled */
+    private final SummaryCache summaryCache;
+
     /**
      * Creates a Fastsearcher.
      *
@@ -56,8 +64,22 @@ public class FastSearcher extends VespaBackEndSearcher {
     public FastSearcher(String serverId, Dispatcher dispatcher,
                         SummaryParameters docSumParams, ClusterParams clusterParams,
                         DocumentdbInfoConfig documentdbInfoConfig) {
+        this(serverId, dispatcher, null, null, docSumParams, clusterParams, documentdbInfoConfig);
+    }
+
+    /**
+     * Creates a Fastsearcher.
+     *
+     * @param resultCache the cache used to answer repeated queries without dispatching them, or null to not cache
+     * @param summaryCache the cache used to fill hits without fetching their summaries, or null to not cache
+     */
+    public FastSearcher(String serverId, Dispatcher dispatcher, ResultCache resultCache, SummaryCache summaryCache,
+                        SummaryParameters docSumParams, ClusterParams clusterParams,
+                        DocumentdbInfoConfig documentdbInfoConfig) {
         init(serverId, docSumParams, clusterParams, documentdbInfoConfig);
         this.dispatcher = dispatcher;
+        this.resultCache = resultCache;
+        this.summaryCache = summaryCache;
     }
 
     /**
@@ -124,7 +146,7 @@ public class FastSearcher extends VespaBackEndSearcher {
         Query query = result.getQuery();
         traceQuery(getName(), "fill", query, query.getOffset(), query.getHits(), 1, quotedSummaryClass(summaryClass));
 
-        try (FillInvoker invoker = getFillInvoker(result)) {
+        try (FillInvoker invoker = getFillInvoker(result, summaryClass)) {
             invoker.fill(result, summaryClass);
         }
     }
@@ -144,19 +166,31 @@ public class FastSearcher extends VespaBackEndSearcher {
     /**
      * Returns an invocation object for use in a single search request. The specific implementation returned
      * depends on query properties with the default being an invoker that interfaces with a dispatcher
-     * on the same host.
+     * on the same host, possibly answered from the result cache.
      */
     private SearchInvoker getSearchInvoker(Query query) {
-        return dispatcher.getSearchInvoker(query, this);
+        if (resultCache == null) return dispatcher.getSearchInvoker(query, this);
+        return resultCache.getSearchInvoker(query, () -> dispatcher.getSearchInvoker(query, this));
     }
 
     /**
      * Returns an invocation object for use in a single fill request. The specific implementation returned
      * depends on query properties with the default being an invoker that uses RPC to interface with
-     * content nodes.
+     * content nodes, possibly filling some hits from the summary cache.
      */
-    private FillInvoker getFillInvoker(Result result) {
-        return dispatcher.getFillInvoker(result, this);
+    private FillInvoker getFillInvoker(Result result, String summaryClass) {
+        if (summaryCache == null || ! isSummaryCacheable(result.getQuery(), summaryClass))
+            return dispatcher.getFillInvoker(result, this);
+        return summaryCache.getFillInvoker(getDocumentDatabase(result.getQuery()),
+                                           () -> dispatcher.getFillInvoker(result, this));
+    }
+
+    /** Returns whether the given summary class can be filled from the summary cache for this query */
+    private boolean isSummaryCacheable(Query query, String summaryClass) {
+        if (query.getNoCache()) return false;
+        if (query.getRanking().getQueryCache()) return false; // then summaryNeedsQuery does not tell
+        if (summaryNeedsQuery(query)) return false;
+        return ! getDocumentDatabase(query).getDocsumDefinitionSet().getDocsum(summaryClass).isDynamic();
     }
 
     private static Optional<String> quotedSummaryClass(String summaryClass) {
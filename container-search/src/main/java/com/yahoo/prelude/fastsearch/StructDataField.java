@@ -27,6 +27,9 @@ public class StructDataField extends DocsumField {
         return new StructuredData(value);
     }
 
+    @Override
+    boolean isStructured(Inspector value) { return value.type() != Type.STRING; }
+
     private Object convertString(Inspector value) {
         if (value.valid()) {
             return new JSONString(value);
@@ -76,6 +76,9 @@ public class Dispatcher extends AbstractComponent {
 
     private final int maxHitsPerNode;
 
+    private final double hedgeLatencyPercentile;
+    private final HedgeBudget hedgeBudget;
+
     private static final QueryProfileType argumentType;
 
     static {
@@ -118,12 +121,13 @@ public class Dispatcher extends AbstractComponent {
 
         this.searchCluster = searchCluster;
         this.clusterMonitor = clusterMonitor;
-        this.loadBalancer = new LoadBalancer(searchCluster,
-                                  dispatchConfig.distributionPolicy() == DispatchConfig.DistributionPolicy.ROUNDROBIN);
+        this.loadBalancer = new LoadBalancer(searchCluster, dispatchConfig.distributionPolicy(), metric);
         this.invokerFactory = invokerFactory;
         this.metric = metric;
         this.metricContext = metric.createContext(null);
         this.maxHitsPerNode = dispatchConfig.maxHitsPerNode();
+        this.hedgeLatencyPercentile = dispatchConfig.hedgeLatencyPercentile();
+        this.hedgeBudget = new HedgeBudget(dispatchConfig.maxHedgedQueriesPercentage());
         searchCluster.addMonitoring(clusterMonitor);
         Thread warmup = new Thread(new Runnable() {
             @Override
@@ -228,16 +232,16 @@ public class Dispatcher extends AbstractComponent {
 
             Group group = groupInCluster.get();
             boolean acceptIncompleteCoverage = (i == max - 1);
-            Optional<SearchInvoker> invoker = invokerFactory.createSearchInvoker(searcher,
-                                                                                 query,
-                                                                                 OptionalInt.of(group.id()),
-                                                                                 group.nodes(),
-                                                                                 acceptIncompleteCoverage,
-                                                                                 maxHitsPerNode);
+            Optional<SearchInvoker> invoker = createGroupInvoker(searcher, query, group, acceptIncompleteCoverage);
             if (invoker.isPresent()) {
                 query.trace(false, 2, "Dispatching to group ", group.id());
                 query.getModel().setSearchPath("/" + group.id());
                 invoker.get().teardown((success, time) -> loadBalancer.releaseGroup(group, success, time));
+                if (isHedged(invoker.get())) {
+                    hedgeBudget.countQuery();
+                    ((InterleavedSearchInvoker)invoker.get()).hedgeAfter(hedgeLatencyPercentile,
+                                                                        () -> getHedgeInvoker(query, searcher, group));
+                }
                 return invoker.get();
             } else {
                 loadBalancer.releaseGroup(group, false, 0);
@@ -250,6 +254,50 @@ public class Dispatcher extends AbstractComponent {
         throw new IllegalStateException("No suitable groups to dispatch query. Rejected: " + rejected);
     }
 
+    private Optional<SearchInvoker> createGroupInvoker(VespaBackEndSearcher searcher, Query query, Group group,
+                                                       boolean acceptIncompleteCoverage) {
+        Optional<SearchInvoker> invoker = invokerFactory.createSearchInvoker(searcher,
+                                                                             query,
+                                                                             OptionalInt.of(group.id()),
+                                                                             group.nodes(),
+                                                                             acceptIncompleteCoverage,
+                                                                             maxHitsPerNode);
+        // Track latencies of single node groups the same way as for larger groups when queries may be hedged
+        if (hedgeLatencyPercentile > 0 && invoker.isPresent() && ! (invoker.get() instanceof InterleavedSearchInvoker))
+            invoker = Optional.of(new InterleavedSearchInvoker(List.of(invoker.get()), searchCluster, null));
+        return invoker;
+    }
+
+    private boolean isHedged(SearchInvoker invoker) {
+        if (hedgeLatencyPercentile <= 0) return false;
+        if (searchCluster.orderedGroups().size() < 2) return false;
+        return invoker instanceof InterleavedSearchInvoker;
+    }
+
+    /**
+     * Returns an invoker searching another group than the given one with full coverage,
+     * or empty if there is no such group or too many queries are already hedged
+     */
+    private Optional<SearchInvoker> getHedgeInvoker(Query query, VespaBackEndSearcher searcher, Group current) {
+        if ( ! hedgeBudget.tryHedge()) return Optional.empty();
+
+        Set<Integer> rejected = rejectGroupBlockingFeed(searchCluster.orderedGroups());
+        if (rejected == null)
+            rejected = new HashSet<>();
+        rejected.add(current.id());
+        Optional<Group> group = loadBalancer.takeGroup(rejected);
+        if (group.isEmpty()) return Optional.empty();
+
+        Optional<SearchInvoker> invoker = createGroupInvoker(searcher, query, group.get(), false);
+        if (invoker.isEmpty()) {
+            loadBalancer.releaseGroup(group.get(), false, 0);
+            return Optional.empty();
+        }
+        query.trace(false, 2, "Hedging query to group ", group.get().id());
+        invoker.get().teardown((success, time) -> loadBalancer.releaseGroup(group.get(), success, time));
+        return invoker;
+    }
+
     /**
      * We want to avoid groups blocking feed because their data may be out of date.
      * If there is a single group blocking feed, we want to reject it.
@@ -267,4 +315,35 @@ public class Dispatcher extends AbstractComponent {
         return rejected;
     }
 
+    /** Limits the fraction of queries which are hedged. This is multithread safe. */
+    private static class HedgeBudget {
+
+        /** The number of queries after which the counts are halved, to follow changes in load */
+        private static final long window = 10000;
+
+        private final double maxHedgedFraction;
+        private long queries = 0;
+        private long hedges = 0;
+
+        HedgeBudget(double maxHedgedPercentage) {
+            this.maxHedgedFraction = maxHedgedPercentage / 100;
+        }
+
+        /** Counts a query which may be hedged */
+        synchronized void countQuery() {
+            if (++queries >= window) {
+                queries /= 2;
+                hedges /= 2;
+            }
+        }
+
+        /** Returns whether a query may be hedged, and if so counts it as hedged */
+        synchronized boolean tryHedge() {
+            if (hedges + 1 > queries * maxHedgedFraction) return false;
+            hedges++;
+            return true;
+        }
+
+    }
+
 }
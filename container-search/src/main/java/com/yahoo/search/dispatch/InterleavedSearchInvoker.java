@@ -17,10 +17,16 @@ import java.util.Collections;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -33,6 +39,10 @@ import static com.yahoo.container.handler.Coverage.DEGRADED_BY_TIMEOUT;
  * nodes in parallel. Operationally it first sends requests to all contained invokers and then
  * collects the results. The user of this class is responsible for merging the results if needed.
  *
+ * If a hedge is set, the query is also sent to another group when some node has not responded
+ * within a percentile of its recent latencies. The result of the hedge is used if it completes first
+ * without errors and with full coverage, otherwise the result of the original group is used.
+ *
  * @author ollivir
  */
 public class InterleavedSearchInvoker extends SearchInvoker implements ResponseMonitor<SearchInvoker> {
@@ -45,6 +55,17 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
     private final Set<Integer> alreadyFailedNodes;
     private Query query;
 
+    /** The percentile (0-100) of the recent latencies of nodes after which the query is hedged */
+    private double hedgeLatencyPercentile = 0;
+    /** Supplies an invoker searching another group, or null if this query should not be hedged (again) */
+    private Supplier<Optional<SearchInvoker>> hedgeSupplier = null;
+    /** The invoker searching another group, if this query has been hedged */
+    private volatile SearchInvoker hedge = null;
+    /** The time each invoker responded, when this is hedged */
+    private final Map<SearchInvoker, Long> responseTimes = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingResponses = new AtomicInteger();
+    private long sendTime = 0;
+
     private boolean adaptiveTimeoutCalculated = false;
     private long adaptiveTimeoutMin = 0;
     private long adaptiveTimeoutMax = 0;
@@ -68,6 +89,18 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
         this.alreadyFailedNodes = alreadyFailedNodes;
     }
 
+    /**
+     * Makes this send the query to another group if some node has not responded within the given
+     * percentile of its recent latencies, and use the result of the group which responds first.
+     *
+     * @param latencyPercentile the percentile (0-100) of the recent latencies of each node to wait for
+     * @param hedgeSupplier supplies an invoker searching another group, or empty if none should be used
+     */
+    void hedgeAfter(double latencyPercentile, Supplier<Optional<SearchInvoker>> hedgeSupplier) {
+        this.hedgeLatencyPercentile = latencyPercentile;
+        this.hedgeSupplier = hedgeSupplier;
+    }
+
     /**
      * Sends search queries to the contained {@link SearchInvoker} sub-invokers. If the search
      * query has an offset other than zero, it will be reset to zero and the expected hit amount
@@ -77,7 +110,9 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
     protected Object sendSearchRequest(Query query, Object unusedContext) throws IOException {
         this.query = query;
         invokers.forEach(invoker -> invoker.setMonitor(this));
-        deadline = currentTime() + query.getTimeLeft();
+        pendingResponses.set(invokers.size());
+        sendTime = currentTime();
+        deadline = sendTime + query.getTimeLeft();
 
         int originalHits = query.getHits();
         int originalOffset = query.getOffset();
@@ -103,16 +138,35 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
     @Override
     protected InvokerResult getSearchResult(Execution execution) throws IOException {
         InvokerResult result = new InvokerResult(query, query.getHits());
-        List<LeanHit> merged = Collections.emptyList();
+        List<List<LeanHit>> partialHits = new ArrayList<>(invokers.size());
         long nextTimeout = query.getTimeLeft();
         try {
             while (!invokers.isEmpty() && nextTimeout >= 0) {
-                SearchInvoker invoker = availableForProcessing.poll(nextTimeout, TimeUnit.MILLISECONDS);
+                long timeToHedge = timeToHedge();
+                long pollDeadline = currentTime() + nextTimeout;
+                SearchInvoker invoker = availableForProcessing.poll(Math.min(nextTimeout, timeToHedge), TimeUnit.MILLISECONDS);
+                if (invoker == null && timeToHedge < nextTimeout) {
+                    sendHedge();
+                    nextTimeout = pollDeadline - currentTime();
+                    continue;
+                }
                 if (invoker == null) {
                     log.fine(() -> "Search timed out with " + askedNodes + " requests made, " + answeredNodes + " responses received");
                     break;
+                } else if (invoker == hedge) {
+                    InvokerResult hedgeResult = hedge.getSearchResult(execution);
+                    if (isComplete(hedgeResult)) {
+                        query.trace("Using the result of the hedged query as it completed first", 2);
+                        hedge.setFinalStatus(true);
+                        return hedgeResult;
+                    }
+                    query.trace("Ignoring the incomplete result of the hedged query", 2);
+                    hedge.close();
+                    hedge = null;
                 } else {
-                    merged = mergeResult(result.getResult(), invoker.getSearchResult(execution), merged);
+                    InvokerResult partialResult = invoker.getSearchResult(execution);
+                    recordLatency(invoker, partialResult);
+                    mergeResult(result.getResult(), partialResult, partialHits);
                     ejectInvoker(invoker);
                 }
                 nextTimeout = nextTimeout();
@@ -124,6 +178,7 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
         insertNetworkErrors(result.getResult());
         result.getResult().setCoverage(createCoverage());
         int needed = query.getOffset() + query.getHits();
+        List<LeanHit> merged = mergeHits(partialHits, needed);
         for (int index = query.getOffset(); (index < merged.size()) && (index < needed); index++) {
             result.getLeanHits().add(merged.get(index));
         }
@@ -131,6 +186,49 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
         return result;
     }
 
+    /** Returns whether the given result has no errors and full coverage */
+    private static boolean isComplete(InvokerResult result) {
+        if (result.getResult().hits().getError() != null) return false;
+        Coverage coverage = result.getResult().getCoverage(false);
+        return coverage != null && coverage.getFull() && ! coverage.isDegraded();
+    }
+
+    /** Adds the latency of the given invoker to its node if this is hedged and the invoker returned a complete result */
+    private void recordLatency(SearchInvoker invoker, InvokerResult result) {
+        if ( ! isHedged()) return;
+        Long responseTime = responseTimes.remove(invoker);
+        if (responseTime == null || invoker.node().isEmpty()) return;
+        if ( ! isComplete(result)) return;
+        invoker.node().get().addLatency(responseTime - sendTime);
+    }
+
+    private boolean isHedged() { return hedgeLatencyPercentile > 0; }
+
+    /** Returns the number of milliseconds until this query should be hedged, or Long.MAX_VALUE if it should not */
+    private long timeToHedge() {
+        if (hedgeSupplier == null) return Long.MAX_VALUE;
+
+        long hedgeLatency = Long.MAX_VALUE;
+        for (SearchInvoker invoker : invokers) {
+            if (invoker.node().isEmpty()) continue;
+            OptionalLong latency = invoker.node().get().latencyPercentile(hedgeLatencyPercentile);
+            if (latency.isPresent())
+                hedgeLatency = Math.min(hedgeLatency, latency.getAsLong());
+        }
+        if (hedgeLatency == Long.MAX_VALUE) return Long.MAX_VALUE;
+        return Math.max(0, sendTime + hedgeLatency - currentTime());
+    }
+
+    private void sendHedge() throws IOException {
+        Optional<SearchInvoker> hedge = hedgeSupplier.get();
+        hedgeSupplier = null;
+        if (hedge.isEmpty()) return;
+
+        this.hedge = hedge.get();
+        this.hedge.setMonitor(this);
+        this.hedge.sendSearchRequest(query, null);
+    }
+
     private void insertNetworkErrors(Result result) {
         // Network errors will be reported as errors only when all nodes fail, otherwise they are just traced
         boolean asErrors = answeredNodes == 0;
@@ -197,7 +295,7 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
         return nextAdaptive;
     }
 
-    private List<LeanHit> mergeResult(Result result, InvokerResult partialResult, List<LeanHit> current) {
+    private void mergeResult(Result result, InvokerResult partialResult, List<List<LeanHit>> partialHits) {
         collectCoverage(partialResult.getResult().getCoverage(true));
 
         result.mergeWith(partialResult.getResult());
@@ -207,44 +305,60 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
                 result.hits().add(hit);
             }
         }
-        if (current.isEmpty() ) {
-            return partialResult.getLeanHits();
+        if ( ! partialResult.getLeanHits().isEmpty()) {
+            partialHits.add(partialResult.getLeanHits());
         }
-        List<LeanHit> partial = partialResult.getLeanHits();
-        if (partial.isEmpty()) {
-            return current;
+    }
+
+    /**
+     * Merges the given sorted hit lists into one sorted list of at most the given size, skipping duplicates.
+     * This is a k-way merge using a heap holding the next hit of each list.
+     */
+    static List<LeanHit> mergeHits(List<List<LeanHit>> partialHits, int needed) {
+        if (partialHits.isEmpty()) return Collections.emptyList();
+        if (partialHits.size() == 1) {
+            List<LeanHit> hits = partialHits.get(0);
+            return hits.size() <= needed ? hits : hits.subList(0, needed);
         }
 
-        int needed = query.getOffset() + query.getHits();
+        PriorityQueue<HitCursor> heads = new PriorityQueue<>(partialHits.size());
+        for (List<LeanHit> hits : partialHits)
+            heads.add(new HitCursor(hits));
         List<LeanHit> merged = new ArrayList<>(needed);
-        int indexCurrent = 0;
-        int indexPartial = 0;
-        while (indexCurrent < current.size() && indexPartial < partial.size() && merged.size() < needed) {
-            LeanHit incommingHit = partial.get(indexPartial);
-            LeanHit currentHit = current.get(indexCurrent);
-
-            int cmpRes = currentHit.compareTo(incommingHit);
-            if (cmpRes < 0) {
-                merged.add(currentHit);
-                indexCurrent++;
-            } else if (cmpRes > 0) {
-                merged.add(incommingHit);
-                indexPartial++;
-            } else { // Duplicates
-                merged.add(currentHit);
-                indexCurrent++;
-                indexPartial++;
+        LeanHit previous = null;
+        while ( ! heads.isEmpty() && merged.size() < needed) {
+            HitCursor head = heads.poll();
+            LeanHit hit = head.current();
+            if (previous == null || previous.compareTo(hit) != 0) { // Skip duplicates
+                merged.add(hit);
+                previous = hit;
             }
-        }
-        while ((indexCurrent < current.size()) && (merged.size() < needed)) {
-            merged.add(current.get(indexCurrent++));
-        }
-        while ((indexPartial < partial.size()) && (merged.size() < needed)) {
-            merged.add(partial.get(indexPartial++));
+            if (head.next())
+                heads.add(head);
         }
         return merged;
     }
 
+    /** A position in a sorted list of hits, ordered by the hit at that position */
+    private static class HitCursor implements Comparable<HitCursor> {
+
+        private final List<LeanHit> hits;
+        private int index = 0;
+
+        HitCursor(List<LeanHit> hits) {
+            this.hits = hits;
+        }
+
+        LeanHit current() { return hits.get(index); }
+
+        /** Moves to the next hit and returns whether there is one */
+        boolean next() { return ++index < hits.size(); }
+
+        @Override
+        public int compareTo(HitCursor other) { return current().compareTo(other.current()); }
+
+    }
+
     private void collectCoverage(Coverage source) {
         answeredDocs += source.getDocs();
         answeredActiveDocs += source.getActive();
@@ -305,20 +419,25 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
             invokers.forEach(SearchInvoker::close);
             invokers.clear();
         }
+        if (hedge != null) {
+            hedge.close();
+            hedge = null;
+        }
     }
 
     @Override
     public void responseAvailable(SearchInvoker from) {
+        if (from != hedge) {
+            if (isHedged())
+                responseTimes.put(from, currentTime());
+            if (pendingResponses.decrementAndGet() == 0)
+                responseAvailable(); // this may itself be a hedge
+        }
         if (availableForProcessing != null) {
             availableForProcessing.add(from);
         }
     }
 
-    @Override
-    protected void setMonitor(ResponseMonitor<SearchInvoker> monitor) {
-        // never to be called
-    }
-
     // For overriding in tests
     protected long currentTime() {
         return System.currentTimeMillis();
@@ -0,0 +1,77 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+/**
+ * A streaming histogram of recent latencies with logarithmically sized buckets, such that percentiles
+ * are within 5% of the exact value. The counts are halved at regular intervals to let percentiles
+ * follow changes in latency.
+ *
+ * This is not multithread safe.
+ *
+ * @author agent
+ */
+class LatencyHistogram {
+
+    /** The upper bound of the smallest bucket, in seconds */
+    private static final double minLatency = 0.0001;
+
+    /** The ratio between the upper bounds of consecutive buckets */
+    private static final double bucketRatio = 1.1;
+
+    /** Buckets up to 1000 seconds, where the last also holds all larger latencies */
+    private static final int bucketCount = (int)Math.ceil(Math.log(1000 / minLatency) / Math.log(bucketRatio)) + 1;
+
+    /** The number of added latencies after which all counts are halved */
+    private static final int halvingInterval = 1000;
+
+    private final long[] counts = new long[bucketCount];
+    private long total = 0;
+    private int addedSinceHalving = 0;
+
+    /** Adds a latency in seconds */
+    void add(double latency) {
+        counts[bucketOf(latency)]++;
+        total++;
+        if (++addedSinceHalving >= halvingInterval)
+            halve();
+    }
+
+    /** Returns the given percentile (0-100) of the recent latencies in seconds, or 0 if none are added */
+    double percentile(double percentile) {
+        if (total == 0) return 0;
+
+        long rank = Math.max(1, (long)Math.ceil(percentile / 100 * total));
+        long accumulated = 0;
+        for (int i = 0; i < bucketCount; i++) {
+            accumulated += counts[i];
+            if (accumulated >= rank)
+                return valueOf(i);
+        }
+        return valueOf(bucketCount - 1);
+    }
+
+    /** Returns the number of latencies in this, as reduced by halving */
+    long count() { return total; }
+
+    private void halve() {
+        total = 0;
+        for (int i = 0; i < bucketCount; i++) {
+            counts[i] /= 2;
+            total += counts[i];
+        }
+        addedSinceHalving = 0;
+    }
+
+    private static int bucketOf(double latency) {
+        if ( ! (latency > minLatency)) return 0; // also NaN
+        int bucket = (int)Math.ceil(Math.log(latency / minLatency) / Math.log(bucketRatio));
+        return Math.min(bucket, bucketCount - 1);
+    }
+
+    /** Returns the geometric middle of the given bucket */
+    private static double valueOf(int bucket) {
+        if (bucket == 0) return minLatency;
+        return minLatency * Math.pow(bucketRatio, bucket - 0.5);
+    }
+
+}
@@ -4,10 +4,19 @@ package com.yahoo.search.dispatch;
 
 import java.util.Arrays;
 
+/**
+ * A hit holding only what is needed to merge it with the hits of other nodes.
+ * The global id and sort data may be held as ranges of a larger buffer, such as the reply the hit is decoded from,
+ * and are then copied out only when requested.
+ */
 public class LeanHit implements Comparable<LeanHit> {
     private final byte [] gid;
+    private final int gidOffset;
+    private final int gidLength;
     private final double relevance;
     private final byte [] sortData;
+    private final int sortDataOffset;
+    private final int sortDataLength;
     private final int partId;
     private final int distributionKey;
 
@@ -15,38 +24,70 @@ public class LeanHit implements Comparable<LeanHit> {
         this(gid, partId, distributionKey, relevance, null);
     }
     public LeanHit(byte [] gid, int partId, int distributionKey, double relevance, byte [] sortData) {
+        this(gid, 0, gid.length, partId, distributionKey, relevance,
+             sortData, 0, sortData == null ? 0 : sortData.length);
+    }
+
+    /**
+     * Creates a hit referencing its global id and sort data as ranges of the given buffers, which must not be modified.
+     * The sort data buffer may be null if there is no sort data.
+     */
+    public LeanHit(byte [] gid, int gidOffset, int gidLength, int partId, int distributionKey, double relevance,
+                   byte [] sortData, int sortDataOffset, int sortDataLength) {
         this.gid = gid;
+        this.gidOffset = gidOffset;
+        this.gidLength = gidLength;
         this.relevance = Double.isNaN(relevance) ? Double.NEGATIVE_INFINITY : relevance;
         this.sortData = sortData;
+        this.sortDataOffset = sortDataOffset;
+        this.sortDataLength = sortDataLength;
         this.partId = partId;
         this.distributionKey = distributionKey;
     }
     public double getRelevance() { return relevance; }
-    public byte [] getGid() { return gid; }
-    public byte [] getSortData() { return sortData; }
+    public byte [] getGid() { return copyOf(gid, gidOffset, gidLength); }
+    public byte [] getSortData() { return sortData == null ? null : copyOf(sortData, sortDataOffset, sortDataLength); }
     public boolean hasSortData() { return sortData != null; }
     public int getPartId() { return partId; }
     public int getDistributionKey() { return distributionKey; }
 
+    /** Returns the size in bytes of the global id and sort data of this */
+    public int dataSize() { return gidLength + sortDataLength; }
+
+    /** Returns this if it owns its data, or otherwise a copy which does not reference the buffers this was created from */
+    public LeanHit detached() {
+        if (ownsAll(gid, gidOffset, gidLength) && (sortData == null || ownsAll(sortData, sortDataOffset, sortDataLength)))
+            return this;
+        return new LeanHit(getGid(), partId, distributionKey, relevance, getSortData());
+    }
+
     @Override
     public int compareTo(LeanHit o) {
         int res = (sortData != null)
-                ? compareData(sortData, o.sortData)
+                ? compareData(sortData, sortDataOffset, sortDataLength, o.sortData, o.sortDataOffset, o.sortDataLength)
                 : Double.compare(o.relevance, relevance);
-        return (res != 0) ? res : compareData(gid, o.gid);
+        return (res != 0) ? res : compareData(gid, gidOffset, gidLength, o.gid, o.gidOffset, o.gidLength);
     }
 
-    private static int compareData(byte [] left, byte [] right) {
-        int i = Arrays.mismatch(left, right);
+    private static int compareData(byte [] left, int leftOffset, int leftLength, byte [] right, int rightOffset, int rightLength) {
+        int i = Arrays.mismatch(left, leftOffset, leftOffset + leftLength, right, rightOffset, rightOffset + rightLength);
         if (i < 0) {
             return 0;
         }
-        int max = Integer.min(left.length, right.length);
+        int max = Integer.min(leftLength, rightLength);
         if (i >= max) {
-            return left.length - right.length;
+            return leftLength - rightLength;
         }
-        int vl = (int) left[i] & 0xFF;
-        int vr = (int) right[i] & 0xFF;
+        int vl = (int) left[leftOffset + i] & 0xFF;
+        int vr = (int) right[rightOffset + i] & 0xFF;
         return vl - vr;
     }
+
+    private static boolean ownsAll(byte [] data, int offset, int length) {
+        return offset == 0 && length == data.length;
+    }
+
+    private static byte [] copyOf(byte [] data, int offset, int length) {
+        return ownsAll(data, offset, length) ? data : Arrays.copyOfRange(data, offset, offset + length);
+    }
 }
@@ -1,11 +1,15 @@
 // Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.search.dispatch;
 
+import com.yahoo.jdisc.Metric;
 import com.yahoo.search.dispatch.searchcluster.Group;
 import com.yahoo.search.dispatch.searchcluster.SearchCluster;
+import com.yahoo.vespa.config.search.DispatchConfig;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
@@ -27,16 +31,26 @@ public class LoadBalancer {
     private static final double INITIAL_QUERY_TIME = 0.001;
     private static final double MIN_QUERY_TIME = 0.001;
 
+    private static final String GROUP_LATENCY_METRIC = "dispatch_group_latency";
+    private static final String GROUP_QUERIES_IN_FLIGHT_METRIC = "dispatch_group_queries_in_flight";
+
     private final List<GroupStatus> scoreboard;
     private final GroupScheduler scheduler;
 
-    public LoadBalancer(SearchCluster searchCluster, boolean roundRobin) {
+    private final Metric metric;
+    private final Map<Integer, Metric.Context> groupMetricContexts = new HashMap<>();
+
+    public LoadBalancer(SearchCluster searchCluster, DispatchConfig.DistributionPolicy.Enum policy, Metric metric) {
         this.scoreboard = new ArrayList<>(searchCluster.groups().size());
         for (Group group : searchCluster.orderedGroups()) {
             scoreboard.add(new GroupStatus(group));
+            groupMetricContexts.put(group.id(), metric.createContext(Map.of("groupId", String.valueOf(group.id()))));
         }
-        if (roundRobin || scoreboard.size() == 1) {
+        this.metric = metric;
+        if (policy == DispatchConfig.DistributionPolicy.Enum.ROUNDROBIN || scoreboard.size() == 1) {
             this.scheduler = new RoundRobinScheduler(scoreboard);
+        } else if (policy == DispatchConfig.DistributionPolicy.Enum.LATENCY_AWARE) {
+            this.scheduler = new LatencyAwareScheduler(new Random(), scoreboard);
         } else {
             this.scheduler = new AdaptiveScheduler(new Random(), scoreboard);
         }
@@ -73,14 +87,22 @@ public class LoadBalancer {
      * @param searchTimeMs query execution time in milliseconds, used for adaptive load balancing
      */
     public void releaseGroup(Group group, boolean success, double searchTimeMs) {
+        int queriesInFlight = 0;
         synchronized (this) {
             for (GroupStatus sched : scoreboard) {
                 if (sched.group.id() == group.id()) {
                     sched.release(success, (double) searchTimeMs / 1000.0);
+                    queriesInFlight = sched.allocations;
                     break;
                 }
             }
         }
+        if ( ! (scheduler instanceof LatencyAwareScheduler)) return; // only the latency aware policy uses these
+
+        Metric.Context context = groupMetricContexts.get(group.id());
+        if (success)
+            metric.set(GROUP_LATENCY_METRIC, searchTimeMs, context);
+        metric.set(GROUP_QUERIES_IN_FLIGHT_METRIC, queriesInFlight, context);
     }
 
     static class GroupStatus {
@@ -88,6 +110,9 @@ public class LoadBalancer {
         private int allocations = 0;
         private long queries = 0;
         private double averageSearchTime = INITIAL_QUERY_TIME;
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private double p50SearchTime = 0;
+        private double p99SearchTime = 0;
 
         GroupStatus(Group group) {
             this.group = group;
@@ -108,6 +133,9 @@ public class LoadBalancer {
                 double decayRate = Math.min(queries + MIN_LATENCY_DECAY_RATE, DEFAULT_LATENCY_DECAY_RATE);
                 averageSearchTime = (searchTime + (decayRate - 1) * averageSearchTime) / decayRate;
                 queries++;
+                latencies.add(searchTime);
+                p50SearchTime = latencies.percentile(50);
+                p99SearchTime = latencies.percentile(99);
             }
         }
 
@@ -119,6 +147,15 @@ public class LoadBalancer {
             return 1.0 / averageSearchTime;
         }
 
+        /**
+         * Returns the estimated search time of a new query to this group: The median search time
+         * for each query in flight including the new one, plus the 99th percentile search time
+         * to avoid groups with a long tail.
+         */
+        double estimatedSearchTime() {
+            return p50SearchTime * (allocations + 1) + p99SearchTime;
+        }
+
         int groupId() {
             return group.id();
         }
@@ -254,4 +291,64 @@ public class LoadBalancer {
         }
     }
 
+    /**
+     * Selects the group with the lowest estimated search time of two random groups,
+     * estimated from its median and 99th percentile search times and number of queries in flight.
+     */
+    static class LatencyAwareScheduler implements GroupScheduler {
+
+        private final Random random;
+        private final List<GroupStatus> scoreboard;
+
+        public LatencyAwareScheduler(Random random, List<GroupStatus> scoreboard) {
+            this.random = random;
+            this.scoreboard = scoreboard;
+        }
+
+        private Optional<GroupStatus> selectGroup(boolean requireCoverage, Set<Integer> rejected) {
+            int n = 0;
+            for (GroupStatus gs : scoreboard) {
+                if (isCandidate(gs, requireCoverage, rejected)) {
+                    n++;
+                }
+            }
+            if (n == 0) {
+                return Optional.empty();
+            }
+            int first = random.nextInt(n);
+            int second = n > 1 ? random.nextInt(n - 1) : first;
+            if (n > 1 && second >= first) {
+                second++;
+            }
+
+            GroupStatus firstCandidate = null;
+            GroupStatus secondCandidate = null;
+            int index = 0;
+            for (GroupStatus gs : scoreboard) {
+                if (isCandidate(gs, requireCoverage, rejected)) {
+                    if (index == first) firstCandidate = gs;
+                    if (index == second) secondCandidate = gs;
+                    index++;
+                }
+            }
+            return Optional.of(secondCandidate.estimatedSearchTime() < firstCandidate.estimatedSearchTime() ? secondCandidate
+                                                                                                          : firstCandidate);
+        }
+
+        private static boolean isCandidate(GroupStatus gs, boolean requireCoverage, Set<Integer> rejected) {
+            if (rejected != null && rejected.contains(gs.group.id())) return false;
+            return ! requireCoverage || gs.group.hasSufficientCoverage();
+        }
+
+        @Override
+        public Optional<GroupStatus> takeNextGroup(Set<Integer> rejectedGroups) {
+            Optional<GroupStatus> gs = selectGroup(true, rejectedGroups);
+            if (gs.isPresent()) {
+                return gs;
+            }
+            // fallback - any coverage better than none
+            return selectGroup(false, rejectedGroups);
+        }
+    }
+
 }
@@ -0,0 +1,316 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.jdisc.Metric;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.dispatch.rpc.ProtobufSerialization;
+import com.yahoo.search.grouping.vespa.GroupingExecutor;
+import com.yahoo.search.query.Model;
+import com.yahoo.search.result.Coverage;
+import com.yahoo.search.searchchain.Execution;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * A size bounded cache of search results, used in front of the {@link Dispatcher} to answer repeated
+ * queries without contacting any content node. Only the skinny hit list produced by the search phase is kept,
+ * so hits are always created anew for the query being answered, and will be filled as usual.
+ *
+ * Entries are keyed on the serialized form of the request which would otherwise be sent to the content nodes
+ * (query tree, ranking, offset and hits etc.) and the search path, such that two queries resolving to the same
+ * request (e.g through different query profile dimensions) share an entry. Entries are removed when they
+ * are older than the configured time to live, and the cache itself is created anew with each
+ * configuration generation of the owning searcher.
+ *
+ * Queries which set <code>noCache</code>, use grouping, the backend query cache or tracing are never cached,
+ * and neither are results with errors or less than full coverage.
+ *
+ * This class is multithread safe.
+ *
+ * @author agent
+ */
+public class ResultCache {
+
+    private static final String HITS_METRIC = "dispatch_result_cache_hits";
+    private static final String MISSES_METRIC = "dispatch_result_cache_misses";
+    private static final String EVICTIONS_METRIC = "dispatch_result_cache_evictions";
+
+    /** The approximate size of an entry, excluding the key and hit data */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    /** The approximate size of a hit, excluding global id and sort data */
+    private static final int HIT_OVERHEAD = 48;
+
+    private final long maxSizeBytes;
+    private final long maxEntrySizeBytes;
+    private final long timeToLiveMillis;
+    private final Clock clock;
+
+    private final Metric metric;
+    private final Metric.Context metricContext;
+
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long sizeBytes = 0;
+
+    /**
+     * Creates a result cache
+     *
+     * @param maxSizeMegaBytes the max total size of this, in megabytes. Results larger than 1% of this are not cached.
+     * @param timeToLive the max time an entry is used after it is added
+     * @param metric the metric receiver of hit, miss and eviction counts
+     */
+    public ResultCache(int maxSizeMegaBytes, Duration timeToLive, Metric metric) {
+        this(maxSizeMegaBytes, timeToLive, metric, Clock.systemUTC());
+    }
+
+    /** For testing - allows injection of a clock to avoid depending on the system clock */
+    ResultCache(int maxSizeMegaBytes, Duration timeToLive, Metric metric, Clock clock) {
+        this.maxSizeBytes = maxSizeMegaBytes * 1024L * 1024L;
+        this.maxEntrySizeBytes = maxSizeBytes / 100;
+        this.timeToLiveMillis = timeToLive.toMillis();
+        this.clock = clock;
+        this.metric = metric;
+        this.metricContext = metric.createContext(null);
+    }
+
+    /**
+     * Returns an invoker for the given query: Either one answering from this cache, or one wrapping the invoker
+     * returned by the given supplier, which will add its result to this cache.
+     */
+    public SearchInvoker getSearchInvoker(Query query, Supplier<SearchInvoker> backendInvoker) {
+        if ( ! isCacheable(query)) return backendInvoker.get();
+
+        Key key = new Key(query);
+        Lookup lookup = lookup(key);
+        report(lookup.entry != null ? HITS_METRIC : MISSES_METRIC, 1);
+        report(EVICTIONS_METRIC, lookup.expired ? 1 : 0);
+        if (lookup.entry != null) {
+            query.trace(false, 2, "Answering from the result cache");
+            return new CachedSearchInvoker(lookup.entry);
+        }
+        return new CachingSearchInvoker(key, backendInvoker.get());
+    }
+
+    /** Returns the number of results currently held in this */
+    public synchronized int size() { return entries.size(); }
+
+    private boolean isCacheable(Query query) {
+        if (query.getNoCache()) return false;
+        if (query.getRanking().getQueryCache()) return false; // summary fetching depends on the backend session
+        if (query.properties().getBoolean(Model.ESTIMATE)) return false;
+        if (GroupingExecutor.hasGroupingList(query)) return false;
+        if (ProtobufSerialization.getTraceLevelForBackend(query) > 0) return false;
+        return true;
+    }
+
+    /** Returns the entry of the given key, if present, removing it if it is expired */
+    private synchronized Lookup lookup(Key key) {
+        Entry entry = entries.get(key);
+        if (entry != null && clock.millis() - entry.createdAt > timeToLiveMillis) {
+            remove(key);
+            return new Lookup(null, true);
+        }
+        return new Lookup(entry, false);
+    }
+
+    private void add(Key key, InvokerResult result, int offsetAfterSearch) {
+        Result searchResult = result.getResult();
+        if (searchResult.hits().getError() != null) return;
+        if (searchResult.hits().size() > 0) return; // holds other hits than the lean ones, e.g grouping
+        Coverage coverage = searchResult.getCoverage(false);
+        if (coverage != null && (coverage.isDegraded() || ! coverage.getFull())) return;
+
+        Entry entry = new Entry(key, result, offsetAfterSearch, clock.millis());
+        if (entry.sizeBytes > maxEntrySizeBytes) return;
+
+        report(EVICTIONS_METRIC, add(key, entry));
+    }
+
+    /** Adds the given entry and returns the number of entries evicted to make room for it */
+    private synchronized int add(Key key, Entry entry) {
+        int evicted = 0;
+        Entry replaced = entries.put(key, entry);
+        if (replaced != null)
+            sizeBytes -= replaced.sizeBytes;
+        sizeBytes += entry.sizeBytes;
+        for (Iterator<Map.Entry<Key, Entry>> i = entries.entrySet().iterator(); sizeBytes > maxSizeBytes && i.hasNext(); ) {
+            sizeBytes -= i.next().getValue().sizeBytes;
+            i.remove();
+            evicted++;
+        }
+        return evicted;
+    }
+
+    private void remove(Key key) {
+        Entry removed = entries.remove(key);
+        if (removed == null) return;
+        sizeBytes -= removed.sizeBytes;
+    }
+
+    private void report(String metricName, int count) {
+        if (count > 0)
+            metric.add(metricName, count, metricContext);
+    }
+
+    /** The outcome of looking up a key */
+    private static final class Lookup {
+
+        /** The entry found, or null if none */
+        final Entry entry;
+
+        /** Whether an expired entry was removed */
+        final boolean expired;
+
+        Lookup(Entry entry, boolean expired) {
+            this.entry = entry;
+            this.expired = expired;
+        }
+
+    }
+
+    /** The normalized form of a query, as seen from the content nodes */
+    private static final class Key {
+
+        private final byte[] request;
+        private final String searchPath;
+        private final int hashCode;
+
+        Key(Query query) {
+            this.request = ProtobufSerialization.serializeSearchRequestForCaching(query);
+            this.searchPath = query.getModel().getSearchPath();
+            this.hashCode = 31 * Arrays.hashCode(request) + (searchPath == null ? 0 : searchPath.hashCode());
+        }
+
+        int sizeBytes() { return request.length + (searchPath == null ? 0 : searchPath.length()); }
+
+        @Override
+        public int hashCode() { return hashCode; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if ( ! (o instanceof Key)) return false;
+            Key other = (Key)o;
+            return Arrays.equals(this.request, other.request) && Objects.equals(this.searchPath, other.searchPath);
+        }
+
+    }
+
+    /** An immutable snapshot of the result of a search */
+    private static final class Entry {
+
+        private final List<LeanHit> hits;
+        private final long totalHitCount;
+        private final Coverage coverage;
+        private final int offsetAfterSearch;
+        private final long createdAt;
+        private final long sizeBytes;
+
+        Entry(Key key, InvokerResult result, int offsetAfterSearch, long createdAt) {
+            this.hits = result.getLeanHits().stream().map(LeanHit::detached).collect(Collectors.toUnmodifiableList());
+            this.totalHitCount = result.getResult().getTotalHitCount();
+            this.coverage = result.getResult().getCoverage(false);
+            this.offsetAfterSearch = offsetAfterSearch;
+            this.createdAt = createdAt;
+
+            long size = ENTRY_OVERHEAD + key.sizeBytes();
+            for (LeanHit hit : hits)
+                size += HIT_OVERHEAD + hit.dataSize();
+            this.sizeBytes = size;
+        }
+
+        /** Returns a new invoker result for the given query containing the data of this */
+        InvokerResult toResult(Query query) {
+            InvokerResult result = new InvokerResult(query, hits.size());
+            result.getLeanHits().addAll(hits);
+            result.getResult().setTotalHitCount(totalHitCount);
+            if (coverage != null)
+                result.getResult().setCoverage(new Coverage(coverage.getDocs(), coverage.getActive(),
+                                                            coverage.getNodes(), coverage.getResultSets())
+                                                       .setSoonActive(coverage.getSoonActive())
+                                                       .setNodesTried(coverage.getNodesTried()));
+            query.setOffset(offsetAfterSearch);
+            return result;
+        }
+
+    }
+
+    /** Answers a query from a cache entry */
+    private static class CachedSearchInvoker extends SearchInvoker {
+
+        private final Entry entry;
+        private Query query;
+
+        CachedSearchInvoker(Entry entry) {
+            super(Optional.empty());
+            this.entry = entry;
+        }
+
+        @Override
+        protected Object sendSearchRequest(Query query, Object context) {
+            this.query = query;
+            return context;
+        }
+
+        @Override
+        protected InvokerResult getSearchResult(Execution execution) {
+            return entry.toResult(query);
+        }
+
+        @Override
+        protected void release() { }
+
+    }
+
+    /** Forwards a query to the backend and adds the result to this cache */
+    private class CachingSearchInvoker extends SearchInvoker {
+
+        private final Key key;
+        private final SearchInvoker backend;
+        private Query query;
+
+        CachingSearchInvoker(Key key, SearchInvoker backend) {
+            super(Optional.empty());
+            this.key = key;
+            this.backend = backend;
+        }
+
+        @Override
+        protected Object sendSearchRequest(Query query, Object context) throws IOException {
+            this.query = query;
+            return backend.sendSearchRequest(query, context);
+        }
+
+        @Override
+        protected InvokerResult getSearchResult(Execution execution) throws IOException {
+            InvokerResult result = backend.getSearchResult(execution);
+            add(key, result, query.getOffset());
+            return result;
+        }
+
+        @Override
+        protected void setFinalStatus(boolean success) {
+            super.setFinalStatus(success);
+            backend.setFinalStatus(success);
+        }
+
+        @Override
+        protected void release() {
+            backend.close();
+        }
+
+    }
+
+}
@@ -60,6 +60,8 @@ public abstract class SearchInvoker extends CloseableInvoker {
         }
     }
 
+    Optional<Node> node() { return node; }
+
     protected Optional<Integer> distributionKey() {
         return node.map(Node::key);
     }
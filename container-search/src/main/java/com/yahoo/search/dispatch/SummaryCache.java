@@ -0,0 +1,366 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.data.access.ArrayTraverser;
+import com.yahoo.data.access.Inspector;
+import com.yahoo.data.access.ObjectTraverser;
+import com.yahoo.data.access.slime.SlimeAdapter;
+import com.yahoo.jdisc.Metric;
+import com.yahoo.prelude.fastsearch.DocsumDefinition;
+import com.yahoo.prelude.fastsearch.DocumentDatabase;
+import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.search.Result;
+import com.yahoo.search.result.ErrorHit;
+import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.result.Hit;
+import com.yahoo.slime.BinaryFormat;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Slime;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * A size bounded cache of document summaries, used in the fill path to avoid fetching the summaries
+ * of popular documents from the content nodes over and over again. Hits whose summary is cached are
+ * filled from this, and only the remaining hits are passed on to the backend fill invoker.
+ *
+ * Entries are keyed on the global id of the document, the summary class and the document database.
+ * The protocol does not carry document versions, so entries are removed when they are older than the
+ * configured time to live, which bounds how stale a summary may be, and the cache itself is created anew
+ * with each configuration generation of the owning searcher (i.e when summary classes may change).
+ * Each summary is kept in binary Slime form and decoded when it is used.
+ *
+ * The owner is responsible for only using this for summaries which do not depend on the query.
+ *
+ * This class is multithread safe.
+ *
+ * @author agent
+ */
+public class SummaryCache {
+
+    private static final String HITS_METRIC = "dispatch_summary_cache_hits";
+    private static final String MISSES_METRIC = "dispatch_summary_cache_misses";
+    private static final String EVICTIONS_METRIC = "dispatch_summary_cache_evictions";
+
+    /** The approximate size of an entry, excluding the summary data */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final long maxSizeBytes;
+    private final long maxEntrySizeBytes;
+    private final long timeToLiveMillis;
+    private final Clock clock;
+
+    private final Metric metric;
+    private final Metric.Context metricContext;
+
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long sizeBytes = 0;
+
+    /**
+     * Creates a summary cache
+     *
+     * @param maxSizeMegaBytes the max total size of this, in megabytes. Summaries larger than 1% of this are not cached.
+     * @param timeToLive the max time an entry is used after it is added
+     * @param metric the metric receiver of hit, miss and eviction counts
+     */
+    public SummaryCache(int maxSizeMegaBytes, Duration timeToLive, Metric metric) {
+        this(maxSizeMegaBytes, timeToLive, metric, Clock.systemUTC());
+    }
+
+    /** For testing - allows injection of a clock to avoid depending on the system clock */
+    SummaryCache(int maxSizeMegaBytes, Duration timeToLive, Metric metric, Clock clock) {
+        this.maxSizeBytes = maxSizeMegaBytes * 1024L * 1024L;
+        this.maxEntrySizeBytes = maxSizeBytes / 100;
+        this.timeToLiveMillis = timeToLive.toMillis();
+        this.clock = clock;
+        this.metric = metric;
+        this.metricContext = metric.createContext(null);
+    }
+
+    /**
+     * Returns an invoker which fills the hits it can from this cache, and the rest using the invoker
+     * returned by the given supplier, adding the summaries it returns to this.
+     * The supplier is not invoked if all the hits are filled from this cache.
+     *
+     * @param documentDb the document database of the hits to fill
+     * @param backendInvoker supplier of the invoker to use to fill hits which are not cached
+     */
+    public FillInvoker getFillInvoker(DocumentDatabase documentDb, Supplier<FillInvoker> backendInvoker) {
+        return new CachingFillInvoker(documentDb, backendInvoker);
+    }
+
+    /** Returns the number of summaries currently held in this */
+    public synchronized int size() { return entries.size(); }
+
+    /**
+     * Looks up the given keys, removing expired entries
+     *
+     * @param keys the keys to look up, where null keys are not looked up
+     * @param found the array to set the entry of each key in, or null if it is not present
+     * @return the number of expired entries removed
+     */
+    private synchronized int lookup(Key[] keys, Entry[] found) {
+        int expired = 0;
+        long now = clock.millis();
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == null) continue;
+            Entry entry = entries.get(keys[i]);
+            if (entry != null && now - entry.createdAt > timeToLiveMillis) {
+                remove(keys[i]);
+                entry = null;
+                expired++;
+            }
+            found[i] = entry;
+        }
+        return expired;
+    }
+
+    /**
+     * Adds the given entries
+     *
+     * @return the number of entries evicted to make room for them
+     */
+    private synchronized int add(List<Key> keys, List<Entry> added) {
+        int evicted = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            Entry replaced = entries.put(keys.get(i), added.get(i));
+            if (replaced != null)
+                sizeBytes -= replaced.sizeBytes;
+            sizeBytes += added.get(i).sizeBytes;
+        }
+        for (Iterator<Map.Entry<Key, Entry>> i = entries.entrySet().iterator(); sizeBytes > maxSizeBytes && i.hasNext(); ) {
+            sizeBytes -= i.next().getValue().sizeBytes;
+            i.remove();
+            evicted++;
+        }
+        return evicted;
+    }
+
+    private void remove(Key key) {
+        Entry removed = entries.remove(key);
+        if (removed == null) return;
+        sizeBytes -= removed.sizeBytes;
+    }
+
+    private void report(String metricName, int count) {
+        if (count > 0)
+            metric.add(metricName, count, metricContext);
+    }
+
+    /** Returns the given summary as binary Slime, detached from the response it was received in */
+    private static byte[] encode(Inspector summary) {
+        Slime slime = new Slime();
+        copyFields(summary, slime.setObject());
+        return BinaryFormat.encode(slime);
+    }
+
+    private static void copy(Inspector value, Cursor object, String name) {
+        switch (value.type()) {
+            case EMPTY: object.setNix(name); return;
+            case BOOL: object.setBool(name, value.asBool()); return;
+            case LONG: object.setLong(name, value.asLong()); return;
+            case DOUBLE: object.setDouble(name, value.asDouble()); return;
+            case STRING: object.setString(name, value.asUtf8()); return;
+            case DATA: object.setData(name, value.asData()); return;
+            case ARRAY: copyEntries(value, object.setArray(name)); return;
+            case OBJECT: copyFields(value, object.setObject(name)); return;
+        }
+        throw new IllegalArgumentException("Unexpected type " + value.type());
+    }
+
+    private static void addEntry(Inspector value, Cursor array) {
+        switch (value.type()) {
+            case EMPTY: array.addNix(); return;
+            case BOOL: array.addBool(value.asBool()); return;
+            case LONG: array.addLong(value.asLong()); return;
+            case DOUBLE: array.addDouble(value.asDouble()); return;
+            case STRING: array.addString(value.asUtf8()); return;
+            case DATA: array.addData(value.asData()); return;
+            case ARRAY: copyEntries(value, array.addArray()); return;
+            case OBJECT: copyFields(value, array.addObject()); return;
+        }
+        throw new IllegalArgumentException("Unexpected type " + value.type());
+    }
+
+    private static void copyEntries(Inspector from, Cursor toArray) {
+        from.traverse((ArrayTraverser) (index, entry) -> addEntry(entry, toArray));
+    }
+
+    private static void copyFields(Inspector from, Cursor toObject) {
+        from.traverse((ObjectTraverser) (name, field) -> copy(field, toObject, name));
+    }
+
+    /** The identity of a document summary */
+    private static final class Key {
+
+        private final byte[] globalId;
+        private final String summaryClass;
+        private final String documentDb;
+        private final int hashCode;
+
+        Key(byte[] globalId, String summaryClass, String documentDb) {
+            this.globalId = globalId;
+            this.summaryClass = summaryClass;
+            this.documentDb = documentDb;
+            this.hashCode = Objects.hash(Arrays.hashCode(globalId), summaryClass, documentDb);
+        }
+
+        @Override
+        public int hashCode() { return hashCode; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if ( ! (o instanceof Key)) return false;
+            Key other = (Key)o;
+            return Arrays.equals(this.globalId, other.globalId) &&
+                   this.summaryClass.equals(other.summaryClass) &&
+                   this.documentDb.equals(other.documentDb);
+        }
+
+    }
+
+    /** A summary in binary Slime form */
+    private static final class Entry {
+
+        private final byte[] summary;
+        private final long createdAt;
+        private final long sizeBytes;
+
+        Entry(byte[] summary, long createdAt) {
+            this.summary = summary;
+            this.createdAt = createdAt;
+            this.sizeBytes = ENTRY_OVERHEAD + summary.length;
+        }
+
+        Inspector toInspector() {
+            return new SlimeAdapter(BinaryFormat.decode(summary).get());
+        }
+
+    }
+
+    /** Fills hits from this where possible, and forwards the rest to the backend, adding the summaries it returns */
+    private class CachingFillInvoker extends FillInvoker {
+
+        private final DocumentDatabase documentDb;
+        private final Supplier<FillInvoker> backendInvoker;
+
+        private FillInvoker backend = null;
+        private Result missing = null;
+        private List<FastHit> misses = null;
+
+        /** The number of summaries of each missing hit before filling, to tell whether the backend filled it */
+        private int[] summariesBeforeFill;
+
+        /** The counts to report when this is released, to report once per fill, outside the lock of the cache */
+        private int hitCount = 0, missCount = 0, evictionCount = 0;
+
+        CachingFillInvoker(DocumentDatabase documentDb, Supplier<FillInvoker> backendInvoker) {
+            this.documentDb = documentDb;
+            this.backendInvoker = backendInvoker;
+        }
+
+        @Override
+        protected void sendFillRequest(Result result, String summaryClass) {
+            DocsumDefinition docsum = documentDb.getDocsumDefinitionSet().getDocsum(summaryClass);
+            List<FastHit> hitsToFill = new ArrayList<>();
+            for (Iterator<Hit> i = result.hits().unorderedDeepIterator(); i.hasNext(); ) {
+                Hit hit = i.next();
+                if (hit instanceof FastHit)
+                    hitsToFill.add((FastHit)hit);
+            }
+            Key[] keys = new Key[hitsToFill.size()];
+            for (int i = 0; i < keys.length; i++)
+                keys[i] = hitsToFill.get(i).getRawGlobalId() == null ? null : key(hitsToFill.get(i), docsum);
+            Entry[] found = new Entry[keys.length];
+            evictionCount += lookup(keys, found);
+
+            misses = new ArrayList<>();
+            for (int i = 0; i < found.length; i++) {
+                FastHit hit = hitsToFill.get(i);
+                if (found[i] != null) {
+                    hit.setField(Hit.SDDOCNAME_FIELD, documentDb.getName());
+                    hit.addSummary(docsum, found[i].toInspector());
+                    hit.setFilled(summaryClass);
+                    hitCount++;
+                }
+                else {
+                    misses.add(hit);
+                    if (keys[i] != null)
+                        missCount++;
+                }
+            }
+            if (misses.isEmpty()) return;
+
+            result.getQuery().trace(false, 5, "Filled ", hitCount, " hits from the summary cache");
+            missing = new Result(result.getQuery());
+            summariesBeforeFill = new int[misses.size()];
+            for (int i = 0; i < misses.size(); i++) {
+                missing.hits().add(misses.get(i));
+                summariesBeforeFill[i] = misses.get(i).summaryData().size();
+            }
+            backend = backendInvoker.get();
+            backend.sendFillRequest(missing, summaryClass);
+        }
+
+        @Override
+        protected void getFillResults(Result result, String summaryClass) {
+            if (backend == null) return;
+
+            backend.getFillResults(missing, summaryClass);
+            ErrorHit errors = missing.hits().getErrorHit();
+            if (errors != null) { // do not cache anything which may be incomplete
+                for (ErrorMessage error : errors.errors())
+                    result.hits().addError(error);
+                return;
+            }
+
+            DocsumDefinition docsum = documentDb.getDocsumDefinitionSet().getDocsum(summaryClass);
+            List<Key> keys = new ArrayList<>();
+            List<Entry> added = new ArrayList<>();
+            long now = clock.millis();
+            for (int i = 0; i < misses.size(); i++) {
+                FastHit hit = misses.get(i);
+                if (hit.getRawGlobalId() == null) continue;
+                if ( ! hit.isFilled(summaryClass) || hit.summaryData().size() == summariesBeforeFill[i]) continue;
+                Entry entry = new Entry(encode(hit.lastAddedSummary()), now);
+                if (entry.sizeBytes > maxEntrySizeBytes) continue;
+                keys.add(key(hit, docsum));
+                added.add(entry);
+            }
+            if ( ! keys.isEmpty())
+                evictionCount += add(keys, added);
+        }
+
+        @Override
+        protected void setFinalStatus(boolean success) {
+            super.setFinalStatus(success);
+            if (backend != null)
+                backend.setFinalStatus(success);
+        }
+
+        @Override
+        protected void release() {
+            if (backend != null)
+                backend.close();
+            report(HITS_METRIC, hitCount);
+            report(MISSES_METRIC, missCount);
+            report(EVICTIONS_METRIC, evictionCount);
+        }
+
+        private Key key(FastHit hit, DocsumDefinition docsum) {
+            return new Key(hit.getRawGlobalId(), docsum.getName(), documentDb.getName());
+        }
+
+    }
+
+}
@@ -5,7 +5,8 @@ import ai.vespa.searchlib.searchprotocol.protobuf.SearchProtocol;
 import ai.vespa.searchlib.searchprotocol.protobuf.SearchProtocol.StringProperty;
 import ai.vespa.searchlib.searchprotocol.protobuf.SearchProtocol.TensorProperty;
 import com.google.protobuf.ByteString;
-import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
 import com.yahoo.data.access.simple.Value;
 import com.yahoo.data.access.slime.SlimeAdapter;
 import com.yahoo.fs4.GetDocSumsPacket;
@@ -29,6 +30,7 @@ import com.yahoo.searchlib.aggregation.Grouping;
 import com.yahoo.slime.BinaryFormat;
 import com.yahoo.vespa.objects.BufferSerializer;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
@@ -38,13 +40,36 @@ public class ProtobufSerialization {
 
     private static final int INITIAL_SERIALIZATION_BUFFER_SIZE = 10 * 1024;
 
+    private static final int REPLY_TOTAL_HIT_COUNT_TAG = (SearchProtocol.SearchReply.TOTAL_HIT_COUNT_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT;
+    private static final int REPLY_COVERAGE_DOCS_TAG = (SearchProtocol.SearchReply.COVERAGE_DOCS_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT;
+    private static final int REPLY_ACTIVE_DOCS_TAG = (SearchProtocol.SearchReply.ACTIVE_DOCS_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT;
+    private static final int REPLY_SOON_ACTIVE_DOCS_TAG = (SearchProtocol.SearchReply.SOON_ACTIVE_DOCS_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT;
+    private static final int REPLY_DEGRADED_BY_MATCH_PHASE_TAG = (SearchProtocol.SearchReply.DEGRADED_BY_MATCH_PHASE_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT;
+    private static final int REPLY_DEGRADED_BY_SOFT_TIMEOUT_TAG = (SearchProtocol.SearchReply.DEGRADED_BY_SOFT_TIMEOUT_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT;
+    private static final int REPLY_HITS_TAG = (SearchProtocol.SearchReply.HITS_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int REPLY_GROUPING_BLOB_TAG = (SearchProtocol.SearchReply.GROUPING_BLOB_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int REPLY_SLIME_TRACE_TAG = (SearchProtocol.SearchReply.SLIME_TRACE_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int HIT_GLOBAL_ID_TAG = (SearchProtocol.Hit.GLOBAL_ID_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int HIT_RELEVANCE_TAG = (SearchProtocol.Hit.RELEVANCE_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_FIXED64;
+    private static final int HIT_SORT_DATA_TAG = (SearchProtocol.Hit.SORT_DATA_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+
     static byte[] serializeSearchRequest(Query query, int hits, String serverId) {
-        return convertFromQuery(query, hits, serverId).toByteArray();
+        return convertFromQuery(query, hits, serverId, false).toByteArray();
+    }
+
+    /**
+     * Returns the serialized form of the parts of a search request which determine its result.
+     * Timeout, trace level and session key are left out as they vary between otherwise identical queries.
+     */
+    public static byte[] serializeSearchRequestForCaching(Query query) {
+        return convertFromQuery(query, query.getHits(), null, true).toByteArray();
     }
 
-    private static SearchProtocol.SearchRequest convertFromQuery(Query query, int hits, String serverId) {
-        var builder = SearchProtocol.SearchRequest.newBuilder().setHits(hits).setOffset(query.getOffset())
-                .setTimeout((int) query.getTimeLeft());
+    private static SearchProtocol.SearchRequest convertFromQuery(Query query, int hits, String serverId, boolean forCaching) {
+        var builder = SearchProtocol.SearchRequest.newBuilder().setHits(hits).setOffset(query.getOffset());
+        if ( ! forCaching) {
+            builder.setTimeout((int) query.getTimeLeft());
+        }
 
         var documentDb = query.getModel().getDocumentDb();
         if (documentDb != null) {
@@ -52,7 +77,7 @@ public class ProtobufSerialization {
         }
         builder.setQueryTreeBlob(serializeQueryTree(query.getModel().getQueryTree()));
 
-        if (query.getGroupingSessionCache() || query.getRanking().getQueryCache()) {
+        if ( ! forCaching && (query.getGroupingSessionCache() || query.getRanking().getQueryCache())) {
             // TODO verify that the session key is included whenever rank properties would have been
             builder.setSessionKey(query.getSessionId(serverId).toString());
         }
@@ -73,7 +98,9 @@ public class ProtobufSerialization {
             builder.setCacheGrouping(true);
         }
 
-        builder.setTraceLevel(getTraceLevelForBackend(query));
+        if ( ! forCaching) {
+            builder.setTraceLevel(getTraceLevelForBackend(query));
+        }
 
         mergeToSearchRequestFromRanking(query.getRanking(), builder);
 
@@ -183,9 +210,66 @@ public class ProtobufSerialization {
     }
 
     static InvokerResult deserializeToSearchResult(byte[] payload, Query query, VespaBackEndSearcher searcher, int partId, int distKey)
-            throws InvalidProtocolBufferException {
-        var protobuf = SearchProtocol.SearchReply.parseFrom(payload);
-        return convertToResult(query, protobuf, searcher.getDocumentDatabase(query), partId, distKey);
+            throws IOException {
+        return decodeSearchReply(payload, query, searcher.getDocumentDatabase(query), partId, distKey);
+    }
+
+    /**
+     * Decodes a serialized search reply without parsing its hits into protobuf messages:
+     * The hits are decoded into lean hits referencing their global id and sort data in the payload.
+     */
+    static InvokerResult decodeSearchReply(byte[] payload, Query query, DocumentDatabase documentDatabase, int partId, int distKey)
+            throws IOException {
+        var reply = SearchProtocol.SearchReply.newBuilder();
+        List<LeanHit> hits = new ArrayList<>();
+        CodedInputStream input = CodedInputStream.newInstance(payload);
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            switch (tag) {
+                case REPLY_TOTAL_HIT_COUNT_TAG: reply.setTotalHitCount(input.readInt64()); break;
+                case REPLY_COVERAGE_DOCS_TAG: reply.setCoverageDocs(input.readInt64()); break;
+                case REPLY_ACTIVE_DOCS_TAG: reply.setActiveDocs(input.readInt64()); break;
+                case REPLY_SOON_ACTIVE_DOCS_TAG: reply.setSoonActiveDocs(input.readInt64()); break;
+                case REPLY_DEGRADED_BY_MATCH_PHASE_TAG: reply.setDegradedByMatchPhase(input.readBool()); break;
+                case REPLY_DEGRADED_BY_SOFT_TIMEOUT_TAG: reply.setDegradedBySoftTimeout(input.readBool()); break;
+                case REPLY_GROUPING_BLOB_TAG: reply.setGroupingBlob(input.readBytes()); break;
+                case REPLY_SLIME_TRACE_TAG: reply.setSlimeTrace(input.readBytes()); break;
+                case REPLY_HITS_TAG:
+                    int limit = input.pushLimit(input.readRawVarint32());
+                    hits.add(decodeHit(input, payload, partId, distKey));
+                    input.popLimit(limit);
+                    break;
+                default: input.skipField(tag);
+            }
+        }
+        InvokerResult result = convertToResult(query, reply.build(), documentDatabase, partId, distKey);
+        result.getLeanHits().addAll(hits);
+        return result;
+    }
+
+    private static LeanHit decodeHit(CodedInputStream input, byte[] payload, int partId, int distKey) throws IOException {
+        int gidOffset = 0;
+        int gidLength = 0;
+        double relevance = 0;
+        int sortDataOffset = 0;
+        int sortDataLength = 0;
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            switch (tag) {
+                case HIT_GLOBAL_ID_TAG:
+                    gidLength = input.readRawVarint32();
+                    gidOffset = input.getTotalBytesRead();
+                    input.skipRawBytes(gidLength);
+                    break;
+                case HIT_RELEVANCE_TAG: relevance = input.readDouble(); break;
+                case HIT_SORT_DATA_TAG:
+                    sortDataLength = input.readRawVarint32();
+                    sortDataOffset = input.getTotalBytesRead();
+                    input.skipRawBytes(sortDataLength);
+                    break;
+                default: input.skipField(tag);
+            }
+        }
+        return new LeanHit(payload, gidOffset, gidLength, partId, distKey, relevance,
+                           sortDataLength == 0 ? null : payload, sortDataOffset, sortDataLength);
     }
 
     static InvokerResult convertToResult(Query query, SearchProtocol.SearchReply protobuf,
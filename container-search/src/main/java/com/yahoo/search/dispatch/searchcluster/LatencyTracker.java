@@ -0,0 +1,50 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch.searchcluster;
+
+import java.util.Arrays;
+import java.util.OptionalLong;
+
+/**
+ * Tracks the latencies of the most recent requests to a node. This class is multithread safe.
+ *
+ * @author agent
+ */
+class LatencyTracker {
+
+    /** The number of most recent latencies to compute percentiles over */
+    private static final int windowSize = 256;
+
+    /** The number of latencies needed before percentiles are reported */
+    private static final int minSamples = 32;
+
+    /** The number of new latencies after which a requested percentile is computed again */
+    private static final int recomputeInterval = 16;
+
+    private final long[] latencies = new long[windowSize];
+    private long count = 0;
+
+    private long computedAtCount = -1;
+    private double computedPercentile;
+    private long computedLatency;
+
+    synchronized void add(long latency) {
+        latencies[(int)(count++ % windowSize)] = latency;
+    }
+
+    /** Returns the given percentile (0-100) of the recent latencies, or empty if too few are known */
+    synchronized OptionalLong percentile(double percentile) {
+        if (count < minSamples) return OptionalLong.empty();
+
+        if (computedAtCount < 0 || count - computedAtCount >= recomputeInterval || percentile != computedPercentile) {
+            int size = (int)Math.min(count, windowSize);
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            int rank = (int)Math.ceil(percentile / 100 * size); // nearest rank
+            computedLatency = sorted[Math.max(0, Math.min(size, rank) - 1)];
+            computedPercentile = percentile;
+            computedAtCount = count;
+        }
+        return OptionalLong.of(computedLatency);
+    }
+
+}
@@ -2,6 +2,7 @@
 package com.yahoo.search.dispatch.searchcluster;
 
 import java.util.Objects;
+import java.util.OptionalLong;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -24,6 +25,7 @@ public class Node {
     private final AtomicLong pingSequence = new AtomicLong(0);
     private final AtomicLong lastPong = new AtomicLong(0);
     private final AtomicBoolean isBlockingWrites = new AtomicBoolean(false);
+    private final LatencyTracker latencies = new LatencyTracker();
 
     public Node(int key, String hostname, int group) {
         this.key = key;
@@ -80,6 +82,15 @@ public class Node {
 
     boolean isBlockingWrites() { return isBlockingWrites.get(); }
 
+    /** Records the latency of a search request to this node */
+    public void addLatency(long latencyMillis) { latencies.add(latencyMillis); }
+
+    /**
+     * Returns the given percentile (0-100) of the latencies of the recent search requests to this node,
+     * or empty if not enough requests have been made
+     */
+    public OptionalLong latencyPercentile(double percentile) { return latencies.percentile(percentile); }
+
     @Override
     public int hashCode() { return Objects.hash(hostname, key, pathIndex, group); }
 
@@ -58,6 +58,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -85,6 +86,14 @@ public class SearchHandler extends LoggingRequestHandler {
     /** Event name for number of connections to the search subsystem */
     private static final String SEARCH_CONNECTIONS = "search_connections";
 
+    /**
+     * Metric names for the number of contexts query profile values are resolved for, and the number of lookups
+     * which were served by, or had to resolve, values for their context
+     */
+    private static final String QUERY_PROFILE_RESOLVED_CONTEXTS = "query_profile.resolved_contexts";
+    private static final String QUERY_PROFILE_RESOLVED_CONTEXT_HITS = "query_profile.resolved_context_hits";
+    private static final String QUERY_PROFILE_RESOLVED_CONTEXT_MISSES = "query_profile.resolved_context_misses";
+
     private static final String JSON_CONTENT_TYPE = "application/json";
 
     private final Value searchConnections;
@@ -93,6 +102,9 @@ public class SearchHandler extends LoggingRequestHandler {
     private static final String fallbackSearchChain = "vespa";
 
     private final CompiledQueryProfileRegistry queryProfileRegistry;
+
+    /** The metrics reported for each query profile used by this */
+    private final Map<CompiledQueryProfile, ResolvedContextMetrics> resolvedContextMetrics = new ConcurrentHashMap<>();
     
     /** If present, responses from this will set the HTTP response header with this key to the host name of this */
     private final Optional<String> hostResponseHeaderKey;
@@ -103,6 +115,34 @@ public class SearchHandler extends LoggingRequestHandler {
 
     private final AtomicLong numRequestsLeftToTrace;
 
+    /** Reports the resolved contexts of a query profile, with lookup counts as increments since the last report */
+    private final class ResolvedContextMetrics {
+
+        private final CompiledQueryProfile queryProfile;
+        private final Metric.Context context;
+        private final AtomicLong reportedHits = new AtomicLong();
+        private final AtomicLong reportedMisses = new AtomicLong();
+
+        ResolvedContextMetrics(CompiledQueryProfile queryProfile) {
+            this.queryProfile = queryProfile;
+            this.context = metric.createContext(Map.of("queryprofile", queryProfile.getId().stringValue()));
+        }
+
+        void report() {
+            metric.set(QUERY_PROFILE_RESOLVED_CONTEXTS, queryProfile.resolvedContextCount(), context);
+            reportIncrement(QUERY_PROFILE_RESOLVED_CONTEXT_HITS, queryProfile.resolvedContextHits(), reportedHits);
+            reportIncrement(QUERY_PROFILE_RESOLVED_CONTEXT_MISSES, queryProfile.resolvedContextMisses(), reportedMisses);
+        }
+
+        /** Adds the part of the given total which is not already reported, such that each count is reported once */
+        private void reportIncrement(String name, long total, AtomicLong reported) {
+            long previous = reported.getAndAccumulate(total, Math::max);
+            if (total > previous)
+                metric.add(name, total - previous, context);
+        }
+
+    }
+
     private final class MeanConnections implements Callback {
 
         @Override
@@ -322,6 +362,8 @@ public class SearchHandler extends LoggingRequestHandler {
             String pathAndQuery = UriTools.rawRequest(request.getUri());
             result = search(pathAndQuery, query, searchChain);
         }
+        if (queryProfile != null)
+            reportResolvedContexts(queryProfile);
 
         // Transform result to response
         Renderer renderer = toRendererCopy(query.getPresentation().getRenderer());
@@ -338,6 +380,10 @@ public class SearchHandler extends LoggingRequestHandler {
         return response;
     }
 
+    private void reportResolvedContexts(CompiledQueryProfile queryProfile) {
+        resolvedContextMetrics.computeIfAbsent(queryProfile, ResolvedContextMetrics::new).report();
+    }
+
     private static TraceNode extractTraceNode(Query query) {
         if (log.isLoggable(Level.FINE)) {
             QueryContext queryContext = query.getContext(false);
@@ -9,9 +9,15 @@ import com.yahoo.search.query.profile.QueryProfileProperties;
 import com.yahoo.search.query.profile.SubstituteString;
 import com.yahoo.search.query.profile.types.QueryProfileType;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -24,6 +30,9 @@ public class CompiledQueryProfile extends AbstractComponent implements Cloneable
 
     private static final Pattern namePattern = Pattern.compile("[$a-zA-Z_/][-$a-zA-Z0-9_/()]*");
 
+    /** The max number of distinct contexts to keep the resolved values of */
+    private static final int maxResolvedContexts = 100;
+
     private final CompiledQueryProfileRegistry registry;
 
     /** The type of this, or null if none */
@@ -41,6 +50,14 @@ public class CompiledQueryProfile extends AbstractComponent implements Cloneable
     /** Values which are not overridable in this. Used as a set. */
     private final DimensionalMap<Object> unoverridables;
 
+    /** The dimensions the values of this vary over */
+    private final String[] dimensions;
+
+    /** The values of this resolved in each distinct context seen, keyed on the values of the dimensions of this */
+    private final Map<ContextKey, Map<CompoundName, ValueWithSource>> resolvedEntries = new ConcurrentHashMap<>();
+    private final LongAdder resolvedEntriesHits = new LongAdder();
+    private final LongAdder resolvedEntriesMisses = new LongAdder();
+
     /**
      * Creates a new query profile from an id.
      */
@@ -60,6 +77,7 @@ public class CompiledQueryProfile extends AbstractComponent implements Cloneable
         this.types = types;
         this.references = references;
         this.unoverridables = unoverridables;
+        this.dimensions = dimensionsOf(entries);
         if ( ! id.isAnonymous())
             validateName(id.getName());
     }
@@ -133,13 +151,10 @@ public class CompiledQueryProfile extends AbstractComponent implements Cloneable
      */
     public Map<String, Object> listValues(CompoundName prefix, Map<String, String> context, Properties substitution) {
         Map<String, Object> values = new HashMap<>();
-        for (Map.Entry<CompoundName, DimensionalValue<ValueWithSource>> entry : entries.entrySet()) {
+        for (Map.Entry<CompoundName, ValueWithSource> entry : resolvedEntriesOrResolve(context).entrySet()) {
             if ( ! entry.getKey().hasPrefix(prefix)) continue;
 
-            ValueWithSource valueWithSource = entry.getValue().get(context);
-            if (valueWithSource == null) continue;
-
-            Object value = valueWithSource.value();
+            Object value = entry.getValue().value();
             if (value == null) continue;
 
             value = substitute(value, context, substitution);
@@ -153,12 +168,11 @@ public class CompiledQueryProfile extends AbstractComponent implements Cloneable
                                                               Map<String, String> context,
                                                               Properties substitution) {
         Map<String, ValueWithSource> values = new HashMap<>();
-        for (Map.Entry<CompoundName, DimensionalValue<ValueWithSource>> entry : entries.entrySet()) {
+        for (Map.Entry<CompoundName, ValueWithSource> entry : resolvedEntriesOrResolve(context).entrySet()) {
             if ( entry.getKey().size() <= prefix.size()) continue;
             if ( ! entry.getKey().hasPrefix(prefix)) continue;
 
-            ValueWithSource valueWithSource = entry.getValue().get(context);
-            if (valueWithSource == null) continue;
+            ValueWithSource valueWithSource = entry.getValue();
             if (valueWithSource.value() == null) continue;
 
             valueWithSource = valueWithSource.withValue(substitute(valueWithSource.value(), context, substitution));
@@ -178,11 +192,65 @@ public class CompiledQueryProfile extends AbstractComponent implements Cloneable
         return get(new CompoundName(name), context, substitution);
     }
     public final Object get(CompoundName name, Map<String, String> context, Properties substitution) {
-        ValueWithSource value = entries.get(name, context);
+        Map<CompoundName, ValueWithSource> resolved = resolvedEntries(context);
+        ValueWithSource value = resolved != null ? resolved.get(name) : entries.get(name, context);
         if (value == null) return null;
         return substitute(value.value(), context, substitution);
     }
 
+    /** Returns the number of distinct contexts the values of this are currently resolved for */
+    public int resolvedContextCount() { return resolvedEntries.size(); }
+
+    /** Returns the number of lookups in this which were served by values already resolved for their context */
+    public long resolvedContextHits() { return resolvedEntriesHits.sum(); }
+
+    /** Returns the number of lookups in this which had to resolve values for their context */
+    public long resolvedContextMisses() { return resolvedEntriesMisses.sum(); }
+
+    /**
+     * Returns the values of this resolved in the given context, resolving and keeping them if this context
+     * has not been seen before, or null if the values are not resolved as too many contexts have been seen.
+     */
+    private Map<CompoundName, ValueWithSource> resolvedEntries(Map<String, String> context) {
+        if (context == null)
+            context = Collections.emptyMap();
+        ContextKey key = new ContextKey(dimensions, context);
+        Map<CompoundName, ValueWithSource> resolved = resolvedEntries.get(key);
+        if (resolved != null) {
+            resolvedEntriesHits.increment();
+            return resolved;
+        }
+        resolvedEntriesMisses.increment();
+        if (resolvedEntries.size() >= maxResolvedContexts) return null;
+
+        resolved = resolve(key.toContext(dimensions));
+        resolvedEntries.putIfAbsent(key, resolved);
+        return resolved;
+    }
+
+    private Map<CompoundName, ValueWithSource> resolvedEntriesOrResolve(Map<String, String> context) {
+        Map<CompoundName, ValueWithSource> resolved = resolvedEntries(context);
+        return resolved != null ? resolved : resolve(context);
+    }
+
+    /** Returns the values of this which are set in the given context */
+    private Map<CompoundName, ValueWithSource> resolve(Map<String, String> context) {
+        Map<CompoundName, ValueWithSource> resolved = new HashMap<>();
+        for (Map.Entry<CompoundName, DimensionalValue<ValueWithSource>> entry : entries.entrySet()) {
+            ValueWithSource value = entry.getValue().get(context);
+            if (value != null)
+                resolved.put(entry.getKey(), value);
+        }
+        return Collections.unmodifiableMap(resolved);
+    }
+
+    private static String[] dimensionsOf(DimensionalMap<ValueWithSource> entries) {
+        Set<String> dimensions = new TreeSet<>();
+        for (Map.Entry<CompoundName, DimensionalValue<ValueWithSource>> entry : entries.entrySet())
+            entry.getValue().addDimensionsTo(dimensions);
+        return dimensions.toArray(new String[0]);
+    }
+
     private Object substitute(Object value, Map<String, String> context, Properties substitution) {
         if (value == null) return value;
         if (substitution == null) return value;
@@ -207,4 +275,52 @@ public class CompiledQueryProfile extends AbstractComponent implements Cloneable
         return "query profile '" + getId()  + "'" + (type!=null ? " of type '" + type.getId() + "'" : "");
     }
 
+    /** The values of the dimensions of a query profile in a context, which is all that determines the values of the profile */
+    private static class ContextKey {
+
+        /** Marks dimensions which are not present in the context, as opposed to being present with a null value */
+        private static final String absent = new String("absent");
+
+        private final String[] values;
+        private final int hashCode;
+
+        ContextKey(String[] dimensions, Map<String, String> context) {
+            values = new String[dimensions.length];
+            for (int i = 0; i < dimensions.length; i++) {
+                String value = context.get(dimensions[i]);
+                values[i] = value != null || context.containsKey(dimensions[i]) ? value : absent;
+            }
+            hashCode = Arrays.hashCode(values);
+        }
+
+        /** Returns the context holding only the dimension values of this */
+        Map<String, String> toContext(String[] dimensions) {
+            Map<String, String> context = new HashMap<>();
+            for (int i = 0; i < dimensions.length; i++)
+                if (values[i] != absent)
+                    context.put(dimensions[i], values[i]);
+            return context;
+        }
+
+        @Override
+        public int hashCode() { return hashCode; }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other == this) return true;
+            if ( ! (other instanceof ContextKey)) return false;
+            String[] otherValues = ((ContextKey)other).values;
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] == absent || otherValues[i] == absent) {
+                    if (values[i] != otherValues[i]) return false;
+                }
+                else if ( ! Objects.equals(values[i], otherValues[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
 }
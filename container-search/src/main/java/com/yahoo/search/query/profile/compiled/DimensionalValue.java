@@ -57,6 +57,12 @@ public class DimensionalValue<VALUE> {
 
     public boolean isEmpty() { return indexedVariants.isEmpty(); }
 
+    /** Adds the dimensions this has variants for to the given set */
+    void addDimensionsTo(Set<String> dimensions) {
+        for (BindingSpec spec : bindingSpecs)
+            dimensions.addAll(Arrays.asList(spec.dimensions()));
+    }
+
     @Override
     public String toString() {
         return indexedVariants.toString();
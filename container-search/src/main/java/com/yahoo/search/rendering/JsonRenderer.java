@@ -11,9 +11,6 @@ import com.yahoo.container.logging.TraceRenderer;
 import com.yahoo.data.JsonProducer;
 import com.yahoo.data.access.Inspectable;
 import com.yahoo.data.access.Inspector;
-import com.yahoo.data.access.Type;
-import com.yahoo.data.access.simple.JsonRender;
-import com.yahoo.data.access.simple.Value;
 import com.yahoo.document.datatypes.FieldValue;
 import com.yahoo.document.datatypes.StringFieldValue;
 import com.yahoo.document.datatypes.TensorFieldValue;
@@ -409,15 +406,15 @@ public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
         }
     }
 
-    private static String getIdValue(ValueGroupId<?> id) {
+    static String getIdValue(ValueGroupId<?> id) {
         return (id instanceof RawId ? Arrays.toString(((RawId) id).getValue()) : id.getValue()).toString();
     }
 
-    private static String getBucketFrom(BucketGroupId<?> id) {
+    static String getBucketFrom(BucketGroupId<?> id) {
         return (id instanceof RawBucketId ? Arrays.toString(((RawBucketId) id).getFrom()) : id.getFrom()).toString();
     }
 
-    private static String getBucketTo(BucketGroupId<?> id) {
+    static String getBucketTo(BucketGroupId<?> id) {
         return (id instanceof RawBucketId ? Arrays.toString(((RawBucketId) id).getTo()) : id.getTo()).toString();
     }
 
@@ -529,6 +526,7 @@ public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
 
         private final JsonGenerator generator;
         private final boolean debugRendering;
+        private final Utf8JsonEncoder inspectorEncoder = new Utf8JsonEncoder();
 
         private MutableBoolean hasFieldsField;
 
@@ -587,6 +585,20 @@ public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
             }
         }
 
+        @Override
+        public void accept(String name, Inspector data) {
+            try {
+                if (shouldRender(name, data)) {
+                    ensureFieldsField();
+                    generator.writeFieldName(name);
+                    renderInspector(data);
+                }
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
         protected boolean shouldRender(String name, Object value) {
             if (debugRendering) return true;
             if (name.startsWith(VESPA_HIDDEN_FIELD_PREFIX)) return false;
@@ -604,38 +616,12 @@ public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
             return true;
         }
 
-        private static Inspector wrapAsMap(Inspector data) {
-            if (data.type() != Type.ARRAY) return null;
-            if (data.entryCount() == 0) return null;
-            Value.ObjectValue map = new Value.ObjectValue();
-            for (int i = 0; i < data.entryCount(); i++) {
-                Inspector obj = data.entry(i);
-                if (obj.type() != Type.OBJECT) return null;
-                if (obj.fieldCount() != 2) return null;
-                Inspector key = obj.field("key");
-                Inspector value = obj.field("value");
-                if (key.type() != Type.STRING) return null;
-                if (! value.valid()) return null;
-                map.put(key.asString(), value);
-            }
-            return map;
-        }
-
         private void renderInspector(Inspector data) throws IOException {
-            Inspector asMap = wrapAsMap(data);
-            if (asMap != null) {
-                StringBuilder intermediate = new StringBuilder();
-                JsonRender.render(asMap, intermediate, true);
-                generator.writeRawValue(intermediate.toString());
-            } else {
-                renderInspectorDirect(data);
-            }
+            generator.writeRawValue(inspectorEncoder.encode(data, true));
         }
 
         private void renderInspectorDirect(Inspector data) throws IOException {
-            StringBuilder intermediate = new StringBuilder();
-            JsonRender.render(data, intermediate, true);
-            generator.writeRawValue(intermediate.toString());
+            generator.writeRawValue(inspectorEncoder.encode(data, false));
         }
 
         protected void renderFieldContents(Object field) throws IOException {
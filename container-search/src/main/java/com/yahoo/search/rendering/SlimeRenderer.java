@@ -0,0 +1,387 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.rendering;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.TreeNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.yahoo.data.JsonProducer;
+import com.yahoo.data.access.ArrayTraverser;
+import com.yahoo.data.access.Inspectable;
+import com.yahoo.data.access.Inspector;
+import com.yahoo.data.access.ObjectTraverser;
+import com.yahoo.data.access.slime.SlimeAdapter;
+import com.yahoo.document.datatypes.FieldValue;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.document.datatypes.TensorFieldValue;
+import com.yahoo.document.json.JsonWriter;
+import com.yahoo.processing.Request;
+import com.yahoo.processing.execution.Execution;
+import com.yahoo.processing.rendering.Renderer;
+import com.yahoo.processing.request.CompoundName;
+import com.yahoo.search.Result;
+import com.yahoo.search.grouping.Continuation;
+import com.yahoo.search.grouping.result.AbstractList;
+import com.yahoo.search.grouping.result.BucketGroupId;
+import com.yahoo.search.grouping.result.Group;
+import com.yahoo.search.grouping.result.GroupId;
+import com.yahoo.search.grouping.result.RootGroup;
+import com.yahoo.search.grouping.result.ValueGroupId;
+import com.yahoo.search.result.Coverage;
+import com.yahoo.search.result.DefaultErrorHit;
+import com.yahoo.search.result.ErrorHit;
+import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.result.FeatureData;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.result.HitGroup;
+import com.yahoo.search.result.NanNumber;
+import com.yahoo.slime.BinaryFormat;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.JsonDecoder;
+import com.yahoo.slime.Slime;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.serialization.TypedBinaryFormat;
+import com.yahoo.text.Utf8;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Renders search results in the binary Slime format, for machine clients which want to avoid the cost of
+ * producing and parsing JSON.
+ * <p>
+ * The result has the same structure as the one produced by {@link JsonRenderer}, except that
+ * tensors are rendered as data in {@link TypedBinaryFormat}, and traces are not rendered.
+ * Summary data from content nodes is copied directly from the Slime it is received as.
+ *
+ * @author agent
+ */
+public final class SlimeRenderer extends Renderer<Result> {
+
+    private static final CompoundName DEBUG_RENDERING_KEY = new CompoundName("renderer.json.debug");
+    private static final String VESPA_HIDDEN_FIELD_PREFIX = "$";
+
+    private static final JsonFactory jsonFactory = new JsonFactory(new ObjectMapper());
+
+    @Override
+    public ListenableFuture<Boolean> render(OutputStream stream, Result result, Execution execution, Request request) {
+        Slime slime = new Slime();
+        Cursor root = slime.setObject();
+        renderTiming(result, root);
+        boolean debugRendering = result.getQuery().properties().getBoolean(DEBUG_RENDERING_KEY, false);
+        renderHitGroup(result, result.hits(), root.setObject("root"), true, debugRendering);
+        try {
+            stream.write(BinaryFormat.encode(slime));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        SettableFuture<Boolean> completed = SettableFuture.create();
+        completed.set(true);
+        return completed;
+    }
+
+    @Override
+    public String getEncoding() { return null; }
+
+    @Override
+    public String getMimeType() { return "application/x-slime"; }
+
+    private void renderTiming(Result result, Cursor root) {
+        if ( ! result.getQuery().getPresentation().getTiming()) return;
+
+        Cursor timing = root.setObject("timing");
+        if (result.getElapsedTime().firstFill() != 0L) {
+            timing.setDouble("querytime", result.getElapsedTime().weightedSearchTime() * 0.001);
+            timing.setDouble("summaryfetchtime", result.getElapsedTime().weightedFillTime() * 0.001);
+        }
+        timing.setDouble("searchtime", (System.currentTimeMillis() - result.getElapsedTime().first()) * 0.001);
+    }
+
+    private void renderHitGroup(Result result, HitGroup group, Cursor target, boolean isRoot, boolean debugRendering) {
+        FieldConsumer fieldConsumer = renderHitContents(group, target, debugRendering);
+        if (isRoot) {
+            fieldConsumer.fields().setLong("totalCount", result.getTotalHitCount());
+            renderCoverage(result.getCoverage(false), target);
+        }
+
+        ErrorHit errorHit = group.getErrorHit();
+        if (errorHit != null)
+            renderErrors(errorHit.errors(), target);
+
+        Cursor children = null;
+        for (Hit hit : group.asList()) {
+            if (hit instanceof DefaultErrorHit) continue;
+            if (children == null)
+                children = target.setArray("children");
+            if (hit instanceof HitGroup)
+                renderHitGroup(result, (HitGroup) hit, children.addObject(), false, debugRendering);
+            else
+                renderHitContents(hit, children.addObject(), debugRendering);
+        }
+    }
+
+    private FieldConsumer renderHitContents(Hit hit, Cursor target, boolean debugRendering) {
+        String id = hit.getDisplayId();
+        if (id != null)
+            target.setString("id", id);
+        target.setDouble("relevance", hit.getRelevance().getScore());
+        if ( ! hit.types().isEmpty()) {
+            Cursor types = target.setArray("types");
+            for (String type : hit.types())
+                types.addString(type);
+        }
+        if (hit.getSource() != null)
+            target.setString("source", hit.getSource());
+        renderGroupingFields(hit, target);
+
+        FieldConsumer fieldConsumer = new FieldConsumer(target, debugRendering);
+        hit.forEachFieldAsRaw(fieldConsumer);
+        return fieldConsumer;
+    }
+
+    private void renderGroupingFields(Hit hit, Cursor target) {
+        if (hit instanceof AbstractList) {
+            AbstractList list = (AbstractList) hit;
+            target.setString("label", list.getLabel());
+            renderContinuations(list.continuations(), target);
+        }
+        else if (hit instanceof Group) {
+            GroupId id = ((Group) hit).getGroupId();
+            if (id instanceof ValueGroupId) {
+                target.setString("value", JsonRenderer.getIdValue((ValueGroupId<?>) id));
+            }
+            else if (id instanceof BucketGroupId) {
+                Cursor limits = target.setObject("limits");
+                limits.setString("from", JsonRenderer.getBucketFrom((BucketGroupId<?>) id));
+                limits.setString("to", JsonRenderer.getBucketTo((BucketGroupId<?>) id));
+            }
+            if (hit instanceof RootGroup)
+                renderContinuations(Collections.singletonMap(Continuation.THIS_PAGE, ((RootGroup) hit).continuation()), target);
+        }
+    }
+
+    private void renderContinuations(Map<String, Continuation> continuations, Cursor target) {
+        if (continuations.isEmpty()) return;
+
+        Cursor object = target.setObject("continuation");
+        for (Map.Entry<String, Continuation> continuation : continuations.entrySet())
+            object.setString(continuation.getKey(), continuation.getValue().toString());
+    }
+
+    private void renderCoverage(Coverage coverage, Cursor target) {
+        if (coverage == null) return;
+
+        Cursor object = target.setObject("coverage");
+        object.setLong("coverage", coverage.getResultPercentage());
+        object.setLong("documents", coverage.getDocs());
+        if (coverage.isDegraded()) {
+            Cursor degraded = object.setObject("degraded");
+            degraded.setBool("match-phase", coverage.isDegradedByMatchPhase());
+            degraded.setBool("timeout", coverage.isDegradedByTimeout());
+            degraded.setBool("adaptive-timeout", coverage.isDegradedByAdapativeTimeout());
+            degraded.setBool("non-ideal-state", coverage.isDegradedByNonIdealState());
+        }
+        object.setBool("full", coverage.getFull());
+        object.setLong("nodes", coverage.getNodes());
+        object.setLong("results", coverage.getResultSets());
+        object.setLong("resultsFull", coverage.getFullResultSets());
+    }
+
+    private void renderErrors(Set<ErrorMessage> errors, Cursor target) {
+        if (errors.isEmpty()) return;
+
+        Cursor array = target.setArray("errors");
+        for (ErrorMessage error : errors) {
+            Cursor object = array.addObject();
+            object.setLong("code", error.getCode());
+            object.setString("summary", error.getMessage());
+            if (error.getSource() != null)
+                object.setString("source", error.getSource());
+            if (error.getDetailedMessage() != null)
+                object.setString("message", error.getDetailedMessage());
+            if (error.getCause() != null && error.getCause().getStackTrace().length > 0) {
+                StringWriter stackTrace = new StringWriter();
+                try (PrintWriter writer = new PrintWriter(stackTrace)) {
+                    error.getCause().printStackTrace(writer);
+                }
+                object.setString("stackTrace", stackTrace.toString());
+            }
+        }
+    }
+
+    /** Renders the fields of a hit to a "fields" object which is created when the first field is rendered */
+    private static class FieldConsumer implements Hit.RawUtf8Consumer {
+
+        private final Cursor hit;
+        private final boolean debugRendering;
+        private Cursor fields = null;
+
+        FieldConsumer(Cursor hit, boolean debugRendering) {
+            this.hit = hit;
+            this.debugRendering = debugRendering;
+        }
+
+        Cursor fields() {
+            if (fields == null)
+                fields = hit.setObject("fields");
+            return fields;
+        }
+
+        @Override
+        public void accept(String name, Object value) {
+            if ( ! shouldRender(name)) return;
+            if (value instanceof CharSequence && ((CharSequence) value).length() == 0 && ! debugRendering) return;
+            if (value instanceof NanNumber && ! debugRendering) return;
+            setValue(fields(), name, value);
+        }
+
+        @Override
+        public void accept(String name, byte[] utf8Data, int offset, int length) {
+            if ( ! shouldRender(name)) return;
+            if (length == 0 && ! debugRendering) return;
+            byte[] value = utf8Data;
+            if (offset != 0 || length != utf8Data.length) {
+                value = new byte[length];
+                System.arraycopy(utf8Data, offset, value, 0, length);
+            }
+            fields().setString(name, value);
+        }
+
+        @Override
+        public void accept(String name, Inspector data) {
+            if ( ! shouldRender(name)) return;
+            copyArrayAsMap(data, fields(), name);
+        }
+
+        private boolean shouldRender(String name) {
+            return debugRendering || ! name.startsWith(VESPA_HIDDEN_FIELD_PREFIX);
+        }
+
+    }
+
+    private static void setValue(Cursor object, String name, Object value) {
+        if (value == null)
+            object.setNix(name);
+        else if (value instanceof Boolean)
+            object.setBool(name, (Boolean) value);
+        else if (value instanceof Double || value instanceof Float || value instanceof BigDecimal)
+            object.setDouble(name, ((Number) value).doubleValue());
+        else if (value instanceof Number && ! (value instanceof NanNumber))
+            object.setLong(name, ((Number) value).longValue());
+        else if (value instanceof Tensor)
+            object.setData(name, TypedBinaryFormat.encode((Tensor) value));
+        else if (value instanceof TensorFieldValue)
+            setTensor(object, name, ((TensorFieldValue) value).getTensor());
+        else if (value instanceof StringFieldValue)
+            object.setString(name, ((StringFieldValue) value).getString());
+        else if (value instanceof FeatureData)
+            copy(((FeatureData) value).inspect(), object, name);
+        else if (value instanceof Inspectable)
+            copyArrayAsMap(((Inspectable) value).inspect(), object, name);
+        else if (value instanceof JsonProducer)
+            setJson(object, name, ((JsonProducer) value).toJson());
+        else if (value instanceof TreeNode || value instanceof FieldValue)
+            setJson(object, name, toJson(value));
+        else if (value instanceof JSONArray || value instanceof JSONObject)
+            setJson(object, name, value.toString());
+        else
+            object.setString(name, value.toString());
+    }
+
+    private static void setTensor(Cursor object, String name, Optional<Tensor> tensor) {
+        if (tensor.isPresent())
+            object.setData(name, TypedBinaryFormat.encode(tensor.get()));
+        else
+            object.setNix(name);
+    }
+
+    /** Sets a value given as JSON, decoded to Slime */
+    private static void setJson(Cursor object, String name, String json) {
+        if (json == null) {
+            object.setNix(name);
+            return;
+        }
+        Slime slime = new JsonDecoder().decode(new Slime(), Utf8.toBytes(json));
+        copy(new SlimeAdapter(slime.get()), object, name);
+    }
+
+    private static String toJson(Object value) {
+        try {
+            ByteArrayOutputStream json = new ByteArrayOutputStream();
+            try (JsonGenerator generator = jsonFactory.createGenerator(json)) {
+                if (value instanceof TreeNode)
+                    generator.writeTree((TreeNode) value);
+                else
+                    ((FieldValue) value).serialize(null, new JsonWriter(generator));
+            }
+            return Utf8.toString(json.toByteArray());
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Copies the given value to the given field of an object, as an object if it is an array of key/value objects */
+    private static void copyArrayAsMap(Inspector value, Cursor object, String name) {
+        if ( ! Utf8JsonEncoder.isMap(value)) {
+            copy(value, object, name);
+            return;
+        }
+        Cursor map = object.setObject(name);
+        for (int i = 0; i < value.entryCount(); i++)
+            copy(value.entry(i).field("value"), map, value.entry(i).field("key").asString());
+    }
+
+    /** Copies the given value to the given field of an object */
+    private static void copy(Inspector value, Cursor object, String name) {
+        switch (value.type()) {
+            case EMPTY: object.setNix(name); return;
+            case BOOL: object.setBool(name, value.asBool()); return;
+            case LONG: object.setLong(name, value.asLong()); return;
+            case DOUBLE: object.setDouble(name, value.asDouble()); return;
+            case STRING: object.setString(name, value.asUtf8()); return;
+            case DATA: object.setData(name, value.asData()); return;
+            case ARRAY: copyEntries(value, object.setArray(name)); return;
+            case OBJECT: copyFields(value, object.setObject(name)); return;
+        }
+        throw new IllegalArgumentException("Unexpected type " + value.type());
+    }
+
+    /** Adds the given value to an array */
+    private static void add(Inspector value, Cursor array) {
+        switch (value.type()) {
+            case EMPTY: array.addNix(); return;
+            case BOOL: array.addBool(value.asBool()); return;
+            case LONG: array.addLong(value.asLong()); return;
+            case DOUBLE: array.addDouble(value.asDouble()); return;
+            case STRING: array.addString(value.asUtf8()); return;
+            case DATA: array.addData(value.asData()); return;
+            case ARRAY: copyEntries(value, array.addArray()); return;
+            case OBJECT: copyFields(value, array.addObject()); return;
+        }
+        throw new IllegalArgumentException("Unexpected type " + value.type());
+    }
+
+    private static void copyEntries(Inspector from, Cursor toArray) {
+        from.traverse((ArrayTraverser) (index, entry) -> add(entry, toArray));
+    }
+
+    private static void copyFields(Inspector from, Cursor toObject) {
+        from.traverse((ObjectTraverser) (name, field) -> copy(field, toObject, name));
+    }
+
+}
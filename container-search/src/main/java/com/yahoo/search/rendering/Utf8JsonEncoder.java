@@ -0,0 +1,365 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.rendering;
+
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.yahoo.data.access.ArrayTraverser;
+import com.yahoo.data.access.Inspector;
+import com.yahoo.data.access.ObjectTraverser;
+import com.yahoo.data.access.Type;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Encodes structured data directly to compact UTF-8 JSON in a buffer which is reused between values,
+ * such that summary data can be written to the output without going through Java strings.
+ * Strings are written as the UTF-8 they are stored as, escaping only what JSON requires.
+ * <p>
+ * Not thread safe: Use one instance per rendering.
+ *
+ * @author agent
+ */
+final class Utf8JsonEncoder implements ArrayTraverser, ObjectTraverser {
+
+    private static final byte[] hex = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] nullBytes = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] trueBytes = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] falseBytes = "false".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] buffer = new byte[1024];
+    private int size = 0;
+
+    /** Whether the next array entry or object field is the first in its scope */
+    private boolean head;
+
+    private final Encoded encoded = new Encoded();
+
+    /**
+     * Encodes the given value and returns it as a string which can be passed to
+     * {@link com.fasterxml.jackson.core.JsonGenerator#writeRawValue(SerializableString)}.
+     * The returned instance is only valid until the next call to this.
+     *
+     * @param value the value to encode
+     * @param arrayAsMap whether to encode an array of key/value objects with string keys as an object
+     */
+    SerializableString encode(Inspector value, boolean arrayAsMap) {
+        size = 0;
+        encoded.reset();
+        if (arrayAsMap && isMap(value))
+            encodeMap(value);
+        else
+            encodeValue(value);
+        return encoded;
+    }
+
+    /** Returns whether the given value is a non-empty array of objects containing a string "key" and a "value" */
+    static boolean isMap(Inspector value) {
+        if (value.type() != Type.ARRAY) return false;
+        if (value.entryCount() == 0) return false;
+        for (int i = 0; i < value.entryCount(); i++) {
+            Inspector entry = value.entry(i);
+            if (entry.type() != Type.OBJECT) return false;
+            if (entry.fieldCount() != 2) return false;
+            if (entry.field("key").type() != Type.STRING) return false;
+            if ( ! entry.field("value").valid()) return false;
+        }
+        return true;
+    }
+
+    private void encodeMap(Inspector value) {
+        append((byte)'{');
+        for (int i = 0; i < value.entryCount(); i++) {
+            Inspector entry = value.entry(i);
+            if (i > 0)
+                append((byte)',');
+            encodeUtf8String(entry.field("key").asUtf8());
+            append((byte)':');
+            encodeValue(entry.field("value"));
+        }
+        append((byte)'}');
+    }
+
+    private void encodeValue(Inspector value) {
+        switch (value.type()) {
+            case EMPTY: append(nullBytes); return;
+            case BOOL: append(value.asBool() ? trueBytes : falseBytes); return;
+            case LONG: encodeLong(value.asLong()); return;
+            case DOUBLE: encodeDouble(value.asDouble()); return;
+            case STRING: encodeUtf8String(value.asUtf8()); return;
+            case DATA: encodeData(value.asData()); return;
+            case ARRAY:
+                append((byte)'[');
+                head = true;
+                value.traverse((ArrayTraverser)this);
+                append((byte)']');
+                return;
+            case OBJECT:
+                append((byte)'{');
+                head = true;
+                value.traverse((ObjectTraverser)this);
+                append((byte)'}');
+                return;
+        }
+        throw new IllegalArgumentException("Unexpected type " + value.type());
+    }
+
+    @Override
+    public void entry(int index, Inspector value) {
+        separate();
+        encodeValue(value);
+        head = false;
+    }
+
+    @Override
+    public void field(String name, Inspector value) {
+        separate();
+        encodeString(name);
+        append((byte)':');
+        encodeValue(value);
+        head = false;
+    }
+
+    private void separate() {
+        if ( ! head)
+            append((byte)',');
+    }
+
+    private void encodeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            appendAscii(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            append((byte)'-');
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10)
+            digits++;
+        ensureCapacity(digits);
+        for (int i = size + digits - 1; i >= size; i--) {
+            buffer[i] = (byte)('0' + value % 10);
+            value /= 10;
+        }
+        size += digits;
+    }
+
+    private void encodeDouble(double value) {
+        if (Double.isFinite(value))
+            appendAscii(Double.toString(value));
+        else
+            append(nullBytes);
+    }
+
+    private void encodeData(byte[] value) {
+        ensureCapacity(value.length * 2 + 4);
+        buffer[size++] = '"';
+        buffer[size++] = '0';
+        buffer[size++] = 'x';
+        for (byte b : value) {
+            buffer[size++] = hex[(b >> 4) & 0xf];
+            buffer[size++] = hex[b & 0xf];
+        }
+        buffer[size++] = '"';
+    }
+
+    private void encodeString(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                encodeUtf8String(value.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+        }
+        ensureCapacity(value.length() + 2);
+        buffer[size++] = '"';
+        for (int i = 0; i < value.length(); i++)
+            appendEscaped((byte)value.charAt(i));
+        buffer[size++] = '"';
+    }
+
+    private void encodeUtf8String(byte[] value) {
+        ensureCapacity(value.length + 2);
+        buffer[size++] = '"';
+        int start = 0;
+        for (int i = 0; i < value.length; i++) {
+            byte b = value[i];
+            if (b == '"' || b == '\\' || (b >= 0 && b < 0x20)) {
+                append(value, start, i - start);
+                appendEscaped(b);
+                start = i + 1;
+            }
+        }
+        append(value, start, value.length - start);
+        append((byte)'"');
+    }
+
+    /** Appends a single byte, escaped if JSON requires it */
+    private void appendEscaped(byte b) {
+        switch (b) {
+            case '"': append((byte)'\\', (byte)'"'); return;
+            case '\\': append((byte)'\\', (byte)'\\'); return;
+            case '\b': append((byte)'\\', (byte)'b'); return;
+            case '\f': append((byte)'\\', (byte)'f'); return;
+            case '\n': append((byte)'\\', (byte)'n'); return;
+            case '\r': append((byte)'\\', (byte)'r'); return;
+            case '\t': append((byte)'\\', (byte)'t'); return;
+        }
+        if (b >= 0 && b < 0x20) {
+            ensureCapacity(6);
+            buffer[size++] = '\\';
+            buffer[size++] = 'u';
+            buffer[size++] = '0';
+            buffer[size++] = '0';
+            buffer[size++] = hex[(b >> 4) & 0xf];
+            buffer[size++] = hex[b & 0xf];
+        }
+        else {
+            append(b);
+        }
+    }
+
+    private void appendAscii(String value) {
+        ensureCapacity(value.length());
+        for (int i = 0; i < value.length(); i++)
+            buffer[size++] = (byte)value.charAt(i);
+    }
+
+    private void append(byte b) {
+        ensureCapacity(1);
+        buffer[size++] = b;
+    }
+
+    private void append(byte b1, byte b2) {
+        ensureCapacity(2);
+        buffer[size++] = b1;
+        buffer[size++] = b2;
+    }
+
+    private void append(byte[] bytes) {
+        append(bytes, 0, bytes.length);
+    }
+
+    private void append(byte[] bytes, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, buffer, size, length);
+        size += length;
+    }
+
+    private void ensureCapacity(int additional) {
+        if (size + additional <= buffer.length) return;
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + additional));
+    }
+
+    /**
+     * A view of the value last encoded by this as an unquoted string. Generators writing UTF-8 use the bytes
+     * as they are, while the string forms are decoded, or quoted, only when asked for and then kept
+     * until the next value is encoded.
+     */
+    private final class Encoded implements SerializableString {
+
+        private String value = null;
+        private char[] quotedChars = null;
+        private byte[] quotedUtf8 = null;
+
+        void reset() {
+            value = null;
+            quotedChars = null;
+            quotedUtf8 = null;
+        }
+
+        @Override
+        public String getValue() {
+            if (value == null)
+                value = new String(buffer, 0, size, StandardCharsets.UTF_8);
+            return value;
+        }
+
+        @Override
+        public int charLength() { return getValue().length(); }
+
+        @Override
+        public char[] asQuotedChars() {
+            if (quotedChars == null)
+                quotedChars = JsonStringEncoder.getInstance().quoteAsString(getValue());
+            return quotedChars;
+        }
+
+        @Override
+        public byte[] asUnquotedUTF8() { return Arrays.copyOf(buffer, size); }
+
+        @Override
+        public byte[] asQuotedUTF8() {
+            if (quotedUtf8 == null)
+                quotedUtf8 = JsonStringEncoder.getInstance().quoteAsUTF8(getValue());
+            return quotedUtf8;
+        }
+
+        @Override
+        public int appendQuotedUTF8(byte[] target, int offset) {
+            byte[] quoted = asQuotedUTF8();
+            if (offset + quoted.length > target.length) return -1;
+            System.arraycopy(quoted, 0, target, offset, quoted.length);
+            return quoted.length;
+        }
+
+        @Override
+        public int appendQuoted(char[] target, int offset) {
+            char[] quoted = asQuotedChars();
+            if (offset + quoted.length > target.length) return -1;
+            System.arraycopy(quoted, 0, target, offset, quoted.length);
+            return quoted.length;
+        }
+
+        @Override
+        public int appendUnquotedUTF8(byte[] target, int offset) {
+            if (offset + size > target.length) return -1;
+            System.arraycopy(buffer, 0, target, offset, size);
+            return size;
+        }
+
+        @Override
+        public int appendUnquoted(char[] target, int offset) {
+            String value = getValue();
+            if (offset + value.length() > target.length) return -1;
+            value.getChars(0, value.length(), target, offset);
+            return value.length();
+        }
+
+        @Override
+        public int writeQuotedUTF8(OutputStream out) throws IOException {
+            byte[] quoted = asQuotedUTF8();
+            out.write(quoted);
+            return quoted.length;
+        }
+
+        @Override
+        public int writeUnquotedUTF8(OutputStream out) throws IOException {
+            out.write(buffer, 0, size);
+            return size;
+        }
+
+        @Override
+        public int putQuotedUTF8(ByteBuffer target) {
+            byte[] quoted = asQuotedUTF8();
+            if (quoted.length > target.remaining()) return -1;
+            target.put(quoted);
+            return quoted.length;
+        }
+
+        @Override
+        public int putUnquotedUTF8(ByteBuffer target) {
+            if (size > target.remaining()) return -1;
+            target.put(buffer, 0, size);
+            return size;
+        }
+
+        @Override
+        public String toString() { return getValue(); }
+
+    }
+
+}
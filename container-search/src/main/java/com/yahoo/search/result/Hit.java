@@ -3,6 +3,7 @@ package com.yahoo.search.result;
 
 import com.yahoo.collections.ArraySet;
 import com.yahoo.component.provider.ListenableFreezableClass;
+import com.yahoo.data.access.Inspector;
 import com.yahoo.net.URI;
 import com.yahoo.prelude.hitfield.HitField;
 import com.yahoo.processing.Request;
@@ -688,6 +689,17 @@ public class Hit extends ListenableFreezableClass implements Data, Comparable<Hi
          */
         void accept(String fieldName, byte[] utf8Data, int offset, int length);
 
+        /**
+         * Called for fields which are available as structured data instead of accept(String, Object).
+         * This default implementation passes the data as {@link StructuredData} to accept(String, Object).
+         *
+         * @param fieldName the name of the field
+         * @param data the structured data of the field
+         */
+        default void accept(String fieldName, Inspector data) {
+            accept(fieldName, new StructuredData(data));
+        }
+
     }
 
 }
@@ -3,6 +3,7 @@ package com.yahoo.search.yql;
 
 import com.google.common.annotations.Beta;
 import com.google.inject.Inject;
+import com.yahoo.jdisc.Metric;
 import com.yahoo.language.Linguistics;
 import com.yahoo.language.simple.SimpleLinguistics;
 import com.yahoo.processing.IllegalInputException;
@@ -44,12 +45,25 @@ public class MinimalQueryInserter extends Searcher {
     private static final CompoundName MAX_OFFSET = new CompoundName("maxOffset");
     private static final Logger log = Logger.getLogger(MinimalQueryInserter.class.getName());
 
+    static final String PARSE_LATENCY_METRIC = "yql.parse_latency";
+    static final String PARSE_CACHE_HITS_METRIC = "yql.parse_cache_hits";
+    static final String PARSE_CACHE_MISSES_METRIC = "yql.parse_cache_misses";
+
+    /** The receiver of parse metrics, or null to not report them */
+    private final Metric metric;
+
     @Inject
-    public MinimalQueryInserter(Linguistics linguistics) {
+    public MinimalQueryInserter(Linguistics linguistics, Metric metric) {
+        this.metric = metric;
         // Warmup is needed to avoid a large 400ms init cost during first execution of yql code.
         warmup(linguistics);
     }
 
+    /** Creates a query inserter which does not report metrics */
+    public MinimalQueryInserter(Linguistics linguistics) {
+        this(linguistics, null);
+    }
+
     public MinimalQueryInserter() {
         this(new SimpleLinguistics());
     }
@@ -60,7 +74,7 @@ public class MinimalQueryInserter extends Searcher {
 
     private static boolean warmup(Linguistics linguistics) {
         Query query = new Query("search/?yql=select%20*%20from%20sources%20where%20title%20contains%20'xyz';");
-        Result result = insertQuery(query, new ParserEnvironment().setLinguistics(linguistics));
+        Result result = insertQuery(query, new ParserEnvironment().setLinguistics(linguistics), null);
         if (result != null) {
             log.warning("Warmup code trigger an error. Error = " + result.toString());
             return false;
@@ -76,7 +90,7 @@ public class MinimalQueryInserter extends Searcher {
     public Result search(Query query, Execution execution) {
         try {
             if (query.properties().get(YQL) == null) return execution.search(query);
-            Result result = insertQuery(query, ParserEnvironment.fromExecutionContext(execution.context()));
+            Result result = insertQuery(query, ParserEnvironment.fromExecutionContext(execution.context()), metric);
             return (result == null) ? execution.search(query) : result;
         }
         catch (IllegalArgumentException e) {
@@ -84,14 +98,20 @@ public class MinimalQueryInserter extends Searcher {
         }
     }
 
-    private static Result insertQuery(Query query, ParserEnvironment env) {
+    /** Inserts the query tree of the YQL of the given query, reporting parse metrics to the given metric unless it is null */
+    private static Result insertQuery(Query query, ParserEnvironment env, Metric metric) {
         YqlParser parser = (YqlParser) ParserFactory.newInstance(Query.Type.YQL, env);
         parser.setQueryParser(false);
         parser.setUserQuery(query);
         QueryTree newTree;
         try {
             Parsable parsable = Parsable.fromQueryModel(query.getModel()).setQuery(query.properties().getString(YQL));
+            long startTime = System.nanoTime();
             newTree = parser.parse(parsable);
+            if (metric != null) {
+                metric.set(PARSE_LATENCY_METRIC, (System.nanoTime() - startTime) / 1_000_000.0, null);
+                metric.add(parser.isProgramCached() ? PARSE_CACHE_HITS_METRIC : PARSE_CACHE_MISSES_METRIC, 1, null);
+            }
         } catch (RuntimeException e) {
             return new Result(query, ErrorMessage.createInvalidQueryParameter("Could not instantiate query from YQL", e));
         }
@@ -209,6 +209,7 @@ public class YqlParser implements Parser {
     private Set<String> docTypes;
     private Sorting sorting;
     private boolean queryParser = true;
+    private boolean programCached = false;
     private final Deque<OperatorNode<?>> annotationStack = new ArrayDeque<>();
     private final ParserEnvironment environment;
 
@@ -260,6 +261,7 @@ public class YqlParser implements Parser {
         currentlyParsing = query;
         docTypes = null;
         sorting = null;
+        programCached = false;
         // queryParser set prior to calling this
         return buildTree(parseYqlProgram());
     }
@@ -781,7 +783,9 @@ public class YqlParser implements Parser {
     private OperatorNode<?> parseYqlProgram() {
         OperatorNode<?> ast;
         try {
-            ast = new ProgramParser().parse("query", currentlyParsing.getQuery());
+            YqlProgramCache.Program program = YqlProgramCache.instance().parse(currentlyParsing.getQuery());
+            programCached = program.cached();
+            ast = program.ast();
         } catch (Exception e) {
             throw new IllegalInputException(e);
         }
@@ -1560,6 +1564,9 @@ public class YqlParser implements Parser {
     @Beta
     public boolean isQueryParser() { return queryParser; }
 
+    /** Returns whether the last program parsed was bound from a cached template, rather than parsed from scratch */
+    boolean isProgramCached() { return programCached; }
+
     @Beta
     public void setQueryParser(boolean queryParser) { this.queryParser = queryParser; }
 
@@ -0,0 +1,269 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.yql;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded cache of parsed YQL programs, to avoid running the ANTLR parser for each query when most
+ * queries are repetitions of a few shapes with different literals.
+ * <p>
+ * The key of a program is its text with each literal replaced by a placeholder of the same type.
+ * The program parsed from this key is cached as a template, and bound to the literals of a query by copying
+ * it with each placeholder replaced by the value of the literal it stands for.
+ * Programs with longer keys than a max length are not cached, which bounds the memory used by the cache
+ * as well as the work spent on programs which are unlikely to repeat, such as those with many literals.
+ *
+ * @author agent
+ */
+final class YqlProgramCache {
+
+    private static final YqlProgramCache instance = new YqlProgramCache(1000, 2048);
+
+    /** Marks string placeholders, which can not otherwise be told apart from names in a parsed program */
+    private static final char placeholderMark = '\u0001';
+
+    private final int maxKeyLength;
+    private final Map<String, OperatorNode<StatementOperator>> templates;
+
+    /**
+     * Creates a program cache
+     *
+     * @param maxSize the max number of templates to keep
+     * @param maxKeyLength the max length of the key of a program for it to be cached
+     */
+    YqlProgramCache(int maxSize, int maxKeyLength) {
+        this.maxKeyLength = maxKeyLength;
+        templates = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, OperatorNode<StatementOperator>> entry) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /** Returns the cache shared by all YQL parsers */
+    static YqlProgramCache instance() { return instance; }
+
+    /** Returns the number of templates in this */
+    synchronized int size() { return templates.size(); }
+
+    /**
+     * Parses the given YQL program, from a cached template if a program of the same shape has been parsed before.
+     *
+     * @throws IOException or some runtime exception if the program could not be parsed
+     */
+    Program parse(String yql) throws IOException {
+        Shape shape = Shape.of(yql);
+        // If not cacheable, parse as usual to produce the same result, or error
+        if (shape == null || shape.key.length() > maxKeyLength)
+            return new Program(new ProgramParser().parse("query", yql), false);
+
+        OperatorNode<StatementOperator> template;
+        synchronized (this) {
+            template = templates.get(shape.key);
+        }
+        boolean cached = template != null;
+        if ( ! cached) {
+            try {
+                template = new ProgramParser().parse("query", shape.key);
+            }
+            catch (RuntimeException e) { // report errors from parsing the program as written
+                return new Program(new ProgramParser().parse("query", yql), false);
+            }
+            synchronized (this) {
+                templates.put(shape.key, template);
+            }
+        }
+        return new Program(bind(template, shape.values()), cached);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Operator> OperatorNode<T> bind(OperatorNode<T> node, Object[] values) {
+        Object[] arguments = node.getArguments();
+        if (node.getOperator() == ExpressionOperator.LITERAL)
+            arguments[0] = bindPlaceholder(arguments[0], values);
+        else
+            for (int i = 0; i < arguments.length; i++)
+                arguments[i] = bindArgument(arguments[i], values);
+
+        Map<String, Object> annotations = node.getAnnotations();
+        if ( ! annotations.isEmpty()) {
+            Map<String, Object> bound = new LinkedHashMap<>();
+            annotations.forEach((name, value) -> bound.put(name, bindConstant(value, values)));
+            annotations = bound;
+        }
+        return OperatorNode.create(node.getLocation(), annotations, node.getOperator(), arguments);
+    }
+
+    private static Object bindArgument(Object argument, Object[] values) {
+        if (argument instanceof OperatorNode)
+            return bind((OperatorNode<?>) argument, values);
+        if (argument instanceof List) {
+            List<?> list = (List<?>) argument;
+            List<Object> bound = new ArrayList<>(list.size());
+            for (Object element : list)
+                bound.add(bindArgument(element, values));
+            return bound;
+        }
+        if (isStringPlaceholder(argument))
+            return bindPlaceholder(argument, values);
+        return argument;
+    }
+
+    /** Binds a value read from a constant expression, as found in annotations */
+    private static Object bindConstant(Object constant, Object[] values) {
+        if (constant instanceof Number || isStringPlaceholder(constant))
+            return bindPlaceholder(constant, values);
+        if (constant instanceof OperatorNode)
+            return bind((OperatorNode<?>) constant, values);
+        if (constant instanceof Map) {
+            ImmutableMap.Builder<String, Object> bound = ImmutableMap.builder();
+            ((Map<?, ?>) constant).forEach((name, value) -> bound.put((String) name, bindConstant(value, values)));
+            return bound.build();
+        }
+        if (constant instanceof List) {
+            ImmutableList.Builder<Object> bound = ImmutableList.builder();
+            for (Object element : (List<?>) constant)
+                bound.add(bindConstant(element, values));
+            return bound.build();
+        }
+        return constant;
+    }
+
+    private static Object bindPlaceholder(Object placeholder, Object[] values) {
+        if (placeholder instanceof Number)
+            return values[((Number) placeholder).intValue()];
+        if (isStringPlaceholder(placeholder))
+            return values[Integer.parseInt(((String) placeholder).substring(1))];
+        return placeholder; // a boolean, which is part of the key
+    }
+
+    private static boolean isStringPlaceholder(Object value) {
+        return value instanceof String && ! ((String) value).isEmpty() && ((String) value).charAt(0) == placeholderMark;
+    }
+
+    /** A parsed program, and whether it was bound from a cached template */
+    static final class Program {
+
+        private final OperatorNode<StatementOperator> ast;
+        private final boolean cached;
+
+        private Program(OperatorNode<StatementOperator> ast, boolean cached) {
+            this.ast = ast;
+            this.cached = cached;
+        }
+
+        OperatorNode<StatementOperator> ast() { return ast; }
+
+        /** Returns whether this was bound from a cached template, rather than parsed */
+        boolean cached() { return cached; }
+
+    }
+
+    /** The text of a program with its literals replaced by placeholders, and the literals */
+    private static final class Shape {
+
+        final String key;
+        final List<Token> literals;
+
+        private Shape(String key, List<Token> literals) {
+            this.key = key;
+            this.literals = literals;
+        }
+
+        /** Returns the values of the literals of this, in the form the parser produces */
+        Object[] values() {
+            Object[] values = new Object[literals.size()];
+            for (int i = 0; i < values.length; i++) {
+                String text = literals.get(i).getText();
+                switch (literals.get(i).getType()) {
+                    case yqlplusLexer.INT: values[i] = Integer.valueOf(text); break;
+                    case yqlplusLexer.LONG_INT: values[i] = Long.parseLong(text.substring(0, text.length() - 1)); break;
+                    case yqlplusLexer.FLOAT: values[i] = Double.valueOf(text); break;
+                    case yqlplusLexer.STRING: values[i] = StringUnescaper.unquote(text); break;
+                    default: throw new IllegalStateException("Unexpected literal " + text);
+                }
+            }
+            return values;
+        }
+
+        /** Returns the shape of the given program, or null if it should not be cached */
+        static Shape of(String yql) throws IOException {
+            yqlplusLexer lexer = new yqlplusLexer(new CaseInsensitiveInputStream(yql));
+            lexer.removeErrorListeners();
+            lexer.addErrorListener(new BaseErrorListener() {
+                @Override
+                public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                                        int charPositionInLine, String msg, RecognitionException e) {
+                    throw new IllegalArgumentException(msg);
+                }
+            });
+            List<? extends Token> tokens;
+            try {
+                tokens = lexer.getAllTokens();
+            }
+            catch (IllegalArgumentException e) {
+                return null;
+            }
+
+            StringBuilder key = new StringBuilder(yql.length() + 16);
+            List<Token> literals = new ArrayList<>();
+            int end = 0;
+            for (int i = 0; i < tokens.size(); i++) {
+                Token token = tokens.get(i);
+                if (token.getType() == yqlplusLexer.IMPORT || token.getType() == yqlplusLexer.NEXT)
+                    return null; // these statements use string literals as names
+                if ( ! isLiteral(token) || isPropertyName(tokens, i)) continue;
+
+                key.append(yql, end, token.getStartIndex()).append(' ');
+                appendPlaceholder(key, token.getType(), literals.size());
+                key.append(' ');
+                end = token.getStopIndex() + 1;
+                literals.add(token);
+            }
+            key.append(yql, end, yql.length());
+            return new Shape(key.toString(), literals);
+        }
+
+        private static void appendPlaceholder(StringBuilder key, int type, int index) {
+            switch (type) {
+                case yqlplusLexer.INT: key.append(index); break;
+                case yqlplusLexer.LONG_INT: key.append(index).append('L'); break;
+                case yqlplusLexer.FLOAT: key.append(index).append(".0"); break;
+                case yqlplusLexer.STRING: key.append('"').append(placeholderMark).append(index).append('"'); break;
+            }
+        }
+
+        private static boolean isLiteral(Token token) {
+            switch (token.getType()) {
+                case yqlplusLexer.INT: case yqlplusLexer.LONG_INT: case yqlplusLexer.FLOAT: case yqlplusLexer.STRING:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        /** Returns whether the token at the given index is a string used as the name in a name: value pair */
+        private static boolean isPropertyName(List<? extends Token> tokens, int index) {
+            if (tokens.get(index).getType() != yqlplusLexer.STRING) return false;
+            for (int i = index + 1; i < tokens.size(); i++) {
+                if (tokens.get(i).getChannel() != Token.DEFAULT_CHANNEL) continue;
+                return tokens.get(i).getType() == yqlplusLexer.COLON;
+            }
+            return false;
+        }
+
+    }
+
+}
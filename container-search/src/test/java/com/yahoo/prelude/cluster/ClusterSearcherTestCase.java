@@ -531,7 +531,8 @@ public class ClusterSearcherTestCase {
                                    documentDbConfig.build(),
                                    dispatchers,
                                    new FS4ResourcePool(new QrConfig.Builder().build()),
-                                   vipStatus);
+                                   vipStatus,
+                                   new MockMetric());
     }
 
     private static ClusterInfoConfig createClusterInfoConfig() {
@@ -7,6 +7,7 @@ import com.yahoo.prelude.fastsearch.FastHit;
 import com.yahoo.prelude.fastsearch.GroupingListHit;
 import com.yahoo.search.Query;
 import com.yahoo.search.Result;
+import com.yahoo.search.dispatch.searchcluster.Node;
 import com.yahoo.search.dispatch.searchcluster.SearchCluster;
 import com.yahoo.search.result.Coverage;
 import com.yahoo.search.result.DefaultErrorHit;
@@ -297,6 +298,33 @@ public class InterleavedSearchInvokerTest {
         assertEquals(3, result.getQuery().getHits());
     }
 
+    @Test
+    public void requireThatMergeOfManyHitListsIsSortedAndSkipsDuplicates() {
+        List<List<LeanHit>> partialHits = new ArrayList<>();
+        partialHits.add(createLeanHits(A5, 0));
+        partialHits.add(createLeanHits(B5, 1));
+        partialHits.add(createLeanHits(A5, 0)); // the same hits as the first
+        partialHits.add(createLeanHits(Arrays.asList(10.0, 8.5, 0.5), 2)); // 8.5 is also a duplicate
+
+        List<LeanHit> merged = InterleavedSearchInvoker.mergeHits(partialHits, 12);
+        assertEquals(12, merged.size());
+        List<Double> expected = Arrays.asList(11.0, 10.0, 9.0, 8.5, 8.0, 7.5, 7.0, 6.0, 3.0, 2.0, 1.0, 0.5);
+        for (int i = 0; i < expected.size(); i++)
+            assertEquals(expected.get(i), merged.get(i).getRelevance(), DELTA);
+
+        assertEquals(3, InterleavedSearchInvoker.mergeHits(partialHits, 3).size());
+        assertEquals(0, InterleavedSearchInvoker.mergeHits(Collections.emptyList(), 3).size());
+    }
+
+    private static List<LeanHit> createLeanHits(List<Double> scores, int distributionKey) {
+        List<LeanHit> hits = new ArrayList<>();
+        for (Hit hit : createHits(scores, distributionKey, distributionKey)) {
+            FastHit fastHit = (FastHit) hit;
+            hits.add(new LeanHit(fastHit.getRawGlobalId(), distributionKey, distributionKey, fastHit.getRelevance().getScore()));
+        }
+        return hits;
+    }
+
     private static InterleavedSearchInvoker createInterLeavedTestInvoker(List<Double> a, List<Double> b) {
         SearchCluster cluster = new MockSearchCluster("!", 1, 2);
         List<SearchInvoker> invokers = new ArrayList<>();
@@ -348,6 +376,109 @@ public class InterleavedSearchInvokerTest {
         assertThat(cov.isDegradedByTimeout(), is(true));
     }
 
+    @Test
+    public void requireThatQueryIsHedgedWhenANodeIsSlowerThanTheLatencyPercentile() throws IOException {
+        SearchCluster cluster = new MockSearchCluster("!", 2, 2);
+        InterleavedSearchInvoker invoker = createInterleavedInvoker(cluster, 2);
+        addLatencies(100);
+        MockInvoker hedge = new MockInvoker(2, createCoverage(100, 100, 100, 1, 1, 0));
+        hedge.setHits(createHits(A5, 2, 2));
+        invokers.add(hedge);
+        invoker.hedgeAfter(90, () -> Optional.of(hedge));
+
+        expectedEvents.add(new Event(100, 100, null));
+        expectedEvents.add(new Event(4900, 50, 2));
+
+        Result result = invoker.search(query, null);
+
+        assertTrue("All test scenario events processed", expectedEvents.isEmpty());
+        assertEquals(5, result.hits().size());
+        assertTrue("The hedge result is used", findTrace(result, "Using the result of the hedged query").isPresent());
+    }
+
+    @Test
+    public void requireThatAnIncompleteHedgeResultIsIgnored() throws IOException {
+        SearchCluster cluster = new MockSearchCluster("!", 2, 2);
+        invokers.add(new MockInvoker(0, createCoverage(100, 100, 100, 1, 1, 0)).setHits(createHits(A5, 0, 0)));
+        invokers.add(new MockInvoker(1, createCoverage(100, 100, 100, 1, 1, 0)));
+        InterleavedSearchInvoker invoker = createInterleavedInvoker(cluster, 0);
+        addLatencies(100);
+        MockInvoker hedge = new MockInvoker(2, createCoverage(50, 100, 100, 1, 1, DEGRADED_BY_TIMEOUT));
+        hedge.setHits(createHits(Arrays.asList(1.0), 2, 2));
+        invokers.add(hedge);
+        invoker.hedgeAfter(90, () -> Optional.of(hedge));
+
+        expectedEvents.add(new Event(100, 100, null));
+        expectedEvents.add(new Event(4900, 50, 2));
+        expectedEvents.add(new Event(null, 50, 0));
+        expectedEvents.add(new Event(null, 50, 1));
+
+        Result result = invoker.search(query, null);
+
+        assertTrue("All test scenario events processed", expectedEvents.isEmpty());
+        assertEquals(5, result.hits().size());
+        assertEquals(11.0, result.hits().get(0).getRelevance().getScore(), 0.001);
+        assertTrue(findTrace(result, "Ignoring the incomplete result of the hedged query").isPresent());
+    }
+
+    @Test
+    public void requireThatQueryIsNotHedgedWhenNodesRespondWithinTheLatencyPercentile() throws IOException {
+        SearchCluster cluster = new MockSearchCluster("!", 2, 2);
+        InterleavedSearchInvoker invoker = createInterleavedInvoker(cluster, 2);
+        addLatencies(100);
+        invoker.hedgeAfter(90, () -> { throw new AssertionError("Should not hedge"); });
+
+        expectedEvents.add(new Event(100, 50, 0));
+        expectedEvents.add(new Event(50, 10, 1));
+
+        invoker.search(query, null);
+
+        assertTrue("All test scenario events processed", expectedEvents.isEmpty());
+    }
+
+    @Test
+    public void requireThatLatenciesOfCompleteResponsesAreRecordedWhenHedging() throws IOException {
+        SearchCluster cluster = new MockSearchCluster("!", 1, 1);
+        Node node = new Node(0, "?", 0);
+        for (int i = 0; i < 32; i++) {
+            assertTrue(node.latencyPercentile(50).isEmpty());
+            searchWithLatency(new MockInvoker(node, createCoverage(100, 100, 100, 1, 1, 0)), cluster, true);
+        }
+        assertEquals(10, node.latencyPercentile(50).getAsLong());
+    }
+
+    @Test
+    public void requireThatLatenciesAreNotRecordedForIncompleteResponsesOrWithoutHedging() throws IOException {
+        SearchCluster cluster = new MockSearchCluster("!", 1, 1);
+        Node node = new Node(0, "?", 0);
+        for (int i = 0; i < 32; i++) {
+            searchWithLatency(new MockInvoker(node, createCoverage(50, 100, 100, 1, 1, DEGRADED_BY_TIMEOUT)), cluster, true);
+            searchWithLatency(new MockInvoker(node, createCoverage(100, 100, 100, 1, 1, 0)), cluster, false);
+        }
+        assertTrue(node.latencyPercentile(50).isEmpty());
+    }
+
+    /** Searches the given invoker which responds after 10 ms */
+    private void searchWithLatency(MockInvoker nodeInvoker, SearchCluster cluster, boolean hedged) throws IOException {
+        invokers.clear();
+        invokers.add(nodeInvoker);
+        InterleavedSearchInvoker invoker = createInterleavedInvoker(cluster, 0);
+        if (hedged)
+            invoker.hedgeAfter(90, Optional::empty);
+        invoker.sendSearchRequest(query, null);
+        clock.advance(Duration.ofMillis(10));
+        invoker.responseAvailable(nodeInvoker);
+        expectedEvents.add(new Event(null, 0, 0));
+        invoker.getSearchResult(null);
+    }
+
+    /** Adds enough latencies of the given value to the nodes of the current invokers for percentiles to be available */
+    private void addLatencies(long latency) {
+        for (SearchInvoker invoker : invokers)
+            for (int i = 0; i < 100; i++)
+                invoker.node().get().addLatency(latency);
+    }
+
     private InterleavedSearchInvoker createInterleavedInvoker(SearchCluster searchCluster, int numInvokers) {
         for (int i = 0; i < numInvokers; i++) {
             invokers.add(new MockInvoker(i));
@@ -3,6 +3,7 @@ package com.yahoo.search.dispatch;
 
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -53,4 +54,17 @@ public class LeanHitTest {
         assertTrue(Double.isInfinite(nan.getRelevance()));
         assertEquals(Double.NEGATIVE_INFINITY, nan.getRelevance(), DELTA);
     }
+    @Test
+    public void testOrderingOfHitsReferencingABuffer() {
+        byte [] buffer = {'x', 'a', 'b', 'c', 'b', 'y'};
+        LeanHit a = new LeanHit(buffer, 1, 1, 0, 0, 0.0, buffer, 4, 1);
+        LeanHit b = new LeanHit(buffer, 2, 1, 0, 0, 0.0, buffer, 4, 1);
+        LeanHit c = new LeanHit(buffer, 3, 1, 0, 0, 0.0, buffer, 4, 1);
+        verifyTransitiveOrdering(a, b, c);
+        assertEquals(0, b.compareTo(new LeanHit(gidB, 0, 0, 0.0, gidB)));
+        assertArrayEquals(gidB, b.getGid());
+        assertArrayEquals(gidB, b.getSortData());
+        assertEquals(2, b.dataSize());
+        assertArrayEquals(gidB, b.detached().getGid());
+    }
 }
@@ -1,11 +1,14 @@
 // Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.search.dispatch;
 
+import com.yahoo.prelude.fastsearch.test.MockMetric;
 import com.yahoo.search.dispatch.LoadBalancer.AdaptiveScheduler;
 import com.yahoo.search.dispatch.LoadBalancer.GroupStatus;
+import com.yahoo.search.dispatch.LoadBalancer.LatencyAwareScheduler;
 import com.yahoo.search.dispatch.searchcluster.Group;
 import com.yahoo.search.dispatch.searchcluster.Node;
 import com.yahoo.search.dispatch.searchcluster.SearchCluster;
+import com.yahoo.vespa.config.search.DispatchConfig.DistributionPolicy;
 import junit.framework.AssertionFailedError;
 import org.junit.Test;
 
@@ -14,6 +17,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
+import java.util.Set;
 
 import static com.yahoo.search.dispatch.MockSearchCluster.createDispatchConfig;
 import static org.hamcrest.Matchers.closeTo;
@@ -26,11 +30,31 @@ import static org.junit.Assert.assertThat;
  * @author ollivir
  */
 public class LoadBalancerTest {
+
+    @Test
+    public void requireThatGroupMetricsAreOnlyReportedByTheLatencyAwarePolicy() {
+        Node n1 = new Node(0, "test-node1", 0);
+        Node n2 = new Node(1, "test-node2", 1);
+        SearchCluster cluster = new SearchCluster("a", createDispatchConfig(n1, n2), null, null);
+        for (DistributionPolicy.Enum policy : DistributionPolicy.Enum.values()) {
+            List<String> reported = new ArrayList<>();
+            LoadBalancer lb = new LoadBalancer(cluster, policy, new MockMetric() {
+                @Override
+                public void set(String key, Number value, Context context) { reported.add(key); }
+            });
+            lb.releaseGroup(lb.takeGroup(null).get(), true, 10);
+            if (policy == DistributionPolicy.Enum.LATENCY_AWARE)
+                assertThat(reported, equalTo(List.of("dispatch_group_latency", "dispatch_group_queries_in_flight")));
+            else
+                assertThat(reported, equalTo(List.of()));
+        }
+    }
+
     @Test
     public void requireThatLoadBalancerServesSingleNodeSetups() {
         Node n1 = new Node(0, "test-node1", 0);
         SearchCluster cluster = new SearchCluster("a", createDispatchConfig(n1), null, null);
-        LoadBalancer lb = new LoadBalancer(cluster, true);
+        LoadBalancer lb = new LoadBalancer(cluster, DistributionPolicy.Enum.ROUNDROBIN, new MockMetric());
 
         Optional<Group> grp = lb.takeGroup(null);
         Group group = grp.orElseGet(() -> {
@@ -44,7 +68,7 @@ public class LoadBalancerTest {
         Node n1 = new Node(0, "test-node1", 0);
         Node n2 = new Node(1, "test-node2", 1);
         SearchCluster cluster = new SearchCluster("a", createDispatchConfig(n1, n2), null, null);
-        LoadBalancer lb = new LoadBalancer(cluster, true);
+        LoadBalancer lb = new LoadBalancer(cluster, DistributionPolicy.Enum.ROUNDROBIN, new MockMetric());
 
         Optional<Group> grp = lb.takeGroup(null);
         Group group = grp.orElseGet(() -> {
@@ -60,7 +84,7 @@ public class LoadBalancerTest {
         Node n3 = new Node(0, "test-node3", 1);
         Node n4 = new Node(1, "test-node4", 1);
         SearchCluster cluster = new SearchCluster("a", createDispatchConfig(n1, n2, n3, n4), null, null);
-        LoadBalancer lb = new LoadBalancer(cluster, true);
+        LoadBalancer lb = new LoadBalancer(cluster, DistributionPolicy.Enum.ROUNDROBIN, new MockMetric());
 
         Optional<Group> grp = lb.takeGroup(null);
         assertThat(grp.isPresent(), is(true));
@@ -71,7 +95,7 @@ public class LoadBalancerTest {
         Node n1 = new Node(0, "test-node1", 0);
         Node n2 = new Node(1, "test-node2", 1);
         SearchCluster cluster = new SearchCluster("a", createDispatchConfig(n1, n2), null,null);
-        LoadBalancer lb = new LoadBalancer(cluster, true);
+        LoadBalancer lb = new LoadBalancer(cluster, DistributionPolicy.Enum.ROUNDROBIN, new MockMetric());
 
         // get first group
         Optional<Group> grp = lb.takeGroup(null);
@@ -156,6 +180,45 @@ public class LoadBalancerTest {
         assertThat(sched.takeNextGroup(null).get().groupId(), equalTo(4));
     }
 
+    @Test
+    public void requireThatLatencyAwareSchedulerPicksTheFasterOfTwoGroups() {
+        List<GroupStatus> scoreboard = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            GroupStatus gs = newGroupStatus(i);
+            for (int j = 0; j < 100; j++) {
+                updateSearchTime(gs, 0.01 * (i + 1));
+            }
+            scoreboard.add(gs);
+        }
+        LatencyAwareScheduler sched = new LatencyAwareScheduler(new Random(1), scoreboard);
+        int[] selections = new int[3];
+        for (int i = 0; i < 300; i++) {
+            selections[sched.takeNextGroup(null).get().groupId()]++;
+        }
+        assertThat(selections[2], is(0)); // The slowest group is never the better of two
+        assertThat(selections[0] > selections[1], is(true));
+
+        // Queries in flight make a group slower
+        for (int i = 0; i < 3; i++) {
+            scoreboard.get(0).allocate();
+        }
+        assertThat(sched.takeNextGroup(Set.of(2)).get().groupId(), equalTo(1));
+    }
+
+    @Test
+    public void requireThatLatencyPercentilesFollowRecentLatencies() {
+        GroupStatus gs = newGroupStatus(1);
+        for (int i = 0; i < 1000; i++) {
+            updateSearchTime(gs, i % 50 == 0 ? 1.0 : 0.01);
+        }
+        assertThat(gs.estimatedSearchTime(), closeTo(0.01 + 1.0, 0.06));
+
+        for (int i = 0; i < 5000; i++) {
+            updateSearchTime(gs, 0.1);
+        }
+        assertThat(gs.estimatedSearchTime(), closeTo(0.1 + 0.1, 0.01));
+    }
+
     private static void updateSearchTime(GroupStatus gs, double time) {
         gs.allocate();
         gs.release(true, time);
@@ -20,7 +20,11 @@ class MockInvoker extends SearchInvoker {
     int hitsRequested;
 
     protected MockInvoker(int key, Coverage coverage) {
-        super(Optional.of(new Node(key, "?", 0)));
+        this(new Node(key, "?", 0), coverage);
+    }
+
+    protected MockInvoker(Node node, Coverage coverage) {
+        super(Optional.of(node));
         this.coverage = coverage;
     }
 
@@ -0,0 +1,136 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.jdisc.Metric;
+import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.prelude.fastsearch.test.MockMetric;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.result.Coverage;
+import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.test.ManualClock;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author agent
+ */
+public class ResultCacheTest {
+
+    private final ManualClock clock = new ManualClock();
+    private final ResultCache cache = new ResultCache(1, Duration.ofSeconds(10), new MockMetric(), clock);
+    private int backendInvocations = 0;
+
+    @Test
+    public void testRepeatedQueriesAreAnsweredFromCache() throws IOException {
+        Result first = search(new Query("?query=foo"), new Coverage(100, 100, 1));
+        Result second = search(new Query("?query=foo"), new Coverage(100, 100, 1));
+        assertEquals(1, backendInvocations);
+        assertEquals(1, cache.size());
+
+        assertEquals(2, second.getConcreteHitCount());
+        assertEquals(first.hits().get(0).getId(), second.hits().get(0).getId());
+        assertEquals(first.hits().get(1).getRelevance(), second.hits().get(1).getRelevance());
+        assertNotSame(first.hits().get(0), second.hits().get(0));
+        assertSame(second.getQuery(), second.hits().get(0).getQuery());
+        assertEquals(100, second.getCoverage(false).getDocs());
+
+        search(new Query("?query=bar"), new Coverage(100, 100, 1));
+        search(new Query("?query=foo&hits=5"), new Coverage(100, 100, 1));
+        assertEquals(3, backendInvocations);
+    }
+
+    @Test
+    public void testEntriesExpire() throws IOException {
+        search(new Query("?query=foo"), new Coverage(100, 100, 1));
+        clock.advance(Duration.ofSeconds(5));
+        search(new Query("?query=foo"), new Coverage(100, 100, 1));
+        assertEquals(1, backendInvocations);
+        clock.advance(Duration.ofSeconds(6));
+        search(new Query("?query=foo"), new Coverage(100, 100, 1));
+        assertEquals(2, backendInvocations);
+    }
+
+    @Test
+    public void testQueriesMayOptOut() throws IOException {
+        search(new Query("?query=foo&noCache"), new Coverage(100, 100, 1));
+        search(new Query("?query=foo&noCache"), new Coverage(100, 100, 1));
+        assertEquals(2, backendInvocations);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testIncompleteResultsAreNotCached() throws IOException {
+        search(new Query("?query=foo"), new Coverage(50, 100, 1));
+        search(new Query("?query=foo"), new Coverage(50, 100, 1));
+        assertEquals(2, backendInvocations);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testFailedResultsAreNotCached() throws IOException {
+        Query query = new Query("?query=foo");
+        try (SearchInvoker invoker = cache.getSearchInvoker(query, () -> new SearchErrorInvoker(ErrorMessage.createTimeout("timeout")))) {
+            invoker.search(query, null);
+        }
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testMetricsAreReportedPerLookup() throws IOException {
+        RecordingMetric metric = new RecordingMetric();
+        ResultCache cache = new ResultCache(1, Duration.ofSeconds(10), metric, clock);
+        search(cache, new Query("?query=foo"), new Coverage(100, 100, 1));
+        search(cache, new Query("?query=foo"), new Coverage(100, 100, 1));
+        assertEquals(List.of("dispatch_result_cache_misses=1", "dispatch_result_cache_hits=1"), metric.added);
+
+        metric.added.clear();
+        clock.advance(Duration.ofSeconds(11));
+        search(cache, new Query("?query=foo"), new Coverage(100, 100, 1));
+        assertEquals(List.of("dispatch_result_cache_misses=1", "dispatch_result_cache_evictions=1"), metric.added);
+    }
+
+    private Result search(Query query, Coverage coverage) throws IOException {
+        return search(cache, query, coverage);
+    }
+
+    private Result search(ResultCache cache, Query query, Coverage coverage) throws IOException {
+        try (SearchInvoker invoker = cache.getSearchInvoker(query, () -> backend(coverage))) {
+            return invoker.search(query, new Execution(Execution.Context.createContextStub()));
+        }
+    }
+
+    private SearchInvoker backend(Coverage coverage) {
+        backendInvocations++;
+        List<Hit> hits = List.of(new FastHit(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12 }, 0.9, 0, 0),
+                                 new FastHit(new byte[] { 2, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12 }, 0.8, 0, 0));
+        return new MockInvoker(0, coverage).setHits(hits);
+    }
+
+    private static class RecordingMetric implements Metric {
+
+        final List<String> added = new ArrayList<>();
+
+        @Override
+        public void set(String key, Number val, Context ctx) { }
+
+        @Override
+        public synchronized void add(String key, Number val, Context ctx) { added.add(key + "=" + val); }
+
+        @Override
+        public Context createContext(Map<String, ?> properties) { return null; }
+
+    }
+
+}
@@ -0,0 +1,194 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.data.access.Inspectable;
+import com.yahoo.data.access.slime.SlimeAdapter;
+import com.yahoo.jdisc.Metric;
+import com.yahoo.prelude.fastsearch.DocsumDefinition;
+import com.yahoo.prelude.fastsearch.DocsumDefinitionSet;
+import com.yahoo.prelude.fastsearch.DocumentDatabase;
+import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.prelude.fastsearch.StringField;
+import com.yahoo.prelude.fastsearch.StructDataField;
+import com.yahoo.prelude.fastsearch.test.MockMetric;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.result.Hit;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Slime;
+import com.yahoo.test.ManualClock;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class SummaryCacheTest {
+
+    private final ManualClock clock = new ManualClock();
+    private final SummaryCache cache = new SummaryCache(1, Duration.ofSeconds(10), new MockMetric(), clock);
+    private final DocumentDatabase documentDb = documentDb();
+
+    /** The hits sent to the backend in each fill request */
+    private final List<List<Integer>> backendRequests = new ArrayList<>();
+
+    @Test
+    public void testOnlyMissingSummariesAreFetched() {
+        Result first = fill(createResult(1, 2), "default");
+        assertEquals(List.of(List.of(1, 2)), backendRequests);
+        assertEquals(2, cache.size());
+
+        Result second = fill(createResult(2, 3, 1), "default");
+        assertEquals(List.of(List.of(1, 2), List.of(3)), backendRequests);
+        assertEquals(3, cache.size());
+
+        for (Result result : List.of(first, second)) {
+            for (Hit hit : result.hits().asList()) {
+                int id = id(hit);
+                assertTrue(hit.isFilled("default"));
+                assertEquals("title " + id, hit.getField("title"));
+                assertEquals("test", hit.getField(Hit.SDDOCNAME_FIELD));
+                assertEquals(id, ((Inspectable)hit.getField("struct")).inspect().field("count").asLong());
+            }
+        }
+
+        fill(createResult(1, 2, 3), "default");
+        assertEquals(2, backendRequests.size());
+    }
+
+    @Test
+    public void testSummaryClassesAreCachedSeparately() {
+        fill(createResult(1), "default");
+        fill(createResult(1), "other");
+        fill(createResult(1), "other");
+        assertEquals(List.of(List.of(1), List.of(1)), backendRequests);
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testEntriesExpire() {
+        fill(createResult(1), "default");
+        clock.advance(Duration.ofSeconds(5));
+        fill(createResult(1), "default");
+        assertEquals(1, backendRequests.size());
+        clock.advance(Duration.ofSeconds(6));
+        fill(createResult(1), "default");
+        assertEquals(2, backendRequests.size());
+    }
+
+    @Test
+    public void testSummariesFromFailedFillsAreNotCached() {
+        Result result = createResult(1, 2);
+        try (FillInvoker invoker = cache.getFillInvoker(documentDb, () -> backend(ErrorMessage.createTimeout("timeout")))) {
+            invoker.fill(result, "default");
+        }
+        assertEquals(12, result.hits().getError().getCode());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testMetricsAreReportedOncePerFill() {
+        RecordingMetric metric = new RecordingMetric();
+        SummaryCache cache = new SummaryCache(1, Duration.ofSeconds(10), metric, clock);
+        fill(cache, createResult(1, 2), "default");
+        assertEquals(List.of("dispatch_summary_cache_misses=2"), metric.added);
+
+        metric.added.clear();
+        clock.advance(Duration.ofSeconds(11));
+        fill(cache, createResult(2, 3, 1, 4), "default");
+        assertEquals(List.of("dispatch_summary_cache_misses=4", "dispatch_summary_cache_evictions=2"), metric.added);
+
+        metric.added.clear();
+        fill(cache, createResult(1, 2, 5), "default");
+        assertEquals(List.of("dispatch_summary_cache_hits=2", "dispatch_summary_cache_misses=1"), metric.added);
+    }
+
+    private Result fill(Result result, String summaryClass) {
+        return fill(cache, result, summaryClass);
+    }
+
+    private Result fill(SummaryCache cache, Result result, String summaryClass) {
+        try (FillInvoker invoker = cache.getFillInvoker(documentDb, () -> backend(null))) {
+            invoker.fill(result, summaryClass);
+        }
+        return result;
+    }
+
+    private FillInvoker backend(ErrorMessage error) {
+        return new FillInvoker() {
+
+            @Override
+            protected void sendFillRequest(Result result, String summaryClass) {
+                List<Integer> ids = new ArrayList<>();
+                for (Iterator<Hit> i = result.hits().unorderedDeepIterator(); i.hasNext(); )
+                    ids.add(id(i.next()));
+                backendRequests.add(ids);
+            }
+
+            @Override
+            protected void getFillResults(Result result, String summaryClass) {
+                for (Iterator<Hit> i = result.hits().unorderedDeepIterator(); i.hasNext(); ) {
+                    FastHit hit = (FastHit)i.next();
+                    Slime summary = new Slime();
+                    Cursor fields = summary.setObject();
+                    fields.setString("title", "title " + id(hit));
+                    fields.setObject("struct").setLong("count", id(hit));
+                    hit.setField(Hit.SDDOCNAME_FIELD, documentDb.getName());
+                    hit.addSummary(documentDb.getDocsumDefinitionSet().getDocsum(summaryClass), new SlimeAdapter(summary.get()));
+                    hit.setFilled(summaryClass);
+                }
+                if (error != null)
+                    result.hits().addError(error);
+            }
+
+            @Override
+            protected void release() { }
+
+        };
+    }
+
+    private static Result createResult(int ... ids) {
+        Result result = new Result(new Query("?query=test"));
+        for (int id : ids)
+            result.hits().add(new FastHit(new byte[] { (byte)id, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12 }, 1.0 / id, 0, 0));
+        return result;
+    }
+
+    private static int id(Hit hit) {
+        return ((FastHit)hit).getRawGlobalId()[0];
+    }
+
+    private static DocumentDatabase documentDb() {
+        List<DocsumDefinition> docsums = List.of(new DocsumDefinition("default", List.of(new StringField("title"),
+                                                                                         new StructDataField("struct"))),
+                                                  new DocsumDefinition("other", List.of(new StringField("title"),
+                                                                                       new StructDataField("struct"))));
+        return new DocumentDatabase("test", new DocsumDefinitionSet(docsums), Collections.emptySet());
+    }
+
+    private static class RecordingMetric implements Metric {
+
+        final List<String> added = new ArrayList<>();
+
+        @Override
+        public void set(String key, Number val, Context ctx) { }
+
+        @Override
+        public synchronized void add(String key, Number val, Context ctx) { added.add(key + "=" + val); }
+
+        @Override
+        public Context createContext(Map<String, ?> properties) { return null; }
+
+    }
+
+}
@@ -17,6 +17,7 @@ import java.util.Collections;
 import java.util.List;
 
 import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
@@ -97,4 +98,33 @@ public class ProtobufSerializationTest {
             hitNum++;
         }
     }
+
+    @Test
+    public void testSearchReplyDecodingFromPayload() throws IOException {
+        Query q = new Query("search/?query=test");
+        for (boolean useSorting : List.of(false, true)) {
+            SearchProtocol.SearchReply reply = createSearchReply(5, useSorting).toBuilder()
+                                                                               .setCoverageDocs(3)
+                                                                               .setActiveDocs(4)
+                                                                               .setDegradedByMatchPhase(true)
+                                                                               .build();
+            InvokerResult expected = ProtobufSerialization.convertToResult(q, reply, null, 1, 2);
+            InvokerResult result = ProtobufSerialization.decodeSearchReply(reply.toByteArray(), q, null, 1, 2);
+
+            assertEquals(7, result.getResult().getTotalHitCount());
+            assertEquals(3, result.getResult().getCoverage(false).getDocs());
+            assertEquals(4, result.getResult().getCoverage(false).getActive());
+            assertTrue(result.getResult().getCoverage(false).isDegradedByMatchPhase());
+            assertEquals(expected.getLeanHits().size(), result.getLeanHits().size());
+            for (int i = 0; i < expected.getLeanHits().size(); i++) {
+                LeanHit expectedHit = expected.getLeanHits().get(i);
+                LeanHit hit = result.getLeanHits().get(i);
+                assertArrayEquals(expectedHit.getGid(), hit.getGid());
+                assertArrayEquals(expectedHit.getSortData(), hit.getSortData());
+                assertEquals(expectedHit.getRelevance(), hit.getRelevance(), DELTA);
+                assertEquals(0, expectedHit.compareTo(hit));
+                assertEquals(0, hit.compareTo(hit.detached()));
+            }
+        }
+    }
 }
@@ -0,0 +1,89 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.query.profile.compiled;
+
+import com.yahoo.processing.request.CompoundName;
+import com.yahoo.search.query.profile.QueryProfile;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author agent
+ */
+public class CompiledQueryProfileTestCase {
+
+    @Test
+    public void testValuesAreResolvedOncePerContext() {
+        CompiledQueryProfile profile = createProfile();
+        assertEquals(0, profile.resolvedContextCount());
+
+        assertEquals("a.x1", profile.get("a", context("x", "x1", "other", "o1")));
+        assertEquals("a.x1", profile.get("a", context("x", "x1", "other", "o2"))); // other is not a dimension
+        assertEquals("b.x1.y1", profile.get("b", context("x", "x1", "y", "y1")));
+        assertEquals("a.deflt", profile.get("a", context()));
+        assertEquals("a.deflt", profile.get("a", null));
+        assertEquals("b.deflt", profile.get("b", context("y", "y1")));
+        assertNull(profile.get("c", context("x", "x1")));
+
+        assertEquals(4, profile.resolvedContextCount());
+        assertEquals(3, profile.resolvedContextHits());
+        assertEquals(4, profile.resolvedContextMisses());
+    }
+
+    @Test
+    public void testResolvedValuesAreTheSameAsWhenNotCached() {
+        CompiledQueryProfile profile = createProfile();
+        CompiledQueryProfile uncached = createProfile();
+        for (int i = 0; i < 100; i++) // fill the resolved contexts of uncached with contexts not used below
+            uncached.get("a", context("x", "unused" + i));
+
+        for (Map<String, String> context : List.of(context(), context("x", "x1"), context("x", "x2"), context("x", "x3"),
+                                                   context("x", "x1", "y", "y1"), context("y", "y1"))) {
+            for (int i = 0; i < 2; i++) {
+                assertEquals(context.toString(), uncached.get("a", context), profile.get("a", context));
+                assertEquals(context.toString(), uncached.get("b", context), profile.get("b", context));
+                assertEquals(context.toString(), uncached.listValues("", context), profile.listValues("", context));
+                assertEquals(context.toString(),
+                             uncached.listValuesWithSources(CompoundName.empty, context, null).keySet(),
+                             profile.listValuesWithSources(CompoundName.empty, context, null).keySet());
+            }
+        }
+        assertEquals(6, profile.resolvedContextCount());
+        assertEquals(100, uncached.resolvedContextCount());
+    }
+
+    @Test
+    public void testResolvedContextsAreBounded() {
+        CompiledQueryProfile profile = createProfile();
+        for (int i = 0; i < 200; i++)
+            assertEquals("a.deflt", profile.get("a", context("x", "x" + (i + 10))));
+        assertEquals(100, profile.resolvedContextCount());
+        assertEquals("a.x1", profile.get("a", context("x", "x1")));
+        assertEquals("a.x1", profile.listValues("", context("x", "x1")).get("a"));
+        assertEquals(100, profile.resolvedContextCount());
+    }
+
+    private static CompiledQueryProfile createProfile() {
+        QueryProfile profile = new QueryProfile("test");
+        profile.setDimensions(new String[] { "x", "y" });
+        profile.set("a", "a.deflt", null);
+        profile.set("a", "a.x1", new String[] { "x1", null }, null);
+        profile.set("a", "a.x2", new String[] { "x2", null }, null);
+        profile.set("b", "b.deflt", null);
+        profile.set("b", "b.x1.y1", new String[] { "x1", "y1" }, null);
+        return profile.compile(null);
+    }
+
+    private static Map<String, String> context(String ... keysAndValues) {
+        Map<String, String> context = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2)
+            context.put(keysAndValues[i], keysAndValues[i + 1]);
+        return context;
+    }
+
+}
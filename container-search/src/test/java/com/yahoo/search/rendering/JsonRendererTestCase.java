@@ -22,7 +22,10 @@ import com.yahoo.prelude.Index;
 import com.yahoo.prelude.IndexFacts;
 import com.yahoo.prelude.IndexModel;
 import com.yahoo.prelude.SearchDefinition;
+import com.yahoo.prelude.fastsearch.DocsumDefinition;
 import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.prelude.fastsearch.StringField;
+import com.yahoo.prelude.fastsearch.StructDataField;
 import com.yahoo.prelude.hitfield.JSONString;
 import com.yahoo.prelude.hitfield.RawData;
 import com.yahoo.prelude.searcher.JuniperSearcher;
@@ -1232,6 +1235,67 @@ public class JsonRendererTestCase {
         assertEqualJson(expected, summary);
     }
 
+    @Test
+    public void testSummaryDataIsRenderedFromSlime() throws IOException, InterruptedException, ExecutionException {
+        String expected = "{"
+                + "    \"root\": {"
+                + "        \"children\": ["
+                + "            {"
+                + "                \"fields\": {"
+                + "                    \"title\": \"a \\\"title\\\"\","
+                + "                    \"structured\": {"
+                + "                        \"foo\": \"string foo\","
+                + "                        \"bar\": [1, 2.5]"
+                + "                    },"
+                + "                    \"struct\": {\"name\": \"bl\u00e5b\u00e6r\", \"count\": 3},"
+                + "                    \"overridden\": \"set by a searcher\""
+                + "                },"
+                + "                \"id\": \"SummaryData\","
+                + "                \"relevance\": 1.0,"
+                + "                \"types\": [\"summary\"]"
+                + "            }"
+                + "        ],"
+                + "        \"fields\": {"
+                + "            \"totalCount\": 1"
+                + "        },"
+                + "        \"id\": \"toplevel\","
+                + "        \"relevance\": 1.0"
+                + "    }"
+                + "}";
+        Slime slime = new Slime();
+        Cursor summary = slime.setObject();
+        summary.setString("title", "a \"title\"");
+        Cursor map = summary.setArray("structured");
+        Cursor foo = map.addObject();
+        foo.setString("key", "foo");
+        foo.setString("value", "string foo");
+        Cursor bar = map.addObject();
+        bar.setString("key", "bar");
+        Cursor barValue = bar.setArray("value");
+        barValue.addLong(1);
+        barValue.addDouble(2.5);
+        Cursor struct = summary.setObject("struct");
+        struct.setString("name", "bl\u00e5b\u00e6r");
+        struct.setLong("count", 3);
+        summary.setObject("overridden").setString("not", "rendered");
+        summary.setObject("$hiddenfield").setString("not", "rendered");
+
+        FastHit hit = new FastHit("SummaryData", 1.0);
+        hit.addSummary(new DocsumDefinition("default", List.of(new StringField("title"),
+                                                               new StructDataField("structured"),
+                                                               new StructDataField("struct"),
+                                                               new StructDataField("overridden"),
+                                                               new StructDataField("$hiddenfield"))),
+                       new SlimeAdapter(slime.get()));
+        hit.setField("overridden", "set by a searcher");
+        Result r = newEmptyResult();
+        r.hits().add(hit);
+        r.setTotalHitCount(1L);
+        String rendered = render(r);
+        assertEqualJson(expected, rendered);
+        assertTrue(rendered, rendered.contains("\"struct\":{\"name\":\"bl\u00e5b\u00e6r\",\"count\":3}"));
+    }
+
     @Test
     public void testThatTheJsonValidatorCanCatchErrors() {
         String json = "{"
@@ -0,0 +1,172 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.rendering;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yahoo.component.ComponentSpecification;
+import com.yahoo.data.access.slime.SlimeAdapter;
+import com.yahoo.io.GrowableByteBuffer;
+import com.yahoo.prelude.fastsearch.DocsumDefinition;
+import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.prelude.fastsearch.StringField;
+import com.yahoo.prelude.fastsearch.StructDataField;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.grouping.Continuation;
+import com.yahoo.search.grouping.result.Group;
+import com.yahoo.search.grouping.result.GroupList;
+import com.yahoo.search.grouping.result.RootGroup;
+import com.yahoo.search.grouping.result.StringId;
+import com.yahoo.search.result.Coverage;
+import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.result.Relevance;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.slime.BinaryFormat;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Inspector;
+import com.yahoo.slime.Slime;
+import com.yahoo.slime.SlimeUtils;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.serialization.TypedBinaryFormat;
+import com.yahoo.text.Utf8;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class SlimeRendererTestCase {
+
+    @Test
+    public void testRendersTheSameStructureAsJson() throws Exception {
+        Result result = createResult();
+        Slime slime = renderSlime(result);
+        String json = renderJson(result);
+
+        ObjectMapper mapper = new ObjectMapper();
+        assertEquals(mapper.readValue(json, Map.class),
+                     mapper.readValue(Utf8.toString(SlimeUtils.toJsonBytes(slime)), Map.class));
+    }
+
+    @Test
+    public void testRendersResultContent() throws Exception {
+        Result result = createResult();
+        Hit withTensor = new Hit("withTensor", 0.5);
+        Tensor tensor = Tensor.from("tensor(x{}):{{x:a}:1.0,{x:b}:2.0}");
+        withTensor.setField("tensor", tensor);
+        result.hits().add(withTensor);
+        result.hits().addError(ErrorMessage.createTimeout("Too slow"));
+
+        Inspector root = renderSlime(result).get().field("root");
+        assertEquals(3, root.field("fields").field("totalCount").asLong());
+        assertEquals(100, root.field("coverage").field("coverage").asLong());
+        assertEquals(12, root.field("errors").entry(0).field("code").asLong());
+        assertEquals("Too slow", root.field("errors").entry(0).field("message").asString());
+
+        Inspector summaryHit = child(root, "summaryHit");
+        assertEquals("a title", summaryHit.field("fields").field("title").asString());
+        assertEquals(2, summaryHit.field("fields").field("struct").field("count").asLong());
+        assertEquals("bar", summaryHit.field("fields").field("map").field("foo").field("key").asString());
+        assertFalse(summaryHit.field("fields").field("$hidden").valid());
+
+        Inspector group = child(root, "group:root:0");
+        assertEquals("BGAAABEBEBC", group.field("continuation").field("this").asString());
+        Inspector list = group.field("children").entry(0);
+        assertEquals("category", list.field("label").asString());
+        assertEquals("books", list.field("children").entry(0).field("value").asString());
+
+        Inspector tensorHit = child(root, "withTensor");
+        assertEquals(tensor, TypedBinaryFormat.decode(Optional.of(tensor.type()),
+                                                      GrowableByteBuffer.wrap(tensorHit.field("fields").field("tensor").asData())));
+    }
+
+    @Test
+    public void testRendererIsSelectedByFormat() {
+        RendererRegistry registry = new RendererRegistry(Runnable::run);
+        assertTrue(registry.getRenderer(ComponentSpecification.fromString("slime")) instanceof SlimeRenderer);
+        assertTrue(registry.getRenderer(RendererRegistry.slimeRendererId.toSpecification()) instanceof SlimeRenderer);
+        registry.deconstruct();
+    }
+
+    private static Inspector child(Inspector parent, String id) {
+        for (int i = 0; i < parent.field("children").entries(); i++)
+            if (parent.field("children").entry(i).field("id").asString().equals(id))
+                return parent.field("children").entry(i);
+        throw new IllegalArgumentException("No child '" + id + "'");
+    }
+
+    static Result createResult() {
+        Query query = new Query("?query=test");
+        Result result = new Result(query);
+        result.setTotalHitCount(3);
+        result.setCoverage(new Coverage(500, 500, 1));
+
+        Slime summary = new Slime();
+        Cursor fields = summary.setObject();
+        fields.setString("title", "a title");
+        Cursor struct = fields.setObject("struct");
+        struct.setString("name", "blåbær");
+        struct.setLong("count", 2);
+        Cursor map = fields.setArray("map");
+        Cursor entry = map.addObject();
+        entry.setString("key", "foo");
+        entry.setObject("value").setString("key", "bar");
+        fields.setString("$hidden", "not rendered");
+        FastHit summaryHit = new FastHit("summaryHit", 1.0);
+        summaryHit.addSummary(new DocsumDefinition("default", List.of(new StringField("title"),
+                                                                      new StructDataField("struct"),
+                                                                      new StructDataField("map"),
+                                                                      new StringField("$hidden"))),
+                              new SlimeAdapter(summary.get()));
+        result.hits().add(summaryHit);
+
+        Hit plainHit = new Hit("plainHit", new Relevance(0.75));
+        plainHit.setSource("source");
+        plainHit.setField("long", 17L);
+        plainHit.setField("double", 0.25);
+        plainHit.setField("bool", true);
+        plainHit.setField("string", "value");
+        plainHit.types().add("summary");
+        result.hits().add(plainHit);
+
+        RootGroup rootGroup = new RootGroup(0, new Continuation() {
+            @Override
+            public Continuation copy() { return null; }
+
+            @Override
+            public String toString() { return "BGAAABEBEBC"; }
+        });
+        GroupList groupList = new GroupList("category");
+        Group group = new Group(new StringId("books"), new Relevance(1.0));
+        group.setField("count()", 7L);
+        groupList.add(group);
+        rootGroup.add(groupList);
+        result.hits().add(rootGroup);
+        return result;
+    }
+
+    static Slime renderSlime(Result result) throws Exception {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        SlimeRenderer renderer = (SlimeRenderer)new SlimeRenderer().clone();
+        renderer.init();
+        assertTrue(renderer.render(stream, result, null, null).get());
+        return BinaryFormat.decode(stream.toByteArray());
+    }
+
+    static String renderJson(Result result) throws Exception {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        JsonRenderer renderer = (JsonRenderer)new JsonRenderer().clone();
+        renderer.init();
+        assertTrue(renderer.render(stream, result, new Execution(Execution.Context.createContextStub()), null).get());
+        return Utf8.toString(stream.toByteArray());
+    }
+
+}
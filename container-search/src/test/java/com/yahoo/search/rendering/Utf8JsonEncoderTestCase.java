@@ -0,0 +1,125 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.rendering;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.yahoo.data.access.Inspector;
+import com.yahoo.data.access.simple.JsonRender;
+import com.yahoo.data.access.slime.SlimeAdapter;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Slime;
+import com.yahoo.text.Utf8;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author agent
+ */
+public class Utf8JsonEncoderTestCase {
+
+    @Test
+    public void testEncodingIsEqualToJsonRender() {
+        Slime slime = new Slime();
+        Cursor root = slime.setObject();
+        root.setLong("long", 17);
+        root.setLong("negative", -1234567890123L);
+        root.setLong("min", Long.MIN_VALUE);
+        root.setLong("zero", 0);
+        root.setDouble("double", 3.25);
+        root.setDouble("infinite", Double.POSITIVE_INFINITY);
+        root.setBool("bool", true);
+        root.setNix("nix");
+        root.setString("escaped", "quote \" backslash \\ newline \n tab \t control \u0001");
+        root.setData("data", new byte[] { 1, 2, (byte)0xfe });
+        Cursor array = root.setArray("array");
+        array.addLong(1);
+        array.addArray().addString("nested");
+        array.addArray();
+        array.addObject();
+        array.addString("last");
+        Cursor object = root.setObject("object");
+        object.setString("a", "b");
+        object.setObject("empty");
+        root.setArray("empty");
+
+        Inspector inspector = new SlimeAdapter(slime.get());
+        assertEquals(JsonRender.render(inspector, new StringBuilder(), true).toString(), encode(inspector, false));
+    }
+
+    @Test
+    public void testNonAsciiIsWrittenAsUtf8() {
+        Slime slime = new Slime();
+        Cursor root = slime.setObject();
+        root.setString("blåbær", "øl og €");
+        assertEquals("{\"blåbær\":\"øl og €\"}", encode(new SlimeAdapter(slime.get()), false));
+    }
+
+    @Test
+    public void testArrayOfKeyValueObjectsIsEncodedAsMap() {
+        Slime slime = new Slime();
+        Cursor root = slime.setArray();
+        Cursor entry1 = root.addObject();
+        entry1.setString("key", "foo");
+        entry1.setLong("value", 1);
+        Cursor entry2 = root.addObject();
+        entry2.setString("key", "bar");
+        entry2.setArray("value").addString("baz");
+        Inspector inspector = new SlimeAdapter(slime.get());
+
+        assertEquals("{\"foo\":1,\"bar\":[\"baz\"]}", encode(inspector, true));
+        assertEquals("[{\"key\":\"foo\",\"value\":1},{\"key\":\"bar\",\"value\":[\"baz\"]}]", encode(inspector, false));
+
+        root.addObject().setString("key", "incomplete");
+        assertEquals("[{\"key\":\"foo\",\"value\":1},{\"key\":\"bar\",\"value\":[\"baz\"]},{\"key\":\"incomplete\"}]",
+                     encode(inspector, true));
+    }
+
+    @Test
+    public void testBufferIsReused() {
+        Utf8JsonEncoder encoder = new Utf8JsonEncoder();
+        Slime large = new Slime();
+        Cursor array = large.setArray();
+        for (int i = 0; i < 1000; i++)
+            array.addString("element " + i);
+        String largeJson = Utf8.toString(encoder.encode(new SlimeAdapter(large.get()), false).asUnquotedUTF8());
+        assertEquals(JsonRender.render(new SlimeAdapter(large.get()), new StringBuilder(), true).toString(), largeJson);
+
+        Slime small = new Slime();
+        small.setString("small");
+        assertEquals("\"small\"", Utf8.toString(encoder.encode(new SlimeAdapter(small.get()), false).asUnquotedUTF8()));
+    }
+
+    @Test
+    public void testAllStringFormsAreSupported() throws IOException {
+        Slime slime = new Slime();
+        slime.setObject().setString("blåbær", "quote \"");
+        SerializableString encoded = new Utf8JsonEncoder().encode(new SlimeAdapter(slime.get()), false);
+
+        String json = "{\"blåbær\":\"quote \\\"\"}";
+        String quoted = "{\\\"blåbær\\\":\\\"quote \\\\\\\"\\\"}";
+        assertEquals(json, encoded.getValue());
+        assertSame(encoded.getValue(), encoded.getValue());
+        assertEquals(json.length(), encoded.charLength());
+        assertEquals(quoted, new String(encoded.asQuotedChars()));
+        assertEquals(quoted, Utf8.toString(encoded.asQuotedUTF8()));
+
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = new JsonFactory().createGenerator(writer)) {
+            generator.writeStartArray();
+            generator.writeRawValue(encoded);
+            generator.writeEndArray();
+        }
+        assertEquals("[" + json + "]", writer.toString());
+    }
+
+    private static String encode(Inspector inspector, boolean arrayAsMap) {
+        return Utf8.toString(new Utf8JsonEncoder().encode(inspector, arrayAsMap).asUnquotedUTF8());
+    }
+
+}
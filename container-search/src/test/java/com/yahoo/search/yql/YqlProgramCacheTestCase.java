@@ -0,0 +1,114 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.yql;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author agent
+ */
+public class YqlProgramCacheTestCase {
+
+    @Test
+    public void testProgramsOfTheSameShapeAreBoundFromTheCache() throws Exception {
+        YqlProgramCache cache = new YqlProgramCache(10, 1000);
+        YqlProgramCache.Program first = cache.parse("select foo from bar where title contains \"madonna\" and price < 500;");
+        assertFalse(first.cached());
+        assertEquals(parse("select foo from bar where title contains \"madonna\" and price < 500;"), first.ast());
+
+        YqlProgramCache.Program second = cache.parse("select foo from bar where title contains 'saint' and price < -17;");
+        assertTrue(second.cached());
+        assertEquals(parse("select foo from bar where title contains 'saint' and price < -17;"), second.ast());
+        assertEquals(1, cache.size());
+
+        YqlProgramCache.Program otherType = cache.parse("select foo from bar where title contains \"madonna\" and price < 1.5;");
+        assertFalse(otherType.cached());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testBoundProgramsAreEqualToParsedPrograms() throws Exception {
+        List<String> programs = List.of(
+                "select * from sources * where title contains \"madonna\" limit 3 offset 7 timeout 300;",
+                "select foo from bar where price >= -500 and weight = 10000000000L and score > 0.5e3;",
+                "select foo from bar where flag = true and baz contains ([{\"distance\": 5, \"annotations\": {\"a\": \"b\"}}]near(\"a\", \"b\"));",
+                "select foo from bar where baz contains ([{\"origin\": {\"original\": \"abc\", \"offset\": 1, \"length\": 2}}]\"b\");",
+                "select foo from bar where weightedSet(description, {\"a\": 1, \"b\": 2});",
+                "select foo from bar where [{\"targetHits\": 10, \"label\": \"nns\"}]nearestNeighbor(vec, q);",
+                "select foo from bar where title contains \"a\" order by price desc, title | all(group(a) each(output(count())));",
+                "select foo from bar where userQuery() and range(year, 1990, 2000) and title contains ([{\"stem\": false}]'x');",
+                "select foo from bar where predicate(a, {\"gender\": \"Female\"}, {\"age\": 20L});",
+                "select foo from bar where title contains @term and wand(f, [[1, 2], [3, 4]]);");
+        for (String program : programs) {
+            YqlProgramCache cache = new YqlProgramCache(10, 1000);
+            assertFalse(program, cache.parse(program).cached());
+            YqlProgramCache.Program bound = cache.parse(program);
+            assertTrue(program, bound.cached());
+            assertEquals(program, parse(program), bound.ast());
+        }
+    }
+
+    @Test
+    public void testErrorsAreReportedForTheProgramAsWritten() throws Exception {
+        YqlProgramCache cache = new YqlProgramCache(10, 1000);
+        String program = "select foo from bar where title contains \"madonna\" and and;";
+        try {
+            cache.parse(program);
+            fail("Expected an exception");
+        }
+        catch (ProgramCompileException e) {
+            try {
+                parse(program);
+                fail("Expected an exception");
+            }
+            catch (ProgramCompileException expected) {
+                assertEquals(expected.getMessage(), e.getMessage());
+            }
+        }
+        assertEquals(0, cache.size());
+
+        try {
+            cache.parse("select foo from bar where price < 10000000000;");
+            fail("Expected an exception");
+        }
+        catch (NumberFormatException expected) { }
+    }
+
+    @Test
+    public void testCacheIsBounded() throws Exception {
+        YqlProgramCache cache = new YqlProgramCache(2, 1000);
+        cache.parse("select a from bar where title contains \"madonna\";");
+        cache.parse("select b from bar where title contains \"madonna\";");
+        assertTrue(cache.parse("select a from bar where title contains \"saint\";").cached());
+        cache.parse("select c from bar where title contains \"madonna\";");
+        assertEquals(2, cache.size());
+        assertTrue(cache.parse("select a from bar where title contains \"x\";").cached());
+        assertFalse(cache.parse("select b from bar where title contains \"x\";").cached());
+    }
+
+    @Test
+    public void testProgramsWithLongKeysAreNotCached() throws Exception {
+        YqlProgramCache cache = new YqlProgramCache(10, 50);
+        String shortProgram = "select a from bar where title contains \"madonna\";";
+        cache.parse(shortProgram);
+        assertTrue(cache.parse(shortProgram).cached());
+
+        String longProgram = "select a from bar where title contains \"madonna\" and title contains \"saint\";";
+        assertFalse(cache.parse(longProgram).cached());
+        YqlProgramCache.Program parsed = cache.parse(longProgram);
+        assertFalse(parsed.cached());
+        assertEquals(parse(longProgram), parsed.ast());
+        assertEquals(1, cache.size());
+    }
+
+    private static OperatorNode<StatementOperator> parse(String program) throws Exception {
+        return new ProgramParser().parse("query", program);
+    }
+
+}
@@ -6,13 +6,17 @@ import com.yahoo.document.DataType;
 import com.yahoo.document.Document;
 import com.yahoo.document.Field;
 import com.yahoo.document.PositionDataType;
+import com.yahoo.document.DocumentTypeManager;
 import com.yahoo.document.StructDataType;
+import com.yahoo.document.serialization.DocumentDeserializerFactory;
 import com.yahoo.document.serialization.FieldReader;
 import com.yahoo.document.serialization.FieldWriter;
 import com.yahoo.document.serialization.XmlSerializationHelper;
 import com.yahoo.document.serialization.XmlStream;
+import com.yahoo.io.GrowableByteBuffer;
 import com.yahoo.vespa.objects.Ids;
 
+import java.nio.ByteBuffer;
 import java.util.AbstractSet;
 import java.util.Arrays;
 import java.util.Iterator;
@@ -92,11 +96,68 @@ public class Struct extends StructuredFieldValue {
         struct.values = new Hashlet<>();
         struct.values.reserve(values.size());
         for (int i = 0; i < values.size(); i++) {
-            struct.values.put(values.key(i), values.value(i).clone());
+            FieldValue value = values.value(i);
+            // serialized values are immutable and can be shared
+            struct.values.put(values.key(i), value instanceof SerializedValue ? value : value.clone());
         }
         return struct;
     }
 
+    /** Returns the value at the given index in values, deserializing it first if necessary */
+    private FieldValue valueAt(int index) {
+        FieldValue value = values.value(index);
+        if (value instanceof SerializedValue) {
+            value = ((SerializedValue)value).deserialize();
+            values.setValue(index, value);
+        }
+        return value;
+    }
+
+    /** Returns the value of the field with the given id, deserializing it first if necessary, or null if not set */
+    private FieldValue valueOf(int id) {
+        int index = values.getIndexOfKey(id);
+        return index == -1 ? null : valueAt(index);
+    }
+
+    private void deserializeAll() {
+        for (int i = 0; i < values.size(); i++)
+            valueAt(i);
+    }
+
+    /**
+     * Sets the value of a field to be deserialized from the given data when it is first accessed.
+     * Until then the data is written as-is when this is serialized.
+     * The data must be the field value on the current serialization format, and must not be modified after this.
+     *
+     * @param field the field to set
+     * @param data the array holding the serialized value
+     * @param offset the start of the serialized value in the array
+     * @param length the length of the serialized value
+     * @param manager the type manager to deserialize the value with
+     */
+    public void setSerializedFieldValue(Field field, byte[] data, int offset, int length, DocumentTypeManager manager) {
+        Field myField = getDataType().getField(field.getId());
+        if (myField == null)
+            throw new IllegalArgumentException("No such field in " + getDataType() + " : " + field.getName());
+        int index = values.getIndexOfKey(field.getId());
+        SerializedValue value = new SerializedValue(myField, data, offset, length, manager);
+        if (index == -1) {
+            values.put(field.getId(), value);
+            invalidateOrder();
+        } else {
+            values.setValue(index, value);
+        }
+    }
+
+    /**
+     * Returns the serialized data of the value of the given field if it has not been deserialized since it was set
+     * by {@link #setSerializedFieldValue}, and null otherwise.
+     */
+    public ByteBuffer getSerializedFieldValue(Field field) {
+        FieldValue value = values.get(field.getId());
+        return value instanceof SerializedValue ? ((SerializedValue)value).data() : null;
+    }
+
     @Override
     public void clear() {
         values = new Hashlet<>();
@@ -127,7 +188,7 @@ public class Struct extends StructuredFieldValue {
 
     @Override
     public FieldValue getFieldValue(Field field) {
-        return values.get(field.getId());
+        return valueOf(field.getId());
     }
 
 
@@ -175,7 +236,7 @@ public class Struct extends StructuredFieldValue {
 
     @Override
     public FieldValue removeFieldValue(Field field) {
-        FieldValue found = values.get(field.getId());
+        FieldValue found = valueOf(field.getId());
         if (found != null) {
             Hashlet<Integer, FieldValue> copy = new Hashlet<>();
             copy.reserve(values.size() - 1);
@@ -223,12 +284,15 @@ public class Struct extends StructuredFieldValue {
         if (!super.equals(o)) return false;
 
         Struct struct = (Struct) o;
+        deserializeAll();
+        struct.deserializeAll();
         return values.equals(struct.values);
     }
 
     @Override
     public int hashCode() {
         int result = super.hashCode();
+        deserializeAll();
         result = 31 * result + values.hashCode();
         return result;
     }
@@ -240,7 +304,7 @@ public class Struct extends StructuredFieldValue {
         int [] increasing = getInOrder();
         for (int i = 0; i < increasing.length; i++) {
             int id = increasing[i];
-            retVal.append(getDataType().getField(id)).append("=").append(values.get(id)).append(", ");
+            retVal.append(getDataType().getField(id)).append("=").append(valueOf(id)).append(", ");
         }
         return retVal.toString();
     }
@@ -286,6 +350,59 @@ public class Struct extends StructuredFieldValue {
         reader.read(field, this);
     }
 
+    /**
+     * A placeholder for a field value which is not deserialized yet. This is never returned from a struct,
+     * but replaced by the deserialized value on first access.
+     */
+    private static final class SerializedValue extends FieldValue {
+
+        private final Field field;
+        private final byte[] data;
+        private final int offset;
+        private final int length;
+        private final DocumentTypeManager manager;
+
+        SerializedValue(Field field, byte[] data, int offset, int length, DocumentTypeManager manager) {
+            this.field = field;
+            this.data = data;
+            this.offset = offset;
+            this.length = length;
+            this.manager = manager;
+        }
+
+        ByteBuffer data() {
+            return ByteBuffer.wrap(data, offset, length).slice().asReadOnlyBuffer();
+        }
+
+        FieldValue deserialize() {
+            FieldValue value = field.getDataType().createFieldValue();
+            value.deserialize(field, DocumentDeserializerFactory.createHead(manager,
+                                                                            GrowableByteBuffer.wrap(data, offset, length)));
+            return value;
+        }
+
+        @Override
+        public DataType getDataType() { return field.getDataType(); }
+
+        @Override
+        public void printXml(XmlStream xml) { deserialize().printXml(xml); }
+
+        @Override
+        public void serialize(Field field, FieldWriter writer) { deserialize().serialize(field, writer); }
+
+        // A placeholder is immutable, and the mutators are only reachable if it escapes its struct
+
+        @Override
+        public void clear() { throw new IllegalStateException("placeholder escaped Struct"); }
+
+        @Override
+        public void assign(Object o) { throw new IllegalStateException("placeholder escaped Struct"); }
+
+        @Override
+        public void deserialize(Field field, FieldReader reader) { throw new IllegalStateException("placeholder escaped Struct"); }
+
+    }
+
     private class FieldEntry implements Map.Entry<Field, FieldValue> {
         private int id;
 
@@ -298,7 +415,7 @@ public class Struct extends StructuredFieldValue {
         }
 
         public FieldValue getValue() {
-            return values.get(id);
+            return valueOf(id);
         }
 
         public FieldValue setValue(FieldValue value) {
@@ -312,7 +429,7 @@ public class Struct extends StructuredFieldValue {
                 values.put(id, value);
                 invalidateOrder();
             } else {
-                retVal = values.value(index);
+                retVal = valueAt(index);
                 values.setValue(index, value);
             }
 
@@ -7,6 +7,7 @@ import com.fasterxml.jackson.core.JsonToken;
 import com.yahoo.document.DocumentId;
 import com.yahoo.document.DocumentOperation;
 import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentUpdate;
 import com.yahoo.document.DocumentTypeManager;
 import com.yahoo.document.TestAndSetCondition;
 import com.yahoo.document.json.document.DocumentParser;
@@ -62,20 +63,16 @@ public class JsonReader {
      */
     public DocumentOperation readSingleDocument(DocumentOperationType operationType, String docIdString) {
         DocumentId docId = new DocumentId(docIdString);
+        DocumentParser documentParser = new DocumentParser(parser, true);
         DocumentParseInfo documentParseInfo;
         try {
-            DocumentParser documentParser = new DocumentParser(parser);
-            documentParseInfo = documentParser.parse(Optional.of(docId)).get();
+            documentParseInfo = documentParser.parse(Optional.of(docId), Optional.of(operationType)).get();
         } catch (IOException e) {
             state = END_OF_FEED;
             throw new IllegalArgumentException(e);
         }
         documentParseInfo.operationType = operationType;
-        VespaJsonDocumentReader vespaJsonDocumentReader = new VespaJsonDocumentReader();
-        DocumentOperation operation = vespaJsonDocumentReader.createDocumentOperation(
-                getDocumentTypeFromString(documentParseInfo.documentId.getDocType(), typeManager), documentParseInfo);
-        operation.setCondition(TestAndSetCondition.fromConditionString(documentParseInfo.condition));
-        return operation;
+        return createDocumentOperation(documentParser, documentParseInfo);
     }
 
     /** Returns the next document operation, or null if we have reached the end */
@@ -91,9 +88,10 @@ public class JsonReader {
             case READING:
                 break;
         }
+        DocumentParser documentParser = new DocumentParser(parser, true);
         Optional<DocumentParseInfo> documentParseInfo;
         try {
-            documentParseInfo = parseDocument();
+            documentParseInfo = documentParser.parse(Optional.empty());
         } catch (IOException r) {
             // Jackson is not able to recover from structural parse errors
             state = END_OF_FEED;
@@ -103,14 +101,42 @@ public class JsonReader {
             state = END_OF_FEED;
             return null;
         }
-        VespaJsonDocumentReader vespaJsonDocumentReader = new VespaJsonDocumentReader();
-        DocumentOperation operation = vespaJsonDocumentReader.createDocumentOperation(
-                getDocumentTypeFromString(documentParseInfo.get().documentId.getDocType(), typeManager),
-                documentParseInfo.get());
-        operation.setCondition(TestAndSetCondition.fromConditionString(documentParseInfo.get().condition));
-        return operation;
+        return createDocumentOperation(documentParser, documentParseInfo.get());
     }
 
+    /**
+     * Creates the operation of the given parse info, reading its fields directly from the parser if they
+     * are streamed, and then parses the rest of it such that the parser is left at the end of the operation
+     * also when it is invalid.
+     */
+    private DocumentOperation createDocumentOperation(DocumentParser documentParser, DocumentParseInfo documentParseInfo) {
+        DocumentOperation operation;
+        try {
+            VespaJsonDocumentReader vespaJsonDocumentReader = new VespaJsonDocumentReader();
+            operation = vespaJsonDocumentReader.createDocumentOperation(
+                    getDocumentTypeFromString(documentParseInfo.documentId.getDocType(), typeManager), documentParseInfo);
+        }
+        catch (RuntimeException e) {
+            try {
+                documentParser.parseRemaining(documentParseInfo);
+            }
+            catch (IOException | RuntimeException remainingException) {
+                state = END_OF_FEED;
+                e.addSuppressed(remainingException);
+            }
+            throw e;
+        }
+        try {
+            documentParser.parseRemaining(documentParseInfo);
+        } catch (IOException e) {
+            state = END_OF_FEED;
+            throw new IllegalArgumentException(e);
+        }
+        if (documentParseInfo.create.isPresent() && ! (operation instanceof DocumentUpdate))
+            throw new IllegalArgumentException("Could not set create flag on non update operation.");
+        operation.setCondition(TestAndSetCondition.fromConditionString(documentParseInfo.condition));
+        return operation;
+    }
 
     public DocumentType readDocumentType(DocumentId docId) {
         return getDocumentTypeFromString(docId.getDocType(), typeManager);
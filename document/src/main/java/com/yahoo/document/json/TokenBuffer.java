@@ -12,6 +12,7 @@ import com.google.common.base.Preconditions;
 
 /**
  * Helper class to enable lookahead in the token stream.
+ * A buffer may also be streaming, in which case tokens are read from the parser on demand, see {@link #streamObject}.
  *
  * @author Steinar Knutsen
  */
@@ -32,10 +33,33 @@ public class TokenBuffer {
     private Deque<Token> buffer;
     private int nesting = 0;
 
+    /** The parser to read tokens from on demand, or null if all tokens are buffered up front */
+    private JsonParser source = null;
+
+    /** The nesting level in the source of the object streamed by this */
+    private int sourceNesting = 0;
+
     public TokenBuffer() {
         this(new ArrayDeque<>());
     }
 
+    /**
+     * Returns a buffer which reads the object at the current position of the given parser from it on demand,
+     * instead of storing all its tokens up front. This holds only the current token, so there is no lookahead.
+     * The parser is positioned at the end of the object once this has been read to the end.
+     */
+    public static TokenBuffer streamObject(JsonParser parser) {
+        JsonToken first = parser.currentToken();
+        Preconditions.checkArgument(first == JsonToken.START_OBJECT,
+                                    "Expected %s, got %s.", JsonToken.START_OBJECT.name(), first);
+        TokenBuffer streaming = new TokenBuffer();
+        streaming.source = parser;
+        streaming.addFromParser(first, parser);
+        streaming.updateNesting(first);
+        streaming.sourceNesting = 1;
+        return streaming;
+    }
+
     private TokenBuffer(Deque<Token> buffer) {
         this.buffer = buffer;
         if (buffer.size() > 0) {
@@ -48,6 +72,11 @@ public class TokenBuffer {
 
     public JsonToken next() {
         buffer.removeFirst();
+        if (source != null && buffer.isEmpty() && sourceNesting > 0) {
+            JsonToken t = nextValue(source);
+            addFromParser(t, source);
+            sourceNesting += nestingOffset(t);
+        }
         Token t = buffer.peekFirst();
         if (t == null) {
             return null;
@@ -135,7 +164,10 @@ public class TokenBuffer {
 
     private JsonToken nextValue(JsonParser tokens) {
         try {
-            return tokens.nextValue();
+            JsonToken t = tokens.nextValue();
+            if (t == null)
+                throw new IllegalArgumentException("Unexpected end of input");
+            return t;
         } catch (IOException e) {
             // TODO something sane
             throw new IllegalArgumentException(e);
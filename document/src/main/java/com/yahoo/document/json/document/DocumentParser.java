@@ -5,6 +5,7 @@ import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.yahoo.document.DocumentId;
 import com.yahoo.document.json.DocumentOperationType;
+import com.yahoo.document.json.TokenBuffer;
 import com.yahoo.document.json.readers.DocumentParseInfo;
 
 import java.io.IOException;
@@ -25,10 +26,28 @@ public class DocumentParser {
     public static final String FIELDS = "fields";
     public static final String REMOVE = "remove";
     private final JsonParser parser;
+    private final boolean streamPutFields;
     private  long indentLevel;
 
+    /** Whether the fields of the operation being parsed are streamed, see {@link #parseRemaining} */
+    private boolean fieldsStreamed;
+    private boolean docIdAndOperationIsSetExternally;
+
     public DocumentParser(JsonParser parser) {
+        this(parser, false);
+    }
+
+    /**
+     * Creates a document parser.
+     *
+     * @param parser the parser to read from
+     * @param streamPutFields whether the "fields" of a put should be read directly from the parser when the
+     *                        document id is known at that point, instead of being buffered.
+     *                        {@link #parseRemaining} must then be called after reading the fields of each operation.
+     */
+    public DocumentParser(JsonParser parser, boolean streamPutFields) {
         this.parser = parser;
+        this.streamPutFields = streamPutFields;
     }
 
     /**
@@ -36,13 +55,26 @@ public class DocumentParser {
      * Returns empty is we have reached the end of the stream.
      */
     public Optional<DocumentParseInfo> parse(Optional<DocumentId> documentIdArg) throws IOException {
+        return parse(documentIdArg, Optional.empty());
+    }
+
+    /**
+     * Parses a single document and returns it, with the given operation type if it is set externally.
+     * Returns empty is we have reached the end of the stream.
+     * If this streams put fields, this returns when reaching them, with a fields buffer reading from the parser.
+     */
+    public Optional<DocumentParseInfo> parse(Optional<DocumentId> documentIdArg,
+                                             Optional<DocumentOperationType> operationTypeArg) throws IOException {
         indentLevel = 0;
+        fieldsStreamed = false;
+        docIdAndOperationIsSetExternally = documentIdArg.isPresent();
         DocumentParseInfo documentParseInfo = new DocumentParseInfo();
         documentIdArg.ifPresent(documentId -> documentParseInfo.documentId = documentId);
+        operationTypeArg.ifPresent(operationType -> documentParseInfo.operationType = operationType);
         boolean foundItems = false;
         do {
-            foundItems |= parseOneItem(documentParseInfo, documentIdArg.isPresent() /* doc id set externally */);
-        } while (indentLevel > 0L);
+            foundItems |= parseOneItem(documentParseInfo, docIdAndOperationIsSetExternally);
+        } while (indentLevel > 0L && ! fieldsStreamed);
 
         if (documentParseInfo.documentId == null) {
             if (foundItems)
@@ -53,6 +85,21 @@ public class DocumentParser {
         return Optional.of(documentParseInfo);
     }
 
+    /**
+     * Parses the rest of an operation after its streamed fields, skipping any fields not read.
+     * This does nothing if the fields of the last parsed operation were not streamed.
+     */
+    public void parseRemaining(DocumentParseInfo documentParseInfo) throws IOException {
+        if ( ! fieldsStreamed) return;
+
+        TokenBuffer fields = documentParseInfo.fieldsBuffer;
+        while (fields.currentToken() != null)
+            fields.next();
+        processIndent(); // the end of the fields object
+        while (indentLevel > 0L)
+            parseOneItem(documentParseInfo, docIdAndOperationIsSetExternally);
+    }
+
     /**
      * Parses one item from the stream.
      *
@@ -124,6 +171,14 @@ public class DocumentParser {
             JsonToken currentToken = parser.getCurrentToken();
             // "fields" opens a dictionary and is therefore on level two which might be surprising.
             if (currentToken == JsonToken.START_OBJECT && FIELDS.equals(parser.getCurrentName())) {
+                if (fieldsStreamed)
+                    throw new IllegalArgumentException("Multiple 'fields' maps in the same operation");
+                if (streamPutFields && documentParseInfo.operationType == DocumentOperationType.PUT &&
+                    documentParseInfo.documentId != null && documentParseInfo.fieldsBuffer.isEmpty()) {
+                    documentParseInfo.fieldsBuffer = TokenBuffer.streamObject(parser);
+                    fieldsStreamed = true;
+                    return;
+                }
                 documentParseInfo.fieldsBuffer.bufferObject(currentToken, parser);
                 processIndent();
             }
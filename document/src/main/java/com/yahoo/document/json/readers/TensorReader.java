@@ -9,6 +9,7 @@ import com.yahoo.tensor.MixedTensor;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorAddress;
 import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.serialization.JsonFormat;
 
 import static com.yahoo.document.json.readers.JsonParserHelpers.*;
 
@@ -65,6 +66,10 @@ public class TensorReader {
     }
 
     private static void readTensorCell(TokenBuffer buffer, Tensor.Builder builder) {
+        if (builder instanceof IndexedTensor.BoundBuilder) {
+            readDenseTensorCell(buffer, (IndexedTensor.BoundBuilder)builder);
+            return;
+        }
         expectObjectStart(buffer.currentToken());
 
         TensorAddress address = null;
@@ -86,11 +91,73 @@ public class TensorReader {
         builder.cell(address, value);
     }
 
+    /** Reads a cell of a dense tensor into its index in the builder, without creating an address */
+    private static void readDenseTensorCell(TokenBuffer buffer, IndexedTensor.BoundBuilder builder) {
+        expectObjectStart(buffer.currentToken());
+
+        TensorType type = builder.type();
+        long[] indexes = null;
+        Double value = null;
+        int initNesting = buffer.nesting();
+        for (buffer.next(); buffer.nesting() >= initNesting; buffer.next()) {
+            String currentName = buffer.currentName();
+            if (TensorReader.TENSOR_ADDRESS.equals(currentName)) {
+                indexes = readIndexes(buffer, type);
+            } else if (TensorReader.TENSOR_VALUE.equals(currentName)) {
+                value = readDouble(buffer);
+            }
+        }
+        expectObjectEnd(buffer.currentToken());
+        if (indexes == null)
+            throw new IllegalArgumentException("Expected an object in a tensor 'cells' array to contain an 'address' field");
+        if (value == null)
+            throw new IllegalArgumentException("Expected an object in a tensor 'cells' array to contain a 'value' field");
+        builder.cell(value, indexes);
+    }
+
+    private static long[] readIndexes(TokenBuffer buffer, TensorType type) {
+        expectObjectStart(buffer.currentToken());
+        long[] indexes = new long[type.dimensions().size()];
+        int dimensionsSet = 0;
+        int initNesting = buffer.nesting();
+        for (buffer.next(); buffer.nesting() >= initNesting; buffer.next()) {
+            int dimension = type.indexOfDimension(buffer.currentName()).orElseThrow(() ->
+                    new IllegalArgumentException(type + " does not contain dimension '" + buffer.currentName() + "'"));
+            indexes[dimension] = readIndex(buffer.currentText(), type.dimensions().get(dimension), type);
+            dimensionsSet++;
+        }
+        expectObjectEnd(buffer.currentToken());
+        if (dimensionsSet != indexes.length)
+            throw new IllegalArgumentException("Expected an address with " + indexes.length + " dimensions for " + type +
+                                               ", but got " + dimensionsSet);
+        return indexes;
+    }
+
+    /** Returns the given label as an index, checked against the size of the dimension as the builder does not do that */
+    private static long readIndex(String label, TensorType.Dimension dimension, TensorType type) {
+        long index;
+        try {
+            index = Long.parseLong(label);
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected an integer label for indexed dimension '" + dimension.name() +
+                                               "', but got '" + label + "'");
+        }
+        if (index < 0 || index >= dimension.size().get())
+            throw new IllegalArgumentException("Label '" + label + "' in dimension '" + dimension.name() +
+                                               "' is not within the bounds of " + type);
+        return index;
+    }
+
     private static void readTensorValues(TokenBuffer buffer, Tensor.Builder builder) {
         if ( ! (builder instanceof IndexedTensor.BoundBuilder))
             throw new IllegalArgumentException("The 'values' field can only be used with dense tensors. " +
                                                "Use 'cells' or 'blocks' instead");
         IndexedTensor.BoundBuilder indexedBuilder = (IndexedTensor.BoundBuilder)builder;
+        if (buffer.currentToken() == JsonToken.VALUE_STRING) { // cells encoded as hex
+            JsonFormat.decodeHexValues(buffer.currentText(), indexedBuilder);
+            return;
+        }
         int index = 0;
         int initNesting = buffer.nesting();
         for (buffer.next(); buffer.nesting() >= initNesting; buffer.next())
@@ -23,6 +23,11 @@ public class VespaDocumentDeserializerHead extends VespaDocumentDeserializer6 {
         super(manager, buffer);
     }
 
+    /** Creates a deserializer which may keep document fields serialized until they are accessed, see {@link VespaDocumentDeserializer6} */
+    VespaDocumentDeserializerHead(DocumentTypeManager manager, GrowableByteBuffer buffer, boolean lazyFields) {
+        super(manager, buffer, lazyFields);
+    }
+
     @Override
     protected ValueUpdate readTensorModifyUpdate(DataType type) {
         byte operationId = getByte(null);
@@ -58,10 +58,11 @@ import com.yahoo.vespa.objects.BufferSerializer;
 import com.yahoo.vespa.objects.FieldBase;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -74,6 +75,15 @@ import static com.yahoo.text.Utf8.calculateBytePositions;
  **/
 public class VespaDocumentSerializer6 extends BufferSerializer implements DocumentSerializer {
 
+    /** Struct buffers larger than this are not kept for reuse, to avoid holding on to memory after large documents */
+    private static final int maxReusedStructBufferSize = 1024 * 1024;
+
+    /**
+     * Buffers used to serialize struct fields before their sizes are known, kept for reuse between documents.
+     * A buffer is removed while in use, such that nested structs get one each.
+     */
+    private static final ThreadLocal<Deque<GrowableByteBuffer>> structBuffers = ThreadLocal.withInitial(ArrayDeque::new);
+
     private int spanNodeCounter = -1;
     private int[] bytePositions;
 
@@ -324,20 +334,39 @@ public class VespaDocumentSerializer6 extends BufferSerializer implements Docume
         //keep the buffer we're serializing everything into:
         GrowableByteBuffer bigBuffer = buf;
 
-        //create a new buffer and serialize into that for a while:
-        GrowableByteBuffer buffer = new GrowableByteBuffer(4096, 2.0f);
-        buf = buffer;
-
-        List<Integer> fieldIds = new LinkedList<>();
-        List<java.lang.Integer> fieldLengths = new LinkedList<>();
+        //take a buffer and serialize into that for a while:
+        GrowableByteBuffer buffer = structBuffers.get().pollFirst();
+        if (buffer == null)
+            buffer = new GrowableByteBuffer(4096, 2.0f);
+        try {
+            writeStruct(s, bigBuffer, buffer);
+        }
+        finally {
+            buf = bigBuffer;
+            if (buffer.capacity() <= maxReusedStructBufferSize) {
+                buffer.clear();
+                structBuffers.get().addFirst(buffer);
+            }
+        }
+    }
 
+    private void writeStruct(Struct s, GrowableByteBuffer bigBuffer, GrowableByteBuffer buffer) {
+        buf = buffer;
+        int[] fieldIds = new int[s.getFieldCount()];
+        int[] fieldLengths = new int[s.getFieldCount()];
+        int fieldIndex = 0;
         for (Map.Entry<Field, FieldValue> value : s.getFields()) {
 
             int startPos = buffer.position();
-            value.getValue().serialize(value.getKey(), this);
+            ByteBuffer serialized = s.getSerializedFieldValue(value.getKey());
+            if (serialized != null)
+                put(null, serialized);
+            else
+                value.getValue().serialize(value.getKey(), this);
 
-            fieldLengths.add(buffer.position() - startPos);
-            fieldIds.add(value.getKey().getId());
+            fieldLengths[fieldIndex] = buffer.position() - startPos;
+            fieldIds[fieldIndex] = value.getKey().getId();
+            fieldIndex++;
         }
 
         // Switch buffers again:
@@ -360,8 +389,8 @@ public class VespaDocumentSerializer6 extends BufferSerializer implements Docume
         buf.putInt1_4Bytes(s.getFieldCount());
 
         for (int i = 0; i < s.getFieldCount(); ++i) {
-            putInt1_4Bytes(null, fieldIds.get(i));
-            putInt2_4_8Bytes(null, fieldLengths.get(i));
+            putInt1_4Bytes(null, fieldIds[i]);
+            putInt2_4_8Bytes(null, fieldLengths[i]);
         }
 
         int pos = buf.position();
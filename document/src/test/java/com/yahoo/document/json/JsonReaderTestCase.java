@@ -164,6 +164,10 @@ public class JsonReaderTestCase {
                                  new TensorDataType(new TensorType.Builder().mapped("x").mapped("y").build())));
             x.addField(new Field("dense_tensor",
                     new TensorDataType(new TensorType.Builder().indexed("x", 2).indexed("y", 3).build())));
+            x.addField(new Field("dense_float_tensor",
+                    new TensorDataType(new TensorType.Builder(TensorType.Value.FLOAT).indexed("x", 2).indexed("y", 3).build())));
+            x.addField(new Field("dense_single_dimension_tensor",
+                    new TensorDataType(new TensorType.Builder().indexed("x", 3).build())));
             x.addField(new Field("dense_unbound_tensor",
                     new TensorDataType(new TensorType.Builder().indexed("x").indexed("y").build())));
             x.addField(new Field("mixed_tensor",
@@ -913,6 +917,65 @@ public class JsonReaderTestCase {
 
     }
 
+    @Test
+    public void testStreamedPutWithConditionAfterFields() {
+        JsonReader r = createReader(inputJson("[",
+                "{ 'put': 'id:unittest:smoke::whee',",
+                "  'fields': {",
+                "    'something': 'smoketest',",
+                "    'flag': true,",
+                "    'nalle': 'bamse' },",
+                "  'condition': 'smoke.flag'",
+                "},",
+                "{ 'remove': 'id:unittest:smoke::whee' }]"));
+
+        DocumentPut put = (DocumentPut) r.next();
+        smokeTestDoc(put.getDocument());
+        assertEquals("smoke.flag", put.getCondition().getSelection());
+        assertTrue(r.next() instanceof DocumentRemove);
+        assertNull(r.next());
+    }
+
+    @Test
+    public void testFeedContinuesAfterInvalidStreamedPut() {
+        JsonReader r = createReader(inputJson("[",
+                "{ 'put': 'id:unittest:smoke::bad',",
+                "  'fields': {",
+                "    'smething': 'smoketest',",
+                "    'nalle': { 'nested': [ 1, 2, { 'deeper': 3 } ] } },",
+                "  'condition': 'true'",
+                "},",
+                "{ 'put': 'id:unittest:smoke::good',",
+                "  'fields': {",
+                "    'flag': true,",
+                "    'nalle': 'bamse' }}]"));
+
+        try {
+            r.next();
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertTrue(Exceptions.toMessageString(e).contains("No field 'smething' in the structure of type 'smoke'"));
+        }
+        DocumentPut put = (DocumentPut) r.next();
+        assertEquals("id:unittest:smoke::good", put.getId().toString());
+        smokeTestDoc(put.getDocument());
+        assertNull(r.next());
+    }
+
+    @Test
+    public void testCreateIfNonExistentAfterStreamedPutFields() {
+        JsonReader r = createReader(inputJson("[{",
+                "  'put': 'id:unittest:smoke::whee',",
+                "  'fields': {",
+                "    'something': 'smoketest' },",
+                "  'create': true",
+                "}]"));
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Could not set create flag on non update operation.");
+        r.next();
+    }
+
     private void checkSimpleArrayAdd(DocumentUpdate update) {
         Set<String> toAdd = new HashSet<>();
         FieldUpdate x = update.getFieldUpdate("actualarray");
@@ -1321,6 +1384,50 @@ public class JsonReaderTestCase {
         assertTrue(tensor instanceof IndexedTensor); // this matters for performance
     }
 
+    @Test
+    public void testParsingOfDenseTensorOnHexForm() {
+        Tensor expected = Tensor.from("tensor<float>(x[2],y[3]):[[2.0, 3.0, 4.0], [5.0, 6.0, 7.0]]");
+        Tensor tensor = assertTensorField(expected,
+                                          createPutWithTensor(inputJson("{",
+                                                                        "  'values': '400000004040000040800000" +
+                                                                        "40a0000040c0000040e00000'",
+                                                                        "}"), "dense_float_tensor"), "dense_float_tensor");
+        assertTrue(tensor instanceof IndexedTensor);
+
+        expected = Tensor.from("tensor(x[2],y[3]):[[2.0, 3.0, 4.0], [5.0, 6.0, -0.5]]");
+        assertTensorField(expected,
+                          createPutWithTensor(inputJson("{",
+                                                        "  'values': '4000000000000000400800000000000040100000000000004014000000000000" +
+                                                        "4018000000000000bfe0000000000000'",
+                                                        "}"), "dense_tensor"), "dense_tensor");
+    }
+
+    @Test
+    public void testParsingOfDenseTensorOnCellsForm() {
+        Tensor expected = Tensor.from("tensor(x[2],y[3]):[[2.0, 0.0, 0.0], [0.0, 0.0, 7.0]]");
+        Tensor tensor = assertTensorField(expected,
+                                          createPutWithTensor(inputJson("{",
+                                                                        "  'cells': [",
+                                                                        "    { 'address': { 'x': '0', 'y': '0' }, 'value': 2.0 },",
+                                                                        "    { 'value': 7.0, 'address': { 'y': '2', 'x': '1' } }",
+                                                                        "  ]",
+                                                                        "}"), "dense_tensor"), "dense_tensor");
+        assertTrue(tensor instanceof IndexedTensor);
+    }
+
+    @Test
+    public void testParsingOfDenseTensorOnCellsFormWithIndexOutOfBounds() {
+        illegalTensorPut("Label '3' in dimension 'x' is not within the bounds of tensor(x[3])",
+                         "{ 'cells': [ { 'address': { 'x': '3' }, 'value': 2.0 } ] }",
+                         "dense_single_dimension_tensor");
+        illegalTensorPut("Label '-1' in dimension 'x' is not within the bounds of tensor(x[3])",
+                         "{ 'cells': [ { 'address': { 'x': '-1' }, 'value': 2.0 } ] }",
+                         "dense_single_dimension_tensor");
+        illegalTensorPut("Label '3' in dimension 'y' is not within the bounds of tensor(x[2],y[3])",
+                         "{ 'cells': [ { 'address': { 'x': '1', 'y': '3' }, 'value': 2.0 } ] }",
+                         "dense_tensor");
+    }
+
     @Test
     public void testParsingOfMixedTensorOnMixedForm() {
         Tensor.Builder builder = Tensor.Builder.of(TensorType.fromSpec("tensor(x{},y[3])"));
@@ -1793,6 +1900,16 @@ public class JsonReaderTestCase {
 
     private static final String TENSOR_DOC_ID = "id:unittest:testtensor::0";
 
+    private void illegalTensorPut(String expectedMessage, String tensor, String field) {
+        try {
+            createPutWithTensor(inputJson(tensor), field);
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException expected) {
+            assertEquals(expectedMessage, expected.getCause().getMessage());
+        }
+    }
+
     private void illegalTensorModifyUpdate(String expectedMessage, String field, String ... jsonLines) {
         try {
             createTensorModifyUpdate(inputJson(jsonLines), field);
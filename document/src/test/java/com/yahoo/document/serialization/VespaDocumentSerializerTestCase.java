@@ -21,6 +21,8 @@ import org.junit.Test;
 import org.mockito.Mockito;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -129,4 +131,73 @@ public class VespaDocumentSerializerTestCase {
         // rounded up to 4096 bytes.
         assertTrue(buf.remaining() < 4096);
     }
+
+    @Test
+    public void reused_struct_buffers_do_not_leak_content_between_documents() {
+        CompressionFixture fixture = new CompressionFixture();
+
+        Document small = new Document(fixture.docType, "id:foo:map_of_structs::small");
+        Struct nested = new Struct(fixture.nestedType);
+        nested.setFieldValue("str", new StringFieldValue("small"));
+        MapFieldValue<StringFieldValue, Struct> map = new MapFieldValue<>(fixture.mapType);
+        map.put(new StringFieldValue("foo"), nested);
+        small.setFieldValue("map", map);
+        GrowableByteBuffer expected = CompressionFixture.asSerialized(small);
+
+        Document large = new Document(fixture.docType, "id:foo:map_of_structs::large");
+        Struct largeNested = new Struct(fixture.nestedType);
+        largeNested.setFieldValue("str", new StringFieldValue("x".repeat(2 * 1024 * 1024)));
+        MapFieldValue<StringFieldValue, Struct> largeMap = new MapFieldValue<>(fixture.mapType);
+        for (int i = 0; i < 10; i++)
+            largeMap.put(new StringFieldValue("key" + i), i == 0 ? largeNested : nested);
+        large.setFieldValue("map", largeMap);
+        assertEquals(large, fixture.roundtripSerialize(large));
+
+        assertEquals(expected, CompressionFixture.asSerialized(small));
+        assertEquals(small, fixture.roundtripSerialize(small));
+    }
+
+    @Test
+    public void lazily_deserialized_fields_are_deserialized_on_access_and_copied_when_untouched() {
+        DocumentType docType = new DocumentType("lazy_type");
+        StructDataType nestedType = new StructDataType("lazy_nested");
+        nestedType.addField(new Field("str", DataType.STRING));
+        MapDataType mapType = new MapDataType(DataType.STRING, nestedType);
+        docType.addField(new Field("map", mapType));
+        docType.addField(new Field("my_str", DataType.STRING));
+        docType.addField(new Field("my_int", DataType.INT));
+        DocumentTypeManager manager = new DocumentTypeManager();
+        manager.registerDocumentType(docType);
+
+        Document doc = new Document(docType, "id:foo:lazy_type::lazy");
+        Struct nested = new Struct(nestedType);
+        nested.setFieldValue("str", new StringFieldValue("nested"));
+        MapFieldValue<StringFieldValue, Struct> map = new MapFieldValue<>(mapType);
+        map.put(new StringFieldValue("foo"), nested);
+        map.put(new StringFieldValue("bar"), nested);
+        doc.setFieldValue("map", map);
+        doc.setFieldValue("my_str", new StringFieldValue("lazy"));
+        doc.setFieldValue("my_int", new IntegerFieldValue(42));
+        GrowableByteBuffer serialized = CompressionFixture.asSerialized(doc);
+
+        Document lazy = new Document(new VespaDocumentDeserializerHead(manager, serialized, true));
+        Field intField = docType.getField("my_int");
+        Field mapField = docType.getField("map");
+        assertNotNull(lazy.getHeader().getSerializedFieldValue(intField));
+        assertNotNull(lazy.getHeader().getSerializedFieldValue(mapField));
+
+        assertEquals(new IntegerFieldValue(42), lazy.getFieldValue(intField));
+        assertNull(lazy.getHeader().getSerializedFieldValue(intField));
+        assertNotNull(lazy.getHeader().getSerializedFieldValue(mapField));
+
+        serialized.flip();
+        assertEquals(serialized, CompressionFixture.asSerialized(lazy));
+        assertNotNull("Not deserialized by serializing", lazy.getHeader().getSerializedFieldValue(mapField));
+
+        lazy.setFieldValue("my_str", new StringFieldValue("modified"));
+        doc.setFieldValue("my_str", new StringFieldValue("modified"));
+        assertEquals(doc, manager.createDocument(CompressionFixture.asSerialized(lazy)));
+        assertEquals(doc, lazy);
+        assertNull(lazy.getHeader().getSerializedFieldValue(mapField));
+    }
 }
@@ -31,6 +31,13 @@ import java.util.logging.Logger;
 final class RoutableRepository {
 
     private static final Logger log = Logger.getLogger(RoutableRepository.class.getName());
+
+    /** Encode buffers larger than this are not kept for reuse, to avoid holding on to memory after large messages */
+    private static final int maxReusedEncodeBufferSize = 1024 * 1024;
+
+    /** A buffer to encode into on each thread, which is removed while in use */
+    private static final ThreadLocal<GrowableByteBuffer> encodeBuffer = new ThreadLocal<>();
+
     private final CopyOnWriteHashMap<Integer, VersionMap> factoryTypes = new CopyOnWriteHashMap<>();
     private final CopyOnWriteHashMap<CacheKey, RoutableFactory> cache = new CopyOnWriteHashMap<>();
     private LoadTypeSet loadTypes;
@@ -97,18 +104,31 @@ final class RoutableRepository {
             log.log(Level.SEVERE,"Can not encode routable type " + type + " (version " + version + "). Only major version 5 and up supported.");
             return new byte[0];
         }
-        DocumentSerializer out= DocumentSerializerFactory.createHead(new GrowableByteBuffer(8192));
+        GrowableByteBuffer buffer = encodeBuffer.get();
+        if (buffer == null)
+            buffer = new GrowableByteBuffer(8192);
+        else
+            encodeBuffer.remove();
+        try {
+            DocumentSerializer out = DocumentSerializerFactory.createHead(buffer);
 
-        out.putInt(null, type);
-        if (!factory.encode(obj, out)) {
-            log.log(Level.SEVERE, "Routable factory " + factory.getClass().getName() + " failed to serialize " +
-                                    "routable of type " + type + " (version " + version + ").");
-            return new byte[0];
+            out.putInt(null, type);
+            if (!factory.encode(obj, out)) {
+                log.log(Level.SEVERE, "Routable factory " + factory.getClass().getName() + " failed to serialize " +
+                                        "routable of type " + type + " (version " + version + ").");
+                return new byte[0];
+            }
+            byte[] ret = new byte[out.getBuf().position()];
+            out.getBuf().rewind();
+            out.getBuf().get(ret);
+            return ret;
+        }
+        finally {
+            if (buffer.capacity() <= maxReusedEncodeBufferSize) {
+                buffer.clear();
+                encodeBuffer.set(buffer);
+            }
         }
-        byte[] ret = new byte[out.getBuf().position()];
-        out.getBuf().rewind();
-        out.getBuf().get(ret);
-        return ret;
     }
 
     /**
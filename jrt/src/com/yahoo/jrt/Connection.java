@@ -50,6 +50,7 @@ class Connection extends Target {
     private final boolean server;
     private final AtomicLong requestId = new AtomicLong(0);
     private SelectionKey selectionKey;
+    private ByteBuffer[] pendingChunks = null;
     private Exception lostReason = null;
 
     private void setState(int state) {
@@ -327,17 +328,32 @@ class Connection extends Target {
             queue.flush(myQueue);
         }
         for (int i = 0; i < WRITE_REDO; i++) {
-            while (output.bytes() < WRITE_SIZE) {
+            while (pendingChunks == null && output.bytes() < WRITE_SIZE) {
                 Packet packet = (Packet) myQueue.dequeue();
                 if (packet == null) {
                     break;
                 }
                 PacketInfo info = packet.getPacketInfo();
-                ByteBuffer wb = output.getWritable(info.packetLength());
                 owner.writePacket(info);
-                info.encodePacket(packet, wb);
+                pendingChunks = info.encodePacketChunks(packet);
+                if (pendingChunks == null) {
+                    ByteBuffer wb = output.getWritable(info.packetLength());
+                    info.encodePacket(packet, wb);
+                }
             }
             ByteBuffer rb = output.getChannelReadable();
+            if (pendingChunks != null && rb.remaining() == output.bytes()) {
+                // write buffered output followed by the packet referencing large data values, without copying them
+                ByteBuffer[] srcs = new ByteBuffer[pendingChunks.length + 1];
+                srcs[0] = rb;
+                System.arraycopy(pendingChunks, 0, srcs, 1, pendingChunks.length);
+                socket.write(srcs);
+                if (pendingChunks[pendingChunks.length - 1].remaining() > 0) {
+                    break;
+                }
+                pendingChunks = null;
+                continue;
+            }
             if (rb.remaining() == 0) {
                 break;
             }
@@ -347,7 +363,7 @@ class Connection extends Target {
             }
         }
         int myWriteWork = 0;
-        if (output.bytes() > 0) {
+        if (output.bytes() > 0 || pendingChunks != null) {
             myWriteWork++;
         }
         if (socket.flush() == CryptoSocket.FlushResult.NEED_WRITE) {
@@ -389,6 +405,11 @@ class Connection extends Target {
         return (state == CLOSED);
     }
 
+    /** Returns whether this has been registered with the selector of a transport thread */
+    boolean isRegistered() {
+        return selectionKey != null;
+    }
+
     public boolean hasSocket() {
         return ((socket != null) && (socket.channel() != null));
     }
@@ -82,6 +82,26 @@ public interface CryptoSocket {
      **/
     public int write(ByteBuffer src) throws IOException;
 
+    /**
+     * Called when the application has data in several buffers that
+     * it wants to write, in order. Write through the entire output
+     * pipeline. The semantics are the same as with a gathering write
+     * on a normal socket. The default implementation writes each
+     * buffer in turn.
+     **/
+    default public long write(ByteBuffer[] srcs) throws IOException {
+        long written = 0;
+        for (ByteBuffer src : srcs) {
+            if (src.hasRemaining()) {
+                written += write(src);
+                if (src.hasRemaining()) {
+                    break;
+                }
+            }
+        }
+        return written;
+    }
+
     public enum FlushResult { DONE, NEED_WRITE }
 
     /**
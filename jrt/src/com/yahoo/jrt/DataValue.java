@@ -13,7 +13,9 @@ public class DataValue extends Value
     private byte[] value;
 
     /**
-     * Create from a Java-type value
+     * Create from a Java-type value. Large values are written to the
+     * network without being copied, so the array must not be
+     * modified after it is sent.
      *
      * @param value the value
      **/
@@ -41,6 +43,17 @@ public class DataValue extends Value
         dst.putInt(value.length);
         dst.put(value);
     }
+    int referencedBytes() {
+        return PacketChunks.isReferenced(value.length) ? value.length : 0;
+    }
+    void encode(ByteBuffer dst, PacketChunks chunks) {
+        if (PacketChunks.isReferenced(value.length)) {
+            dst.putInt(value.length);
+            chunks.reference(value);
+        } else {
+            encode(dst);
+        }
+    }
 
     public byte[] asData() { return value; }
 
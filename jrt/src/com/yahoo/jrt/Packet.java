@@ -44,6 +44,20 @@ abstract class Packet
     public abstract int packetCode();
     public abstract void encode(ByteBuffer dst);
 
+    /**
+     * @return the number of bytes of this packet which are referenced rather than copied by {@link #encode(ByteBuffer, PacketChunks)}
+     **/
+    int referencedBytes() {
+        return 0;
+    }
+
+    /**
+     * Encode this packet into the given buffer, referencing large data values from the given chunks
+     **/
+    void encode(ByteBuffer dst, PacketChunks chunks) {
+        encode(dst);
+    }
+
     public PacketInfo getPacketInfo() {
         return new PacketInfo(bytes(), flags, packetCode(), requestId);
     }
@@ -0,0 +1,82 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * The encoded form of a packet as a sequence of buffers, to be
+ * written by a single gathering write. Large data values are
+ * referenced as separate buffers rather than copied, while
+ * everything else is encoded into one buffer owned by this object.
+ *
+ * @author agent
+ **/
+class PacketChunks
+{
+    /**
+     * Data values of at least this many bytes are referenced rather
+     * than copied when encoding a packet
+     **/
+    static final int MIN_REFERENCED_SIZE = 16384;
+
+    private final ByteBuffer buffer;
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private int chunkStart = 0;
+
+    /**
+     * Create an object holding the given number of bytes which are
+     * copied, rather than referenced, when the packet is encoded
+     *
+     * @param copiedBytes the number of bytes which are copied
+     **/
+    PacketChunks(int copiedBytes) {
+        buffer = ByteBuffer.allocate(copiedBytes);
+    }
+
+    /**
+     * @return the buffer copied parts of the packet are encoded into
+     **/
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Reference the given data as the next part of the packet,
+     * following what has been encoded into the buffer so far
+     *
+     * @param data the data to reference
+     **/
+    void reference(byte[] data) {
+        endChunk();
+        chunks.add(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * @return the buffers holding the encoded packet, in order
+     **/
+    ByteBuffer[] toArray() {
+        endChunk();
+        return chunks.toArray(new ByteBuffer[0]);
+    }
+
+    private void endChunk() {
+        if (buffer.position() > chunkStart) {
+            ByteBuffer chunk = buffer.duplicate();
+            chunk.position(chunkStart);
+            chunk.limit(buffer.position());
+            chunks.add(chunk);
+            chunkStart = buffer.position();
+        }
+    }
+
+    /**
+     * @return whether data of the given size is referenced rather than copied
+     **/
+    static boolean isReferenced(int size) {
+        return size >= MIN_REFERENCED_SIZE;
+    }
+}
@@ -85,8 +85,29 @@ class PacketInfo
     }
 
     public void encodePacket(Packet packet, ByteBuffer dst) {
+        encodePacket(packet, dst, null, packetLength);
+    }
+
+    /**
+     * Encode the given packet as a sequence of buffers where large
+     * data values are referenced rather than copied.
+     *
+     * @return the buffers holding the packet, or null if it holds no
+     *         data values large enough to be referenced
+     **/
+    public ByteBuffer[] encodePacketChunks(Packet packet) {
+        int referencedBytes = packet.referencedBytes();
+        if (referencedBytes == 0) {
+            return null;
+        }
+        PacketChunks chunks = new PacketChunks(packetLength - referencedBytes);
+        encodePacket(packet, chunks.buffer(), chunks, packetLength - referencedBytes);
+        return chunks.toArray();
+    }
+
+    private void encodePacket(Packet packet, ByteBuffer dst, PacketChunks chunks, int copiedLength) {
         int pos = dst.position();
-        int end = pos + packetLength;
+        int end = pos + copiedLength;
         int limit = dst.limit();
         try {
             dst.limit(end);
@@ -97,7 +118,11 @@ class PacketInfo
             if (reverseByteOrder()) {
                 dst.order(ByteOrder.LITTLE_ENDIAN);
             }
-            packet.encode(dst);
+            if (chunks == null) {
+                packet.encode(dst);
+            } else {
+                packet.encode(dst, chunks);
+            }
         } catch (RuntimeException e) {
             dst.position(pos);
             throw e;
@@ -36,6 +36,14 @@ class ReplyPacket extends Packet
         returnValues.encode(dst);
     }
 
+    int referencedBytes() {
+        return returnValues.referencedBytes();
+    }
+
+    void encode(ByteBuffer dst, PacketChunks chunks) {
+        returnValues.encode(dst, chunks);
+    }
+
     public Values returnValues() {
         return returnValues;
     }
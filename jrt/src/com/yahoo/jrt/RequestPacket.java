@@ -42,6 +42,15 @@ class RequestPacket extends Packet
         parameters.encode(dst);
     }
 
+    int referencedBytes() {
+        return parameters.referencedBytes();
+    }
+
+    void encode(ByteBuffer dst, PacketChunks chunks) {
+        methodName.encode(dst);
+        parameters.encode(dst, chunks);
+    }
+
     public String methodName() {
         return methodName.asString();
     }
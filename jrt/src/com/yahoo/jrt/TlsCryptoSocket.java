@@ -210,6 +210,19 @@ public class TlsCryptoSocket implements CryptoSocket {
         return totalBytesWrapped;
     }
 
+    @Override
+    public long write(ByteBuffer[] srcs) throws IOException {
+        verifyHandshakeCompleted();
+        if (flush() == FlushResult.NEED_WRITE) return 0;
+        long totalBytesWrapped = 0;
+        int bytesWrapped;
+        do {
+            bytesWrapped = applicationDataWrap(srcs);
+            totalBytesWrapped += bytesWrapped;
+        } while (bytesWrapped > 0 && wrapBuffer.bytes() < sessionPacketBufferSize);
+        return totalBytesWrapped;
+    }
+
     @Override
     public FlushResult flush() throws IOException {
         verifyHandshakeCompleted();
@@ -247,8 +260,8 @@ public class TlsCryptoSocket implements CryptoSocket {
         }
     }
 
-    private int applicationDataWrap(ByteBuffer src) throws IOException {
-        SSLEngineResult result = sslEngineWrap(src);
+    private int applicationDataWrap(ByteBuffer... srcs) throws IOException {
+        SSLEngineResult result = sslEngineWrap(srcs);
         if (result.getHandshakeStatus() != HandshakeStatus.NOT_HANDSHAKING) throw new SSLException("Renegotiation detected");
         switch (result.getStatus()) {
             case OK:
@@ -260,8 +273,8 @@ public class TlsCryptoSocket implements CryptoSocket {
         }
     }
 
-    private SSLEngineResult sslEngineWrap(ByteBuffer src) throws IOException {
-        SSLEngineResult result = sslEngine.wrap(src, wrapBuffer.getWritable(sessionPacketBufferSize));
+    private SSLEngineResult sslEngineWrap(ByteBuffer... srcs) throws IOException {
+        SSLEngineResult result = sslEngine.wrap(srcs, wrapBuffer.getWritable(sessionPacketBufferSize));
         if (result.getStatus() == Status.CLOSED) throw new ClosedChannelException();
         return result;
     }
@@ -4,6 +4,8 @@ package com.yahoo.jrt;
 
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
@@ -41,7 +43,8 @@ public class Transport {
      * @param name used for identifying threads
      * @param fatalHandler fatal error handler
      * @param cryptoEngine crypto engine to use
-     * @param numThreads number of {@link TransportThread}s.
+     * @param numThreads number of {@link TransportThread}s, or 0 to size this by the number of cores,
+     *                   see {@link #defaultNumThreads}
      **/
     public Transport(String name, FatalErrorHandler fatalHandler, CryptoEngine cryptoEngine, int numThreads, boolean tcpNoDelay) {
         this.name = name;
@@ -50,6 +53,9 @@ public class Transport {
         this.tcpNoDelay = tcpNoDelay;
         connector = new Connector();
         worker = new Worker(this);
+        if (numThreads <= 0) {
+            numThreads = defaultNumThreads();
+        }
         runCnt = new AtomicInteger(numThreads);
         for (int i = 0; i < numThreads; ++i) {
             threads.add(new TransportThread(this, i));
@@ -58,17 +64,47 @@ public class Transport {
     public Transport(String name, CryptoEngine cryptoEngine, int numThreads) { this(name, null, cryptoEngine, numThreads, true); }
     public Transport(String name, int numThreads) { this(name, null, CryptoEngine.createDefault(), numThreads, true); }
     public Transport(String name, int numThreads, boolean tcpNoDelay) { this(name, null, CryptoEngine.createDefault(), numThreads, tcpNoDelay); }
-    public Transport(String name) { this(name, null, CryptoEngine.createDefault(), 1, true); }
+    public Transport(String name) { this(name, null, CryptoEngine.createDefault(), 0, true); }
     // Only for testing
     public Transport() { this("default"); }
 
     /**
-     * Select a random transport thread
+     * Returns the number of transport threads used when no number is given: One per eight cores, between 1 and 8.
+     *
+     * @return the default number of transport threads
+     **/
+    public static int defaultNumThreads() {
+        return Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors() / 8));
+    }
+
+    /**
+     * Select a transport thread, for example to handle a new
+     * connection. The least loaded of two random threads is chosen,
+     * where load is recent event loop utilization, and then the
+     * number of connections handled.
      *
-     * @return a random transport thread
+     * @return a lightly loaded transport thread
      **/
     public TransportThread selectThread() {
-        return threads.get(rnd.nextInt(threads.size()));
+        if (threads.size() == 1) {
+            return threads.get(0);
+        }
+        TransportThread a = threads.get(rnd.nextInt(threads.size()));
+        TransportThread b = threads.get(rnd.nextInt(threads.size()));
+        double utilizationDifference = a.recentUtilization() - b.recentUtilization();
+        if (Math.abs(utilizationDifference) > 0.1) {
+            return utilizationDifference < 0 ? a : b;
+        }
+        return a.connectionCount() <= b.connectionCount() ? a : b;
+    }
+
+    /** Returns the number of transport threads of this */
+    public int numThreads() {
+        return threads.size();
+    }
+
+    List<TransportThread> threads() {
+        return Collections.unmodifiableList(threads);
     }
 
     boolean getTcpNoDelay() { return tcpNoDelay; }
@@ -1,6 +1,11 @@
 // Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.jrt;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.ToLongFunction;
 
@@ -19,6 +24,7 @@ public class TransportMetrics {
     private final AtomicLong clientTlsConnectionsEstablished = new AtomicLong(0);
     private final AtomicLong serverUnencryptedConnectionsEstablished = new AtomicLong(0);
     private final AtomicLong clientUnencryptedConnectionsEstablished = new AtomicLong(0);
+    private final Set<TransportThread> threads = ConcurrentHashMap.newKeySet();
 
     private TransportMetrics() {}
 
@@ -48,8 +54,21 @@ public class TransportMetrics {
         return clientUnencryptedConnectionsEstablished.get();
     }
 
+    /** Returns the fraction of time each transport thread has spent handling events, rather than waiting for them */
+    public Map<String, Double> eventLoopUtilization() {
+        return snapshot().eventLoopUtilization();
+    }
+
     public Snapshot snapshot() { return new Snapshot(this); }
 
+    void addThread(TransportThread thread) {
+        threads.add(thread);
+    }
+
+    void removeThread(TransportThread thread) {
+        threads.remove(thread);
+    }
+
     void incrementTlsCertificateVerificationFailures() {
         tlsCertificateVerificationFailures.incrementAndGet();
     }
@@ -83,11 +102,43 @@ public class TransportMetrics {
                 ", clientTlsConnectionsEstablished=" + clientTlsConnectionsEstablished +
                 ", serverUnencryptedConnectionsEstablished=" + serverUnencryptedConnectionsEstablished +
                 ", clientUnencryptedConnectionsEstablished=" + clientUnencryptedConnectionsEstablished +
+                ", threads=" + threads.size() +
                 '}';
     }
 
+    /** Time spent by a transport thread handling events, out of the total time it has existed */
+    public static class EventLoopUsage {
+
+        private final long busyNanos;
+        private final long totalNanos;
+
+        public EventLoopUsage(long busyNanos, long totalNanos) {
+            this.busyNanos = busyNanos;
+            this.totalNanos = totalNanos;
+        }
+
+        public long busyNanos() { return busyNanos; }
+        public long totalNanos() { return totalNanos; }
+
+        /** Returns busy time as a fraction of the total time, or 0 if no time has passed */
+        public double utilization() { return totalNanos <= 0 ? 0 : (double)busyNanos / totalNanos; }
+
+        EventLoopUsage plus(EventLoopUsage other) {
+            return new EventLoopUsage(busyNanos + other.busyNanos, totalNanos + other.totalNanos);
+        }
+
+        EventLoopUsage minus(EventLoopUsage other) {
+            return new EventLoopUsage(busyNanos - other.busyNanos, totalNanos - other.totalNanos);
+        }
+
+        @Override
+        public String toString() {
+            return "EventLoopUsage{busyNanos=" + busyNanos + ", totalNanos=" + totalNanos + '}';
+        }
+    }
+
     public static class Snapshot {
-        public static final Snapshot EMPTY = new Snapshot(0, 0, 0, 0, 0, 0);
+        public static final Snapshot EMPTY = new Snapshot(0, 0, 0, 0, 0, 0, Map.of());
 
         private final long tlsCertificateVerificationFailures;
         private final long peerAuthorizationFailures;
@@ -95,6 +146,7 @@ public class TransportMetrics {
         private final long clientTlsConnectionsEstablished;
         private final long serverUnencryptedConnectionsEstablished;
         private final long clientUnencryptedConnectionsEstablished;
+        private final Map<String, EventLoopUsage> eventLoopUsage;
 
         private Snapshot(TransportMetrics metrics) {
             this(metrics.tlsCertificateVerificationFailures.get(),
@@ -102,7 +154,8 @@ public class TransportMetrics {
                  metrics.serverTlsConnectionsEstablished.get(),
                  metrics.clientTlsConnectionsEstablished.get(),
                  metrics.serverUnencryptedConnectionsEstablished.get(),
-                 metrics.clientUnencryptedConnectionsEstablished.get());
+                 metrics.clientUnencryptedConnectionsEstablished.get(),
+                 eventLoopUsage(metrics.threads));
         }
 
         private Snapshot(long tlsCertificateVerificationFailures,
@@ -110,13 +163,23 @@ public class TransportMetrics {
                         long serverTlsConnectionsEstablished,
                         long clientTlsConnectionsEstablished,
                         long serverUnencryptedConnectionsEstablished,
-                        long clientUnencryptedConnectionsEstablished) {
+                        long clientUnencryptedConnectionsEstablished,
+                        Map<String, EventLoopUsage> eventLoopUsage) {
             this.tlsCertificateVerificationFailures = tlsCertificateVerificationFailures;
             this.peerAuthorizationFailures = peerAuthorizationFailures;
             this.serverTlsConnectionsEstablished = serverTlsConnectionsEstablished;
             this.clientTlsConnectionsEstablished = clientTlsConnectionsEstablished;
             this.serverUnencryptedConnectionsEstablished = serverUnencryptedConnectionsEstablished;
             this.clientUnencryptedConnectionsEstablished = clientUnencryptedConnectionsEstablished;
+            this.eventLoopUsage = Collections.unmodifiableMap(eventLoopUsage);
+        }
+
+        /** Threads with the same name, e.g. from transports which are replaced, are merged */
+        private static Map<String, EventLoopUsage> eventLoopUsage(Set<TransportThread> threads) {
+            Map<String, EventLoopUsage> usage = new TreeMap<>();
+            for (TransportThread thread : threads)
+                usage.merge(thread.name(), new EventLoopUsage(thread.busyNanos(), thread.aliveNanos()), EventLoopUsage::plus);
+            return usage;
         }
 
         public long tlsCertificateVerificationFailures() { return tlsCertificateVerificationFailures; }
@@ -125,6 +188,14 @@ public class TransportMetrics {
         public long clientTlsConnectionsEstablished() { return clientTlsConnectionsEstablished; }
         public long serverUnencryptedConnectionsEstablished() { return serverUnencryptedConnectionsEstablished; }
         public long clientUnencryptedConnectionsEstablished() { return clientUnencryptedConnectionsEstablished; }
+        public Map<String, EventLoopUsage> eventLoopUsage() { return eventLoopUsage; }
+
+        /** Returns the event loop utilization of each transport thread, by thread name */
+        public Map<String, Double> eventLoopUtilization() {
+            Map<String, Double> utilization = new TreeMap<>();
+            eventLoopUsage.forEach((name, usage) -> utilization.put(name, usage.utilization()));
+            return utilization;
+        }
 
         public Snapshot changesSince(Snapshot base) {
             return new Snapshot(
@@ -133,7 +204,17 @@ public class TransportMetrics {
                 changesSince(base, Snapshot::serverTlsConnectionsEstablished),
                 changesSince(base, Snapshot::clientTlsConnectionsEstablished),
                 changesSince(base, Snapshot::serverUnencryptedConnectionsEstablished),
-                changesSince(base, Snapshot::clientUnencryptedConnectionsEstablished));
+                changesSince(base, Snapshot::clientUnencryptedConnectionsEstablished),
+                eventLoopUsageSince(base));
+        }
+
+        private Map<String, EventLoopUsage> eventLoopUsageSince(Snapshot base) {
+            Map<String, EventLoopUsage> usage = new TreeMap<>();
+            eventLoopUsage.forEach((name, current) -> {
+                EventLoopUsage previous = base.eventLoopUsage.get(name);
+                usage.put(name, previous == null || previous.totalNanos() > current.totalNanos() ? current : current.minus(previous));
+            });
+            return usage;
         }
 
         private long changesSince(Snapshot base, ToLongFunction<Snapshot> metricProperty) {
@@ -149,6 +230,7 @@ public class TransportMetrics {
                     ", clientTlsConnectionsEstablished=" + clientTlsConnectionsEstablished +
                     ", serverUnencryptedConnectionsEstablished=" + serverUnencryptedConnectionsEstablished +
                     ", clientUnencryptedConnectionsEstablished=" + clientUnencryptedConnectionsEstablished +
+                    ", eventLoopUsage=" + eventLoopUsage +
                     '}';
         }
     }
@@ -7,6 +7,8 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -70,6 +72,9 @@ public class TransportThread {
 
     private static Logger log = Logger.getLogger(TransportThread.class.getName());
 
+    /** The interval at which the recent utilization of the event loop is updated */
+    private static final long utilizationSampleNanos = TimeUnit.SECONDS.toNanos(1);
+
     private final Transport parent;
     private final Thread    thread;
     private final Queue     queue;
@@ -77,6 +82,12 @@ public class TransportThread {
     private final Scheduler scheduler;
     private int             state;
     private final Selector  selector;
+    private final AtomicInteger connections = new AtomicInteger(0);
+    private final long      startNanos;
+    private volatile long   busyNanos = 0;
+    private volatile double recentUtilization = 0;
+    private long            utilizationSampleStart;
+    private long            utilizationSampleBusyNanos = 0;
 
     private void handleAddConnection(Connection conn) {
         if (conn.isClosed()) {
@@ -85,7 +96,9 @@ public class TransportThread {
             }
             return;
         }
-        if (!conn.init(selector)) {
+        if (conn.init(selector)) {
+            connections.incrementAndGet();
+        } else {
             handleCloseConnection(conn);
         }
     }
@@ -94,6 +107,9 @@ public class TransportThread {
         if (conn.isClosed()) {
             return;
         }
+        if (conn.isRegistered()) {
+            connections.decrementAndGet();
+        }
         conn.fini();
         if (conn.hasSocket()) {
             parent.closeLater(conn);
@@ -174,11 +190,14 @@ public class TransportThread {
         myQueue   = new Queue();
         scheduler = new Scheduler(System.currentTimeMillis());
         state     = OPEN;
+        startNanos = System.nanoTime();
+        utilizationSampleStart = startNanos;
         try {
             selector = Selector.open();
         } catch (Exception e) {
             throw new Error("Could not open transport selector", e);
         }
+        parent.metrics().addThread(this);
         thread.setDaemon(true);
         thread.start();
     }
@@ -187,6 +206,44 @@ public class TransportThread {
         return parent;
     }
 
+    /** Returns the name of the thread running this */
+    String name() {
+        return thread.getName();
+    }
+
+    /** Returns the number of connections currently handled by this */
+    int connectionCount() {
+        return connections.get();
+    }
+
+    /** Returns the number of nanoseconds this has spent handling events, rather than waiting for them */
+    long busyNanos() {
+        return busyNanos;
+    }
+
+    /** Returns the number of nanoseconds since this was created */
+    long aliveNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /** Returns the fraction of time spent handling events recently, a number between 0 and 1 */
+    double recentUtilization() {
+        return recentUtilization;
+    }
+
+    private void updateUtilization(long busyNanosInLoop, long now) {
+        long busyNanos = this.busyNanos + busyNanosInLoop;
+        this.busyNanos = busyNanos; // only written by this thread
+        long elapsed = now - utilizationSampleStart;
+        if (elapsed < utilizationSampleNanos) {
+            return;
+        }
+        double utilization = (busyNanos - utilizationSampleBusyNanos) / (double)elapsed;
+        recentUtilization = (recentUtilization + utilization) / 2;
+        utilizationSampleStart = now;
+        utilizationSampleBusyNanos = busyNanos;
+    }
+
     /**
      * Proxy method used to dispatch fatal errors to the enclosing
      * Transport.
@@ -299,6 +356,7 @@ public class TransportThread {
             } catch (IOException e) {
                 log.log(Level.WARNING, "error during select", e);
             }
+            long selected = System.nanoTime();
 
             // handle internal events
             handleEvents();
@@ -316,6 +374,9 @@ public class TransportThread {
 
             // check scheduled tasks
             scheduler.checkTasks(System.currentTimeMillis());
+
+            long done = System.nanoTime();
+            updateUtilization(done - selected, done);
         }
         synchronized (this) {
             state = CLOSED;
@@ -328,6 +389,7 @@ public class TransportThread {
             handleCloseConnection(conn);
         }
         try { selector.close(); } catch (Exception e) {}
+        parent.metrics().removeThread(this);
         parent.notifyDone(this);
     }
 
@@ -100,6 +100,24 @@ public abstract class Value
      **/
     abstract void encode(ByteBuffer dst);
 
+    /**
+     * Determine the number of bytes of this value which are
+     * referenced rather than copied when encoded with {@link
+     * #encode(ByteBuffer, PacketChunks)}
+     *
+     * @return number of referenced bytes
+     **/
+    int referencedBytes() { return 0; }
+
+    /**
+     * Encode this value into the given buffer, or reference it from
+     * the given chunks if it is large
+     *
+     * @param dst where to encode this value
+     * @param chunks where to reference large data
+     **/
+    void encode(ByteBuffer dst, PacketChunks chunks) { encode(dst); }
+
     /**
      * Decode a value from the given buffer. This method also acts as
      * a factory for value objects
@@ -99,6 +99,32 @@ public class Values
      * @param dst where to encode this value sequence
      **/
     void encode(ByteBuffer dst) {
+        encode(dst, null);
+    }
+
+    /**
+     * Determine the number of bytes of this value sequence which are
+     * referenced rather than copied when encoded with {@link
+     * #encode(ByteBuffer, PacketChunks)}
+     *
+     * @return number of referenced bytes
+     **/
+    int referencedBytes() {
+        int bytes = 0;
+        for (int i = 0; i < values.size(); i++) {
+            bytes += get(i).referencedBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Encode this value sequence into the given buffer, referencing
+     * large data values from the given chunks, if any
+     *
+     * @param dst where to encode this value sequence
+     * @param chunks where to reference large data values, or null to copy everything into dst
+     **/
+    void encode(ByteBuffer dst, PacketChunks chunks) {
         byte[] types = new byte[values.size()];
         for (int i = 0; i < types.length; i++) {
             types[i] = get(i).type();
@@ -106,7 +132,11 @@ public class Values
         dst.putInt(types.length);
         dst.put(types);
         for (int i = 0; i < types.length; i++) {
-            get(i).encode(dst);
+            if (chunks == null) {
+                get(i).encode(dst);
+            } else {
+                get(i).encode(dst, chunks);
+            }
         }
     }
 
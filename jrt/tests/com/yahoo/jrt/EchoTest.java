@@ -10,7 +10,10 @@ import org.junit.runners.Parameterized.Parameter;
 import org.junit.runners.Parameterized.Parameters;
 
 import java.security.cert.X509Certificate;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static com.yahoo.jrt.CryptoUtils.createTestTlsContext;
 import static org.junit.Assert.assertEquals;
@@ -171,4 +174,41 @@ public class EchoTest {
             assertNull(securityContext);
         }
     }
+
+    @org.junit.Test
+    public void testEchoLargeData() throws InterruptedException {
+        server.addMethod(new Method("echo_data", "*", "*", req -> {
+            for (int i = 0; i < req.parameters().size(); i++) {
+                req.returnValues().add(req.parameters().get(i));
+            }
+        }));
+        byte[][] data = { new byte[20000], new byte[300000], new byte[5], new byte[1 << 20] };
+        for (int i = 0; i < data.length; i++) {
+            for (int j = 0; j < data[i].length; j++) {
+                data[i][j] = (byte)(i + j);
+            }
+        }
+        Request[] reqs = new Request[8];
+        CountDownLatch done = new CountDownLatch(reqs.length);
+        for (int i = 0; i < reqs.length; i++) {
+            reqs[i] = new Request("echo_data");
+            reqs[i].parameters().add(new Int32Value(i));
+            for (byte[] value : data) {
+                reqs[i].parameters().add(new DataValue(value));
+            }
+            target.invokeAsync(reqs[i], 60.0, req -> done.countDown());
+        }
+        Request last = new Request("echo_data");
+        last.parameters().add(new StringValue("after"));
+        target.invokeSync(last, 60.0);
+        assertEquals("after", last.returnValues().get(0).asString());
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        for (int i = 0; i < reqs.length; i++) {
+            assertTrue(reqs[i].errorMessage(), reqs[i].checkReturnTypes("ixxxx"));
+            assertEquals(i, reqs[i].returnValues().get(0).asInt32());
+            for (int j = 0; j < data.length; j++) {
+                assertTrue(Arrays.equals(data[j], reqs[i].returnValues().get(j + 1).asData()));
+            }
+        }
+    }
 }
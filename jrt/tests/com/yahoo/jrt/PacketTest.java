@@ -122,4 +122,42 @@ public class PacketTest {
         assertEquals(errStr, ((ErrorPacket)packet2).errorMessage());
     }
 
+    @org.junit.Test
+    public void testLargeDataIsReferencedWhenEncodingChunks() {
+        byte[] large = new byte[PacketChunks.MIN_REFERENCED_SIZE];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte)i;
+        }
+        Values ret = new Values();
+        ret.add(new Int32Value(1));
+        ret.add(new DataValue(large));
+        ret.add(new DataValue(new byte[] { 1, 2, 3 }));
+        ret.add(new DataValue(large));
+        ret.add(new StringValue("last"));
+
+        for (int flags : new int[] { 0, Packet.FLAG_REVERSE }) {
+            Packet packet = new ReplyPacket(flags, 42, ret);
+            PacketInfo info = packet.getPacketInfo();
+            ByteBuffer ref = ByteBuffer.allocate(info.packetLength());
+            info.encodePacket(packet, ref);
+            ref.flip();
+
+            ByteBuffer[] chunks = info.encodePacketChunks(packet);
+            assertEquals(5, chunks.length);
+            assertTrue(chunks[1].array() == large);
+            assertTrue(chunks[3].array() == large);
+            ByteBuffer buf = ByteBuffer.allocate(info.packetLength());
+            for (ByteBuffer chunk : chunks) {
+                buf.put(chunk);
+            }
+            buf.flip();
+            assertTrue(buf.equals(ref));
+        }
+
+        Values small = new Values();
+        small.add(new DataValue(new byte[PacketChunks.MIN_REFERENCED_SIZE - 1]));
+        Packet packet = new ReplyPacket(0, 42, small);
+        assertTrue(packet.getPacketInfo().encodePacketChunks(packet) == null);
+    }
+
 }
@@ -0,0 +1,78 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class TransportTest {
+
+    @org.junit.Test
+    public void testDefaultNumThreads() {
+        int numThreads = Transport.defaultNumThreads();
+        assertTrue(numThreads >= 1 && numThreads <= 8);
+        Transport transport = new Transport("default-threads");
+        assertEquals(numThreads, transport.numThreads());
+        transport.shutdown().join();
+    }
+
+    @org.junit.Test
+    public void testConnectionsAreSpreadOverThreads() throws ListenFailedException {
+        Transport server = new Transport("spread-server", 4);
+        Transport client = new Transport("spread-client", 1);
+        Supervisor serverOrb = new Supervisor(server);
+        Supervisor clientOrb = new Supervisor(client);
+        Acceptor acceptor = serverOrb.listen(new Spec(0));
+
+        List<Target> targets = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            Target target = clientOrb.connect(new Spec("localhost", acceptor.port()));
+            Request request = new Request("frt.rpc.ping");
+            target.invokeSync(request, 60.0);
+            assertTrue(request.errorMessage(), ! request.isError());
+            targets.add(target);
+        }
+
+        int total = 0;
+        int maxPerThread = 0;
+        for (TransportThread thread : server.threads()) {
+            total += thread.connectionCount();
+            maxPerThread = Math.max(maxPerThread, thread.connectionCount());
+        }
+        assertEquals(16, total);
+        assertTrue("Connections are spread over threads", maxPerThread < 16);
+
+        for (Target target : targets)
+            target.close();
+        acceptor.shutdown().join();
+        client.shutdown().join();
+        server.shutdown().join();
+    }
+
+    @org.junit.Test
+    public void testEventLoopUtilizationIsReported() {
+        TransportMetrics.Snapshot before = TransportMetrics.getInstance().snapshot();
+        Transport transport = new Transport("utilization", 2);
+        try { Thread.sleep(200); } catch (InterruptedException e) {}
+
+        TransportMetrics.Snapshot changes = TransportMetrics.getInstance().snapshot().changesSince(before);
+        for (String name : List.of("utilization.jrt-transport.0", "utilization.jrt-transport.1")) {
+            TransportMetrics.EventLoopUsage usage = changes.eventLoopUsage().get(name);
+            assertTrue(name + " in " + changes, usage != null);
+            assertTrue(usage.totalNanos() > 0);
+            assertTrue(usage.busyNanos() >= 0 && usage.busyNanos() <= usage.totalNanos());
+        }
+        Map<String, Double> utilization = TransportMetrics.getInstance().eventLoopUtilization();
+        assertTrue(utilization.get("utilization.jrt-transport.0") <= 1.0);
+
+        transport.shutdown().join();
+        assertTrue(! TransportMetrics.getInstance().snapshot().eventLoopUsage().containsKey("utilization.jrt-transport.0"));
+    }
+
+}
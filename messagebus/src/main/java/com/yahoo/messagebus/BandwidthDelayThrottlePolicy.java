@@ -0,0 +1,276 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus;
+
+import com.yahoo.concurrent.SystemTimer;
+import com.yahoo.concurrent.Timer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This is an implementation of the {@link ThrottlePolicy} which limits the number of pending messages to the
+ * product of the bottleneck bandwidth and the minimum round trip time of the messages sent, in the style of
+ * the BBR congestion control algorithm of TCP.
+ *
+ * The bandwidth is estimated as the max rate at which replies were received over the last ten rounds, where a
+ * round is the time it takes for a message to be replied to, and the min round trip time is the least one
+ * seen over the last ten seconds. The window starts small and grows exponentially until the bandwidth stops
+ * increasing. After this it cycles through rounds which probe for more bandwidth and rounds which drain the queue
+ * that built up, and occasionally shrinks to the min window size for a short while to measure the min round trip
+ * time without any queueing. This keeps the throughput steady while bounding the latency added by queueing to
+ * about the window gain times the min round trip time, also when the receivers slow down.
+ *
+ * <b>NOTE:</b> By context, "pending" is refering to the number of sent messages that have not been replied to yet.
+ *
+ * @author agent
+ */
+public class BandwidthDelayThrottlePolicy implements ThrottlePolicy {
+
+    /** The modes this policy cycles through, see the class comment */
+    public enum Mode { STARTUP, DRAIN, PROBE_BANDWIDTH, PROBE_RTT }
+
+    private static final double startupGain = 2 / Math.log(2);
+    private static final double[] probeBandwidthGains = { 1.25, 0.75, 1, 1, 1, 1, 1, 1 };
+    private static final int bandwidthWindowRounds = 10;
+    private static final long minRttWindowMillis = 10_000;
+    private static final long probeRttMillis = 200;
+
+    private final Timer timer;
+    private final AtomicInteger pending = new AtomicInteger(0);
+    private double windowGain = 2;
+    private double minWindowSize = 4;
+    private double maxWindowSize = Integer.MAX_VALUE;
+    private volatile double windowSize = 20;
+
+    // The state below is read without locking when messages are sent, and updated with the lock held on replies
+    private volatile long delivered = 0;
+    private volatile long deliveredTime;
+
+    private final MaxFilter bandwidth = new MaxFilter(bandwidthWindowRounds);
+    private long round = 0;
+    private long nextRoundDelivered = 0;
+    private long minRtt = Long.MAX_VALUE;
+    private long minRttTime;
+    private volatile Mode mode = Mode.STARTUP;
+    private int cycleIndex = 0;
+    private double fullBandwidth = 0;
+    private int fullBandwidthRounds = 0;
+    private boolean fullBandwidthReached = false;
+    private long probeRttDoneTime = 0;
+
+    /**
+     * Constructs a new instance of this policy.
+     */
+    public BandwidthDelayThrottlePolicy() {
+        this(SystemTimer.INSTANCE);
+    }
+
+    /**
+     * Constructs a new instance of this policy using the given clock to measure round trip times.
+     *
+     * @param timer the timer to use
+     */
+    public BandwidthDelayThrottlePolicy(Timer timer) {
+        this.timer = timer;
+        this.deliveredTime = timer.milliTime();
+        this.minRttTime = deliveredTime;
+    }
+
+    @Override
+    public boolean canSend(Message message, int pendingCount) {
+        return pendingCount < windowSize;
+    }
+
+    @Override
+    public void processMessage(Message message) {
+        int pendingBefore = pending.getAndIncrement();
+        message.setContext(new Sample(timer.milliTime(), delivered, deliveredTime, pendingBefore + 1 < windowSize));
+    }
+
+    @Override
+    public void processReply(Reply reply) {
+        pending.decrementAndGet();
+        if ( ! (reply.getContext() instanceof Sample)) return;
+
+        Sample sample = (Sample)reply.getContext();
+        long now = timer.milliTime();
+        synchronized (this) {
+            long delivered = ++this.delivered;
+            deliveredTime = now;
+
+            long rtt = Math.max(1, now - sample.sentTime);
+            boolean minRttExpired = now - minRttTime > minRttWindowMillis;
+            if (rtt < minRtt || minRttExpired) {
+                minRtt = rtt;
+                minRttTime = now;
+            }
+
+            boolean roundStart = false;
+            if (sample.delivered >= nextRoundDelivered) {
+                nextRoundDelivered = delivered;
+                round++;
+                roundStart = true;
+            }
+
+            // Messages per millisecond delivered while the sampled message was pending
+            double rate = (delivered - sample.delivered) / (double)Math.max(1, now - sample.deliveredTime);
+            if ( ! sample.applicationLimited || rate >= bandwidth.get(round))
+                bandwidth.update(round, rate);
+
+            updateMode(now, roundStart, minRttExpired);
+            windowSize = Math.min(maxWindowSize, Math.max(minWindowSize, targetWindowSize()));
+        }
+    }
+
+    private void updateMode(long now, boolean roundStart, boolean minRttExpired) {
+        if (roundStart && ! fullBandwidthReached) {
+            if (bandwidth.get(round) >= fullBandwidth * 1.25) {
+                fullBandwidth = bandwidth.get(round);
+                fullBandwidthRounds = 0;
+            }
+            else if (++fullBandwidthRounds >= 3) {
+                fullBandwidthReached = true;
+            }
+        }
+
+        if (mode == Mode.STARTUP && fullBandwidthReached)
+            mode = Mode.DRAIN;
+        if (mode == Mode.DRAIN && pending.get() <= bandwidthDelayProduct())
+            enterProbeBandwidth();
+        else if (mode == Mode.PROBE_BANDWIDTH && roundStart)
+            cycleIndex = (cycleIndex + 1) % probeBandwidthGains.length;
+
+        if (minRttExpired && mode != Mode.PROBE_RTT) {
+            mode = Mode.PROBE_RTT;
+            probeRttDoneTime = now + Math.max(probeRttMillis, minRtt);
+        }
+        else if (mode == Mode.PROBE_RTT && now >= probeRttDoneTime) {
+            minRttTime = now;
+            if (fullBandwidthReached)
+                enterProbeBandwidth();
+            else
+                mode = Mode.STARTUP;
+        }
+    }
+
+    private void enterProbeBandwidth() {
+        mode = Mode.PROBE_BANDWIDTH;
+        cycleIndex = 1; // start by draining any queue built up
+    }
+
+    private double targetWindowSize() {
+        if (bandwidth.get(round) == 0) return windowSize; // no estimate yet
+        switch (mode) {
+            case STARTUP: return startupGain * bandwidthDelayProduct();
+            case DRAIN: return bandwidthDelayProduct();
+            case PROBE_BANDWIDTH: return probeBandwidthGains[cycleIndex] * windowGain * bandwidthDelayProduct();
+            case PROBE_RTT: return minWindowSize;
+            default: throw new IllegalStateException("Unknown mode " + mode);
+        }
+    }
+
+    /** Returns the estimated number of messages which can be pending without building a queue */
+    private double bandwidthDelayProduct() {
+        return bandwidth.get(round) * minRtt;
+    }
+
+    /**
+     * Sets the factor of the bandwidth delay product to use as the window size when in steady state.
+     * A larger value gives more slack for variations in reply times, at the cost of more queueing.
+     *
+     * @param windowGain the gain to set
+     * @return this, to allow chaining
+     */
+    public BandwidthDelayThrottlePolicy setWindowGain(double windowGain) {
+        this.windowGain = windowGain;
+        return this;
+    }
+
+    /**
+     * Sets the minimium number of pending operations allowed at any time.
+     *
+     * @param min the min to set
+     * @return this, to allow chaining
+     */
+    public BandwidthDelayThrottlePolicy setMinWindowSize(double min) {
+        this.minWindowSize = min;
+        this.windowSize = Math.max(min, windowSize);
+        return this;
+    }
+
+    /**
+     * Sets the maximium number of pending operations allowed at any time, in order to avoid using too much resources.
+     *
+     * @param max the max to set
+     * @return this, to allow chaining
+     */
+    public BandwidthDelayThrottlePolicy setMaxWindowSize(double max) {
+        this.maxWindowSize = max;
+        this.windowSize = Math.min(max, windowSize);
+        return this;
+    }
+
+    /** Returns the current max number of pending messages */
+    public int getMaxPendingCount() { return (int)windowSize; }
+
+    /** Returns the current window size */
+    public double getWindowSize() { return windowSize; }
+
+    /** Returns the current mode of this */
+    public Mode getMode() { return mode; }
+
+    /** Returns the estimated bottleneck bandwidth, in messages per second */
+    public synchronized double getBottleneckBandwidth() { return bandwidth.get(round) * 1000; }
+
+    /** Returns the min round trip time seen recently, in milliseconds, or 0 if no replies were received yet */
+    public synchronized long getMinRttMillis() { return minRtt == Long.MAX_VALUE ? 0 : minRtt; }
+
+    /** The state of this when a message was sent */
+    private static class Sample {
+
+        final long sentTime;
+        final long delivered;
+        final long deliveredTime;
+        final boolean applicationLimited;
+
+        Sample(long sentTime, long delivered, long deliveredTime, boolean applicationLimited) {
+            this.sentTime = sentTime;
+            this.delivered = delivered;
+            this.deliveredTime = deliveredTime;
+            this.applicationLimited = applicationLimited;
+        }
+
+    }
+
+    /** Tracks the max value seen over a window of rounds, keeping one value per round */
+    private static class MaxFilter {
+
+        private final double[] values;
+        private final long[] rounds;
+
+        MaxFilter(int windowRounds) {
+            values = new double[windowRounds];
+            rounds = new long[windowRounds];
+        }
+
+        void update(long round, double value) {
+            int slot = (int)(round % values.length);
+            if (rounds[slot] != round) {
+                rounds[slot] = round;
+                values[slot] = value;
+            }
+            else {
+                values[slot] = Math.max(values[slot], value);
+            }
+        }
+
+        double get(long round) {
+            double max = 0;
+            for (int i = 0; i < values.length; i++)
+                if (rounds[i] > round - values.length)
+                    max = Math.max(max, values[i]);
+            return max;
+        }
+
+    }
+
+}
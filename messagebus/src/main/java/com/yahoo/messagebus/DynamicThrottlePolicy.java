@@ -3,6 +3,8 @@ package com.yahoo.messagebus;
 
 import com.yahoo.concurrent.SystemTimer;
 import com.yahoo.concurrent.Timer;
+
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -12,20 +14,22 @@ import java.util.logging.Logger;
  *
  * <b>NOTE:</b> By context, "pending" is refering to the number of sent messages that have not been replied to yet.
  *
+ * Messages and replies are counted with atomics, and a lock is only taken when the window is resized.
+ *
  * @author Simon Thoresen Hult
  */
 public class DynamicThrottlePolicy extends StaticThrottlePolicy {
 
     private static final long IDLE_TIME_MILLIS = 60000;
     private final Timer timer;
-    private int numSent = 0;
-    private int numOk = 0;
+    private final AtomicInteger numSent = new AtomicInteger(0);
+    private final AtomicInteger numOk = new AtomicInteger(0);
     private double resizeRate = 3;
     private long resizeTime = 0;
-    private long timeOfLastMessage;
+    private volatile long timeOfLastMessage;
     private double efficiencyThreshold = 1.0;
     private double windowSizeIncrement = 20;
-    private double windowSize = windowSizeIncrement;
+    private volatile double windowSize = windowSizeIncrement;
     private double minWindowSize = windowSizeIncrement;
     private double decrementFactor = 2.0;
     private double maxWindowSize = Integer.MAX_VALUE;
@@ -71,28 +75,40 @@ public class DynamicThrottlePolicy extends StaticThrottlePolicy {
              return false;
         }
         long time = timer.milliTime();
+        long timeOfLastMessage = this.timeOfLastMessage;
         double elapsed = (time - timeOfLastMessage);
         if (elapsed > IDLE_TIME_MILLIS) {
-            windowSize = Math.min(windowSize, pendingCount + windowSizeIncrement);
+            synchronized (this) {
+                windowSize = Math.min(windowSize, pendingCount + windowSizeIncrement);
+            }
+        }
+        if (time != timeOfLastMessage) { // avoid writing to memory shared by all senders for every message
+            this.timeOfLastMessage = time;
         }
-        timeOfLastMessage = time;
         return pendingCount < windowSize;
     }
 
     @Override
     public void processMessage(Message message) {
         super.processMessage(message);
-        if (++numSent < windowSize * resizeRate) {
+        if (numSent.incrementAndGet() < windowSize * resizeRate) {
             return;
         }
+        resize();
+    }
+
+    private synchronized void resize() {
+        double windowSize = this.windowSize;
+        if (numSent.get() < windowSize * resizeRate) {
+            return; // already resized by another thread
+        }
 
         long time = timer.milliTime();
         double elapsed = time - resizeTime;
         resizeTime = time;
 
-        double throughput = numOk / elapsed;
-        numSent = 0;
-        numOk = 0;
+        double throughput = numOk.getAndSet(0) / elapsed;
+        numSent.set(0);
 
 
         if (maxThroughput > 0 && throughput > maxThroughput * 0.95) {
@@ -125,13 +141,14 @@ public class DynamicThrottlePolicy extends StaticThrottlePolicy {
         }
         windowSize = Math.max(minWindowSize, windowSize);
         windowSize = Math.min(maxWindowSize, windowSize);
+        this.windowSize = windowSize;
     }
 
     @Override
     public void processReply(Reply reply) {
         super.processReply(reply);
         if ( ! reply.hasErrors()) {
-            ++numOk;
+            numOk.incrementAndGet();
         }
     }
 
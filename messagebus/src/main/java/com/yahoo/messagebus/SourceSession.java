@@ -8,9 +8,11 @@ import java.util.Deque;
 import java.util.LinkedList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * A session supporting sending new messages.
+ * A session supporting sending new messages. Sending and receiving replies do not take any locks, so a session
+ * may be shared by many sending threads. The throttle policy must therefore be thread safe.
  *
  * @author Simon Thoresen Hult
  */
@@ -19,13 +21,12 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
     private final AtomicBoolean destroyed = new AtomicBoolean(false);
     private final CountDownLatch done = new CountDownLatch(1);
     private final AtomicBoolean sendingBlockedToken = new AtomicBoolean(false);
-    private final Object lock = new Object();
     private final MessageBus mbus;
     private final Sequencer sequencer;
     private final ReplyHandler replyHandler;
     private final ThrottlePolicy throttlePolicy;
     private volatile double timeout;  // volatile only for tests
-    private volatile int pendingCount = 0;
+    private final AtomicInteger pendingCount = new AtomicInteger(0);
     private volatile boolean closed = false;
     private final Deque<BlockedMessage> blockedQ = new LinkedList<>();
     private final static class Counter {
@@ -70,9 +71,7 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
         if (destroyed.getAndSet(true)) {
             return false;
         }
-        synchronized (lock) {
-            closed = true;
-        }
+        closed = true;
         sequencer.destroy();
         mbus.sync();
         return true;
@@ -83,10 +82,8 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
      * returning, this method calls {@link #destroy()}.
      */
     public void close() {
-        synchronized (lock) {
-            closed = true;
-        }
-        if (pendingCount == 0) {
+        closed = true;
+        if (pendingCount.get() == 0) {
             done.countDown();
         }
         try {
@@ -135,31 +132,39 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
     }
 
     private Result sendInternal(Message message) {
-        synchronized (lock) {
-            if (closed) {
-                return new Result(ErrorCode.SEND_QUEUE_CLOSED,
-                                  "Source session is closed.");
-            }
-            if (throttlePolicy != null && ! throttlePolicy.canSend(message, pendingCount)) {
-                return new Result(ErrorCode.SEND_QUEUE_FULL,
-                                  "Too much pending data (" + pendingCount + " messages).");
-            }
-            message.pushHandler(replyHandler);
-            if (throttlePolicy != null) {
-                throttlePolicy.processMessage(message);
-            }
-            ++pendingCount;
+        // Take a pending slot before checking, such that concurrent senders can not exceed the throttle limits
+        int pending = pendingCount.incrementAndGet();
+        if (closed) {
+            releasePending();
+            return new Result(ErrorCode.SEND_QUEUE_CLOSED,
+                              "Source session is closed.");
+        }
+        if (throttlePolicy != null && ! throttlePolicy.canSend(message, pending - 1)) {
+            releasePending();
+            return new Result(ErrorCode.SEND_QUEUE_FULL,
+                              "Too much pending data (" + (pending - 1) + " messages).");
+        }
+        message.pushHandler(replyHandler);
+        if (throttlePolicy != null) {
+            throttlePolicy.processMessage(message);
         }
         if (message.getTrace().shouldTrace(TraceLevel.COMPONENT)) {
             message.getTrace().trace(TraceLevel.COMPONENT,
                                  "Source session accepted a " + message.getApproxSize() + " byte message. " +
-                                 pendingCount + " message(s) now pending.");
+                                 pending + " message(s) now pending.");
         }
         message.pushHandler(this);
         sequencer.handleMessage(message);
         return Result.ACCEPTED;
     }
 
+    /** Releases a pending slot, and signals any waiting close if this was the last one */
+    private void releasePending() {
+        if (pendingCount.decrementAndGet() == 0 && closed) {
+            done.countDown();
+        }
+    }
+
     @Override
     public boolean trySend() {
         if (destroyed.get()) return false;
@@ -292,18 +297,15 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
             reply.discard();
             return;
         }
-        boolean done;
-        synchronized (lock) {
-            --pendingCount;
-            if (throttlePolicy != null) {
-                throttlePolicy.processReply(reply);
-            }
-            done = (closed && pendingCount == 0);
+        if (throttlePolicy != null) {
+            throttlePolicy.processReply(reply);
         }
+        int pending = pendingCount.decrementAndGet();
+        boolean done = (closed && pending == 0);
         sendBlockedMessages();
         if (reply.getTrace().shouldTrace(TraceLevel.COMPONENT)) {
             reply.getTrace().trace(TraceLevel.COMPONENT,
-                                   "Source session received reply. " + pendingCount + " message(s) now pending.");
+                                   "Source session received reply. " + pending + " message(s) now pending.");
         }
         ReplyHandler handler = reply.popHandler();
         handler.handleReply(reply);
@@ -380,7 +382,7 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
 
     /** Returns the number of messages sent that have not been replied to yet */
     public int getPendingCount() {
-        return pendingCount;
+        return pendingCount.get();
     }
 
     /**
@@ -7,6 +7,9 @@ package com.yahoo.messagebus;
  * All messages accepted are passed through the {@link #processMessage(Message)} method, and the corresponding replies
  * are passed through the {@link #processReply(Reply)} method.
  *
+ * The methods of a policy are called concurrently by all the threads sending through, and receiving replies to,
+ * the same session, so implementations must be thread safe.
+ *
  * @author Simon Thoresen Hult
  */
 public interface ThrottlePolicy {
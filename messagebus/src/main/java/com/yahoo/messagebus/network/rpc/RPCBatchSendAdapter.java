@@ -0,0 +1,37 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus.network.rpc;
+
+import com.yahoo.component.Version;
+import com.yahoo.jrt.Method;
+import com.yahoo.jrt.MethodHandler;
+import com.yahoo.jrt.Request;
+import com.yahoo.jrt.Values;
+import com.yahoo.messagebus.Reply;
+
+import java.util.List;
+
+/**
+ * The encoding of batches of messages and their replies, implemented by the send adapters which support
+ * sending many messages to the same target in a single request.
+ *
+ * @see RPCSend#batchAdapter()
+ * @author agent
+ */
+interface RPCBatchSendAdapter {
+
+    /** Returns the method receiving batches of messages through the given handler */
+    Method buildBatchMethod(MethodHandler handler);
+
+    /** Returns a request sending the given messages */
+    Request encodeBatchRequest(List<RPCSend.BatchEntry> entries);
+
+    /** Returns the replies to the given entries, in the same order, or null if the number of replies does not match */
+    List<Reply> createBatchReplies(Values ret, List<RPCSend.BatchEntry> entries);
+
+    /** Returns the parameters of each message in the given batch request */
+    List<RPCSend.Params> toBatchParams(Values args);
+
+    /** Sets the given replies, in the order of the messages of the request, as the return values of a batch request */
+    void createBatchResponse(Values ret, Reply[] replies, Version[] versions, byte[][] payloads);
+
+}
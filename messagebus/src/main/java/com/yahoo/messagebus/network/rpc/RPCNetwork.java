@@ -59,6 +59,7 @@ public class RPCNetwork implements Network, MethodHandler {
     private final Acceptor listener;
     private final Mirror mirror;
     private final Register register;
+    private final RPCSendBatcher batcher;
     private final TreeMap<Version, RPCSendAdapter> sendAdapters = new TreeMap<>();
     private NetworkOwner owner;
     private final SlobrokConfigSubscriber slobroksConfig;
@@ -91,6 +92,7 @@ public class RPCNetwork implements Network, MethodHandler {
         orb.setMaxInputBufferSize(params.getMaxInputBufferSize());
         orb.setMaxOutputBufferSize(params.getMaxOutputBufferSize());
         targetPool = new RPCTargetPool(params.getConnectionExpireSecs(), params.getNumTargetsPerSpec());
+        batcher = params.getBatchSize() > 1 ? new RPCSendBatcher(params.getBatchSize(), params.getBatchWindowSecs()) : null;
         servicePool = new RPCServicePool(this, 4096);
 
         Method method = new Method("mbus.getVersion", "", "s", this);
@@ -276,6 +278,9 @@ public class RPCNetwork implements Network, MethodHandler {
             }
             register.shutdown();
             mirror.shutdown();
+            if (batcher != null) {
+                batcher.shutdown();
+            }
             listener.shutdown().join();
             orb.transport().shutdown().join();
             targetPool.flushTargets(true);
@@ -405,6 +410,15 @@ public class RPCNetwork implements Network, MethodHandler {
         return executor;
     }
 
+    /**
+     * Returns the batcher collecting messages to send in batches, or null if batching is disabled.
+     *
+     * @return The batcher, or null.
+     */
+    RPCSendBatcher getBatcher() {
+        return batcher;
+    }
+
     private class SendTask implements Runnable {
 
         final Protocol protocol;
@@ -21,6 +21,8 @@ public class RPCNetworkParams {
     private double connectionExpireSecs = 30;
     private int numTargetsPerSpec = 1;
     private int numNetworkThreads = 2;
+    private int batchSize = 1;
+    private double batchWindowSecs = 0.002;
     public enum Optimization {LATENCY, THROUGHPUT}
     Optimization optimization = Optimization.LATENCY;
 
@@ -46,6 +48,8 @@ public class RPCNetworkParams {
         maxOutputBufferSize = params.maxOutputBufferSize;
         numTargetsPerSpec = params.numTargetsPerSpec;
         numNetworkThreads = params.numNetworkThreads;
+        batchSize = params.batchSize;
+        batchWindowSecs = params.batchWindowSecs;
         optimization = params.optimization;
     }
 
@@ -165,6 +169,36 @@ public class RPCNetworkParams {
         return numNetworkThreads;
     }
 
+    /**
+     * Sets the max number of messages to send to the same target in a single request. Messages are collected for
+     * at most the batch window before they are sent. Each message still gets its own reply. Targets which do not
+     * accept batches are sent messages one by one. The default is 1, which disables batching.
+     *
+     * @param batchSize The max number of messages in a batch.
+     * @return This, to allow chaining.
+     */
+    public RPCNetworkParams setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the max number of seconds to wait for more messages to the same target before sending a batch.
+     *
+     * @param secs The number of seconds.
+     * @return This, to allow chaining.
+     */
+    public RPCNetworkParams setBatchWindowSecs(double secs) {
+        this.batchWindowSecs = secs;
+        return this;
+    }
+    double getBatchWindowSecs() {
+        return batchWindowSecs;
+    }
+
     public RPCNetworkParams setOptimization(Optimization optimization) {
         this.optimization = optimization;
         return this;
@@ -23,6 +23,9 @@ import com.yahoo.messagebus.routing.Route;
 import com.yahoo.messagebus.routing.RoutingNode;
 import com.yahoo.text.Utf8Array;
 
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Implements the request adapter for method "mbus.send1/mbus.slime".
  *
@@ -33,6 +36,7 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
     private RPCNetwork net = null;
     private String clientIdent = "client";
     private String serverIdent = "server";
+    private RPCBatchSendAdapter batchAdapter = null;
 
     protected abstract Method buildMethod();
     protected abstract String getReturnSpec();
@@ -41,6 +45,10 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
     protected abstract Reply createReply(Values ret, String serviceName, Trace trace);
     protected abstract Params toParams(Values req);
     protected abstract void createResponse(Values ret, Reply reply, Version version, byte [] payload);
+
+    /** Returns the encoding of batches of messages used by this, or null if this does not support batching */
+    RPCBatchSendAdapter batchAdapter() { return null; }
+
     @Override
     public final void attach(RPCNetwork net) {
         this.net = net;
@@ -50,6 +58,9 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
             serverIdent = clientIdent;
         }
         net.getSupervisor().addMethod(buildMethod());
+        batchAdapter = batchAdapter();
+        if (batchAdapter != null)
+            net.getSupervisor().addMethod(batchAdapter.buildBatchMethod(this::invokeBatch));
     }
 
     @Override
@@ -60,6 +71,17 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
         Route route = new Route(recipient.getRoute());
         Hop hop = route.removeHop(0);
 
+        RPCSendBatcher batcher = net.getBatcher();
+        if (batcher != null && batchAdapter != null && ! hop.getIgnoreResult() && address.getTarget().acceptsBatches()) {
+            batcher.add(address.getTarget(), this, new BatchEntry(ctx, version, route, hop, address, msg, timeRemaining, payload));
+            return;
+        }
+        send(ctx, version, route, hop, address, msg, timeRemaining, payload);
+    }
+
+    private void send(SendContext ctx, Version version, Route route, Hop hop, RPCServiceAddress address, Message msg,
+                      long timeRemaining, byte[] payload) {
+        RoutingNode recipient = ctx.recipient;
         Request req = encodeRequest(version, route, address,msg, timeRemaining, payload, ctx.trace.getLevel());
 
         if (ctx.trace.shouldTrace(TraceLevel.SEND_RECEIVE)) {
@@ -84,6 +106,27 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
         req.discardParameters(); // allow garbage collection of request parameters
     }
 
+    /**
+     * Sends the given messages to the given target in a single request. Called by {@link RPCSendBatcher}.
+     * The request times out with the message which expires first, such that no message waits beyond its own timeout.
+     */
+    final void sendBatch(RPCTarget target, List<BatchEntry> entries) {
+        Request req = batchAdapter.encodeBatchRequest(entries);
+        double timeout = Double.MAX_VALUE;
+        for (BatchEntry entry : entries) {
+            timeout = Math.min(timeout, entry.ctx.timeout);
+            if (entry.ctx.trace.shouldTrace(TraceLevel.SEND_RECEIVE)) {
+                entry.ctx.trace.trace(TraceLevel.SEND_RECEIVE,
+                        "Sending message (version " + entry.version + ") from " + clientIdent + " to '" +
+                                entry.address.getServiceName() + "' with " + entry.ctx.timeout + " seconds timeout" +
+                                " in a batch of " + entries.size() + " messages.");
+            }
+        }
+        req.setContext(new BatchContext(target, entries));
+        target.getJRTTarget().invokeAsync(req, timeout, this);
+        req.discardParameters(); // allow garbage collection of request parameters
+    }
+
     protected final Object decode(Utf8Array protocolName, Version version, byte [] payload) {
         Protocol protocol = net.getOwner().getProtocol(protocolName);
         if (protocol != null) {
@@ -107,34 +150,64 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
 
     @Override
     public final void handleRequestDone(Request req) {
-        net.getExecutor().execute(() -> doRequestDone(req));
+        if (req.getContext() instanceof BatchContext)
+            net.getExecutor().execute(() -> doBatchRequestDone(req));
+        else
+            net.getExecutor().execute(() -> doRequestDone(req));
     }
 
     private void doRequestDone(Request req) {
         SendContext ctx = (SendContext)req.getContext();
-        String serviceName = ((RPCServiceAddress)ctx.recipient.getServiceAddress()).getServiceName();
-        Reply reply;
-        Error error = null;
         if (!req.checkReturnTypes(getReturnSpec())) {
-            // Map all known JRT errors to the appropriate message bus error.
-            reply = new EmptyReply();
-            switch (req.errorCode()) {
-                case com.yahoo.jrt.ErrorCode.TIMEOUT:
-                    error = new Error(ErrorCode.TIMEOUT,
-                            "A timeout occured while waiting for '" + serviceName + "' (" +
-                                    ctx.timeout + " seconds expired); " + req.errorMessage());
-                    break;
-                case com.yahoo.jrt.ErrorCode.CONNECTION:
-                    error = new Error(ErrorCode.CONNECTION_ERROR,
-                            "A connection error occured for '" + serviceName + "'; " + req.errorMessage());
-                    break;
-                default:
-                    error = new Error(ErrorCode.NETWORK_ERROR,
-                            "A network error occured for '" + serviceName + "'; " + req.errorMessage());
-            }
+            deliverReply(ctx, new EmptyReply(), toError(req, ctx));
         } else {
-            reply = createReply(req.returnValues(), serviceName, ctx.trace);
+            deliverReply(ctx, createReply(req.returnValues(), ctx.serviceName(), ctx.trace), null);
         }
+    }
+
+    private void doBatchRequestDone(Request req) {
+        BatchContext batch = (BatchContext)req.getContext();
+        if (req.errorCode() == com.yahoo.jrt.ErrorCode.NO_SUCH_METHOD) { // an older target: Send each message by itself
+            batch.target.setAcceptsBatches(false);
+            for (BatchEntry entry : batch.entries)
+                send(entry.ctx, entry.version, entry.route, entry.hop, entry.address, entry.msg, entry.timeRemaining, entry.payload);
+            return;
+        }
+
+        boolean ok = req.checkReturnTypes(getReturnSpec());
+        List<Reply> replies = ok ? batchAdapter.createBatchReplies(req.returnValues(), batch.entries) : null;
+        for (int i = 0; i < batch.entries.size(); i++) {
+            SendContext ctx = batch.entries.get(i).ctx;
+            if ( ! ok)
+                deliverReply(ctx, new EmptyReply(), toError(req, ctx));
+            else if (replies == null)
+                deliverReply(ctx, new EmptyReply(),
+                             new Error(ErrorCode.NETWORK_ERROR,
+                                       "A network error occured for '" + ctx.serviceName() + "'; the reply to a batch of " +
+                                       batch.entries.size() + " messages did not contain one reply per message."));
+            else
+                deliverReply(ctx, replies.get(i), null);
+        }
+    }
+
+    /** Maps all known JRT errors to the appropriate message bus error */
+    private Error toError(Request req, SendContext ctx) {
+        String serviceName = ctx.serviceName();
+        switch (req.errorCode()) {
+            case com.yahoo.jrt.ErrorCode.TIMEOUT:
+                return new Error(ErrorCode.TIMEOUT,
+                        "A timeout occured while waiting for '" + serviceName + "' (" +
+                                ctx.timeout + " seconds expired); " + req.errorMessage());
+            case com.yahoo.jrt.ErrorCode.CONNECTION:
+                return new Error(ErrorCode.CONNECTION_ERROR,
+                        "A connection error occured for '" + serviceName + "'; " + req.errorMessage());
+            default:
+                return new Error(ErrorCode.NETWORK_ERROR,
+                        "A network error occured for '" + serviceName + "'; " + req.errorMessage());
+        }
+    }
+
+    private void deliverReply(SendContext ctx, Reply reply, Error error) {
         if (ctx.trace.shouldTrace(TraceLevel.SEND_RECEIVE)) {
             ctx.trace.trace(TraceLevel.SEND_RECEIVE,
                     "Reply (type " + reply.getType() + ") received at " + clientIdent + ".");
@@ -164,28 +237,52 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
         net.getExecutor().execute(() -> doInvoke(request));
     }
 
+    private void invokeBatch(Request request) {
+        request.detach();
+        net.getExecutor().execute(() -> doInvokeBatch(request));
+    }
+
     private void doInvoke(Request request) {
         Params p = toParams(request.parameters());
 
         request.discardParameters(); // allow garbage collection of request parameters
 
+        deliverMessage(p, new ReplyContext(request, p.version));
+    }
+
+    private void doInvokeBatch(Request request) {
+        List<Params> params = batchAdapter.toBatchParams(request.parameters());
+
+        request.discardParameters(); // allow garbage collection of request parameters
+
+        BatchReplies replies = new BatchReplies(params.size());
+        if (params.isEmpty()) {
+            batchAdapter.createBatchResponse(request.returnValues(), replies.replies, replies.versions, replies.payloads);
+            request.returnRequest();
+            return;
+        }
+        for (int i = 0; i < params.size(); i++)
+            deliverMessage(params.get(i), new ReplyContext(request, params.get(i).version, replies, i));
+    }
+
+    private void deliverMessage(Params p, ReplyContext replyContext) {
         // Make sure that the owner understands the protocol.
         Protocol protocol = net.getOwner().getProtocol(p.protocolName);
         if (protocol == null) {
-            replyError(request, p.version, p.traceLevel,
+            replyError(replyContext, p.traceLevel,
                     new Error(ErrorCode.UNKNOWN_PROTOCOL,
                             "Protocol '" + p.protocolName + "' is not known by " + serverIdent + "."));
             return;
         }
         Routable routable = protocol.decode(p.version, p.payload);
         if (routable == null) {
-            replyError(request, p.version, p.traceLevel,
+            replyError(replyContext, p.traceLevel,
                     new Error(ErrorCode.DECODE_ERROR,
                             "Protocol '" + protocol.getName() + "' failed to decode routable."));
             return;
         }
         if (routable instanceof Reply) {
-            replyError(request, p.version, p.traceLevel,
+            replyError(replyContext, p.traceLevel,
                     new Error(ErrorCode.DECODE_ERROR,
                             "Payload decoded to a reply when expecting a message."));
             return;
@@ -194,7 +291,7 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
         if (p.route != null && p.route.length() > 0) {
             msg.setRoute(net.getRoute(p.route));
         }
-        msg.setContext(new ReplyContext(request, p.version));
+        msg.setContext(replyContext);
         msg.pushHandler(this);
         msg.setRetryEnabled(p.retryEnabled);
         msg.setRetry(p.retry);
@@ -231,21 +328,25 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
                         "An error occured while encoding the reply."));
             }
         }
-        createResponse(ctx.request.returnValues(), reply, ctx.version, payload);
-        ctx.request.returnRequest();
+        if (ctx.batch == null) {
+            createResponse(ctx.request.returnValues(), reply, ctx.version, payload);
+            ctx.request.returnRequest();
+        } else if (ctx.batch.complete(ctx.index, reply, ctx.version, payload)) {
+            batchAdapter.createBatchResponse(ctx.request.returnValues(), ctx.batch.replies, ctx.batch.versions, ctx.batch.payloads);
+            ctx.request.returnRequest();
+        }
     }
 
     /**
      * Send an error reply for a given request.
      *
-     * @param request    The JRT request to reply to.
-     * @param version    The version to serialize for.
-     * @param traceLevel The trace level to set in the reply.
-     * @param err        The error to reply with.
+     * @param replyContext The context of the JRT request to reply to.
+     * @param traceLevel   The trace level to set in the reply.
+     * @param err          The error to reply with.
      */
-    private void replyError(Request request, Version version, int traceLevel, Error err) {
+    private void replyError(ReplyContext replyContext, int traceLevel, Error err) {
         Reply reply = new EmptyReply();
-        reply.setContext(new ReplyContext(request, version));
+        reply.setContext(replyContext);
         reply.getTrace().setLevel(traceLevel);
         reply.addError(err);
         handleReply(reply);
@@ -262,16 +363,95 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
             trace = new Trace(recipient.getTrace().getLevel());
             timeout = timeRemaining * 0.001;
         }
+
+        String serviceName() {
+            return ((RPCServiceAddress)recipient.getServiceAddress()).getServiceName();
+        }
+    }
+
+    /** A message waiting to be sent in a batch */
+    static final class BatchEntry {
+
+        private final SendContext ctx;
+        final Version version;
+        final Route route;
+        private final Hop hop;
+        final RPCServiceAddress address;
+        final Message msg;
+        final long timeRemaining;
+        final byte[] payload;
+        final Trace trace;
+
+        private BatchEntry(SendContext ctx, Version version, Route route, Hop hop, RPCServiceAddress address, Message msg,
+                           long timeRemaining, byte[] payload) {
+            this.ctx = ctx;
+            this.version = version;
+            this.route = route;
+            this.hop = hop;
+            this.address = address;
+            this.msg = msg;
+            this.timeRemaining = timeRemaining;
+            this.payload = payload;
+            this.trace = ctx.trace;
+        }
+
+        String serviceName() { return ctx.serviceName(); }
+
+        int traceLevel() { return trace.getLevel(); }
+
+    }
+
+    private static class BatchContext {
+
+        final RPCTarget target;
+        final List<BatchEntry> entries;
+
+        BatchContext(RPCTarget target, List<BatchEntry> entries) {
+            this.target = target;
+            this.entries = entries;
+        }
+    }
+
+    /** The replies to a batch of messages, which are returned together once all are available */
+    private static class BatchReplies {
+
+        final Reply[] replies;
+        final Version[] versions;
+        final byte[][] payloads;
+        final AtomicInteger pending;
+
+        BatchReplies(int size) {
+            replies = new Reply[size];
+            versions = new Version[size];
+            payloads = new byte[size][];
+            pending = new AtomicInteger(size);
+        }
+
+        /** Sets the reply to the message at the given index, and returns whether this was the last reply missing */
+        boolean complete(int index, Reply reply, Version version, byte[] payload) {
+            replies[index] = reply;
+            versions[index] = version;
+            payloads[index] = payload;
+            return pending.decrementAndGet() == 0;
+        }
     }
 
     private static class ReplyContext {
 
         final Request request;
         final Version version;
+        final BatchReplies batch;
+        final int index;
 
         ReplyContext(Request request, Version version) {
+            this(request, version, null, 0);
+        }
+
+        ReplyContext(Request request, Version version, BatchReplies batch, int index) {
             this.request = request;
             this.version = version;
+            this.batch = batch;
+            this.index = index;
         }
     }
 }
@@ -0,0 +1,118 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus.network.rpc;
+
+import com.yahoo.concurrent.ThreadFactoryFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the messages sent to the same target during a short window, and sends them together in a single request
+ * once the window expires or the batch is full. Each message still gets its own reply.
+ * As a batch times out with the message which expires first, only messages with similar timeouts are batched
+ * together: A message with a different timeout causes the current batch to be sent and a new one to be started.
+ *
+ * @see RPCNetworkParams#setBatchSize(int)
+ * @author agent
+ */
+class RPCSendBatcher {
+
+    /** The max number of payload bytes to collect in one batch */
+    static final int maxBatchBytes = 1024 * 1024;
+
+    /** The max difference between the timeouts of messages in the same batch, relative to the timeout of the first */
+    static final double maxTimeoutDifference = 0.1;
+
+    private final int maxMessages;
+    private final long windowMicros;
+    private final ScheduledExecutorService timer =
+            Executors.newSingleThreadScheduledExecutor(ThreadFactoryFactory.getDaemonThreadFactory("mbus.batch"));
+
+    /** The batch currently being collected for each target. Guarded by this. */
+    private final Map<RPCTarget, Batch> batches = new HashMap<>();
+
+    RPCSendBatcher(int maxMessages, double windowSecs) {
+        this.maxMessages = maxMessages;
+        this.windowMicros = (long)(windowSecs * 1_000_000);
+    }
+
+    /** Adds a message to the batch of the given target, and sends the batch if this makes it full */
+    void add(RPCTarget target, RPCSend sender, RPCSend.BatchEntry entry) {
+        Batch full = null;
+        Batch other = null;
+        synchronized (this) {
+            Batch batch = batches.get(target);
+            if (batch != null && ! batch.accepts(sender, entry)) {
+                batches.remove(target);
+                other = batch;
+                batch = null;
+            }
+            if (batch == null) {
+                batch = new Batch(sender, entry.timeRemaining);
+                batches.put(target, batch);
+                Batch scheduled = batch;
+                timer.schedule(() -> flush(target, scheduled), windowMicros, TimeUnit.MICROSECONDS);
+            }
+            batch.add(entry);
+            if (batch.entries.size() >= maxMessages || batch.bytes >= maxBatchBytes) {
+                batches.remove(target);
+                full = batch;
+            }
+        }
+        if (other != null)
+            other.sender.sendBatch(target, other.entries);
+        if (full != null)
+            full.sender.sendBatch(target, full.entries);
+    }
+
+    /** Sends the given batch unless it has already been sent */
+    private void flush(RPCTarget target, Batch batch) {
+        synchronized (this) {
+            if (batches.get(target) != batch) return;
+            batches.remove(target);
+        }
+        batch.sender.sendBatch(target, batch.entries);
+    }
+
+    /** Sends all pending batches and stops the timer */
+    void shutdown() {
+        Map<RPCTarget, Batch> pending;
+        synchronized (this) {
+            pending = new HashMap<>(batches);
+            batches.clear();
+        }
+        timer.shutdownNow();
+        pending.forEach((target, batch) -> batch.sender.sendBatch(target, batch.entries));
+    }
+
+    private static class Batch {
+
+        final RPCSend sender;
+        final long timeRemaining;
+        final List<RPCSend.BatchEntry> entries = new ArrayList<>();
+        int bytes = 0;
+
+        Batch(RPCSend sender, long timeRemaining) {
+            this.sender = sender;
+            this.timeRemaining = timeRemaining;
+        }
+
+        /** Returns whether the given message may be sent in this batch */
+        boolean accepts(RPCSend sender, RPCSend.BatchEntry entry) {
+            return sender == this.sender &&
+                   Math.abs(entry.timeRemaining - timeRemaining) <= timeRemaining * maxTimeoutDifference;
+        }
+
+        void add(RPCSend.BatchEntry entry) {
+            entries.add(entry);
+            bytes += entry.payload.length;
+        }
+
+    }
+
+}
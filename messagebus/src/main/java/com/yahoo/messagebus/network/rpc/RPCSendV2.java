@@ -8,6 +8,7 @@ import com.yahoo.jrt.DataValue;
 import com.yahoo.jrt.Int32Value;
 import com.yahoo.jrt.Int8Value;
 import com.yahoo.jrt.Method;
+import com.yahoo.jrt.MethodHandler;
 import com.yahoo.jrt.Request;
 import com.yahoo.jrt.Values;
 import com.yahoo.messagebus.EmptyReply;
@@ -23,17 +24,24 @@ import com.yahoo.slime.Inspector;
 import com.yahoo.slime.Slime;
 import com.yahoo.text.Utf8Array;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
- * Implements the request adapter for method "mbus.slime".
+ * Implements the request adapter for methods "mbus.slime" and "mbus.slime.batch".
+ * The latter sends many messages to the same target in a single request, with the same fields for each message
+ * as the former, and returns the replies in the same order.
  *
  * @author baldersheim
  */
 public class RPCSendV2 extends RPCSend {
 
     private final static String METHOD_NAME = "mbus.slime";
+    private final static String BATCH_METHOD_NAME = "mbus.slime.batch";
     private final static String METHOD_PARAMS = "bixbix";
     private final static String METHOD_RETURN = "bixbix";
     private final Compressor compressor = new Compressor(CompressionType.LZ4, 3, 0.90, 1024);
+    private final RPCBatchSendAdapter batchAdapter = new BatchAdapter();
 
     @Override
     protected String getReturnSpec() { return METHOD_RETURN; }
@@ -71,22 +79,26 @@ public class RPCSendV2 extends RPCSend {
     private static final String CODE_F = "code";
     private static final String BLOB_F = "msg";
     private static final String MSG_F = "msg";
+    private static final String MESSAGES_F = "messages";
+    private static final String REPLIES_F = "replies";
 
     @Override
     protected Request encodeRequest(Version version, Route route, RPCServiceAddress address, Message msg,
                                     long timeRemaining, byte[] payload, int traceLevel)
     {
-
-        Request req = new Request(METHOD_NAME);
-        Values v = req.parameters();
-
-        v.add(new Int8Value(CompressionType.NONE.getCode()));
-        v.add(new Int32Value(0));
-        v.add(new DataValue(new byte[0]));
-
         Slime slime = new Slime();
-        Cursor root = slime.setObject();
+        encodeMessage(slime.setObject(), version, route, address, msg, timeRemaining, payload, traceLevel);
+        return encodeRequest(METHOD_NAME, slime);
+    }
+
+    private Request encodeRequest(String methodName, Slime slime) {
+        Request req = new Request(methodName);
+        encodeBody(req.parameters(), slime);
+        return req;
+    }
 
+    private static void encodeMessage(Cursor root, Version version, Route route, RPCServiceAddress address, Message msg,
+                                      long timeRemaining, byte[] payload, int traceLevel) {
         root.setString(VERSION_F, version.toUtf8().getBytes());
         root.setString(ROUTE_F, route.toString());
         root.setString(SESSION_F, address.getSessionName());
@@ -96,6 +108,13 @@ public class RPCSendV2 extends RPCSend {
         root.setLong(TIMEREMAINING_F, msg.getTimeRemaining());
         root.setLong(TRACELEVEL_F, traceLevel);
         root.setData(BLOB_F, payload);
+    }
+
+    /** Adds the given slime to the given values, with an empty header */
+    private void encodeBody(Values v, Slime slime) {
+        v.add(new Int8Value(CompressionType.NONE.getCode()));
+        v.add(new Int32Value(0));
+        v.add(new DataValue(new byte[0]));
 
         byte[] serializedSlime = BinaryFormat.encode(slime);
         Compressor.Compression compressionResult = compressor.compress(serializedSlime);
@@ -103,17 +122,21 @@ public class RPCSendV2 extends RPCSend {
         v.add(new Int8Value(compressionResult.type().getCode()));
         v.add(new Int32Value(compressionResult.uncompressedSize()));
         v.add(new DataValue(compressionResult.data()));
+    }
 
-        return req;
+    /** Returns the body of the given values */
+    private Inspector decodeBody(Values v) {
+        CompressionType compression = CompressionType.valueOf(v.get(3).asInt8());
+        byte[] slimeBytes = compressor.decompress(v.get(5).asData(), compression, v.get(4).asInt32());
+        return BinaryFormat.decode(slimeBytes).get();
     }
 
     @Override
     protected Reply createReply(Values ret, String serviceName, Trace trace) {
-        CompressionType compression = CompressionType.valueOf(ret.get(3).asInt8());
-        byte[] slimeBytes = compressor.decompress(ret.get(5).asData(), compression, ret.get(4).asInt32());
-        Slime slime = BinaryFormat.decode(slimeBytes);
-        Inspector root = slime.get();
+        return createReply(decodeBody(ret), serviceName, trace);
+    }
 
+    private Reply createReply(Inspector root, String serviceName, Trace trace) {
         Version version = new Version(new Utf8Array(root.field(VERSION_F).asUtf8()));
         byte[] payload = root.field(BLOB_F).asData();
 
@@ -150,10 +173,10 @@ public class RPCSendV2 extends RPCSend {
     }
 
     protected Params toParams(Values args) {
-        CompressionType compression = CompressionType.valueOf(args.get(3).asInt8());
-        byte[] slimeBytes = compressor.decompress(args.get(5).asData(), compression, args.get(4).asInt32());
-        Slime slime = BinaryFormat.decode(slimeBytes);
-        Inspector root = slime.get();
+        return toParams(decodeBody(args));
+    }
+
+    private Params toParams(Inspector root) {
         Params p = new Params();
         p.version = new Version(new Utf8Array(root.field(VERSION_F).asUtf8()));
         p.route = root.field(ROUTE_F).asString();
@@ -169,13 +192,12 @@ public class RPCSendV2 extends RPCSend {
 
     @Override
     protected void createResponse(Values ret, Reply reply, Version version, byte [] payload) {
-        ret.add(new Int8Value(CompressionType.NONE.getCode()));
-        ret.add(new Int32Value(0));
-        ret.add(new DataValue(new byte[0]));
-
         Slime slime = new Slime();
-        Cursor root = slime.setObject();
+        encodeReply(slime.setObject(), reply, version, payload);
+        encodeBody(ret, slime);
+    }
 
+    private static void encodeReply(Cursor root, Reply reply, Version version, byte [] payload) {
         root.setString(VERSION_F, version.toUtf8().getBytes());
         root.setDouble(RETRYDELAY_F, reply.getRetryDelay());
         root.setString(PROTOCOL_F, reply.getProtocol().getBytes());
@@ -196,13 +218,72 @@ public class RPCSendV2 extends RPCSend {
                 }
             }
         }
+    }
 
-        byte[] serializedSlime = BinaryFormat.encode(slime);
-        Compressor.Compression compressionResult = compressor.compress(serializedSlime);
+    @Override
+    RPCBatchSendAdapter batchAdapter() { return batchAdapter; }
+
+    /** Encodes batches as an array of messages or replies in the same form as in single requests */
+    private class BatchAdapter implements RPCBatchSendAdapter {
+
+        @Override
+        public Method buildBatchMethod(MethodHandler handler) {
+            Method method = new Method(BATCH_METHOD_NAME, METHOD_PARAMS, METHOD_RETURN, handler);
+            method.methodDesc("Send a batch of message bus requests and get a batch of replies back.");
+            method.paramDesc(0, "header_encoding", "Encoding type of header.")
+                    .paramDesc(1, "header_decodedSize", "Number of bytes after header decoding.")
+                    .paramDesc(2, "header_payload", "Slime encoded header payload.")
+                    .paramDesc(3, "body_encoding", "Encoding type of body.")
+                    .paramDesc(4, "body_decoded_ize", "Number of bytes after body decoding.")
+                    .paramDesc(5, "body_payload", "Slime encoded body payload, holding an array of messages.");
+            method.returnDesc(0, "header_encoding", "Encoding type of header.")
+                    .returnDesc(1, "header_decoded_size", "Number of bytes after header decoding.")
+                    .returnDesc(2, "header_payload", "Slime encoded header payload.")
+                    .returnDesc(3, "body_encoding", "Encoding type of body.")
+                    .returnDesc(4, "body_encoded_size", "Number of bytes after body decoding.")
+                    .returnDesc(5, "body_payload", "Slime encoded body payload, holding an array of replies.");
+            return method;
+        }
+
+        @Override
+        public Request encodeBatchRequest(List<BatchEntry> entries) {
+            Slime slime = new Slime();
+            Cursor messages = slime.setObject().setArray(MESSAGES_F);
+            for (BatchEntry entry : entries)
+                encodeMessage(messages.addObject(), entry.version, entry.route, entry.address, entry.msg,
+                              entry.timeRemaining, entry.payload, entry.traceLevel());
+            return encodeRequest(BATCH_METHOD_NAME, slime);
+        }
+
+        @Override
+        public List<Reply> createBatchReplies(Values ret, List<BatchEntry> entries) {
+            Inspector replies = decodeBody(ret).field(REPLIES_F);
+            if (replies.entries() != entries.size()) return null;
+
+            List<Reply> result = new ArrayList<>(entries.size());
+            for (int i = 0; i < entries.size(); i++)
+                result.add(createReply(replies.entry(i), entries.get(i).serviceName(), entries.get(i).trace));
+            return result;
+        }
+
+        @Override
+        public List<Params> toBatchParams(Values args) {
+            Inspector messages = decodeBody(args).field(MESSAGES_F);
+            List<Params> params = new ArrayList<>(messages.entries());
+            for (int i = 0; i < messages.entries(); i++)
+                params.add(toParams(messages.entry(i)));
+            return params;
+        }
+
+        @Override
+        public void createBatchResponse(Values ret, Reply[] replies, Version[] versions, byte[][] payloads) {
+            Slime slime = new Slime();
+            Cursor array = slime.setObject().setArray(REPLIES_F);
+            for (int i = 0; i < replies.length; i++)
+                encodeReply(array.addObject(), replies[i], versions[i], payloads[i]);
+            encodeBody(ret, slime);
+        }
 
-        ret.add(new Int8Value(compressionResult.type().getCode()));
-        ret.add(new Int32Value(compressionResult.uncompressedSize()));
-        ret.add(new DataValue(compressionResult.data()));
     }
 
 }
@@ -31,6 +31,7 @@ public class RPCTarget implements RequestWaiter {
     private boolean targetInvoked = false;
     private Version version = null;
     private List<VersionHandler> versionHandlers = new LinkedList<>();
+    private volatile boolean acceptsBatches = true;
 
     /**
      * <p>Constructs a new instance of this class.</p>
@@ -52,6 +53,20 @@ public class RPCTarget implements RequestWaiter {
         return target;
     }
 
+    /**
+     * <p>Returns whether messages may be sent to this target in batches. This
+     * is true until a batch is rejected by the target.</p>
+     *
+     * @return True if this accepts batches.
+     */
+    boolean acceptsBatches() {
+        return acceptsBatches;
+    }
+
+    void setAcceptsBatches(boolean acceptsBatches) {
+        this.acceptsBatches = acceptsBatches;
+    }
+
     /**
      * <p>This method is used for explicit reference counting targets to allow
      * reusing open connections. An instance of this class is constructed with a
@@ -0,0 +1,127 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus;
+
+import com.yahoo.messagebus.test.SimpleMessage;
+import com.yahoo.messagebus.test.SimpleReply;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class BandwidthDelayThrottlePolicyTestCase {
+
+    @Test
+    public void testWindowFollowsTheBandwidthDelayProduct() {
+        CustomTimer timer = new CustomTimer();
+        BandwidthDelayThrottlePolicy policy = new BandwidthDelayThrottlePolicy(timer);
+        Receiver receiver = new Receiver(policy, timer, 2, 50); // bandwidth delay product of 100 messages
+
+        receiver.run(20_000);
+        assertEquals(2000, policy.getBottleneckBandwidth(), 200);
+        assertEquals(50, policy.getMinRttMillis());
+        assertSteadyState(receiver, 2, 100);
+
+        receiver.messagesPerMilli = 1; // the receiver slows down
+        receiver.run(20_000);
+        assertEquals(1000, policy.getBottleneckBandwidth(), 100);
+        assertSteadyState(receiver, 1, 50);
+
+        receiver.messagesPerMilli = 4; // and speeds up again
+        receiver.run(20_000);
+        assertSteadyState(receiver, 4, 200);
+    }
+
+    @Test
+    public void testMinAndMaxWindowSize() {
+        CustomTimer timer = new CustomTimer();
+        BandwidthDelayThrottlePolicy policy = new BandwidthDelayThrottlePolicy(timer).setMaxWindowSize(30);
+        Receiver receiver = new Receiver(policy, timer, 2, 50);
+        receiver.run(10_000);
+        assertEquals(30, policy.getMaxPendingCount());
+
+        policy = new BandwidthDelayThrottlePolicy(timer).setMinWindowSize(500);
+        receiver = new Receiver(policy, timer, 2, 50);
+        receiver.run(10_000);
+        assertTrue(policy.getMaxPendingCount() >= 500);
+    }
+
+    @Test
+    public void testStartsInStartupMode() {
+        CustomTimer timer = new CustomTimer();
+        BandwidthDelayThrottlePolicy policy = new BandwidthDelayThrottlePolicy(timer);
+        assertEquals(BandwidthDelayThrottlePolicy.Mode.STARTUP, policy.getMode());
+        assertEquals(0, policy.getMinRttMillis());
+        assertEquals(0, policy.getBottleneckBandwidth(), 0);
+        new Receiver(policy, timer, 2, 50).run(5_000);
+        assertTrue(policy.getMode() != BandwidthDelayThrottlePolicy.Mode.STARTUP);
+    }
+
+    /** Asserts that the last run used the receiver fully, with a bounded queue */
+    private void assertSteadyState(Receiver receiver, int messagesPerMilli, int bandwidthDelayProduct) {
+        double throughput = receiver.repliesInLastHalf / (receiver.lastRunMillis / 2.0);
+        assertTrue("Throughput " + throughput, throughput >= 0.9 * messagesPerMilli);
+        assertTrue("Max pending " + receiver.maxPendingInLastHalf, receiver.maxPendingInLastHalf <= 3 * bandwidthDelayProduct);
+    }
+
+    /** A receiver of messages which handles a fixed number of messages per millisecond, and replies after a delay */
+    private static class Receiver {
+
+        final ThrottlePolicy policy;
+        final CustomTimer timer;
+        final long delayMillis;
+        final Deque<Message> queue = new ArrayDeque<>();
+        final Deque<Reply> replies = new ArrayDeque<>();
+        final Deque<Long> replyTimes = new ArrayDeque<>();
+        int messagesPerMilli;
+        int pending = 0;
+        long lastRunMillis;
+        long repliesInLastHalf;
+        int maxPendingInLastHalf;
+
+        Receiver(ThrottlePolicy policy, CustomTimer timer, int messagesPerMilli, long delayMillis) {
+            this.policy = policy;
+            this.timer = timer;
+            this.messagesPerMilli = messagesPerMilli;
+            this.delayMillis = delayMillis;
+        }
+
+        void run(long millis) {
+            lastRunMillis = millis;
+            repliesInLastHalf = 0;
+            maxPendingInLastHalf = 0;
+            for (long i = 0; i < millis; i++, timer.millis++) {
+                boolean lastHalf = i >= millis / 2;
+                while ( ! replyTimes.isEmpty() && replyTimes.peekFirst() <= timer.millis) {
+                    replyTimes.pollFirst();
+                    policy.processReply(replies.pollFirst());
+                    pending--;
+                    if (lastHalf) repliesInLastHalf++;
+                }
+
+                Message message = new SimpleMessage("foo");
+                while (policy.canSend(message, pending)) {
+                    policy.processMessage(message);
+                    queue.addLast(message);
+                    pending++;
+                    message = new SimpleMessage("foo");
+                }
+                if (lastHalf) maxPendingInLastHalf = Math.max(maxPendingInLastHalf, pending);
+
+                for (int j = 0; j < messagesPerMilli && ! queue.isEmpty(); j++) {
+                    Reply reply = new SimpleReply("bar");
+                    reply.setContext(queue.pollFirst().getContext());
+                    replies.addLast(reply);
+                    replyTimes.addLast(timer.millis + delayMillis);
+                }
+            }
+        }
+
+    }
+
+}
@@ -14,7 +14,10 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -87,6 +90,44 @@ public class ThrottlerTestCase {
         dst_s.destroy();
     }
 
+    @Test
+    public void testMaxCountWithConcurrentSenders() throws InterruptedException {
+        SourceSessionParams params = new SourceSessionParams().setTimeout(600.0);
+        StaticThrottlePolicy policy = new StaticThrottlePolicy();
+        policy.setMaxPendingCount(50);
+        params.setThrottlePolicy(policy);
+
+        Receptor src_rr = new Receptor();
+        SourceSession src_s = src.mb.createSourceSession(src_rr, params);
+        QueueAdapter dst_q = new QueueAdapter();
+        DestinationSession dst_s = dst.mb.createDestinationSession("session", true, dst_q);
+        src.waitSlobrok("test/dst/session", 1);
+
+        // Send from many threads until the throttler rejects messages, and expect exactly the max to be accepted
+        AtomicInteger accepted = new AtomicInteger();
+        List<Thread> senders = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            senders.add(new Thread(() -> {
+                for (int j = 0; j < 20; j++)
+                    if (src_s.send(new SimpleMessage("msg"), "test").isAccepted())
+                        accepted.incrementAndGet();
+            }));
+        }
+        senders.forEach(Thread::start);
+        for (Thread sender : senders)
+            sender.join();
+        assertEquals(policy.getMaxPendingCount(), accepted.get());
+        assertEquals(policy.getMaxPendingCount(), src_s.getPendingCount());
+
+        assertTrue(dst_q.waitSize(policy.getMaxPendingCount(), 60));
+        while (!dst_q.isEmpty()) {
+            dst_s.acknowledge((Message)dst_q.dequeue());
+        }
+        src_s.close();
+        assertEquals(0, src_s.getPendingCount());
+        dst_s.destroy();
+    }
+
     @Test
     public void testMaxSize() {
         // Prepare a source session with throttle enabled.
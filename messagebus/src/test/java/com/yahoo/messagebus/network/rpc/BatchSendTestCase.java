@@ -0,0 +1,179 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus.network.rpc;
+
+import com.yahoo.jrt.ErrorCode;
+import com.yahoo.jrt.ListenFailedException;
+import com.yahoo.jrt.Method;
+import com.yahoo.jrt.slobrok.server.Slobrok;
+import com.yahoo.messagebus.DestinationSession;
+import com.yahoo.messagebus.DestinationSessionParams;
+import com.yahoo.messagebus.Message;
+import com.yahoo.messagebus.MessageBusParams;
+import com.yahoo.messagebus.Reply;
+import com.yahoo.messagebus.SourceSession;
+import com.yahoo.messagebus.SourceSessionParams;
+import com.yahoo.messagebus.network.Identity;
+import com.yahoo.messagebus.network.rpc.test.TestServer;
+import com.yahoo.messagebus.routing.Route;
+import com.yahoo.messagebus.test.Receptor;
+import com.yahoo.messagebus.test.SimpleMessage;
+import com.yahoo.messagebus.test.SimpleProtocol;
+import com.yahoo.messagebus.test.SimpleReply;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class BatchSendTestCase {
+
+    Slobrok slobrok;
+    TestServer srcServer, dstServer;
+    SourceSession srcSession;
+    DestinationSession dstSession;
+
+    @Before
+    public void setUp() throws ListenFailedException, UnknownHostException {
+        slobrok = new Slobrok();
+        dstServer = new TestServer(
+                new MessageBusParams().addProtocol(new SimpleProtocol()),
+                new RPCNetworkParams().setIdentity(new Identity("dst")).setSlobrokConfigId(TestServer.getSlobrokConfig(slobrok)));
+        dstSession = dstServer.mb.createDestinationSession(
+                new DestinationSessionParams().setName("session").setMessageHandler(new Receptor()));
+        srcServer = new TestServer(
+                new MessageBusParams().addProtocol(new SimpleProtocol()),
+                new RPCNetworkParams().setSlobrokConfigId(TestServer.getSlobrokConfig(slobrok))
+                                      .setBatchSize(4).setBatchWindowSecs(1.0));
+        srcSession = srcServer.mb.createSourceSession(
+                new SourceSessionParams().setTimeout(600.0).setThrottlePolicy(null).setReplyHandler(new Receptor()));
+        assertTrue(srcServer.waitSlobrok("dst/session", 1));
+    }
+
+    @After
+    public void tearDown() {
+        slobrok.stop();
+        dstSession.destroy();
+        dstServer.destroy();
+        srcSession.destroy();
+        srcServer.destroy();
+    }
+
+    @Test
+    public void requireThatFullAndPartialBatchesAreSentAndRepliedToOneByOne() {
+        int messages = 10; // two full batches, and one sent when the window expires
+        for (int i = 0; i < messages; i++) {
+            Message msg = new SimpleMessage("msg" + i);
+            msg.getTrace().setLevel(9);
+            assertTrue(srcSession.send(msg, Route.parse("dst/session")).isAccepted());
+        }
+
+        for (int i = 0; i < messages; i++) {
+            Message msg = ((Receptor)dstSession.getMessageHandler()).getMessage(60);
+            assertNotNull(msg);
+            Reply reply = new SimpleReply("reply to " + ((SimpleMessage)msg).getValue());
+            reply.swapState(msg);
+            dstSession.reply(reply);
+        }
+
+        Set<String> replies = new HashSet<>();
+        int inFullBatches = 0;
+        for (int i = 0; i < messages; i++) {
+            Reply reply = ((Receptor)srcSession.getReplyHandler()).getReply(60);
+            assertNotNull(reply);
+            assertFalse(reply.getTrace().toString(), reply.hasErrors());
+            replies.add(((SimpleReply)reply).getValue());
+            String trace = reply.getTrace().toString();
+            assertTrue(trace, trace.contains("in a batch of"));
+            if (trace.contains("in a batch of 4 messages"))
+                inFullBatches++;
+        }
+        assertEquals(messages, replies.size());
+        for (int i = 0; i < messages; i++)
+            assertTrue(replies.contains("reply to msg" + i));
+        assertEquals(8, inFullBatches);
+    }
+
+    @Test
+    public void requireThatOnlyMessagesWithSimilarTimeoutsAreBatchedTogether() {
+        long[] timeouts = { 600_000, 590_000, 60_000, 60_000 };
+        for (int i = 0; i < timeouts.length; i++) {
+            Message msg = new SimpleMessage("msg" + i);
+            msg.getTrace().setLevel(9);
+            msg.setTimeRemaining(timeouts[i]);
+            assertTrue(srcSession.send(msg, Route.parse("dst/session")).isAccepted());
+        }
+
+        replyToAll(timeouts.length);
+
+        for (Reply reply : getReplies(timeouts.length)) {
+            assertFalse(reply.getTrace().toString(), reply.hasErrors());
+            assertTrue(reply.getTrace().toString(), reply.getTrace().toString().contains("in a batch of 2 messages"));
+        }
+    }
+
+    @Test
+    public void requireThatMessagesAreSentOneByOneToTargetsNotSupportingBatches() {
+        // Replace the batch method by one answering like a target which does not know it
+        ((RPCNetwork)dstServer.net).getSupervisor().addMethod(new Method("mbus.slime.batch", "bixbix", "bixbix",
+                                                                         request -> request.setError(ErrorCode.NO_SUCH_METHOD,
+                                                                                                     "No such method")));
+        int messages = 6; // one full batch, and one sent when the window expires
+        for (int i = 0; i < messages; i++) {
+            Message msg = new SimpleMessage("msg" + i);
+            msg.getTrace().setLevel(9);
+            assertTrue(srcSession.send(msg, Route.parse("dst/session")).isAccepted());
+        }
+
+        replyToAll(messages);
+
+        Set<String> replies = new HashSet<>();
+        for (Reply reply : getReplies(messages)) {
+            assertFalse(reply.getTrace().toString(), reply.hasErrors());
+            replies.add(((SimpleReply)reply).getValue());
+        }
+        assertEquals(messages, replies.size());
+
+        // The target is now known to not accept batches
+        Message msg = new SimpleMessage("last");
+        msg.getTrace().setLevel(9);
+        assertTrue(srcSession.send(msg, Route.parse("dst/session")).isAccepted());
+        replyToAll(1);
+        Reply reply = getReplies(1).get(0);
+        assertFalse(reply.getTrace().toString(), reply.hasErrors());
+        assertEquals("reply to last", ((SimpleReply)reply).getValue());
+        assertFalse(reply.getTrace().toString(), reply.getTrace().toString().contains("in a batch of"));
+    }
+
+    private void replyToAll(int messages) {
+        for (int i = 0; i < messages; i++) {
+            Message msg = ((Receptor)dstSession.getMessageHandler()).getMessage(60);
+            assertNotNull(msg);
+            Reply reply = new SimpleReply("reply to " + ((SimpleMessage)msg).getValue());
+            reply.swapState(msg);
+            dstSession.reply(reply);
+        }
+    }
+
+    private List<Reply> getReplies(int count) {
+        List<Reply> replies = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Reply reply = ((Receptor)srcSession.getReplyHandler()).getReply(60);
+            assertNotNull(reply);
+            replies.add(reply);
+        }
+        return replies;
+    }
+
+}
@@ -0,0 +1,460 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.models.evaluation;
+
+import com.yahoo.searchlib.rankingexpression.ExpressionFunction;
+import com.yahoo.searchlib.rankingexpression.evaluation.TensorValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.Value;
+import com.yahoo.searchlib.rankingexpression.evaluation.compilation.CompiledNode;
+import com.yahoo.searchlib.rankingexpression.rule.ArithmeticNode;
+import com.yahoo.searchlib.rankingexpression.rule.ArithmeticOperator;
+import com.yahoo.searchlib.rankingexpression.rule.ComparisonNode;
+import com.yahoo.searchlib.rankingexpression.rule.CompositeNode;
+import com.yahoo.searchlib.rankingexpression.rule.ConstantNode;
+import com.yahoo.searchlib.rankingexpression.rule.EmbracedNode;
+import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
+import com.yahoo.searchlib.rankingexpression.rule.Function;
+import com.yahoo.searchlib.rankingexpression.rule.FunctionNode;
+import com.yahoo.searchlib.rankingexpression.rule.IfNode;
+import com.yahoo.searchlib.rankingexpression.rule.NameNode;
+import com.yahoo.searchlib.rankingexpression.rule.NegativeNode;
+import com.yahoo.searchlib.rankingexpression.rule.NotNode;
+import com.yahoo.searchlib.rankingexpression.rule.ReferenceNode;
+import com.yahoo.searchlib.rankingexpression.rule.TensorFunctionNode;
+import com.yahoo.tensor.IndexedTensor;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorAddress;
+import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.functions.Join;
+import com.yahoo.tensor.functions.Reduce;
+import com.yahoo.tensor.functions.Rename;
+import com.yahoo.tensor.functions.TensorFunction;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * An evaluator which can be used to evaluate a single function for many sets of argument bindings,
+ * e.g one for each hit to re-rank.
+ *
+ * This reuses a single context for all the binding sets, and values of functions which do not depend on the
+ * arguments bound in each set are only computed once. When the function only consists of operations which
+ * apply to each cell independently, the binding sets are instead fused into tensors with an additional batch
+ * dimension, and the function is evaluated once for all of them.
+ *
+ * @author agent
+ */
+// This wraps all access to the context and the ranking expression to avoid incorrect usage
+public class BatchFunctionEvaluator {
+
+    /** The name of the dimension added to the arguments when evaluating all binding sets at once */
+    static final String batchDimension = "_batch";
+
+    private final ExpressionFunction function;
+    private final LazyArrayContext context;
+    private final Model model;
+    private boolean evaluated = false;
+
+    BatchFunctionEvaluator(ExpressionFunction function, LazyArrayContext context, Model model) {
+        this.function = function;
+        this.context = context;
+        this.model = model;
+    }
+
+    /**
+     * Binds the given variable referred in this expression to the given value in all binding sets.
+     *
+     * @param name the variable to bind
+     * @param value the value this becomes bound to
+     * @return this for chaining
+     */
+    public BatchFunctionEvaluator bind(String name, Tensor value) {
+        if (evaluated)
+            throw new IllegalStateException("Cannot bind a new value in a used evaluator");
+        validateArgument(name, value);
+        context.put(name, new TensorValue(value));
+        return this;
+    }
+
+    /**
+     * Binds the given variable referred in this expression to the given value in all binding sets.
+     * This is equivalent to <code>bind(name, Tensor.Builder.of(TensorType.empty).cell(value).build())</code>
+     *
+     * @param name the variable to bind
+     * @param value the value this becomes bound to
+     * @return this for chaining
+     */
+    public BatchFunctionEvaluator bind(String name, double value) {
+        return bind(name, Tensor.Builder.of(TensorType.empty).cell(value).build());
+    }
+
+    /**
+     * Sets the default value to use for variables which are not bound
+     *
+     * @param value the default value
+     * @return this for chaining
+     */
+    public BatchFunctionEvaluator setMissingValue(Tensor value) {
+        if (evaluated)
+            throw new IllegalStateException("Cannot change the missing value in a used evaluator");
+        context.setMissingValue(value);
+        return this;
+    }
+
+    /**
+     * Sets the default value to use for variables which are not bound
+     *
+     * @param value the default value
+     * @return this for chaining
+     */
+    public BatchFunctionEvaluator setMissingValue(double value) {
+        return setMissingValue(Tensor.Builder.of(TensorType.empty).cell(value).build());
+    }
+
+    /**
+     * Evaluates the function once for each of the given binding sets, in addition to the values bound in this.
+     *
+     * @param bindingSets the values to bind for each evaluation, by argument name
+     * @return the result of each evaluation, in the order of the given binding sets
+     * @throws IllegalArgumentException if a binding set contains a value which is not a valid argument of the function
+     */
+    public List<Tensor> evaluate(List<Map<String, Tensor>> bindingSets) {
+        Set<String> names = new LinkedHashSet<>();
+        for (Map<String, Tensor> bindings : bindingSets) {
+            for (Map.Entry<String, Tensor> binding : bindings.entrySet()) {
+                if (names.add(binding.getKey()))
+                    validateArgument(binding.getKey(), binding.getValue());
+                else if (! binding.getValue().type().isAssignableTo(function.argumentTypes().get(binding.getKey())))
+                    throwWrongType(binding.getKey(), binding.getValue());
+            }
+        }
+        for (Map.Entry<String, TensorType> argument : function.argumentTypes().entrySet()) {
+            if (context.isMissing(argument.getKey()))
+                throw new IllegalStateException("Missing argument '" + argument.getKey() +
+                                                "': Must be bound to a value of type " + argument.getValue());
+            if (context.get(argument.getKey()).type().isAssignableTo(argument.getValue())) continue;
+            if ( ! names.contains(argument.getKey()) ||
+                 bindingSets.stream().anyMatch(bindings -> ! bindings.containsKey(argument.getKey())))
+                throw new IllegalStateException("Argument '" + argument.getKey() +
+                                                "' must be bound to a value of type " + argument.getValue());
+        }
+        evaluated = true;
+        if (bindingSets.isEmpty()) return List.of();
+
+        Dependencies dependencies = new Dependencies(names);
+        List<String> nameList = new ArrayList<>(names);
+        int[] indexes = new int[nameList.size()];
+        Value[] boundValues = new Value[nameList.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = context.getIndex(nameList.get(i));
+            boundValues[i] = context.get(indexes[i]);
+        }
+        int[] dependentFunctions = context.names().stream()
+                                          .filter(name -> FunctionReference.fromSerial(name).isPresent())
+                                          .filter(name -> dependencies.dependsOnBindings(FunctionReference.fromSerial(name).get()))
+                                          .mapToInt(context::getIndex)
+                                          .toArray();
+        try {
+            if (canFuse(bindingSets, nameList, dependencies))
+                return evaluateFused(bindingSets, nameList, indexes, dependentFunctions);
+            else
+                return evaluateEach(bindingSets, nameList, indexes, boundValues, dependentFunctions);
+        }
+        finally {
+            for (int i = 0; i < indexes.length; i++)
+                context.put(indexes[i], boundValues[i]);
+            for (int index : dependentFunctions)
+                context.resetComputedValue(index);
+        }
+    }
+
+    private List<Tensor> evaluateEach(List<Map<String, Tensor>> bindingSets, List<String> names,
+                                      int[] indexes, Value[] boundValues, int[] dependentFunctions) {
+        List<Tensor> results = new ArrayList<>(bindingSets.size());
+        for (Map<String, Tensor> bindings : bindingSets) {
+            for (int i = 0; i < indexes.length; i++) {
+                Tensor value = bindings.get(names.get(i));
+                context.put(indexes[i], value != null ? new TensorValue(value) : boundValues[i]);
+            }
+            for (int index : dependentFunctions)
+                context.resetComputedValue(index);
+            results.add(function.getBody().evaluate(context).asTensor());
+        }
+        return results;
+    }
+
+    private List<Tensor> evaluateFused(List<Map<String, Tensor>> bindingSets, List<String> names,
+                                       int[] indexes, int[] dependentFunctions) {
+        for (int i = 0; i < indexes.length; i++) {
+            String name = names.get(i);
+            List<Tensor> values = bindingSets.stream().map(bindings -> bindings.get(name)).collect(Collectors.toList());
+            context.put(indexes[i], new TensorValue(fuse(values)));
+        }
+        for (int index : dependentFunctions)
+            context.resetComputedValue(index);
+        Tensor result = function.getBody().evaluate(context).asTensor();
+        return split(result, bindingSets.size());
+    }
+
+    /** Returns whether the given binding sets would be evaluated at once. For testing. */
+    boolean canFuse(List<Map<String, Tensor>> bindingSets) {
+        Set<String> names = new LinkedHashSet<>();
+        bindingSets.forEach(bindings -> names.addAll(bindings.keySet()));
+        return canFuse(bindingSets, new ArrayList<>(names), new Dependencies(names));
+    }
+
+    /**
+     * Returns whether all the binding sets can be evaluated at once: This is the case when they
+     * bind the same arguments to values of the same types, and all operations which depend on those arguments
+     * produce the same result for each cell of the batch dimension as when evaluated on a single binding set.
+     */
+    private boolean canFuse(List<Map<String, Tensor>> bindingSets, List<String> names, Dependencies dependencies) {
+        if (bindingSets.size() < 2 || names.isEmpty()) return false;
+        if (function.returnType().map(type -> type.dimension(batchDimension).isPresent()).orElse(true)) return false;
+        for (String name : names) {
+            TensorType type = bindingSets.get(0).get(name) == null ? null : bindingSets.get(0).get(name).type();
+            if (type == null || type.dimension(batchDimension).isPresent()) return false;
+            for (Map<String, Tensor> bindings : bindingSets) {
+                Tensor value = bindings.get(name);
+                if (value == null || ! value.type().equals(type)) return false;
+            }
+        }
+        return dependencies.isFusable(function.getBody().getRoot());
+    }
+
+    /** Returns the given tensors of the same type as one tensor with an additional batch dimension */
+    private static Tensor fuse(List<Tensor> values) {
+        TensorType type = values.get(0).type();
+        TensorType fusedType = new TensorType.Builder(type).indexed(batchDimension, values.size()).build();
+        if (values.get(0) instanceof IndexedTensor && isBoundIndexed(type) && fusedType.indexOfDimension(batchDimension).get() == 0) {
+            int size = ((IndexedTensor)values.get(0)).doubleValues().length;
+            double[] fusedValues = new double[size * values.size()];
+            for (int i = 0; i < values.size(); i++)
+                System.arraycopy(((IndexedTensor)values.get(i)).doubleValues(), 0, fusedValues, i * size, size);
+            return IndexedTensor.Builder.of(fusedType, fusedValues).build();
+        }
+
+        int batchIndex = fusedType.indexOfDimension(batchDimension).get();
+        Tensor.Builder builder = Tensor.Builder.of(fusedType);
+        for (int i = 0; i < values.size(); i++) {
+            for (Iterator<Tensor.Cell> cells = values.get(i).cellIterator(); cells.hasNext(); ) {
+                Tensor.Cell cell = cells.next();
+                String[] labels = new String[fusedType.rank()];
+                for (int source = 0, target = 0; target < labels.length; target++)
+                    labels[target] = target == batchIndex ? String.valueOf(i) : cell.getKey().label(source++);
+                builder.cell(TensorAddress.of(labels), cell.getValue());
+            }
+        }
+        return builder.build();
+    }
+
+    /** Splits the given tensor along the batch dimension into the given number of tensors */
+    private static List<Tensor> split(Tensor result, int count) {
+        TensorType fusedType = result.type();
+        if (fusedType.dimension(batchDimension).isEmpty()) // does not depend on the batched arguments
+            return Collections.nCopies(count, result);
+
+        int batchIndex = fusedType.indexOfDimension(batchDimension).get();
+        TensorType type = new TensorType.Builder(fusedType.valueType(),
+                                                 fusedType.dimensions().stream()
+                                                          .filter(dimension -> ! dimension.name().equals(batchDimension))
+                                                          .collect(Collectors.toList())).build();
+        List<Tensor> results = new ArrayList<>(count);
+        if (result instanceof IndexedTensor && isBoundIndexed(fusedType) && batchIndex == 0) {
+            double[] values = ((IndexedTensor)result).doubleValues();
+            int size = values.length / count;
+            for (int i = 0; i < count; i++)
+                results.add(IndexedTensor.Builder.of(type, Arrays.copyOfRange(values, i * size, (i + 1) * size)).build());
+            return results;
+        }
+
+        List<Tensor.Builder> builders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            builders.add(Tensor.Builder.of(type));
+        for (Iterator<Tensor.Cell> cells = result.cellIterator(); cells.hasNext(); ) {
+            Tensor.Cell cell = cells.next();
+            String[] labels = new String[type.rank()];
+            for (int source = 0, target = 0; source < fusedType.rank(); source++) {
+                if (source != batchIndex)
+                    labels[target++] = cell.getKey().label(source);
+            }
+            builders.get((int)cell.getKey().numericLabel(batchIndex)).cell(TensorAddress.of(labels), cell.getValue());
+        }
+        for (Tensor.Builder builder : builders)
+            results.add(builder.build());
+        return results;
+    }
+
+    private static boolean isBoundIndexed(TensorType type) {
+        return type.dimensions().stream().allMatch(dimension -> dimension.type() == TensorType.Dimension.Type.indexedBound);
+    }
+
+    private void validateArgument(String name, Tensor value) {
+        TensorType requiredType = function.argumentTypes().get(name);
+        if (requiredType == null)
+            throw new IllegalArgumentException("'" + name + "' is not a valid argument in " + function +
+                                               ". Expected arguments: " + function.argumentTypes().entrySet().stream()
+                                                                                  .map(e -> e.getKey() + ": " + e.getValue())
+                                                                                  .collect(Collectors.joining(", ")));
+        if ( ! value.type().isAssignableTo(requiredType))
+            throwWrongType(name, value);
+    }
+
+    private void throwWrongType(String name, Tensor value) {
+        throw new IllegalArgumentException("'" + name + "' must be of type " + function.argumentTypes().get(name) +
+                                           ", not " + value.type());
+    }
+
+    /** Returns the function evaluated by this */
+    public ExpressionFunction function() { return function; }
+
+    /** Resolves which parts of the function depend on the arguments bound in each binding set */
+    private class Dependencies {
+
+        private final Set<String> names;
+        private final Map<FunctionReference, Boolean> functionDependencies = new HashMap<>();
+        private final Map<FunctionReference, Boolean> fusableFunctions = new HashMap<>();
+
+        Dependencies(Set<String> names) {
+            this.names = names;
+        }
+
+        boolean dependsOnBindings(FunctionReference reference) {
+            Boolean dependsOn = functionDependencies.get(reference);
+            if (dependsOn == null) {
+                functionDependencies.put(reference, true); // guard against cycles
+                dependsOn = dependsOnBindings(model.requireReferencedFunction(reference).getBody().getRoot());
+                functionDependencies.put(reference, dependsOn);
+            }
+            return dependsOn;
+        }
+
+        /** Returns whether the given node may depend on the arguments bound in each binding set */
+        boolean dependsOnBindings(ExpressionNode node) {
+            if (node instanceof ReferenceNode) {
+                if (isFunctionReference(node))
+                    return dependsOnBindings(FunctionReference.fromSerial(node.toString()).get());
+                return names.contains(node.toString());
+            }
+            if (node instanceof CompiledNode)
+                return dependsOnBindings(((CompiledNode)node).node());
+            if (node instanceof CompositeNode) {
+                for (ExpressionNode child : ((CompositeNode)node).children())
+                    if (dependsOnBindings(child)) return true;
+                return false;
+            }
+            // Other nodes, such as optimized GBDT forests, may look up any value in the context
+            return ! (node instanceof ConstantNode || node instanceof NameNode);
+        }
+
+        boolean isFusable(FunctionReference reference) {
+            Boolean fusable = fusableFunctions.get(reference);
+            if (fusable == null) {
+                fusableFunctions.put(reference, false); // guard against cycles
+                fusable = isFusable(model.requireReferencedFunction(reference).getBody().getRoot());
+                fusableFunctions.put(reference, fusable);
+            }
+            return fusable;
+        }
+
+        /**
+         * Returns whether the given node produces the same result for each cell along the batch dimension
+         * as it does for each binding set separately when the batched arguments have a batch dimension
+         */
+        boolean isFusable(ExpressionNode node) {
+            if ( ! dependsOnBindings(node)) return true;
+
+            if (node instanceof ReferenceNode)
+                return ! isFunctionReference(node) || isFusable(FunctionReference.fromSerial(node.toString()).get());
+            if (node instanceof CompiledNode) // evaluating compiled scalar expressions separately is faster
+                return false;
+            if ( ! (node instanceof CompositeNode))
+                return false;
+            for (ExpressionNode child : ((CompositeNode)node).children())
+                if ( ! isFusable(child)) return false;
+
+            if (node instanceof ArithmeticNode)
+                return isFusable((ArithmeticNode)node);
+            if (node instanceof ComparisonNode) // a double value can not be compared to a tensor
+                return dependsOnBindings(((ComparisonNode)node).getLeftCondition()) ||
+                       ! dependsOnBindings(((ComparisonNode)node).getRightCondition());
+            if (node instanceof FunctionNode)
+                return isFusable((FunctionNode)node);
+            if (node instanceof IfNode)
+                return ! dependsOnBindings(((IfNode)node).getCondition());
+            if (node instanceof TensorFunctionNode)
+                return isFusable(((TensorFunctionNode)node).function());
+            return node instanceof NegativeNode || node instanceof NotNode || node instanceof EmbracedNode;
+        }
+
+        /**
+         * Returns whether no operator of the given node is applied to a double value on the left
+         * and a batched value on the right, which is only supported by the commutative operators.
+         * This follows the evaluation order of arithmetic nodes.
+         */
+        private boolean isFusable(ArithmeticNode node) {
+            Iterator<ExpressionNode> child = node.children().iterator();
+            Deque<ArithmeticOperator> operators = new ArrayDeque<>();
+            Deque<Boolean> batched = new ArrayDeque<>();
+            operators.push(ArithmeticOperator.OR);
+            batched.push(dependsOnBindings(child.next()));
+            for (Iterator<ArithmeticOperator> it = node.operators().iterator(); it.hasNext() && child.hasNext();) {
+                ArithmeticOperator op = it.next();
+                while (operators.peek().hasPrecedenceOver(op)) {
+                    if ( ! pop(operators, batched)) return false;
+                }
+                operators.push(op);
+                batched.push(dependsOnBindings(child.next()));
+            }
+            while (batched.size() > 1) {
+                if ( ! pop(operators, batched)) return false;
+            }
+            return true;
+        }
+
+        private boolean pop(Deque<ArithmeticOperator> operators, Deque<Boolean> batched) {
+            ArithmeticOperator op = operators.pop();
+            boolean right = batched.pop();
+            boolean left = batched.pop();
+            batched.push(left || right);
+            return left || ! right ||
+                   op == ArithmeticOperator.PLUS || op == ArithmeticOperator.MINUS || op == ArithmeticOperator.MULTIPLY;
+        }
+
+        private boolean isFusable(FunctionNode node) {
+            List<ExpressionNode> arguments = node.children();
+            if (arguments.size() < 2 || dependsOnBindings(arguments.get(0)) || ! dependsOnBindings(arguments.get(1)))
+                return true;
+            return node.getFunction() == Function.min || node.getFunction() == Function.max;
+        }
+
+        /** Returns whether the given tensor function applies to each cell along the batch dimension separately */
+        private boolean isFusable(TensorFunction<?> function) {
+            if (function instanceof com.yahoo.tensor.functions.Map || function instanceof Join)
+                return true;
+            if (function instanceof Reduce) // reducing all dimensions would include the batch dimension
+                return ! ((Reduce<?>)function).dimensions().isEmpty() &&
+                       ! ((Reduce<?>)function).dimensions().contains(batchDimension);
+            if (function instanceof Rename)
+                return ! ((Rename<?>)function).fromDimensions().contains(batchDimension) &&
+                       ! ((Rename<?>)function).toDimensions().contains(batchDimension);
+            return false;
+        }
+
+        private boolean isFunctionReference(ExpressionNode node) {
+            ReferenceNode reference = (ReferenceNode)node;
+            return reference.getName().equals("rankingExpression") && reference.getArguments().size() == 1;
+        }
+
+    }
+
+}
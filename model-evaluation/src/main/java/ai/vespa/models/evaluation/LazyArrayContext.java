@@ -124,6 +124,14 @@ public final class LazyArrayContext extends Context implements ContextIndex {
         return index;
     }
 
+    /**
+     * Discards the value computed by the function at the given index, if any,
+     * such that it is computed again from the current bindings when next requested
+     */
+    void resetComputedValue(int index) {
+        indexedBindings.resetComputedValue(index);
+    }
+
     boolean isMissing(String name) {
         return indexedBindings.indexOf(name) == null;
     }
@@ -258,6 +266,11 @@ public final class LazyArrayContext extends Context implements ContextIndex {
             values[index] = value;
         }
 
+        void resetComputedValue(int index) {
+            if (values[index] instanceof LazyValue)
+                ((LazyValue)values[index]).reset();
+        }
+
         Set<String> names() { return nameToIndex.keySet(); }
         Set<String> arguments() { return arguments; }
         Integer indexOf(String name) { return nameToIndex.get(name); }
@@ -40,6 +40,11 @@ class LazyValue extends Value {
         return computedValue;
     }
 
+    /** Discards the computed value of this, such that it is computed again when next requested */
+    void reset() {
+        computedValue = null;
+    }
+
     @Override
     public TensorType type() {
         return model.requireReferencedFunction(function).returnType().get();
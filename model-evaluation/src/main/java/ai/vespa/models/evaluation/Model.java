@@ -5,10 +5,13 @@ import com.google.common.annotations.Beta;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.yahoo.searchlib.rankingexpression.ExpressionFunction;
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
 import com.yahoo.searchlib.rankingexpression.evaluation.ContextIndex;
 import com.yahoo.searchlib.rankingexpression.evaluation.DoubleValue;
 import com.yahoo.searchlib.rankingexpression.evaluation.ExpressionOptimizer;
+import com.yahoo.searchlib.rankingexpression.evaluation.OptimizationReport;
 import com.yahoo.searchlib.rankingexpression.evaluation.Value;
+import com.yahoo.searchlib.rankingexpression.evaluation.compilation.CompilationOptimizer;
 import com.yahoo.tensor.TensorType;
 
 import java.util.Arrays;
@@ -44,6 +47,7 @@ public class Model {
     private final ImmutableMap<String, LazyArrayContext> contextPrototypes;
 
     private final ExpressionOptimizer expressionOptimizer = new ExpressionOptimizer();
+    private final CompilationOptimizer compilationOptimizer = new CompilationOptimizer();
 
     /** Programmatically create a model containing functions without constant of function references only */
     public Model(String name, Collection<ExpressionFunction> functions) {
@@ -87,10 +91,6 @@ public class Model {
             }
         }
         this.contextPrototypes = contextBuilder.build();
-        this.functions = ImmutableList.copyOf(functions.values());
-        this.publicFunctions = ImmutableList.copyOf(functions.values().stream()
-                                                                      .filter(f ->  ! f.getName().startsWith(INTERMEDIATE_OPERATION_FUNCTION_PREFIX))
-                                                                      .collect(Collectors.toList()));
 
         // Optimize functions
         ImmutableMap.Builder<FunctionReference, ExpressionFunction> functionsBuilder = new ImmutableMap.Builder<>();
@@ -100,6 +100,28 @@ public class Model {
             functionsBuilder.put(function.getKey(), optimizedFunction);
         }
         this.referencedFunctions = functionsBuilder.build();
+
+        for (Map.Entry<FunctionReference, ExpressionFunction> function : functions.entrySet())
+            function.setValue(compile(function.getValue(), contextPrototypes.get(function.getValue().getName())));
+        this.functions = ImmutableList.copyOf(functions.values());
+        this.publicFunctions = ImmutableList.copyOf(functions.values().stream()
+                                                                      .filter(f ->  ! f.getName().startsWith(INTERMEDIATE_OPERATION_FUNCTION_PREFIX))
+                                                                      .collect(Collectors.toList()));
+    }
+
+    /**
+     * Returns a copy of the given function where scalar subexpressions are compiled, or the function itself
+     * if it is not scalar. Compiled expressions look up values by index in the given context, so the body is copied
+     * as it may also be referenced from other functions, which evaluate it in their own context.
+     */
+    private ExpressionFunction compile(ExpressionFunction function, ContextIndex context) {
+        boolean isScalar = function.argumentTypes().values().stream().allMatch(type -> type.rank() == 0) &&
+                           function.returnType().map(type -> type.rank() == 0).orElse(true);
+        if ( ! isScalar) return function;
+
+        RankingExpression body = new RankingExpression(function.getBody().getName(), function.getBody().getRoot());
+        compilationOptimizer.optimize(body, context, new OptimizationReport());
+        return function.withBody(body);
     }
 
     /** Returns an optimized version of the given function */
@@ -213,6 +235,21 @@ public class Model {
                                            Arrays.toString(names));
     }
 
+    /**
+     * Returns an evaluator which can be used to evaluate the given function for many sets of argument bindings
+     * in a single thread.
+     *
+     * Usage:
+     * <code>List&lt;Tensor&gt; results = model.batchEvaluatorOf("myFunction").bind("foo", value).evaluate(bindingSets)</code>
+     *
+     * @param names the names identifying the function, as in {@link #evaluatorOf}
+     * @throws IllegalArgumentException if the function is not present, or not uniquely identified by the names given
+     */
+    public BatchFunctionEvaluator batchEvaluatorOf(String ... names) {
+        FunctionEvaluator evaluator = evaluatorOf(names);
+        return new BatchFunctionEvaluator(evaluator.function(), evaluator.context(), this);
+    }
+
     /** Returns a single-use evaluator of a function */
     private FunctionEvaluator evaluatorOf(ExpressionFunction function) {
         return new FunctionEvaluator(function, requireContextPrototype(function.getName()).copy());
@@ -0,0 +1,172 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.models.evaluation;
+
+import com.yahoo.config.subscription.ConfigGetter;
+import com.yahoo.config.subscription.FileSource;
+import com.yahoo.filedistribution.fileacquirer.MockFileAcquirer;
+import com.yahoo.path.Path;
+import com.yahoo.searchlib.rankingexpression.ExpressionFunction;
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorType;
+import com.yahoo.vespa.config.search.RankProfilesConfig;
+import com.yahoo.vespa.config.search.core.RankingConstantsConfig;
+import com.yahoo.yolean.Exceptions;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * @author agent
+ */
+public class BatchFunctionEvaluatorTest {
+
+    private static final double delta = 0.00000000001;
+
+    /** Tests a function referencing functions which do and do not depend on the values in each binding set */
+    @Test
+    public void testScalarFunctionsWithSharedBindings() {
+        ModelsEvaluator models = createModels("src/test/resources/config/rankexpression/");
+        List<Map<String, Tensor>> bindingSets = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            bindingSets.add(Map.of("match", scalar(i)));
+
+        BatchFunctionEvaluator evaluator = models.batchEvaluatorOf("macros2", "secondphase");
+        evaluator.bind("fieldMatch(title).completeness", 0.5);
+        evaluator.bind("fieldMatch(title).earliness", 2);
+        evaluator.bind("fieldMatch(description).earliness", 3);
+        List<Tensor> results = evaluator.evaluate(bindingSets);
+
+        assertEquals(bindingSets.size(), results.size());
+        for (int i = 0; i < bindingSets.size(); i++) {
+            FunctionEvaluator single = models.evaluatorOf("macros2", "secondphase");
+            single.bind("fieldMatch(title).completeness", 0.5);
+            single.bind("fieldMatch(title).earliness", 2);
+            single.bind("fieldMatch(description).earliness", 3);
+            single.bind("match", i);
+            assertEquals(single.evaluate().asDouble(), results.get(i).asDouble(), delta);
+            assertEquals(8 * i + 35 + 140 + 270, results.get(i).asDouble(), delta);
+        }
+    }
+
+    @Test
+    public void testFusedDenseEvaluation() {
+        Model model = createModel("sum(query * doc, x) / 2 + bias",
+                                  "query", "tensor(x[3])", "doc", "tensor(x[3])", "bias", "tensor()");
+        List<Map<String, Tensor>> bindingSets = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+            bindingSets.add(Map.of("doc", Tensor.from("tensor(x[3]):[" + i + ", " + (i + 1) + ", " + (i * 2) + "]"),
+                                   "bias", scalar(i)));
+        assertBatchEvaluation(model, true, bindingSets, "query", Tensor.from("tensor(x[3]):[1, 2, 3]"));
+    }
+
+    @Test
+    public void testFusedMappedEvaluation() {
+        Model model = createModel("reduce(map(query * doc, f(a)(a * a)), max, k) - 1",
+                                  "query", "tensor(k{})", "doc", "tensor(k{})");
+        List<Map<String, Tensor>> bindingSets = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+            bindingSets.add(Map.of("doc", Tensor.from("tensor(k{}):{{k:a}:" + i + ", {k:b}:" + (2 - i) + "}")));
+        assertBatchEvaluation(model, true, bindingSets, "query", Tensor.from("tensor(k{}):{{k:a}:1, {k:b}:3}"));
+    }
+
+    @Test
+    public void testUnfusableEvaluation() {
+        // Reduces the batch dimension
+        assertBatchEvaluation(createModel("sum(query * doc)", "query", "tensor(x[3])", "doc", "tensor(x[3])"),
+                              false, denseBindingSets("doc"), "query", Tensor.from("tensor(x[3]):[1, 2, 3]"));
+
+        // Divides a double by a tensor
+        assertBatchEvaluation(createModel("2 / sum(query * doc, x)", "query", "tensor(x[3])", "doc", "tensor(x[3])"),
+                              false, denseBindingSets("doc"), "query", Tensor.from("tensor(x[3]):[1, 2, 3]"));
+
+        // Different bindings in each set
+        List<Map<String, Tensor>> bindingSets = denseBindingSets("doc");
+        bindingSets.set(1, Map.of("query", Tensor.from("tensor(x[3]):[3, 2, 1]"), "doc", Tensor.from("tensor(x[3]):[1, 1, 1]")));
+        assertBatchEvaluation(createModel("sum(query * doc, x)", "query", "tensor(x[3])", "doc", "tensor(x[3])"),
+                              false, bindingSets, "query", Tensor.from("tensor(x[3]):[1, 2, 3]"));
+    }
+
+    @Test
+    public void testBindingValidation() {
+        Model model = createModel("sum(query * doc, x)", "query", "tensor(x[3])", "doc", "tensor(x[3])");
+        try {
+            model.batchEvaluatorOf("test").evaluate(List.of(Map.of("doc", Tensor.from("tensor(y[3]):[1, 2, 3]"))));
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("'doc' must be of type tensor(x[3]), not tensor(y[3])", Exceptions.toMessageString(e));
+        }
+
+        try {
+            List<Map<String, Tensor>> bindingSets = denseBindingSets("doc");
+            bindingSets.set(1, Map.of("query", Tensor.from("tensor(x[3]):[1, 2, 3]")));
+            model.batchEvaluatorOf("test").bind("query", Tensor.from("tensor(x[3]):[1, 2, 3]")).evaluate(bindingSets);
+            fail("Expected exception");
+        }
+        catch (IllegalStateException e) {
+            assertEquals("Argument 'doc' must be bound to a value of type tensor(x[3])", Exceptions.toMessageString(e));
+        }
+
+        try {
+            BatchFunctionEvaluator evaluator = model.batchEvaluatorOf("test");
+            evaluator.bind("query", Tensor.from("tensor(x[3]):[1, 2, 3]"));
+            evaluator.evaluate(denseBindingSets("doc"));
+            evaluator.bind("query", Tensor.from("tensor(x[3]):[1, 2, 3]"));
+            fail("Expected exception");
+        }
+        catch (IllegalStateException e) {
+            assertEquals("Cannot bind a new value in a used evaluator", Exceptions.toMessageString(e));
+        }
+    }
+
+    private void assertBatchEvaluation(Model model, boolean fused, List<Map<String, Tensor>> bindingSets,
+                                       String sharedName, Tensor sharedValue) {
+        BatchFunctionEvaluator evaluator = model.batchEvaluatorOf("test");
+        evaluator.bind(sharedName, sharedValue);
+        assertEquals(fused, evaluator.canFuse(bindingSets));
+        List<Tensor> results = evaluator.evaluate(bindingSets);
+
+        assertEquals(bindingSets.size(), results.size());
+        for (int i = 0; i < bindingSets.size(); i++) {
+            FunctionEvaluator single = model.evaluatorOf("test");
+            single.bind(sharedName, sharedValue);
+            bindingSets.get(i).forEach(single::bind);
+            assertEquals(single.evaluate(), results.get(i));
+        }
+    }
+
+    private List<Map<String, Tensor>> denseBindingSets(String name) {
+        List<Map<String, Tensor>> bindingSets = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+            bindingSets.add(Map.of(name, Tensor.from("tensor(x[3]):[" + i + ", 1, " + (i + 1) + "]")));
+        return bindingSets;
+    }
+
+    /** Creates a model with a function named "test" from an expression and pairs of argument names and types */
+    private Model createModel(String expression, String ... arguments) {
+        ExpressionFunction function = new ExpressionFunction("test", RankingExpression.from(expression));
+        for (int i = 0; i < arguments.length; i += 2)
+            function = function.withArgument(arguments[i], TensorType.fromSpec(arguments[i + 1]));
+        return new Model("test-model", List.of(function));
+    }
+
+    private static Tensor scalar(double value) {
+        return Tensor.Builder.of(TensorType.empty).cell(value).build();
+    }
+
+    private ModelsEvaluator createModels(String path) {
+        Path configDir = Path.fromString(path);
+        RankProfilesConfig config = new ConfigGetter<>(new FileSource(configDir.append("rank-profiles.cfg").toFile()),
+                                                       RankProfilesConfig.class).getConfig("");
+        RankingConstantsConfig constantsConfig = new ConfigGetter<>(new FileSource(configDir.append("ranking-constants.cfg").toFile()),
+                                                                    RankingConstantsConfig.class).getConfig("");
+        return new ModelsEvaluator(config, constantsConfig, MockFileAcquirer.returnFile(null));
+    }
+
+}
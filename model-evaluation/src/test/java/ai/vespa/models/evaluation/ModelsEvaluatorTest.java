@@ -7,6 +7,7 @@ import com.yahoo.filedistribution.fileacquirer.MockFileAcquirer;
 import com.yahoo.path.Path;
 import com.yahoo.searchlib.rankingexpression.ExpressionFunction;
 import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.compilation.CompiledNode;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorType;
 import com.yahoo.vespa.config.search.RankProfilesConfig;
@@ -60,6 +61,16 @@ public class ModelsEvaluatorTest {
         }
     }
 
+    /** Tests a function defined as match + fieldMatch(title) + rankingExpression(myfeature) */
+    @Test
+    public void testScalarFunctionsAreCompiled() {
+        ModelsEvaluator models = createModels("src/test/resources/config/rankexpression/");
+        FunctionEvaluator function = models.evaluatorOf("macros", "firstphase");
+        assertTrue(function.function().getBody().getRoot() instanceof CompiledNode);
+        function.setMissingValue(1);
+        assertEquals(102.0, function.evaluate().asDouble(), delta);
+    }
+
     @Test
     public void testBindingValidation() {
         List<ExpressionFunction> functions = new ArrayList<>();
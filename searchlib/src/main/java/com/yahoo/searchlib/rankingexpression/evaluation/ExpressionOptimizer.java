@@ -2,6 +2,7 @@
 package com.yahoo.searchlib.rankingexpression.evaluation;
 
 import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.compilation.CompilationOptimizer;
 import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTForestOptimizer;
 import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTOptimizer;
 import com.yahoo.searchlib.rankingexpression.evaluation.tensoroptimization.TensorOptimizer;
@@ -26,6 +27,8 @@ import com.yahoo.searchlib.rankingexpression.evaluation.tensoroptimization.Tenso
  * // contextForOtherThread = context.clone();
  * </code>
  * <p>
+ * Compilation of expressions to JVM classes (the {@link CompilationOptimizer}) must be enabled explicitly.
+ * <p>
  * Instances of this class are not multithread safe.
  *
  * @author bratseth
@@ -35,6 +38,11 @@ public class ExpressionOptimizer {
     private GBDTOptimizer gbdtOptimizer = new GBDTOptimizer();
     private GBDTForestOptimizer gbdtForestOptimizer = new GBDTForestOptimizer();
     private TensorOptimizer tensorOptimizer = new TensorOptimizer();
+    private CompilationOptimizer compilationOptimizer = new CompilationOptimizer();
+
+    public ExpressionOptimizer() {
+        compilationOptimizer.setEnabled(false); // opt-in, as clients may depend on the nodes produced by the other optimizers
+    }
 
     /** Gets an optimizer instance used by this by class name, or null if the optimizer is not known */
     public Optimizer getOptimizer(Class<?> clazz) {
@@ -44,6 +52,8 @@ public class ExpressionOptimizer {
             return gbdtForestOptimizer;
         if (clazz == tensorOptimizer.getClass())
             return tensorOptimizer;
+        if (clazz == compilationOptimizer.getClass())
+            return compilationOptimizer;
         return null;
     }
 
@@ -53,6 +63,7 @@ public class ExpressionOptimizer {
         gbdtOptimizer.optimize(expression, contextIndex, report);
         gbdtForestOptimizer.optimize(expression, contextIndex, report);
         tensorOptimizer.optimize(expression, contextIndex, report);
+        compilationOptimizer.optimize(expression, contextIndex, report);
         return report;
     }
 
@@ -0,0 +1,93 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.compilation;
+
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.ContextIndex;
+import com.yahoo.searchlib.rankingexpression.evaluation.OptimizationReport;
+import com.yahoo.searchlib.rankingexpression.evaluation.Optimizer;
+import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTForestNode;
+import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTNode;
+import com.yahoo.searchlib.rankingexpression.rule.ArithmeticNode;
+import com.yahoo.searchlib.rankingexpression.rule.CompositeNode;
+import com.yahoo.searchlib.rankingexpression.rule.ConstantNode;
+import com.yahoo.searchlib.rankingexpression.rule.EmbracedNode;
+import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
+import com.yahoo.searchlib.rankingexpression.rule.LambdaFunctionNode;
+import com.yahoo.searchlib.rankingexpression.rule.ReferenceNode;
+import com.yahoo.searchlib.rankingexpression.rule.TensorFunctionNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the largest scalar subexpressions of an expression, including optimized GBDT forests,
+ * by nodes evaluating a compiled JVM class. This should run after the other optimizers.
+ *
+ * @author agent
+ */
+public class CompilationOptimizer extends Optimizer {
+
+    /** The minimal number of operations in an expression for it to be worth compiling */
+    private static final int minOperations = 2;
+
+    private OptimizationReport report;
+
+    /**
+     * Compiles the scalar subexpressions of the given expression
+     *
+     * @param expression the expression to destructively optimize
+     * @param context    a fast lookup context created from the given expression
+     * @param report     the optimization report to which actions of this is logged
+     */
+    @Override
+    public void optimize(RankingExpression expression, ContextIndex context, OptimizationReport report) {
+        if ( ! isEnabled()) return;
+
+        this.report = report;
+        expression.setRoot(findAndCompile(expression.getRoot(), context));
+        report.note("Expression compilation done");
+    }
+
+    private ExpressionNode findAndCompile(ExpressionNode node, ContextIndex context) {
+        if (operationsIn(node) >= minOperations && ExpressionCompiler.canCompile(node, context))
+            return compile(node, context);
+
+        // Subexpressions of tensor functions and lambdas are evaluated against other contexts
+        if ( ! (node instanceof CompositeNode) || node instanceof TensorFunctionNode || node instanceof LambdaFunctionNode)
+            return node;
+
+        CompositeNode composite = (CompositeNode)node;
+        List<ExpressionNode> children = new ArrayList<>();
+        for (ExpressionNode child : composite.children())
+            children.add(findAndCompile(child, context));
+        return composite.setChildren(children);
+    }
+
+    private ExpressionNode compile(ExpressionNode node, ContextIndex context) {
+        try {
+            CompiledNode compiledNode = new CompiledNode(node, ExpressionCompiler.isBoolean(node),
+                                                         ExpressionCompiler.compile(node, context));
+            report.incMetric("Compiled expressions", 1);
+            return compiledNode;
+        }
+        catch (RuntimeException e) {
+            report.note("Could not compile " + node + ": " + e.getMessage());
+            return node;
+        }
+    }
+
+    /** Returns the number of operations of the given node, counting each GBDT tree or forest as many */
+    private static int operationsIn(ExpressionNode node) {
+        if (node instanceof GBDTNode || node instanceof GBDTForestNode) return minOperations;
+        if (node instanceof ConstantNode || node instanceof ReferenceNode) return 0;
+        if ( ! (node instanceof CompositeNode)) return 0;
+
+        int operations = node instanceof EmbracedNode ? 0 : 1;
+        if (node instanceof ArithmeticNode)
+            operations = ((ArithmeticNode)node).operators().size();
+        for (ExpressionNode child : ((CompositeNode)node).children())
+            operations += operationsIn(child);
+        return operations;
+    }
+
+}
@@ -0,0 +1,51 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.compilation;
+
+import com.yahoo.searchlib.rankingexpression.evaluation.Context;
+import com.yahoo.searchlib.rankingexpression.rule.Function;
+
+/**
+ * Superclass of the classes generated by the expression compiler. A subclass evaluates a single expression
+ * on primitive doubles, reading variable values by index from the context.
+ *
+ * This is public because the generated subclasses are defined in their own class loaders.
+ *
+ * @author agent
+ */
+public abstract class CompiledExpression {
+
+    /** The constants of the expression which are not stored in the constant pool of the generated class */
+    protected final double[] constants;
+
+    protected CompiledExpression(double[] constants) {
+        this.constants = constants;
+    }
+
+    /**
+     * Evaluates this expression in the given context
+     *
+     * @throws UnsupportedOperationException if a variable in the context does not have a double value
+     */
+    public abstract double evaluate(Context context);
+
+    // Operations invoked by the generated code, which are inlined by the JIT compiler.
+    // These implement the semantics of the corresponding operations on DoubleCompatibleValue,
+    // where any value other than 0 is true, and true and false are 1 and 0.
+
+    public static double and(double x, double y) {
+        return x != 0 && y != 0 ? 1 : 0;
+    }
+
+    public static double or(double x, double y) {
+        return x != 0 || y != 0 ? 1 : 0;
+    }
+
+    public static double not(double x) {
+        return x != 0 ? 0 : 1;
+    }
+
+    public static double power(double x, double y) {
+        return Function.pow.evaluate(x, y);
+    }
+
+}
@@ -0,0 +1,76 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.compilation;
+
+import com.yahoo.searchlib.rankingexpression.Reference;
+import com.yahoo.searchlib.rankingexpression.evaluation.BooleanValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.Context;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.Value;
+import com.yahoo.searchlib.rankingexpression.rule.CompositeNode;
+import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
+import com.yahoo.searchlib.rankingexpression.rule.SerializationContext;
+import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.evaluation.TypeContext;
+
+import java.util.Deque;
+
+/**
+ * An expression node which is evaluated by a compiled expression.
+ * This has the same type and string form as the node it is compiled from.
+ *
+ * When a variable does not have a double value (e.g because it is a tensor), the node this is compiled from
+ * is evaluated instead. If this happens repeatedly the compiled expression is no longer used.
+ *
+ * @author agent
+ */
+public final class CompiledNode extends ExpressionNode {
+
+    /** The number of evaluations falling back to the node this is compiled from before the compiled one is dropped */
+    private static final int maxFallbacks = 100;
+
+    /** The node this is compiled from */
+    private final ExpressionNode node;
+
+    /** Whether the node this is compiled from returns a boolean */
+    private final boolean isBoolean;
+
+    /** The compiled expression, or null if the node this is compiled from should be evaluated instead */
+    private transient volatile CompiledExpression compiled;
+
+    /** The number of evaluations which have fallen back to the node this is compiled from. Not exact. */
+    private transient int fallbacks = 0;
+
+    CompiledNode(ExpressionNode node, boolean isBoolean, CompiledExpression compiled) {
+        this.node = node;
+        this.isBoolean = isBoolean;
+        this.compiled = compiled;
+    }
+
+    /** Returns the node this is compiled from */
+    public ExpressionNode node() { return node; }
+
+    @Override
+    public TensorType type(TypeContext<Reference> context) { return node.type(context); }
+
+    @Override
+    public Value evaluate(Context context) {
+        CompiledExpression compiled = this.compiled;
+        if (compiled != null) {
+            try {
+                double value = compiled.evaluate(context);
+                return isBoolean ? new BooleanValue(value != 0) : new DoubleValue(value);
+            }
+            catch (UnsupportedOperationException e) { // a variable without a double value
+                if (++fallbacks >= maxFallbacks)
+                    this.compiled = null;
+            }
+        }
+        return node.evaluate(context);
+    }
+
+    @Override
+    public StringBuilder toString(StringBuilder string, SerializationContext context, Deque<String> path, CompositeNode parent) {
+        return node.toString(string, context, path, parent);
+    }
+
+}
@@ -0,0 +1,678 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.compilation;
+
+import com.yahoo.searchlib.rankingexpression.evaluation.Context;
+import com.yahoo.searchlib.rankingexpression.evaluation.ContextIndex;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleCompatibleValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTForestNode;
+import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTNode;
+import com.yahoo.searchlib.rankingexpression.rule.ArithmeticNode;
+import com.yahoo.searchlib.rankingexpression.rule.ArithmeticOperator;
+import com.yahoo.searchlib.rankingexpression.rule.ComparisonNode;
+import com.yahoo.searchlib.rankingexpression.rule.CompositeNode;
+import com.yahoo.searchlib.rankingexpression.rule.ConstantNode;
+import com.yahoo.searchlib.rankingexpression.rule.EmbracedNode;
+import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
+import com.yahoo.searchlib.rankingexpression.rule.Function;
+import com.yahoo.searchlib.rankingexpression.rule.FunctionNode;
+import com.yahoo.searchlib.rankingexpression.rule.IfNode;
+import com.yahoo.searchlib.rankingexpression.rule.NegativeNode;
+import com.yahoo.searchlib.rankingexpression.rule.NotNode;
+import com.yahoo.searchlib.rankingexpression.rule.ReferenceNode;
+import com.yahoo.searchlib.rankingexpression.rule.SetMembershipNode;
+import com.yahoo.searchlib.rankingexpression.rule.TruthOperator;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTNode.MAX_LEAF_VALUE;
+import static com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTNode.MAX_VARIABLES;
+
+/**
+ * Compiles an expression to a JVM class which evaluates it on primitive doubles, without creating any values,
+ * such that it can be compiled to efficient machine code by the JIT compiler.
+ *
+ * This supports scalar expressions of constants, variables which are present in the context index, arithmetic,
+ * comparisons, conditions, functions and set membership, as well as optimized GBDT trees and forests.
+ * Large expressions are split into multiple methods, as the JIT compiler does not compile methods larger than 8k.
+ *
+ * @author agent
+ */
+class ExpressionCompiler {
+
+    /** The max estimated bytecode size of a generated method */
+    private static final int maxMethodSize = 4000;
+
+    /** A larger node is moved to a new method rather than split when less than this remains of the current method */
+    private static final int minSplitSize = 500;
+
+    /** Nodes smaller than this are never moved to a method of their own */
+    private static final int minMethodSize = 100;
+
+    /** The max estimated bytecode size of an expression whose constants are stored in the constant pool */
+    private static final int maxConstantPoolCodeSize = 60000;
+
+    /** The estimated bytecode size per value of an optimized GBDT tree */
+    private static final int gbdtValueSize = 12;
+
+    private static final String contextType = Type.getInternalName(Context.class);
+    private static final String functionType = Type.getInternalName(Function.class);
+    private static final String truthOperatorType = Type.getInternalName(TruthOperator.class);
+    private static final String superType = Type.getInternalName(CompiledExpression.class);
+
+    /** Descriptor of methods returning the value of a node, taking the context and constants */
+    private static final String nodeMethodDescriptor = "(L" + contextType + ";[D)D";
+
+    /** Descriptor of methods adding the value of trees to a sum, taking the sum, the context and constants */
+    private static final String forestMethodDescriptor = "(DL" + contextType + ";[D)D";
+
+    private static final AtomicLong compiledCount = new AtomicLong();
+
+    private final ContextIndex context;
+    private final String className;
+    private final ClassWriter classWriter;
+    private final boolean useConstantPool;
+
+    /** The estimated bytecode sizes of nodes, as computed */
+    private final Map<ExpressionNode, Integer> sizes = new IdentityHashMap<>();
+
+    /** The constants which are not stored in the constant pool */
+    private final List<Double> constants = new ArrayList<>();
+    private final Map<Long, Integer> constantIndexes = new HashMap<>();
+
+    /** Methods which are referenced but not yet generated */
+    private final Deque<Runnable> pendingMethods = new ArrayDeque<>();
+    private int methodCount = 0;
+
+    private ExpressionCompiler(ExpressionNode node, ContextIndex context) {
+        this.context = context;
+        this.className = Type.getInternalName(CompiledExpression.class).replace("CompiledExpression", "GeneratedExpression") +
+                         compiledCount.incrementAndGet();
+        this.classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                return "java/lang/Object"; // the generated code never merges different object types
+            }
+        };
+        this.useConstantPool = sizeOf(node) <= maxConstantPoolCodeSize;
+    }
+
+    /** Returns whether the given node can be compiled, looking up variables in the given context */
+    static boolean canCompile(ExpressionNode node, ContextIndex context) {
+        if (node instanceof ConstantNode)
+            return ((ConstantNode)node).getValue() instanceof DoubleCompatibleValue;
+        if (node instanceof ReferenceNode)
+            return indexOf((ReferenceNode)node, context) >= 0;
+        if (node instanceof GBDTNode || node instanceof GBDTForestNode)
+            return true;
+        if (node instanceof SetMembershipNode) {
+            SetMembershipNode setMembership = (SetMembershipNode)node;
+            if ( ! (setMembership.getTestValue() instanceof ReferenceNode)) return false;
+            if ( ! canCompile(setMembership.getTestValue(), context)) return false;
+            return setMembership.getSetValues().stream().allMatch(value -> value instanceof ConstantNode &&
+                                                                           ((ConstantNode)value).getValue() instanceof DoubleValue);
+        }
+        if (node instanceof ArithmeticNode || node instanceof ComparisonNode || node instanceof IfNode ||
+            node instanceof NotNode || node instanceof NegativeNode || node instanceof EmbracedNode ||
+            node instanceof FunctionNode) {
+            for (ExpressionNode child : ((CompositeNode)node).children())
+                if ( ! canCompile(child, context)) return false;
+            return true;
+        }
+        return false;
+    }
+
+    /** Returns whether the value of the given node is a boolean rather than a double */
+    static boolean isBoolean(ExpressionNode node) {
+        if (node instanceof ComparisonNode || node instanceof NotNode || node instanceof SetMembershipNode)
+            return true;
+        if (node instanceof EmbracedNode)
+            return isBoolean(((EmbracedNode)node).getValue());
+        if (node instanceof ArithmeticNode) {
+            ExpressionNode binary = toBinary((ArithmeticNode)node);
+            if (binary instanceof ArithmeticNode) {
+                ArithmeticOperator operator = ((ArithmeticNode)binary).operators().get(0);
+                return operator == ArithmeticOperator.AND || operator == ArithmeticOperator.OR;
+            }
+            return isBoolean(binary);
+        }
+        return false;
+    }
+
+    /**
+     * Compiles the given node, which must be compilable in the given context.
+     *
+     * @throws IllegalArgumentException if the node cannot be compiled
+     */
+    static CompiledExpression compile(ExpressionNode node, ContextIndex context) {
+        return new ExpressionCompiler(node, context).compile(node);
+    }
+
+    private CompiledExpression compile(ExpressionNode node) {
+        classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SYNTHETIC,
+                          className, null, superType, null);
+        generateConstructor();
+        generateEvaluate(node);
+        while ( ! pendingMethods.isEmpty())
+            pendingMethods.removeFirst().run();
+        classWriter.visitEnd();
+
+        byte[] bytecode = classWriter.toByteArray();
+        Class<?> generatedClass = new GeneratedClassLoader().define(className.replace('/', '.'), bytecode);
+        try {
+            return (CompiledExpression)generatedClass.getConstructor(double[].class).newInstance((Object)constantArray());
+        }
+        catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Could not instantiate the class compiled from " + node, e);
+        }
+    }
+
+    private void generateConstructor() {
+        MethodVisitor method = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "([D)V", null, null);
+        method.visitCode();
+        method.visitVarInsn(Opcodes.ALOAD, 0);
+        method.visitVarInsn(Opcodes.ALOAD, 1);
+        method.visitMethodInsn(Opcodes.INVOKESPECIAL, superType, "<init>", "([D)V", false);
+        method.visitInsn(Opcodes.RETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+    }
+
+    private void generateEvaluate(ExpressionNode node) {
+        MethodVisitor method = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "evaluate", "(L" + contextType + ";)D", null, null);
+        method.visitCode();
+        method.visitVarInsn(Opcodes.ALOAD, 0);
+        method.visitFieldInsn(Opcodes.GETFIELD, superType, "constants", "[D");
+        method.visitVarInsn(Opcodes.ASTORE, 2);
+        new MethodEmitter(method, 1, 2, 3).emitInline(node);
+        method.visitInsn(Opcodes.DRETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+    }
+
+    /** Adds a static method with the given descriptor and body to this class, and returns its name */
+    private String addMethod(String descriptor, int contextSlot, int constantsSlot, int firstFreeSlot,
+                             Consumer<MethodEmitter> body) {
+        String name = "evaluate" + (++methodCount);
+        pendingMethods.addLast(() -> {
+            MethodVisitor method = classWriter.visitMethod(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC, name, descriptor, null, null);
+            method.visitCode();
+            body.accept(new MethodEmitter(method, contextSlot, constantsSlot, firstFreeSlot));
+            method.visitInsn(Opcodes.DRETURN);
+            method.visitMaxs(0, 0);
+            method.visitEnd();
+        });
+        return name;
+    }
+
+    private double[] constantArray() {
+        double[] array = new double[constants.size()];
+        for (int i = 0; i < array.length; i++)
+            array[i] = constants.get(i);
+        return array;
+    }
+
+    private int constantIndex(double value) {
+        return constantIndexes.computeIfAbsent(Double.doubleToRawLongBits(value), bits -> {
+            constants.add(value);
+            return constants.size() - 1;
+        });
+    }
+
+    /** Returns the estimated bytecode size of the given node */
+    private int sizeOf(ExpressionNode node) {
+        Integer size = sizes.get(node);
+        if (size == null) {
+            size = computeSizeOf(node);
+            sizes.put(node, size);
+        }
+        return size;
+    }
+
+    private int computeSizeOf(ExpressionNode node) {
+        if (node instanceof ConstantNode) return 5;
+        if (node instanceof ReferenceNode) return 7;
+        if (node instanceof GBDTNode) return ((GBDTNode)node).values().length * gbdtValueSize;
+        if (node instanceof GBDTForestNode) return ((GBDTForestNode)node).values().length * gbdtValueSize;
+        if (node instanceof SetMembershipNode) {
+            SetMembershipNode setMembership = (SetMembershipNode)node;
+            return sizeOf(setMembership.getTestValue()) + 12 + 11 * setMembership.getSetValues().size();
+        }
+        int size = 12;
+        for (ExpressionNode child : ((CompositeNode)node).children())
+            size += sizeOf(child) + 3;
+        return size;
+    }
+
+    /** Returns the estimated bytecode size of the GBDT tree starting at the given position */
+    private static int sizeOfTree(double[] values, int pc) {
+        return (endOfTree(values, pc) - pc) * gbdtValueSize;
+    }
+
+    /** Returns the position after the GBDT tree starting at the given position */
+    private static int endOfTree(double[] values, int pc) {
+        while (true) {
+            double value = values[pc++];
+            if (value < MAX_LEAF_VALUE) return pc;
+            int offset = (int)value - MAX_LEAF_VALUE;
+            if (offset >= MAX_VARIABLES * 2 && offset < MAX_VARIABLES * 3)
+                pc += 1 + (int)values[pc]; // skip the set
+            else
+                pc++; // skip the compare constant
+            pc += (int)values[pc]; // continue with the false branch, which is last
+        }
+    }
+
+    /** Returns the index of the given variable in the context, or -1 if it is not present */
+    private static int indexOf(ReferenceNode node, ContextIndex context) {
+        try {
+            return context.getIndex(node.toString());
+        }
+        catch (RuntimeException e) { // not present: Contexts either throw or return null
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the given arithmetic node as a tree of nodes having a single operator each, where operations are
+     * grouped as they are when the node is evaluated, or the single child of the node if it has no operators.
+     */
+    static ExpressionNode toBinary(ArithmeticNode node) {
+        if (node.operators().size() == 1 && node.children().size() == 2) return node;
+
+        Iterator<ExpressionNode> child = node.children().iterator();
+        Deque<Operand> stack = new ArrayDeque<>();
+        stack.push(new Operand(ArithmeticOperator.OR, child.next()));
+        for (Iterator<ArithmeticOperator> it = node.operators().iterator(); it.hasNext() && child.hasNext();) {
+            ArithmeticOperator operator = it.next();
+            while (stack.peek().operator.hasPrecedenceOver(operator))
+                pop(stack);
+            stack.push(new Operand(operator, child.next()));
+        }
+        while (stack.size() > 1)
+            pop(stack);
+        return stack.getFirst().node;
+    }
+
+    private static void pop(Deque<Operand> stack) {
+        Operand right = stack.pop();
+        Operand left = stack.peek();
+        left.node = new ArithmeticNode(left.node, right.operator, right.node);
+    }
+
+    private static class Operand {
+
+        final ArithmeticOperator operator;
+        ExpressionNode node;
+
+        Operand(ArithmeticOperator operator, ExpressionNode node) {
+            this.operator = operator;
+            this.node = node;
+        }
+
+    }
+
+    /** Emits the code of a single method, and keeps track of its size */
+    private class MethodEmitter {
+
+        private final MethodVisitor method;
+        private final int contextSlot;
+        private final int constantsSlot;
+        private int nextFreeSlot;
+
+        /** The estimated size of the code emitted so far */
+        private int size = 0;
+
+        MethodEmitter(MethodVisitor method, int contextSlot, int constantsSlot, int firstFreeSlot) {
+            this.method = method;
+            this.contextSlot = contextSlot;
+            this.constantsSlot = constantsSlot;
+            this.nextFreeSlot = firstFreeSlot;
+        }
+
+        /** Returns whether a node of the given size should be emitted in this method rather than a new one */
+        private boolean fits(int nodeSize, boolean canSplit) {
+            if (size + nodeSize <= maxMethodSize || nodeSize < minMethodSize) return true;
+            return canSplit && size < maxMethodSize - minSplitSize;
+        }
+
+        /** Emits code leaving the value of the given node on the stack */
+        void emit(ExpressionNode node) {
+            if (fits(sizeOf(node), true))
+                emitInline(node);
+            else
+                invoke(addMethod(nodeMethodDescriptor, 0, 1, 2, emitter -> emitter.emitInline(node)));
+        }
+
+        /** Emits code leaving the value of the given node on the stack, in this method */
+        void emitInline(ExpressionNode node) {
+            if (node instanceof ConstantNode) {
+                constant(((ConstantNode)node).getValue().asDouble());
+            }
+            else if (node instanceof ReferenceNode) {
+                variable(indexOf((ReferenceNode)node, context));
+            }
+            else if (node instanceof EmbracedNode) {
+                emit(((EmbracedNode)node).getValue());
+            }
+            else if (node instanceof NegativeNode) {
+                emit(((NegativeNode)node).getValue());
+                instruction(Opcodes.DNEG);
+            }
+            else if (node instanceof NotNode) {
+                emit(((NotNode)node).getValue());
+                invokeOperation("not", "(D)D");
+            }
+            else if (node instanceof ComparisonNode) {
+                comparison((ComparisonNode)node);
+                instruction(Opcodes.I2D);
+            }
+            else if (node instanceof ArithmeticNode) {
+                arithmetic((ArithmeticNode)node);
+            }
+            else if (node instanceof IfNode) {
+                IfNode ifNode = (IfNode)node;
+                Label ifFalse = new Label();
+                Label end = new Label();
+                condition(ifNode.getCondition(), ifFalse);
+                emit(ifNode.getTrueExpression());
+                jump(Opcodes.GOTO, end);
+                method.visitLabel(ifFalse);
+                emit(ifNode.getFalseExpression());
+                method.visitLabel(end);
+            }
+            else if (node instanceof FunctionNode) {
+                FunctionNode function = (FunctionNode)node;
+                List<ExpressionNode> arguments = function.children();
+                field(functionType, function.getFunction().name());
+                for (int i = 0; i < 2; i++) {
+                    if (i < arguments.size())
+                        emit(arguments.get(i));
+                    else
+                        instruction(Opcodes.DCONST_0);
+                }
+                invokeVirtual(functionType, "evaluate", "(DD)D");
+            }
+            else if (node instanceof SetMembershipNode) {
+                setMembership((SetMembershipNode)node);
+            }
+            else if (node instanceof GBDTNode) {
+                tree(((GBDTNode)node).values(), 0);
+            }
+            else if (node instanceof GBDTForestNode) {
+                instruction(Opcodes.DCONST_0);
+                forest(((GBDTForestNode)node).values(), 0, true);
+            }
+            else {
+                throw new IllegalArgumentException("Cannot compile " + node);
+            }
+        }
+
+        /** Emits code which jumps to the given label if the given node is false */
+        private void condition(ExpressionNode node, Label ifFalse) {
+            if (node instanceof EmbracedNode) {
+                condition(((EmbracedNode)node).getValue(), ifFalse);
+            }
+            else if (node instanceof ComparisonNode) {
+                comparison((ComparisonNode)node);
+                jump(Opcodes.IFEQ, ifFalse);
+            }
+            else { // any non-zero value (including NaN) is true
+                emit(node);
+                instruction(Opcodes.DCONST_0);
+                instruction(Opcodes.DCMPL);
+                jump(Opcodes.IFEQ, ifFalse);
+            }
+        }
+
+        /** Emits code leaving the result of the given comparison on the stack as an int */
+        private void comparison(ComparisonNode node) {
+            field(truthOperatorType, node.getOperator().name());
+            emit(node.getLeftCondition());
+            emit(node.getRightCondition());
+            invokeVirtual(truthOperatorType, "evaluate", "(DD)Z");
+        }
+
+        private void arithmetic(ArithmeticNode node) {
+            ExpressionNode binary = toBinary(node);
+            if ( ! (binary instanceof ArithmeticNode)) {
+                emit(binary);
+                return;
+            }
+
+            ArithmeticNode operation = (ArithmeticNode)binary;
+            emit(operation.children().get(0));
+            emit(operation.children().get(1));
+            switch (operation.operators().get(0)) {
+                case OR: invokeOperation("or", "(DD)D"); break;
+                case AND: invokeOperation("and", "(DD)D"); break;
+                case PLUS: instruction(Opcodes.DADD); break;
+                case MINUS: instruction(Opcodes.DSUB); break;
+                case MULTIPLY: instruction(Opcodes.DMUL); break;
+                case DIVIDE: instruction(Opcodes.DDIV); break;
+                case MODULO: instruction(Opcodes.DREM); break;
+                case POWER: invokeOperation("power", "(DD)D"); break;
+                default: throw new IllegalArgumentException("Cannot compile operator " + operation.operators().get(0));
+            }
+        }
+
+        private void setMembership(SetMembershipNode node) {
+            emit(node.getTestValue());
+            int testValueSlot = newDoubleSlot();
+            localVariable(Opcodes.DSTORE, testValueSlot);
+            Label isMember = new Label();
+            Label end = new Label();
+            for (ExpressionNode value : node.getSetValues()) {
+                localVariable(Opcodes.DLOAD, testValueSlot);
+                constant(((ConstantNode)value).getValue().asDouble());
+                instruction(Opcodes.DCMPL);
+                jump(Opcodes.IFEQ, isMember);
+            }
+            instruction(Opcodes.DCONST_0);
+            jump(Opcodes.GOTO, end);
+            method.visitLabel(isMember);
+            instruction(Opcodes.DCONST_1);
+            method.visitLabel(end);
+        }
+
+        /**
+         * Emits code adding the value of each GBDT tree starting at the given position to the sum on the stack,
+         * as done by GBDTForestNode. Remaining trees are added in a new method if they do not fit in this.
+         */
+        private void forest(double[] values, int pc, boolean first) {
+            while (pc < values.length) {
+                int treeSize = (int)values[pc];
+                if ( ! first && size + treeSize * gbdtValueSize > maxMethodSize) {
+                    int start = pc;
+                    String name = addMethod(forestMethodDescriptor, 2, 3, 4, emitter -> {
+                        emitter.localVariable(Opcodes.DLOAD, 0);
+                        emitter.forest(values, start, true);
+                    });
+                    localVariable(Opcodes.ALOAD, contextSlot);
+                    localVariable(Opcodes.ALOAD, constantsSlot);
+                    invokeStatic(name, forestMethodDescriptor);
+                    return;
+                }
+                first = false;
+                subtree(values, pc + 1);
+                instruction(Opcodes.DADD);
+                pc += 1 + treeSize;
+            }
+        }
+
+        /** Emits code leaving the value of the GBDT tree starting at the given position on the stack */
+        private void subtree(double[] values, int pc) {
+            boolean isLeaf = values[pc] < MAX_LEAF_VALUE;
+            if (isLeaf || fits(sizeOfTree(values, pc), true))
+                tree(values, pc);
+            else
+                invoke(addMethod(nodeMethodDescriptor, 0, 1, 2, emitter -> emitter.tree(values, pc)));
+        }
+
+        /** Emits code evaluating a GBDT tree, as done by GBDTNode.evaluate, in this method */
+        private void tree(double[] values, int pc) {
+            double value = values[pc++];
+            if (value < MAX_LEAF_VALUE) {
+                constant(value);
+                return;
+            }
+
+            int offset = (int)value - MAX_LEAF_VALUE;
+            Label ifFalse = new Label();
+            if (offset < MAX_VARIABLES) { // <
+                variable(offset);
+                constant(values[pc++]);
+                instruction(Opcodes.DCMPG);
+                jump(Opcodes.IFGE, ifFalse);
+            }
+            else if (offset < MAX_VARIABLES * 2) { // ==
+                variable(offset - MAX_VARIABLES);
+                constant(values[pc++]);
+                instruction(Opcodes.DCMPL);
+                jump(Opcodes.IFNE, ifFalse);
+            }
+            else if (offset < MAX_VARIABLES * 3) { // in
+                variable(offset - MAX_VARIABLES * 2);
+                int testValueSlot = newDoubleSlot();
+                localVariable(Opcodes.DSTORE, testValueSlot);
+                Label isMember = new Label();
+                int setSize = (int)values[pc++];
+                for (int i = 0; i < setSize; i++) {
+                    localVariable(Opcodes.DLOAD, testValueSlot);
+                    constant(values[pc++]);
+                    instruction(Opcodes.DCMPL);
+                    jump(Opcodes.IFEQ, isMember);
+                }
+                jump(Opcodes.GOTO, ifFalse);
+                method.visitLabel(isMember);
+            }
+            else { // !(>=)
+                variable(offset - MAX_VARIABLES * 3);
+                constant(values[pc++]);
+                instruction(Opcodes.DCMPL);
+                jump(Opcodes.IFGE, ifFalse);
+            }
+
+            Label end = new Label();
+            subtree(values, pc + 1);
+            jump(Opcodes.GOTO, end);
+            method.visitLabel(ifFalse);
+            subtree(values, pc + (int)values[pc]);
+            method.visitLabel(end);
+        }
+
+        private void variable(int index) {
+            localVariable(Opcodes.ALOAD, contextSlot);
+            integer(index);
+            method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, contextType, "getDouble", "(I)D", false);
+            size += 3;
+        }
+
+        private void constant(double value) {
+            if (Double.doubleToRawLongBits(value) == 0L) {
+                instruction(Opcodes.DCONST_0);
+            }
+            else if (value == 1.0) {
+                instruction(Opcodes.DCONST_1);
+            }
+            else if (useConstantPool) {
+                method.visitLdcInsn(value);
+                size += 3;
+            }
+            else {
+                localVariable(Opcodes.ALOAD, constantsSlot);
+                integer(constantIndex(value));
+                instruction(Opcodes.DALOAD);
+            }
+        }
+
+        private void integer(int value) {
+            if (value >= -1 && value <= 5)
+                instruction(Opcodes.ICONST_0 + value);
+            else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE)
+                method.visitIntInsn(Opcodes.BIPUSH, value);
+            else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE)
+                method.visitIntInsn(Opcodes.SIPUSH, value);
+            else
+                method.visitLdcInsn(value);
+            size += 3;
+        }
+
+        private int newDoubleSlot() {
+            int slot = nextFreeSlot;
+            nextFreeSlot += 2;
+            return slot;
+        }
+
+        private void instruction(int opcode) {
+            method.visitInsn(opcode);
+            size += 1;
+        }
+
+        private void localVariable(int opcode, int slot) {
+            method.visitVarInsn(opcode, slot);
+            size += 2;
+        }
+
+        private void jump(int opcode, Label label) {
+            method.visitJumpInsn(opcode, label);
+            size += 3;
+        }
+
+        private void field(String owner, String name) {
+            method.visitFieldInsn(Opcodes.GETSTATIC, owner, name, "L" + owner + ";");
+            size += 3;
+        }
+
+        private void invoke(String name) {
+            localVariable(Opcodes.ALOAD, contextSlot);
+            localVariable(Opcodes.ALOAD, constantsSlot);
+            invokeStatic(name, nodeMethodDescriptor);
+        }
+
+        private void invokeStatic(String name, String descriptor) {
+            method.visitMethodInsn(Opcodes.INVOKESTATIC, className, name, descriptor, false);
+            size += 3;
+        }
+
+        private void invokeOperation(String name, String descriptor) {
+            method.visitMethodInsn(Opcodes.INVOKESTATIC, superType, name, descriptor, false);
+            size += 3;
+        }
+
+        private void invokeVirtual(String owner, String name, String descriptor) {
+            method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, owner, name, descriptor, false);
+            size += 3;
+        }
+
+    }
+
+    /** Defines a single generated class, such that it can be unloaded when no longer used */
+    private static class GeneratedClassLoader extends ClassLoader {
+
+        GeneratedClassLoader() {
+            super(CompiledExpression.class.getClassLoader());
+        }
+
+        Class<?> define(String name, byte[] bytecode) {
+            return defineClass(name, bytecode, 0, bytecode.length);
+        }
+
+    }
+
+}
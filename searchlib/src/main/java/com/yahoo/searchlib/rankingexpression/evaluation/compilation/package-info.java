@@ -0,0 +1,8 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+/**
+ * Compilation of ranking expressions to JVM classes
+ */
+@ExportPackage
+package com.yahoo.searchlib.rankingexpression.evaluation.compilation;
+
+import com.yahoo.osgi.annotation.ExportPackage;
@@ -8,6 +8,7 @@ import com.yahoo.searchlib.rankingexpression.evaluation.MapContext;
 import com.yahoo.searchlib.rankingexpression.evaluation.Value;
 import com.yahoo.tensor.TensorType;
 import com.yahoo.tensor.evaluation.TypeContext;
+import com.yahoo.tensor.functions.ScalarFunctions;
 
 import java.util.Collections;
 import java.util.Deque;
@@ -121,7 +122,7 @@ public class LambdaFunctionNode extends CompositeNode {
             case AND: return asFunctionExpression((left, right) -> ((left != 0.0) && (right != 0.0)) ? 1.0 : 0.0);
             case PLUS: return asFunctionExpression((left, right) -> left + right);
             case MINUS: return asFunctionExpression((left, right) -> left - right);
-            case MULTIPLY: return asFunctionExpression((left, right) -> left * right);
+            case MULTIPLY: return asMultiplyFunctionExpression();
             case DIVIDE: return asFunctionExpression((left, right) -> left / right);
             case MODULO: return asFunctionExpression((left, right) -> left % right);
             case POWER: return asFunctionExpression(Math::pow);
@@ -142,6 +143,16 @@ public class LambdaFunctionNode extends CompositeNode {
         });
     }
 
+    /** Returns a multiply function recognized by tensor functions which optimize products, such as ReduceJoin */
+    private Optional<DoubleBinaryOperator> asMultiplyFunctionExpression() {
+        return Optional.of(new ScalarFunctions.Multiply() {
+            @Override
+            public String toString() {
+                return LambdaFunctionNode.this.toString();
+            }
+        });
+    }
+
     private static Set<String> featuresAccessedIn(ExpressionNode node) {
         if (node instanceof ReferenceNode) {
             return Set.of(((ReferenceNode) node).reference().toString());
@@ -0,0 +1,170 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.compilation;
+
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.ArrayContext;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.ExpressionOptimizer;
+import com.yahoo.searchlib.rankingexpression.evaluation.OptimizationReport;
+import com.yahoo.searchlib.rankingexpression.evaluation.TensorValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.Value;
+import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTForestNode;
+import com.yahoo.searchlib.rankingexpression.parser.ParseException;
+import com.yahoo.searchlib.rankingexpression.rule.ArithmeticNode;
+import com.yahoo.tensor.Tensor;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that compiled expressions produce the same results as interpreted ones.
+ *
+ * @author agent
+ */
+public class CompilationOptimizerTestCase {
+
+    private static final List<String> variables = List.of("a", "b", "c");
+
+    /** Values of a, b and c to evaluate with, where NaN means not set */
+    private static final List<double[]> valueSets = List.of(new double[] { 1, 2, 3 },
+                                                            new double[] { 0, 0, 0 },
+                                                            new double[] { -1.5, 2.5, 0.5 },
+                                                            new double[] { 3, 1, 2 },
+                                                            new double[] { 2, 2, Double.NaN },
+                                                            new double[] { 1e300, -1e-300, 7 });
+
+    @Test
+    public void testScalarExpressions() throws ParseException {
+        assertCompiled("a - b - c - 1");
+        assertCompiled("a / b / c * 2");
+        assertCompiled("a + b * c - a % b");
+        assertCompiled("a - b * c + a / b - c");
+        assertCompiled("a * b ^ c ^ 2");
+        assertCompiled("-a + -(b - c)");
+        assertCompiled("if (a < b, a * b, b - a)");
+        assertCompiled("if (a, b + c, c - 1)");
+        assertCompiled("if (a > b && b <= c || c == 1, a + b, a - b)");
+        assertCompiled("!(a >= b) + a * 2");
+        assertCompiled("max(a, b) + min(c, 3) * sqrt(b)");
+        assertCompiled("log(a) + exp(b) - pow(c, 2) + fmod(a, 3) + atan2(a, b) + isNan(c)");
+        assertCompiled("if (a in [1, 2, 3], b * 2, c * 3)");
+        assertCompiled("(a < b) + (b != c) * 2");
+        assertCompiled("if (a ~= b, 1, 2) + a");
+        assertCompiled("if (a < 1, 0.5, if (b >= 2, -0.25, 3.5)) + if (c < 2, 1, 2)");
+    }
+
+    @Test
+    public void testBooleanExpressions() throws ParseException {
+        assertCompiled("a < b && b < c");
+        assertCompiled("a && b || c && !a");
+        assertCompiled("!(a + b)");
+        assertCompiled("(a in [1, 2]) && (b in [2])");
+    }
+
+    @Test
+    public void testLargeExpression() throws ParseException {
+        StringBuilder expression = new StringBuilder();
+        for (int i = 0; i < 2000; i++)
+            expression.append(i == 0 ? "" : " + ").append("if (a < ").append(i % 7).append(", ").append(i).append(", b * ").append(i).append(")");
+        assertCompiled(expression.toString());
+    }
+
+    @Test
+    public void testGbdtForest() throws ParseException {
+        Random random = new Random(1);
+        StringBuilder forest = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            forest.append(i == 0 ? "" : " + ")
+                  .append("if (a < ").append(random.nextDouble()).append(", ")
+                  .append("if (b == ").append(random.nextInt(3)).append(", ").append(random.nextDouble()).append(", ").append(random.nextDouble()).append("), ")
+                  .append("if (c in [1, 2], ").append(random.nextDouble()).append(", ")
+                  .append("if (!(b >= ").append(random.nextDouble()).append("), ").append(random.nextDouble()).append(", ").append(random.nextDouble()).append(")))");
+        }
+        RankingExpression expression = new RankingExpression(forest.toString());
+        RankingExpression optimized = new RankingExpression(forest.toString());
+        ArrayContext prototype = new ArrayContext(optimized, DoubleValue.NaN);
+
+        // Forests sum trees in a different order than the expression, so compare to an uncompiled forest
+        new ExpressionOptimizer().optimize(expression, prototype);
+        assertTrue(expression.getRoot() instanceof GBDTForestNode);
+
+        ExpressionOptimizer optimizer = new ExpressionOptimizer();
+        optimizer.getOptimizer(CompilationOptimizer.class).setEnabled(true);
+        OptimizationReport report = optimizer.optimize(optimized, prototype);
+        assertEquals(1, report.getMetric("Compiled expressions"));
+        assertTrue(optimized.getRoot() instanceof CompiledNode);
+        assertTrue(((CompiledNode)optimized.getRoot()).node() instanceof GBDTForestNode);
+
+        for (int i = 0; i < 100; i++) {
+            ArrayContext context = prototype.clone();
+            context.put("a", random.nextDouble());
+            context.put("b", random.nextInt(4) / 2.0);
+            context.put("c", random.nextInt(4));
+            assertEquals(expression.evaluate(context).asDouble(), optimized.evaluate(context).asDouble(), 0);
+        }
+    }
+
+    @Test
+    public void testOnlyScalarSubexpressionsAreCompiled() throws ParseException {
+        String expressionString = "sum(t * a) + (a * b + c)";
+        RankingExpression expression = new RankingExpression(expressionString);
+        ArrayContext context = new ArrayContext(expression, DoubleValue.NaN);
+        OptimizationReport report = new OptimizationReport();
+        new CompilationOptimizer().optimize(expression, context, report);
+        assertEquals(1, report.getMetric("Compiled expressions"));
+        assertTrue(((ArithmeticNode)expression.getRoot()).children().get(1) instanceof CompiledNode);
+        assertEquals(new RankingExpression(expressionString).toString(), expression.toString());
+
+        context.put("t", new TensorValue(Tensor.from("tensor(x[2]):[1, 2]")));
+        context.put("a", 2);
+        context.put("b", 3);
+        context.put("c", 4);
+        assertEquals(16.0, expression.evaluate(context).asDouble(), 0);
+    }
+
+    @Test
+    public void testNonDoubleValuesAreInterpreted() throws ParseException {
+        String expressionString = "a * b + c";
+        RankingExpression expression = new RankingExpression(expressionString);
+        ArrayContext context = new ArrayContext(expression, DoubleValue.NaN);
+        new CompilationOptimizer().optimize(expression, context, new OptimizationReport());
+        assertTrue(expression.getRoot() instanceof CompiledNode);
+
+        context.put("a", new TensorValue(Tensor.from("tensor(x[2]):[1, 2]")));
+        context.put("b", 2);
+        context.put("c", 1);
+        assertEquals(Tensor.from("tensor(x[2]):[3, 5]"), expression.evaluate(context).asTensor());
+
+        context.put("a", 3);
+        assertEquals(7.0, expression.evaluate(context).asDouble(), 0);
+    }
+
+    private void assertCompiled(String expressionString) throws ParseException {
+        RankingExpression expression = new RankingExpression(expressionString);
+        RankingExpression compiled = new RankingExpression(expressionString);
+        ArrayContext prototype = new ArrayContext(compiled, true, DoubleValue.NaN);
+        OptimizationReport report = new OptimizationReport();
+        new CompilationOptimizer().optimize(compiled, prototype, report);
+        assertTrue("Compiled " + expressionString + ":\n" + report, compiled.getRoot() instanceof CompiledNode);
+        assertEquals(expression.toString(), compiled.toString());
+
+        for (double[] values : valueSets) {
+            ArrayContext context = prototype.clone();
+            for (int i = 0; i < variables.size(); i++) {
+                if ( ! Double.isNaN(values[i]))
+                    context.put(variables.get(i), values[i]);
+            }
+            Value expected = expression.evaluate(context);
+            Value result = compiled.evaluate(context);
+            String message = expressionString + " with " + Arrays.toString(values);
+            assertEquals(message, expected.asDouble(), result.asDouble(), 0);
+            assertEquals(message, expected.getClass(), result.getClass());
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor.benchmark;
+
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.evaluation.MapEvaluationContext;
+import com.yahoo.tensor.evaluation.Name;
+import com.yahoo.tensor.evaluation.VariableTensor;
+import com.yahoo.tensor.functions.ConstantTensor;
+import com.yahoo.tensor.functions.Reduce;
+import com.yahoo.tensor.functions.ReduceJoin;
+import com.yahoo.tensor.functions.TensorFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the composite tensor functions used in model evaluation:
+ * Dot products (reduce-join), matrix multiplication, fully connected layers (xw_plus_b) and concatenation.
+ * Shapes are those of a small MLP over a 768 dimensional embedding.
+ *
+ * @author agent
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FunctionBenchmark {
+
+    /** The cell value type of all tensors */
+    @Param({"double", "float"})
+    public String cellType;
+
+    private Tensor embedding1, embedding2;
+    private Tensor weights, bias;
+    private Tensor mixedDocuments;
+
+    private TensorFunction<Name> dotProduct;
+    private TensorFunction<Name> mixedDotProduct;
+    private MapEvaluationContext<Name> context;
+
+    @Setup
+    public void setup() {
+        Tensors tensors = new Tensors();
+        embedding1 = tensors.create("tensor<" + cellType + ">(x[768])", 0);
+        embedding2 = tensors.create("tensor<" + cellType + ">(x[768])", 0);
+        weights = tensors.create("tensor<" + cellType + ">(x[768],y[256])", 0);
+        bias = tensors.create("tensor<" + cellType + ">(y[256])", 0);
+        mixedDocuments = tensors.create("tensor<" + cellType + ">(doc{},x[768])", 32);
+
+        dotProduct = new ReduceJoin<>(new ConstantTensor<>(embedding1), new VariableTensor<>("argument"),
+                                      (a, b) -> a * b, Reduce.Aggregator.sum, List.of("x"));
+        mixedDotProduct = new ReduceJoin<>(new ConstantTensor<>(mixedDocuments), new VariableTensor<>("argument"),
+                                           (a, b) -> a * b, Reduce.Aggregator.sum, List.of("x"));
+        context = new MapEvaluationContext<>();
+        context.put("argument", embedding2);
+    }
+
+    @Benchmark
+    public Tensor denseDotProduct() {
+        return dotProduct.evaluate(context);
+    }
+
+    @Benchmark
+    public Tensor mixedDotProduct() {
+        return mixedDotProduct.evaluate(context);
+    }
+
+    @Benchmark
+    public Tensor vectorMatrixProduct() {
+        return embedding1.matmul(weights, "x");
+    }
+
+    @Benchmark
+    public Tensor xwPlusB() {
+        return embedding1.xwPlusB(weights, bias, "x");
+    }
+
+    @Benchmark
+    public Tensor concat() {
+        return embedding1.concat(embedding2, "x");
+    }
+
+}
@@ -0,0 +1,79 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor.benchmark;
+
+import com.yahoo.tensor.Tensor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks joins of dense, sparse and mixed tensors.
+ *
+ * @author agent
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JoinBenchmark {
+
+    /** The cell value type of all tensors */
+    @Param({"double", "float"})
+    public String cellType;
+
+    private Tensor denseVector1, denseVector2;
+    private Tensor denseMatrix1, denseMatrix2;
+    private Tensor sparse1, sparse2;
+    private Tensor mixed, mixedBroadcast;
+
+    @Setup
+    public void setup() {
+        Tensors tensors = new Tensors();
+        denseVector1 = tensors.create("tensor<" + cellType + ">(x[768])", 0);
+        denseVector2 = tensors.create("tensor<" + cellType + ">(x[768])", 0);
+        denseMatrix1 = tensors.create("tensor<" + cellType + ">(x[768],y[64])", 0);
+        denseMatrix2 = tensors.create("tensor<" + cellType + ">(x[768],y[64])", 0);
+        sparse1 = tensors.create("tensor<" + cellType + ">(key{},category{})", 40);
+        sparse2 = tensors.create("tensor<" + cellType + ">(key{},category{})", 40);
+        mixed = tensors.create("tensor<" + cellType + ">(key{},x[128])", 32);
+        mixedBroadcast = tensors.create("tensor<" + cellType + ">(x[128])", 0);
+    }
+
+    @Benchmark
+    public Tensor denseVectorsSameShape() {
+        return denseVector1.multiply(denseVector2);
+    }
+
+    @Benchmark
+    public Tensor denseMatricesSameShape() {
+        return denseMatrix1.multiply(denseMatrix2);
+    }
+
+    @Benchmark
+    public Tensor denseMatrixBroadcastVector() {
+        return denseMatrix1.multiply(denseVector1);
+    }
+
+    @Benchmark
+    public Tensor sparseSameShape() {
+        return sparse1.multiply(sparse2);
+    }
+
+    @Benchmark
+    public Tensor mixedBroadcastDense() {
+        return mixed.multiply(mixedBroadcast);
+    }
+
+}
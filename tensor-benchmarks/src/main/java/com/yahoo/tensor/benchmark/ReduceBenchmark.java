@@ -0,0 +1,85 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor.benchmark;
+
+import com.yahoo.tensor.Tensor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks reduces of dense, sparse and mixed tensors.
+ *
+ * @author agent
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReduceBenchmark {
+
+    /** The cell value type of all tensors */
+    @Param({"double", "float"})
+    public String cellType;
+
+    private Tensor denseVector;
+    private Tensor denseMatrix;
+    private Tensor sparse;
+    private Tensor mixed;
+
+    @Setup
+    public void setup() {
+        Tensors tensors = new Tensors();
+        denseVector = tensors.create("tensor<" + cellType + ">(x[768])", 0);
+        denseMatrix = tensors.create("tensor<" + cellType + ">(x[64],y[768])", 0);
+        sparse = tensors.create("tensor<" + cellType + ">(key{},category{})", 40);
+        mixed = tensors.create("tensor<" + cellType + ">(key{},x[128])", 32);
+    }
+
+    @Benchmark
+    public Tensor denseVectorSumAll() {
+        return denseVector.sum();
+    }
+
+    @Benchmark
+    public Tensor denseMatrixSumTrailingDimension() {
+        return denseMatrix.sum("y");
+    }
+
+    @Benchmark
+    public Tensor denseMatrixSumLeadingDimension() {
+        return denseMatrix.sum("x");
+    }
+
+    @Benchmark
+    public Tensor denseMatrixMaxAll() {
+        return denseMatrix.max();
+    }
+
+    @Benchmark
+    public Tensor sparseSumOneDimension() {
+        return sparse.sum("category");
+    }
+
+    @Benchmark
+    public Tensor mixedSumDenseDimension() {
+        return mixed.sum("x");
+    }
+
+    @Benchmark
+    public Tensor mixedSumSparseDimension() {
+        return mixed.sum("key");
+    }
+
+}
@@ -0,0 +1,75 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor.benchmark;
+
+import com.yahoo.io.GrowableByteBuffer;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.serialization.JsonFormat;
+import com.yahoo.tensor.serialization.TypedBinaryFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks encoding and decoding of tensors in the binary formats (dense, sparse and mixed,
+ * as selected by {@link TypedBinaryFormat} from the tensor type) and the JSON format.
+ *
+ * @author agent
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializationBenchmark {
+
+    /** The type of the tensor to serialize */
+    @Param({"tensor<float>(x[768])",
+            "tensor(x[64],y[768])",
+            "tensor(key{},category{})",
+            "tensor<float>(key{},x[128])"})
+    public String type;
+
+    private Tensor tensor;
+    private byte[] binary;
+    private byte[] json;
+
+    @Setup
+    public void setup() {
+        tensor = new Tensors().create(type, 32);
+        binary = TypedBinaryFormat.encode(tensor);
+        json = JsonFormat.encode(tensor);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return TypedBinaryFormat.encode(tensor);
+    }
+
+    @Benchmark
+    public Tensor decodeBinary() {
+        return TypedBinaryFormat.decode(Optional.of(tensor.type()), GrowableByteBuffer.wrap(binary));
+    }
+
+    @Benchmark
+    public byte[] encodeJson() {
+        return JsonFormat.encode(tensor);
+    }
+
+    @Benchmark
+    public Tensor decodeJson() {
+        return JsonFormat.decode(tensor.type(), json);
+    }
+
+}
@@ -0,0 +1,50 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor.benchmark;
+
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorAddress;
+import com.yahoo.tensor.TensorType;
+
+import java.util.Random;
+
+/**
+ * Creates tensors with random content for benchmarking.
+ * A fixed seed is used such that runs are comparable.
+ *
+ * @author agent
+ */
+class Tensors {
+
+    private final Random random = new Random(1234567);
+
+    /** Returns a tensor of the given type spec. Mapped dimensions will have the given number of labels. */
+    Tensor create(String typeSpec, int labelsPerMappedDimension) {
+        return create(TensorType.fromSpec(typeSpec), labelsPerMappedDimension);
+    }
+
+    Tensor create(TensorType type, int labelsPerMappedDimension) {
+        Tensor.Builder builder = Tensor.Builder.of(type);
+        long[] sizes = new long[type.dimensions().size()];
+        for (int i = 0; i < sizes.length; i++) {
+            TensorType.Dimension dimension = type.dimensions().get(i);
+            sizes[i] = dimension.isIndexed() ? dimension.size().get() : labelsPerMappedDimension;
+        }
+        addCells(builder, type, sizes, new long[sizes.length], 0);
+        return builder.build();
+    }
+
+    private void addCells(Tensor.Builder builder, TensorType type, long[] sizes, long[] indexes, int dimension) {
+        if (dimension == sizes.length) {
+            String[] labels = new String[indexes.length];
+            for (int i = 0; i < indexes.length; i++)
+                labels[i] = String.valueOf(indexes[i]);
+            builder.cell(TensorAddress.of(labels), random.nextDouble());
+            return;
+        }
+        for (long i = 0; i < sizes[dimension]; i++) {
+            indexes[dimension] = i;
+            addCells(builder, type, sizes, indexes, dimension + 1);
+        }
+    }
+
+}
@@ -34,6 +34,9 @@ public class ClusterConnection implements AutoCloseable {
     private final int clusterId;
     private final ThreadGroup ioThreadGroup;
 
+    /** Drains the old connections of the io threads of this, or null if this does not run threads */
+    private final ConnectionDrainer connectionDrainer;
+
     /** The shared queue of document operations the io threads will take from */
     private final DocumentQueue documentQueue;
 
@@ -100,6 +103,16 @@ public class ClusterConnection implements AutoCloseable {
                 ioThreads.add(ioThread);
             }
         }
+        if (connectionParams.runThreads()) {
+            Duration pollInterval = Duration.ofMillis(Math.max(1, (long)(1000.0 / Math.max(0.1, idlePollFrequency))));
+            List<Runnable> drainers = new ArrayList<>();
+            for (IOThread ioThread : ioThreads)
+                drainers.add(ioThread::checkOldConnections);
+            connectionDrainer = new ConnectionDrainer(drainers, pollInterval, ioThreadGroup, "Cluster " + clusterId);
+        }
+        else {
+            connectionDrainer = null;
+        }
     }
 
     public int getClusterId() {
@@ -117,6 +130,8 @@ public class ClusterConnection implements AutoCloseable {
     @SuppressWarnings("ThrowableResultOfMethodCallIgnored")
     @Override
     public void close() {
+        if (connectionDrainer != null)
+            connectionDrainer.close();
         List<Exception> exceptions = new ArrayList<>();
         for (IOThread ioThread : ioThreads) {
             try {
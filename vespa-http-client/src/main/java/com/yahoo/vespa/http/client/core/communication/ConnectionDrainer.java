@@ -0,0 +1,87 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.client.core.communication;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Regularly runs a set of tasks draining old connections, e.g one per io thread.
+ * Each task is scheduled independently and is skipped while its previous run is still in progress,
+ * so a slow endpoint only delays the draining of its own connections. The tasks run in a pool which
+ * only holds threads while tasks are running, so the number of threads is given by the number of
+ * concurrently slow drains rather than by the number of connections.
+ *
+ * @author agent
+ */
+class ConnectionDrainer implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(ConnectionDrainer.class.getName());
+
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService executor;
+
+    /**
+     * Creates and starts a connection drainer
+     *
+     * @param drainers the tasks to run regularly
+     * @param interval the time between the end of a run of a task and the start of the next run of it
+     * @param threadGroup the thread group of the threads created by this
+     * @param name the prefix of the names of the threads created by this
+     */
+    ConnectionDrainer(List<Runnable> drainers, Duration interval, ThreadGroup threadGroup, String name) {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory(threadGroup, name + " drain scheduler"));
+        this.executor = new ThreadPoolExecutor(0, Math.max(1, drainers.size()), 10, TimeUnit.SECONDS,
+                                               new SynchronousQueue<>(), threadFactory(threadGroup, name + " drainer"));
+        for (Runnable drainer : drainers) {
+            AtomicBoolean running = new AtomicBoolean(false);
+            scheduler.scheduleWithFixedDelay(() -> submit(drainer, running),
+                                             interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void submit(Runnable drainer, AtomicBoolean running) {
+        if ( ! running.compareAndSet(false, true)) return; // The previous run is still in progress
+
+        try {
+            executor.execute(() -> {
+                try {
+                    drainer.run();
+                } catch (Exception e) {
+                    log.log(Level.WARNING, "Connection draining failed: " + e.getMessage(), e);
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) { // Closed
+            running.set(false);
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        executor.shutdown(); // let drains in progress complete
+    }
+
+    private static ThreadFactory threadFactory(ThreadGroup threadGroup, String name) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(threadGroup, runnable, name + " " + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+}
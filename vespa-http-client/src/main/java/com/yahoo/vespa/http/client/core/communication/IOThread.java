@@ -106,15 +106,11 @@ public class IOThread implements Runnable, AutoCloseable {
                                                                localQueueTimeOut,
                                                                statusReceivedCounter,
                                                                resultQueue,
-                                                               stopSignal,
                                                                clock);
         if (runThreads) {
             this.thread = new Thread(ioThreadGroup, this, "IOThread " + endpoint);
             thread.setDaemon(true);
             thread.start();
-            Thread thread = new Thread(ioThreadGroup, oldConnectionsDrainer, "IOThread " + endpoint + " drainer");
-            thread.setDaemon(true);
-            thread.start();
         }
         else {
             this.thread = null;
@@ -431,6 +427,15 @@ public class IOThread implements Runnable, AutoCloseable {
             sleepIfProblemsGettingSyncedConnection(connectionState, oldState);
     }
 
+    /**
+     * Polls for the results of operations sent on previous connections of this, and closes those done.
+     * This is called regularly by the owner of this when this runs its own thread, and otherwise from tick().
+     */
+    void checkOldConnections() {
+        if (stopSignal.getCount() == 0) return;
+        oldConnectionsDrainer.checkOldConnections();
+    }
+
     private void drainFirstDocumentsInQueueIfOld() {
         while (true) {
             Optional<Document> document = documentQueue.pollDocumentIfTimedoutInQueue(localQueueTimeOut);
@@ -515,7 +520,7 @@ public class IOThread implements Runnable, AutoCloseable {
      * We need to drain results on the connection where they were sent to make sure we request results on
      * the node which received the operation also when going through a VIP.
      */
-    private static class OldConnectionsDrainer implements Runnable {
+    private static class OldConnectionsDrainer {
 
         private static final Logger log = Logger.getLogger(OldConnectionsDrainer.class.getName());
 
@@ -526,7 +531,6 @@ public class IOThread implements Runnable, AutoCloseable {
         private final Duration localQueueTimeOut;
         private final AtomicInteger statusReceivedCounter;
         private final EndpointResultQueue resultQueue;
-        private final CountDownLatch stopSignal;
         private final Clock clock;
 
         /**
@@ -542,7 +546,6 @@ public class IOThread implements Runnable, AutoCloseable {
                              Duration localQueueTimeOut,
                              AtomicInteger statusReceivedCounter,
                              EndpointResultQueue resultQueue,
-                             CountDownLatch stopSignal,
                              Clock clock) {
             this.endpoint = endpoint;
             this.clusterId = clusterId;
@@ -551,7 +554,6 @@ public class IOThread implements Runnable, AutoCloseable {
             this.localQueueTimeOut = localQueueTimeOut;
             this.statusReceivedCounter = statusReceivedCounter;
             this.resultQueue = resultQueue;
-            this.stopSignal = stopSignal;
             this.clock = clock;
         }
 
@@ -560,23 +562,6 @@ public class IOThread implements Runnable, AutoCloseable {
             connections.add(connection);
         }
 
-        @Override
-        public void run() {
-            while (stopSignal.getCount() > 0) {
-                try {
-                    checkOldConnections();
-                    Thread.sleep(pollInterval.toMillis());
-                }
-                catch (InterruptedException e) {
-                    log.log(Level.WARNING, "Close thread was interrupted: " + e.getMessage(), e);
-                    Thread.currentThread().interrupt();
-                    return;
-                } catch (Exception e) {
-                    log.log(Level.WARNING, "Connection draining failed: " + e.getMessage(), e);
-                }
-            }
-        }
-
         public void checkOldConnections() {
             for (GatewayConnection connection : connections) {
                 if (!resultQueue.hasInflightOperations(connection)) {
@@ -0,0 +1,68 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.client.core.communication;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class ConnectionDrainerTest {
+
+    @Test
+    public void testASlowDrainDoesNotDelayOthers() throws InterruptedException {
+        CountDownLatch slowStarted = new CountDownLatch(1);
+        CountDownLatch releaseSlow = new CountDownLatch(1);
+        AtomicInteger slowRuns = new AtomicInteger();
+        Runnable slow = () -> {
+            slowRuns.incrementAndGet();
+            slowStarted.countDown();
+            try {
+                releaseSlow.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        };
+        CountDownLatch fastRunsWhileSlow = new CountDownLatch(10);
+        Runnable fast = fastRunsWhileSlow::countDown;
+
+        ConnectionDrainer drainer = new ConnectionDrainer(Arrays.asList(slow, fast), Duration.ofMillis(1),
+                                                          Thread.currentThread().getThreadGroup(), "test");
+        try {
+            assertTrue(slowStarted.await(60, TimeUnit.SECONDS));
+            assertTrue("The fast drain keeps running while the slow one is blocked",
+                       fastRunsWhileSlow.await(60, TimeUnit.SECONDS));
+            assertEquals("The slow drain is not started again while it is in progress", 1, slowRuns.get());
+        }
+        finally {
+            releaseSlow.countDown();
+            drainer.close();
+        }
+    }
+
+    @Test
+    public void testFailingDrainsAreRunAgain() throws InterruptedException {
+        CountDownLatch runs = new CountDownLatch(3);
+        Runnable failing = () -> {
+            runs.countDown();
+            throw new IllegalStateException("Failing on purpose");
+        };
+        ConnectionDrainer drainer = new ConnectionDrainer(Arrays.asList(failing), Duration.ofMillis(1),
+                                                          Thread.currentThread().getThreadGroup(), "test");
+        try {
+            assertTrue(runs.await(60, TimeUnit.SECONDS));
+        }
+        finally {
+            drainer.close();
+        }
+    }
+
+}
@@ -28,6 +28,17 @@ class IndexedDoubleTensor extends IndexedTensor {
     @Override
     public float getFloat(long valueIndex) { return (float)get(valueIndex); }
 
+    @Override
+    public double[] doubleValues() { return values; }
+
+    @Override
+    public float[] floatValues() {
+        float[] floatValues = new float[values.length];
+        for (int i = 0; i < values.length; i++)
+            floatValues[i] = (float)values[i];
+        return floatValues;
+    }
+
     @Override
     public IndexedTensor withType(TensorType type) {
         throwOnIncompatibleType(type);
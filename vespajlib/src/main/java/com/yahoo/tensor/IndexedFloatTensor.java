@@ -28,6 +28,17 @@ class IndexedFloatTensor extends IndexedTensor {
     @Override
     public float getFloat(long valueIndex) { return values[(int)valueIndex]; }
 
+    @Override
+    public double[] doubleValues() {
+        double[] doubleValues = new double[values.length];
+        for (int i = 0; i < values.length; i++)
+            doubleValues[i] = values[i];
+        return doubleValues;
+    }
+
+    @Override
+    public float[] floatValues() { return values; }
+
     @Override
     public IndexedTensor withType(TensorType type) {
         throwOnIncompatibleType(type);
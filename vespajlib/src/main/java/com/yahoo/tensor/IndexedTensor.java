@@ -134,6 +134,20 @@ public abstract class IndexedTensor implements Tensor {
      */
     public abstract float getFloat(long valueIndex);
 
+    /**
+     * Returns the values of this in <i>standard value order</i> as doubles.
+     * If this holds double values, this is the underlying value array, which <b>must not be mutated</b>
+     * by the caller. Otherwise it is a copy.
+     */
+    public abstract double[] doubleValues();
+
+    /**
+     * Returns the values of this in <i>standard value order</i> as floats.
+     * If this holds float values, this is the underlying value array, which <b>must not be mutated</b>
+     * by the caller. Otherwise it is a copy.
+     */
+    public abstract float[] floatValues();
+
     static long toValueIndex(long[] indexes, DimensionSizes sizes) {
         if (indexes.length == 1) return indexes[0]; // for speed
         if (indexes.length == 0) return 0; // for speed
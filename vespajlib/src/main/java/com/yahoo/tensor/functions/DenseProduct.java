@@ -0,0 +1,225 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor.functions;
+
+import com.yahoo.tensor.DimensionSizes;
+import com.yahoo.tensor.IndexedTensor;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorType;
+
+/**
+ * Computes the sum over a single common dimension of the product of two dense tensors of at most two dimensions,
+ * that is, dot products, vector-matrix and matrix-matrix products.
+ * This is done in loops over the primitive value arrays which are simple enough to be unrolled and
+ * vectorized by the JIT compiler. If both tensors hold float values the products and sums are computed in float.
+ *
+ * The product is computed as r(i,j) = sum over c of a(i,c) * b(j,c), where i is the dimension only in a,
+ * j the dimension only in b, and c the common dimension. Each of i and j may be absent, which is represented
+ * as having a size of 1.
+ *
+ * @author agent
+ */
+class DenseProduct {
+
+    /** The number of values of the common dimension to process for all i before moving on to the next block */
+    private static final int blockSize = 64;
+
+    private final IndexedTensor a, b;
+    private final TensorType resultType;
+
+    private final int iSize, jSize, cSize;
+    private final int aiStride, acStride, bjStride, bcStride, riStride, rjStride;
+
+    private DenseProduct(IndexedTensor a, IndexedTensor b, String dimension, TensorType resultType) {
+        this.a = a;
+        this.b = b;
+        this.resultType = resultType;
+
+        int acIndex = a.type().indexOfDimension(dimension).get();
+        int bcIndex = b.type().indexOfDimension(dimension).get();
+        int aiIndex = a.type().dimensions().size() == 2 ? 1 - acIndex : -1;
+        int bjIndex = b.type().dimensions().size() == 2 ? 1 - bcIndex : -1;
+
+        iSize = size(a, aiIndex);
+        jSize = size(b, bjIndex);
+        cSize = Math.min(size(a, acIndex), size(b, bcIndex));
+        aiStride = stride(a, aiIndex);
+        acStride = stride(a, acIndex);
+        bjStride = stride(b, bjIndex);
+        bcStride = stride(b, bcIndex);
+
+        if (aiIndex >= 0 && bjIndex >= 0) { // the result is a matrix
+            boolean iFirst = a.type().dimensions().get(aiIndex).name().compareTo(b.type().dimensions().get(bjIndex).name()) < 0;
+            riStride = iFirst ? jSize : 1;
+            rjStride = iFirst ? 1 : iSize;
+        }
+        else { // the result is a vector or scalar, and the absent dimension has size 1
+            riStride = 1;
+            rjStride = 1;
+        }
+    }
+
+    /** Returns the size of the dimension at the given index, or 1 if it is -1 */
+    private static int size(IndexedTensor tensor, int dimensionIndex) {
+        if (dimensionIndex < 0) return 1;
+        return (int)tensor.dimensionSizes().size(dimensionIndex);
+    }
+
+    /** Returns the stride of the dimension at the given index in a tensor of at most two dimensions */
+    private static int stride(IndexedTensor tensor, int dimensionIndex) {
+        if (dimensionIndex < 0) return 0;
+        if (dimensionIndex == tensor.type().dimensions().size() - 1) return 1;
+        return (int)tensor.dimensionSizes().size(dimensionIndex + 1);
+    }
+
+    /**
+     * Returns whether the product of the given tensors summed over the given dimension can be computed by this.
+     * Both tensors must be indexed, have at most two dimensions, and the given dimension must be their only
+     * common dimension.
+     */
+    static boolean canCompute(Tensor a, Tensor b, String dimension) {
+        if ( ! (a instanceof IndexedTensor) || ! (b instanceof IndexedTensor)) return false;
+        if (a.type().dimensions().size() > 2 || b.type().dimensions().size() > 2) return false;
+        if (a.type().indexOfDimension(dimension).isEmpty() || b.type().indexOfDimension(dimension).isEmpty()) return false;
+        for (TensorType.Dimension aDimension : a.type().dimensions())
+            if ( ! aDimension.name().equals(dimension) && b.type().indexOfDimension(aDimension.name()).isPresent())
+                return false;
+        return true;
+    }
+
+    /** Returns the product of the given tensors summed over the given dimension */
+    static Tensor compute(IndexedTensor a, IndexedTensor b, String dimension, TensorType resultType) {
+        return new DenseProduct(a, b, dimension, resultType).compute();
+    }
+
+    private Tensor compute() {
+        DimensionSizes.Builder sizes = new DimensionSizes.Builder(resultType.dimensions().size());
+        for (int i = 0; i < sizes.dimensions(); i++)
+            sizes.set(i, sizeOf(resultType.dimensions().get(i).name()));
+
+        if (resultType.valueType() == TensorType.Value.FLOAT) {
+            float[] result = new float[iSize * jSize];
+            compute(a.floatValues(), b.floatValues(), result);
+            return IndexedTensor.Builder.of(resultType, sizes.build(), result).build();
+        }
+        else {
+            double[] result = new double[iSize * jSize];
+            compute(a.doubleValues(), b.doubleValues(), result);
+            return IndexedTensor.Builder.of(resultType, sizes.build(), result).build();
+        }
+    }
+
+    private long sizeOf(String dimension) {
+        return a.type().indexOfDimension(dimension).isPresent() ? iSize : jSize;
+    }
+
+    private void compute(double[] a, double[] b, double[] result) {
+        if (bjStride == 1 && rjStride == 1) // b and result rows are contiguous along j
+            axpy(a, aiStride, acStride, iSize, b, bcStride, jSize, result, riStride);
+        else if (aiStride == 1 && riStride == 1) // a and result rows are contiguous along i
+            axpy(b, bjStride, bcStride, jSize, a, acStride, iSize, result, rjStride);
+        else if (acStride == 1 && bcStride == 1) // a and b are contiguous along c
+            dot(a, b, result);
+        else
+            strided(a, b, result);
+    }
+
+    private void compute(float[] a, float[] b, float[] result) {
+        if (bjStride == 1 && rjStride == 1)
+            axpy(a, aiStride, acStride, iSize, b, bcStride, jSize, result, riStride);
+        else if (aiStride == 1 && riStride == 1)
+            axpy(b, bjStride, bcStride, jSize, a, acStride, iSize, result, rjStride);
+        else if (acStride == 1 && bcStride == 1)
+            dot(a, b, result);
+        else
+            strided(a, b, result);
+    }
+
+    /**
+     * Adds the rows of y scaled by the values of x to the rows of result: For each c and i,
+     * result(i, j) += x(i, c) * y(c, j) for all j, where y and result are contiguous along j.
+     * The common dimension is processed in blocks such that the rows of y in a block stay in cache for all i.
+     */
+    private void axpy(double[] x, int xiStride, int xcStride, int iSize,
+                      double[] y, int ycStride, int jSize,
+                      double[] result, int riStride) {
+        for (int cBlockStart = 0; cBlockStart < cSize; cBlockStart += blockSize) {
+            int cBlockEnd = Math.min(cBlockStart + blockSize, cSize);
+            for (int i = 0; i < iSize; i++) {
+                int resultStart = i * riStride;
+                for (int c = cBlockStart; c < cBlockEnd; c++) {
+                    double xValue = x[i * xiStride + c * xcStride];
+                    int yStart = c * ycStride;
+                    for (int j = 0; j < jSize; j++)
+                        result[resultStart + j] += xValue * y[yStart + j];
+                }
+            }
+        }
+    }
+
+    private void axpy(float[] x, int xiStride, int xcStride, int iSize,
+                      float[] y, int ycStride, int jSize,
+                      float[] result, int riStride) {
+        for (int cBlockStart = 0; cBlockStart < cSize; cBlockStart += blockSize) {
+            int cBlockEnd = Math.min(cBlockStart + blockSize, cSize);
+            for (int i = 0; i < iSize; i++) {
+                int resultStart = i * riStride;
+                for (int c = cBlockStart; c < cBlockEnd; c++) {
+                    float xValue = x[i * xiStride + c * xcStride];
+                    int yStart = c * ycStride;
+                    for (int j = 0; j < jSize; j++)
+                        result[resultStart + j] += xValue * y[yStart + j];
+                }
+            }
+        }
+    }
+
+    /** Computes each result value as the dot product of a row in a and a row in b, both contiguous along c */
+    private void dot(double[] a, double[] b, double[] result) {
+        for (int i = 0; i < iSize; i++) {
+            int aStart = i * aiStride;
+            for (int j = 0; j < jSize; j++) {
+                int bStart = j * bjStride;
+                double sum = 0;
+                for (int c = 0; c < cSize; c++)
+                    sum += a[aStart + c] * b[bStart + c];
+                result[i * riStride + j * rjStride] = sum;
+            }
+        }
+    }
+
+    private void dot(float[] a, float[] b, float[] result) {
+        for (int i = 0; i < iSize; i++) {
+            int aStart = i * aiStride;
+            for (int j = 0; j < jSize; j++) {
+                int bStart = j * bjStride;
+                float sum = 0;
+                for (int c = 0; c < cSize; c++)
+                    sum += a[aStart + c] * b[bStart + c];
+                result[i * riStride + j * rjStride] = sum;
+            }
+        }
+    }
+
+    private void strided(double[] a, double[] b, double[] result) {
+        for (int i = 0; i < iSize; i++) {
+            for (int j = 0; j < jSize; j++) {
+                double sum = 0;
+                for (int c = 0; c < cSize; c++)
+                    sum += a[i * aiStride + c * acStride] * b[j * bjStride + c * bcStride];
+                result[i * riStride + j * rjStride] = sum;
+            }
+        }
+    }
+
+    private void strided(float[] a, float[] b, float[] result) {
+        for (int i = 0; i < iSize; i++) {
+            for (int j = 0; j < jSize; j++) {
+                float sum = 0;
+                for (int c = 0; c < cSize; c++)
+                    sum += a[i * aiStride + c * acStride] * b[j * bjStride + c * bcStride];
+                result[i * riStride + j * rjStride] = sum;
+            }
+        }
+    }
+
+}
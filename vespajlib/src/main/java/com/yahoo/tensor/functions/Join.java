@@ -93,7 +93,11 @@ public class Join<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMETYP
 
     static Tensor evaluate(Tensor a, Tensor b, TensorType joinedType, DoubleBinaryOperator combinator) {
         // Choose join algorithm
-        if (hasSingleIndexedDimension(a) && hasSingleIndexedDimension(b) && a.type().dimensions().get(0).name().equals(b.type().dimensions().get(0).name()))
+        if (isDenseBlock(b, a))
+            return denseBlockJoin((IndexedTensor)b, (IndexedTensor)a, joinedType, true, combinator);
+        else if (isDenseBlock(a, b))
+            return denseBlockJoin((IndexedTensor)a, (IndexedTensor)b, joinedType, false, combinator);
+        else if (hasSingleIndexedDimension(a) && hasSingleIndexedDimension(b) && a.type().dimensions().get(0).name().equals(b.type().dimensions().get(0).name()))
             return indexedVectorJoin((IndexedTensor)a, (IndexedTensor)b, joinedType, combinator);
         else if (joinedType.dimensions().size() == a.type().dimensions().size() && joinedType.dimensions().size() == b.type().dimensions().size())
             return singleSpaceJoin(a, b, joinedType, combinator);
@@ -110,6 +114,74 @@ public class Join<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMETYP
         return tensor.type().dimensions().size() == 1 && tensor.type().dimensions().get(0).isIndexed();
     }
 
+    /**
+     * Returns whether both tensors are indexed and the dimensions of the subspace are either the leading or the
+     * trailing dimensions of the superspace, with the same sizes. Identical shapes are a special case of this.
+     */
+    private static boolean isDenseBlock(Tensor subspace, Tensor superspace) {
+        if ( ! (subspace instanceof IndexedTensor) || ! (superspace instanceof IndexedTensor)) return false;
+        int subDimensions = subspace.type().dimensions().size();
+        int superDimensions = superspace.type().dimensions().size();
+        if (subDimensions > superDimensions) return false;
+        return isDenseBlock((IndexedTensor)subspace, (IndexedTensor)superspace, 0) ||
+               isDenseBlock((IndexedTensor)subspace, (IndexedTensor)superspace, superDimensions - subDimensions);
+    }
+
+    private static boolean isDenseBlock(IndexedTensor subspace, IndexedTensor superspace, int offset) {
+        for (int i = 0; i < subspace.type().dimensions().size(); i++) {
+            if ( ! subspace.type().dimensions().get(i).name().equals(superspace.type().dimensions().get(offset + i).name()))
+                return false;
+            if (subspace.dimensionSizes().size(i) != superspace.dimensionSizes().size(offset + i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Joins a dense subspace which is either a leading or trailing block of the dimensions of a dense superspace,
+     * by direct iteration over the values in standard value order.
+     */
+    private static Tensor denseBlockJoin(IndexedTensor subspace, IndexedTensor superspace, TensorType joinedType,
+                                         boolean reversedArgumentOrder, DoubleBinaryOperator combinator) {
+        DoubleBinaryOperator superspaceFirst = reversedArgumentOrder ? combinator
+                                                                     : (superValue, subValue) -> combinator.applyAsDouble(subValue, superValue);
+        int subspaceSize = (int)subspace.size();
+        double[] values = new double[(int)superspace.size()];
+        if (subspaceSize > 0) {
+            boolean trailing = isDenseBlock(subspace, superspace,
+                                            superspace.type().dimensions().size() - subspace.type().dimensions().size());
+            int blocks = values.length / subspaceSize;
+            if (trailing)
+                denseTrailingBlockJoin(subspace, subspaceSize, superspace, blocks, values, superspaceFirst);
+            else
+                denseLeadingBlockJoin(subspace, subspaceSize, superspace, blocks, values, superspaceFirst);
+        }
+        return IndexedTensor.Builder.of(joinedType, superspace.dimensionSizes(), values).build();
+    }
+
+    /** Joins each consecutive block of the superspace with the subspace */
+    private static void denseTrailingBlockJoin(IndexedTensor subspace, int subspaceSize,
+                                               IndexedTensor superspace, int blocks,
+                                               double[] values, DoubleBinaryOperator superspaceFirst) {
+        int valueIndex = 0;
+        for (int block = 0; block < blocks; block++) {
+            for (int i = 0; i < subspaceSize; i++, valueIndex++)
+                values[valueIndex] = superspaceFirst.applyAsDouble(superspace.get(valueIndex), subspace.get(i));
+        }
+    }
+
+    /** Joins each consecutive block of the superspace with a single value of the subspace */
+    private static void denseLeadingBlockJoin(IndexedTensor subspace, int subspaceSize,
+                                              IndexedTensor superspace, int blockSize,
+                                              double[] values, DoubleBinaryOperator superspaceFirst) {
+        int valueIndex = 0;
+        for (int i = 0; i < subspaceSize; i++) {
+            double subspaceValue = subspace.get(i);
+            for (int j = 0; j < blockSize; j++, valueIndex++)
+                values[valueIndex] = superspaceFirst.applyAsDouble(superspace.get(valueIndex), subspaceValue);
+        }
+    }
+
     private static Tensor indexedVectorJoin(IndexedTensor a, IndexedTensor b, TensorType type, DoubleBinaryOperator combinator) {
         long joinedRank = Math.min(a.dimensionSizes().size(0), b.dimensionSizes().size(0));
         Iterator<Double> aIterator = a.valueIterator();
@@ -2,6 +2,7 @@
 package com.yahoo.tensor.functions;
 
 import com.google.common.collect.ImmutableList;
+import com.yahoo.tensor.DimensionSizes;
 import com.yahoo.tensor.IndexedTensor;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorAddress;
@@ -75,7 +76,8 @@ public class Reduce<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMET
 
     Aggregator aggregator() { return aggregator; }
 
-    List<String> dimensions() { return dimensions; }
+    /** Returns the dimensions reduced by this, where an empty list means all dimensions */
+    public List<String> dimensions() { return dimensions; }
 
     @Override
     public List<TensorFunction<NAMETYPE>> arguments() { return Collections.singletonList(argument); }
@@ -130,13 +132,17 @@ public class Reduce<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMET
 
         // Special case: Reduce all
         if (dimensions.isEmpty() || dimensions.size() == argument.type().dimensions().size())
-            if (argument.type().dimensions().size() == 1 && argument instanceof IndexedTensor)
-                return reduceIndexedVector((IndexedTensor)argument, aggregator);
+            if (argument instanceof IndexedTensor)
+                return reduceAllIndexed((IndexedTensor)argument, aggregator);
             else
                 return reduceAllGeneral(argument, aggregator);
 
         TensorType reducedType = type(argument.type(), dimensions);
 
+        // Special case: Reduce the trailing dimensions of a dense tensor, which are consecutive in the value order
+        if (argument instanceof IndexedTensor && argument.size() > 0 && areTrailing(dimensions, argument.type()))
+            return reduceIndexedTrailing((IndexedTensor)argument, reducedType, aggregator);
+
         // Reduce cells
         Map<TensorAddress, ValueAggregator> aggregatingCells = new HashMap<>();
         for (Iterator<Tensor.Cell> i = argument.cellIterator(); i.hasNext(); ) {
@@ -173,13 +179,42 @@ public class Reduce<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMET
         return Tensor.Builder.of(TensorType.empty).cell((valueAggregator.aggregatedValue())).build();
     }
 
-    private static Tensor reduceIndexedVector(IndexedTensor argument, Aggregator aggregator) {
+    private static Tensor reduceAllIndexed(IndexedTensor argument, Aggregator aggregator) {
         ValueAggregator valueAggregator = ValueAggregator.ofType(aggregator);
-        for (int i = 0; i < argument.dimensionSizes().size(0); i++)
+        for (long i = 0; i < argument.size(); i++)
             valueAggregator.aggregate(argument.get(i));
         return Tensor.Builder.of(TensorType.empty).cell((valueAggregator.aggregatedValue())).build();
     }
 
+    /** Returns whether the given dimensions are the last dimensions of the given type */
+    private static boolean areTrailing(List<String> dimensions, TensorType type) {
+        int firstReduced = type.dimensions().size() - dimensions.size();
+        if (firstReduced < 0) return false;
+        for (int i = firstReduced; i < type.dimensions().size(); i++)
+            if ( ! dimensions.contains(type.dimensions().get(i).name())) return false;
+        return true;
+    }
+
+    /** Reduces each consecutive block of values spanned by the trailing dimensions into one value */
+    private static Tensor reduceIndexedTrailing(IndexedTensor argument, TensorType reducedType, Aggregator aggregator) {
+        DimensionSizes.Builder reducedSizesBuilder = new DimensionSizes.Builder(reducedType.dimensions().size());
+        for (int i = 0; i < reducedSizesBuilder.dimensions(); i++)
+            reducedSizesBuilder.set(i, argument.dimensionSizes().size(i));
+        DimensionSizes reducedSizes = reducedSizesBuilder.build();
+        double[] values = new double[(int)reducedSizes.totalSize()];
+        int blockSize = (int)(argument.size() / values.length);
+
+        ValueAggregator valueAggregator = ValueAggregator.ofType(aggregator);
+        int valueIndex = 0;
+        for (int i = 0; i < values.length; i++) {
+            valueAggregator.reset();
+            for (int j = 0; j < blockSize; j++, valueIndex++)
+                valueAggregator.aggregate(argument.get(valueIndex));
+            values[i] = valueAggregator.aggregatedValue();
+        }
+        return IndexedTensor.Builder.of(reducedType, reducedSizes, values).build();
+    }
+
     static abstract class ValueAggregator {
 
         static ValueAggregator ofType(Aggregator aggregator) {
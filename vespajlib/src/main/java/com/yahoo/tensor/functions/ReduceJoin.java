@@ -22,7 +22,9 @@ import java.util.stream.Collectors;
  * This implementation optimizes the case where the reduce is done on the same
  * dimensions as the join. A particularly efficient evaluation is done if there
  * is one common dimension that is joined and reduced on, which is a common
- * case as it covers vector and matrix like multiplications.
+ * case as it covers vector and matrix like multiplications. When the join is a
+ * multiplication and the reduce a sum, such products of dense tensors of at most
+ * two dimensions are computed by {@link DenseProduct}.
  *
  * @author lesters
  */
@@ -101,6 +103,10 @@ public class ReduceJoin<NAMETYPE extends Name> extends CompositeTensorFunction<N
             return false;
 
         TensorType commonDimensions = dimensionsInCommon((IndexedTensor)a, (IndexedTensor)b);
+        for (String dimension : dimensions) {
+            if (commonDimensions.dimension(dimension).isEmpty())
+                return false;
+        }
         if (dimensions.isEmpty()) {
             if (a.type().dimensions().size() != commonDimensions.dimensions().size())
                 return false;
@@ -122,6 +128,11 @@ public class ReduceJoin<NAMETYPE extends Name> extends CompositeTensorFunction<N
     private Tensor evaluate(IndexedTensor a, IndexedTensor b, TensorType joinedType) {
         TensorType reducedType = Reduce.outputType(joinedType, dimensions);
 
+        if (isSumOfProducts()) {
+            List<String> reducingDimensions = reducingDimensions(a, b);
+            if (reducingDimensions.size() == 1 && DenseProduct.canCompute(a, b, reducingDimensions.get(0)))
+                return DenseProduct.compute(a, b, reducingDimensions.get(0), reducedType);
+        }
         if (reduceDimensionIsInnermost(a, b)) {
             if (a.type().dimensions().size() == 1 && b.type().dimensions().size() == 1) {
                 return vectorVectorProduct(a, b, reducedType);
@@ -290,12 +301,7 @@ public class ReduceJoin<NAMETYPE extends Name> extends CompositeTensorFunction<N
      * dimension in both tensors.
      */
     private boolean reduceDimensionIsInnermost(Tensor a, Tensor b) {
-        List<String> reducingDimensions = dimensions;
-        if (reducingDimensions.isEmpty()) {
-            reducingDimensions = dimensionsInCommon((IndexedTensor)a, (IndexedTensor)b).dimensions().stream()
-                    .map(TensorType.Dimension::name)
-                    .collect(Collectors.toList());
-        }
+        List<String> reducingDimensions = reducingDimensions(a, b);
         if (reducingDimensions.size() != 1) {
             return false;
         }
@@ -313,6 +319,19 @@ public class ReduceJoin<NAMETYPE extends Name> extends CompositeTensorFunction<N
         return true;
     }
 
+    /** Returns the dimensions to reduce over, which are all the common dimensions if none are given */
+    private List<String> reducingDimensions(Tensor a, Tensor b) {
+        if ( ! dimensions.isEmpty()) return dimensions;
+        return dimensionsInCommon((IndexedTensor)a, (IndexedTensor)b).dimensions().stream()
+                                                                     .map(TensorType.Dimension::name)
+                                                                     .collect(Collectors.toList());
+    }
+
+    /** Returns whether this computes the sum of the products of the cells, as in dot products and matrix products */
+    private boolean isSumOfProducts() {
+        return combinator instanceof ScalarFunctions.Multiply && aggregator == Reduce.Aggregator.sum;
+    }
+
     @Override
     public String toString(ToStringContext context) {
         return "reduce_join(" + argumentA.toString(context) + ", " +
@@ -2,6 +2,8 @@
 package com.yahoo.tensor.functions;
 
 import com.google.common.collect.ImmutableList;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.evaluation.EvaluationContext;
 import com.yahoo.tensor.evaluation.Name;
 
 import java.util.List;
@@ -43,6 +45,14 @@ public class XwPlusB<NAMETYPE extends Name> extends CompositeTensorFunction<NAME
                           ScalarFunctions.add());
     }
 
+    /** Evaluates xw as a reduce-join, which computes dense matrix products directly */
+    @Override
+    public Tensor evaluate(EvaluationContext<NAMETYPE> context) {
+        return new Join<>(new ReduceJoin<>(x, w, ScalarFunctions.multiply(), Reduce.Aggregator.sum, List.of(dimension)),
+                          b,
+                          ScalarFunctions.add()).evaluate(context);
+    }
+
     @Override
     public String toString(ToStringContext context) {
         return "xw_plus_b(" + x.toString(context) + ", " +
@@ -103,10 +103,14 @@ public class JsonFormat {
         if ( ! (builder instanceof IndexedTensor.BoundBuilder))
             throw new IllegalArgumentException("The 'values' field can only be used with dense tensors. " +
                                                "Use 'cells' or 'blocks' instead");
+        IndexedTensor.BoundBuilder indexedBuilder = (IndexedTensor.BoundBuilder)builder;
+        if (values.type() == Type.STRING) {
+            decodeHexValues(values.asString(), indexedBuilder);
+            return;
+        }
         if ( values.type() != Type.ARRAY)
             throw new IllegalArgumentException("Excepted 'values' to contain an array, not " + values.type());
 
-        IndexedTensor.BoundBuilder indexedBuilder = (IndexedTensor.BoundBuilder)builder;
         MutableInteger index = new MutableInteger(0);
         values.traverse((ArrayTraverser) (__, value) -> {
             if (value.type() != Type.LONG && value.type() != Type.DOUBLE)
@@ -165,6 +169,39 @@ public class JsonFormat {
         return new TensorAddress.Builder(type).add(type.dimensions().get(0).name(), label).build();
     }
 
+    /**
+     * Sets all the cells of a dense tensor from a string of hex digits, as accepted in place of a 'values' array.
+     * Each cell is the big-endian IEEE 754 bit pattern of the cell value type of the tensor,
+     * that is 8 hex digits per float cell and 16 per double cell, in standard value order.
+     *
+     * @throws IllegalArgumentException if the string is not valid hex or does not have the length the type requires
+     */
+    public static void decodeHexValues(String hex, IndexedTensor.BoundBuilder builder) {
+        TensorType type = builder.type();
+        long size = 1;
+        for (TensorType.Dimension dimension : type.dimensions())
+            size *= dimension.size().get();
+        boolean isFloat = type.valueType() == TensorType.Value.FLOAT;
+        int digitsPerCell = isFloat ? 8 : 16;
+        if (hex.length() != size * digitsPerCell)
+            throw new IllegalArgumentException("Expected " + size * digitsPerCell + " hex digits for " + size +
+                                               " cells of " + type + ", but got " + hex.length());
+        for (int cell = 0, position = 0; cell < size; cell++, position += digitsPerCell) {
+            long bits = 0;
+            for (int i = position; i < position + digitsPerCell; i++) {
+                int digit = Character.digit(hex.charAt(i), 16);
+                if (digit < 0)
+                    throw new IllegalArgumentException("Expected a hex digit, but got '" + hex.charAt(i) +
+                                                       "' at position " + i);
+                bits = (bits << 4) | digit;
+            }
+            if (isFloat)
+                builder.cellByDirectIndex(cell, Float.intBitsToFloat((int)bits));
+            else
+                builder.cellByDirectIndex(cell, Double.longBitsToDouble(bits));
+        }
+    }
+
     private static double decodeNumeric(Inspector numericField) {
         if (numericField.type() != Type.LONG && numericField.type() != Type.DOUBLE)
             throw new IllegalArgumentException("Excepted a number, not " + numericField.type());
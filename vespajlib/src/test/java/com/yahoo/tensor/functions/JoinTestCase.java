@@ -46,4 +46,34 @@ public class JoinTestCase {
                              .divide(Tensor.from("tensor(y[],z[]):{ {y:0,z:0}:2, {y:1,z:0}:4, {y:2,z:0}:6 }")));
     }
 
+    /** Test the dense block join optimization */
+    @Test
+    public void testJoinDenseBlocks() {
+        Tensor xy = Tensor.from("tensor(x[2],y[3]):[[1,2,3],[4,5,6]]");
+
+        // Identical shapes
+        assertEquals(Tensor.from("tensor(x[2],y[3]):[[0,0,0],[3,3,3]]"),
+                     xy.subtract(Tensor.from("tensor(x[2],y[3]):[[1,2,3],[1,2,3]]")));
+
+        // Trailing dimension, in both argument orders
+        assertEquals(Tensor.from("tensor(x[2],y[3]):[[0,1,2],[3,4,5]]"),
+                     xy.subtract(Tensor.from("tensor(y[3]):[1,1,1]")));
+        assertEquals(Tensor.from("tensor(x[2],y[3]):[[0,-1,-2],[-3,-4,-5]]"),
+                     Tensor.from("tensor(y[3]):[1,1,1]").subtract(xy));
+
+        // Leading dimension, in both argument orders
+        assertEquals(Tensor.from("tensor(x[2],y[3]):[[0,1,2],[2,3,4]]"),
+                     xy.subtract(Tensor.from("tensor(x[2]):[1,2]")));
+        assertEquals(Tensor.from("tensor(x[2],y[3]):[[0,-1,-2],[-2,-3,-4]]"),
+                     Tensor.from("tensor(x[2]):[1,2]").subtract(xy));
+
+        // Float cells
+        assertEquals(Tensor.from("tensor<float>(x[2],y[3]):[[2,4,6],[8,10,12]]"),
+                     Tensor.from("tensor<float>(x[2],y[3]):[[1,2,3],[4,5,6]]").multiply(Tensor.from("tensor<float>(x[2]):[2,2]")));
+
+        // Unequal sizes are not dense blocks, but joins only the common cells
+        assertEquals(Tensor.from("tensor(x[]):{{x:0}:2,{x:1}:4}"),
+                     Tensor.from("tensor(x[]):{{x:0}:1,{x:1}:2,{x:2}:3}").multiply(Tensor.from("tensor(x[]):{{x:0}:2,{x:1}:2}")));
+    }
+
 }
@@ -0,0 +1,89 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor.functions;
+
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.evaluation.MapEvaluationContext;
+import com.yahoo.tensor.evaluation.Name;
+import com.yahoo.tensor.evaluation.VariableTensor;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.function.DoubleBinaryOperator;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that reduce-joins, matmul and xw_plus_b computed as dense products produce the same result
+ * as evaluating their primitive functions.
+ *
+ * @author agent
+ */
+public class ReduceJoinTestCase {
+
+    @Test
+    public void testDenseProducts() {
+        for (String valueType : List.of("double", "float")) {
+            assertDenseProduct("x[5]", "x[5]", "x", valueType);
+            assertDenseProduct("x[5]", "x[5],y[3]", "x", valueType);
+            assertDenseProduct("x[5]", "w[3],x[5]", "x", valueType);
+            assertDenseProduct("x[5],y[3]", "x[5]", "x", valueType);
+            assertDenseProduct("w[3],x[5]", "x[5]", "x", valueType);
+            assertDenseProduct("i[2],x[70]", "x[70],y[3]", "x", valueType);
+            assertDenseProduct("i[2],x[5]", "w[3],x[5]", "x", valueType);
+            assertDenseProduct("x[5],y[2]", "w[3],x[5]", "x", valueType);
+            assertDenseProduct("x[5],y[2]", "x[5],z[3]", "x", valueType);
+            assertDenseProduct("b[2],x[5]", "a[3],x[5]", "x", valueType);
+            assertDenseProduct("a[2],x[5]", "x[5],z[3]", "x", valueType);
+            assertDenseProduct("x[5],z[2]", "a[3],x[5]", "x", valueType);
+        }
+    }
+
+    @Test
+    public void testDenseProductsOfMixedValueTypes() {
+        assertEquals(Tensor.from("tensor(y[2]):[22,28]"),
+                     Tensor.from("tensor<float>(x[3]):[1,2,3]").matmul(Tensor.from("tensor(x[3],y[2]):[[1,2],[3,4],[5,6]]"), "x"));
+    }
+
+    @Test
+    public void testNotDenseProducts() {
+        assertReduceJoin("x[3],y[2]", "x[3],y[2]", List.of("x", "y"), ScalarFunctions.multiply(), Reduce.Aggregator.sum, "double");
+        assertReduceJoin("x[5]", "x[5],y[3]", List.of("x"), ScalarFunctions.add(), Reduce.Aggregator.sum, "double");
+        assertReduceJoin("x[5]", "x[5],y[3]", List.of("x"), ScalarFunctions.multiply(), Reduce.Aggregator.max, "double");
+        assertReduceJoin("x[5],y[2]", "x[5]", List.of("y"), ScalarFunctions.multiply(), Reduce.Aggregator.sum, "double");
+    }
+
+    @Test
+    public void testXwPlusB() {
+        Tensor x = Tensor.from("tensor(x[3]):[1,2,3]");
+        Tensor w = Tensor.from("tensor(x[3],y[2]):[[1,2],[3,4],[5,6]]");
+        Tensor b = Tensor.from("tensor(y[2]):[10,20]");
+        assertEquals(Tensor.from("tensor(y[2]):[32,48]"), x.xwPlusB(w, b, "x"));
+    }
+
+    private void assertDenseProduct(String aType, String bType, String dimension, String valueType) {
+        assertReduceJoin(aType, bType, List.of(dimension), ScalarFunctions.multiply(), Reduce.Aggregator.sum, valueType);
+
+        Tensor a = Tensor.random(TensorType.fromSpec("tensor<" + valueType + ">(" + aType + ")"));
+        Tensor b = Tensor.random(TensorType.fromSpec("tensor<" + valueType + ">(" + bType + ")"));
+        assertEquals(new Matmul<>(new ConstantTensor<>(a), new ConstantTensor<>(b), dimension).toPrimitive().evaluate(),
+                     a.matmul(b, dimension));
+    }
+
+    private void assertReduceJoin(String aType, String bType, List<String> dimensions,
+                                  DoubleBinaryOperator combinator, Reduce.Aggregator aggregator,
+                                  String valueType) {
+        Tensor a = Tensor.random(TensorType.fromSpec("tensor<" + valueType + ">(" + aType + ")"));
+        Tensor b = Tensor.random(TensorType.fromSpec("tensor<" + valueType + ">(" + bType + ")"));
+        MapEvaluationContext<Name> context = new MapEvaluationContext<>();
+        context.put("a", a);
+        context.put("b", b);
+        ReduceJoin<Name> reduceJoin = new ReduceJoin<>(new VariableTensor<>("a"), new VariableTensor<>("b"),
+                                                       combinator, aggregator, dimensions);
+        Tensor expected = reduceJoin.toPrimitive().evaluate(context);
+        Tensor result = reduceJoin.evaluate(context);
+        assertEquals(expected.type(), result.type());
+        assertEquals(aType + " * " + bType + " over " + dimensions, expected, result);
+    }
+
+}
@@ -0,0 +1,43 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor.functions;
+
+import com.yahoo.tensor.Tensor;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author agent
+ */
+public class ReduceTestCase {
+
+    private final Tensor xyz = Tensor.from("tensor(x[2],y[2],z[3]):[[[1,2,3],[4,5,6]],[[7,8,9],[10,11,12]]]");
+
+    /** Test the dense trailing dimensions optimization */
+    @Test
+    public void testReduceDenseTrailingDimensions() {
+        assertEquals(Tensor.from("tensor(x[2],y[2]):[[6,15],[24,33]]"), xyz.sum("z"));
+        assertEquals(Tensor.from("tensor(x[2]):[21,57]"), xyz.sum(List.of("y", "z")));
+        assertEquals(Tensor.from("tensor(x[2]):[21,57]"), xyz.sum(List.of("z", "y")));
+        assertEquals(Tensor.from("tensor(x[2],y[2]):[[3,6],[9,12]]"), xyz.max("z"));
+        assertEquals(Tensor.from("tensor(x[2],y[2]):[[2,5],[8,11]]"), xyz.avg("z"));
+        assertEquals(Tensor.from("tensor<float>(x[2]):[6,15]"),
+                     Tensor.from("tensor<float>(x[2],y[3]):[[1,2,3],[4,5,6]]").sum("y"));
+    }
+
+    @Test
+    public void testReduceDenseOtherDimensions() {
+        assertEquals(Tensor.from("tensor(y[2],z[3]):[[8,10,12],[14,16,18]]"), xyz.sum("x"));
+        assertEquals(Tensor.from("tensor(x[2],z[3]):[[5,7,9],[17,19,21]]"), xyz.sum("y"));
+    }
+
+    @Test
+    public void testReduceDenseAll() {
+        assertEquals(Tensor.from("{78}"), xyz.sum());
+        assertEquals(Tensor.from("{12}"), xyz.count());
+        assertEquals(Tensor.from("{1}"), xyz.min());
+    }
+
+}
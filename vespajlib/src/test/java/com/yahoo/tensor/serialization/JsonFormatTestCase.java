@@ -81,6 +81,32 @@ public class JsonFormatTestCase {
         assertEquals(expected, decoded);
     }
 
+    @Test
+    public void testDenseTensorInHexForm() {
+        Tensor expected = Tensor.from("tensor<float>(x[2],y[3]):[[2.0, 3.0, 4.0], [5.0, 6.0, 7.0]]");
+        String hexJson = "{\"values\":\"400000004040000040800000" + "40A0000040c0000040e00000\"}";
+        assertEquals(expected, JsonFormat.decode(expected.type(), hexJson.getBytes(StandardCharsets.UTF_8)));
+
+        expected = Tensor.from("tensor(x[2]):[2.0, -0.5]");
+        hexJson = "{\"values\":\"4000000000000000bfe0000000000000\"}";
+        assertEquals(expected, JsonFormat.decode(expected.type(), hexJson.getBytes(StandardCharsets.UTF_8)));
+
+        try {
+            JsonFormat.decode(expected.type(), "{\"values\":\"4000000000000000bfe00000\"}".getBytes(StandardCharsets.UTF_8));
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("Expected 32 hex digits for 2 cells of tensor(x[2]), but got 24", e.getMessage());
+        }
+        try {
+            JsonFormat.decode(expected.type(), "{\"values\":\"4000000000000000bfe000000000000x\"}".getBytes(StandardCharsets.UTF_8));
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("Expected a hex digit, but got 'x' at position 31", e.getMessage());
+        }
+    }
+
     @Test
     public void testMixedTensorInMixedForm() {
         Tensor.Builder builder = Tensor.Builder.of(TensorType.fromSpec("tensor(x{},y[3])"));